@@ -2,14 +2,12 @@ package care.smith.fts.api;
 
 import static java.util.Objects.requireNonNull;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.SetMultimap;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.time.chrono.ChronoZonedDateTime;
 import java.util.*;
-import lombok.EqualsAndHashCode;
-import lombok.ToString;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import tools.jackson.core.JsonGenerator;
 import tools.jackson.core.JsonParser;
 import tools.jackson.core.type.TypeReference;
@@ -37,80 +35,276 @@ public record ConsentedPatient(
     return consentedPolicies.maxConsentedPeriod();
   }
 
-  @ToString
-  @EqualsAndHashCode
+  /**
+   * The policies a patient consented to and the periods of each consent.
+   *
+   * <p>Every patient in flight carries one of these, so they are kept compact: policy codes are
+   * interned to int ids shared by all patients, and each period is stored as a pair of epoch
+   * seconds in primitive arrays, next to the nanos and zones of its boundaries. The maximum
+   * consented period is computed once and cached until the policies change.
+   */
+  @JsonSerialize(using = ConsentedPoliciesSerializer.class)
+  @JsonDeserialize(using = ConsentedPoliciesDeserializer.class)
   public static class ConsentedPolicies {
-
-    @JsonSerialize(using = MultimapSerializer.class)
-    @JsonDeserialize(using = MultimapDeserializer.class)
-    private final SetMultimap<String, Period> policies = HashMultimap.create();
+    private int size;
+    private int[] policies = new int[0];
+    private long[] seconds = new long[0];
+    private int[] nanos = new int[0];
+    private ZoneId[] zones = new ZoneId[0];
+    private volatile Optional<Period> maxConsentedPeriod;
 
     public void put(String id, Period period) {
-      policies.put(id, period);
+      var start = period.start();
+      var end = period.end();
+      add(
+          PolicyCodes.intern(id),
+          start.toEpochSecond(),
+          start.getNano(),
+          start.getZone(),
+          end.toEpochSecond(),
+          end.getNano(),
+          end.getZone());
+    }
+
+    private void add(
+        int policy,
+        long startSecond,
+        int startNano,
+        ZoneId startZone,
+        long endSecond,
+        int endNano,
+        ZoneId endZone) {
+      for (int i = 0; i < size; i++) {
+        if (policies[i] == policy
+            && isBoundary(2 * i, startSecond, startNano, startZone)
+            && isBoundary(2 * i + 1, endSecond, endNano, endZone)) {
+          return;
+        }
+      }
+      if (size == policies.length) {
+        var capacity = Math.max(4, size * 2);
+        policies = Arrays.copyOf(policies, capacity);
+        seconds = Arrays.copyOf(seconds, 2 * capacity);
+        nanos = Arrays.copyOf(nanos, 2 * capacity);
+        zones = Arrays.copyOf(zones, 2 * capacity);
+      }
+      policies[size] = policy;
+      setBoundary(2 * size, startSecond, startNano, startZone);
+      setBoundary(2 * size + 1, endSecond, endNano, endZone);
+      size++;
+      maxConsentedPeriod = null;
+    }
+
+    private boolean isBoundary(int index, long second, int nano, ZoneId zone) {
+      return seconds[index] == second && nanos[index] == nano && zones[index].equals(zone);
+    }
+
+    private void setBoundary(int index, long second, int nano, ZoneId zone) {
+      seconds[index] = second;
+      nanos[index] = nano;
+      zones[index] = zone;
+    }
+
+    /** @return whether boundary {@code a} is before boundary {@code b} on the time-line */
+    private boolean isBefore(int a, int b) {
+      return seconds[a] < seconds[b] || (seconds[a] == seconds[b] && nanos[a] < nanos[b]);
     }
 
     public Boolean hasAllPolicies(Set<String> policiesToCheck) {
-      return policies.keySet().containsAll(policiesToCheck);
+      return policiesToCheck.stream().allMatch(this::hasPolicy);
     }
 
     public Optional<Period> maxConsentedPeriod() {
-      Optional<ZonedDateTime> start =
-          policies.asMap().values().stream()
-              .map(ConsentedPolicies::minStartOfPolicyPeriods)
-              .max(ChronoZonedDateTime.timeLineOrder());
-      Optional<ZonedDateTime> end =
-          policies.asMap().values().stream()
-              .map(ConsentedPolicies::maxEndOfPolicyPeriods)
-              .min(ChronoZonedDateTime.timeLineOrder());
-      return start.flatMap(s -> end.filter(e -> s.compareTo(e) < 0).map(e -> new Period(s, e)));
+      var max = maxConsentedPeriod;
+      if (max == null) {
+        max = computeMaxConsentedPeriod();
+        maxConsentedPeriod = max;
+      }
+      return max;
     }
 
-    private static ZonedDateTime minStartOfPolicyPeriods(Collection<Period> col) {
-      return col.stream().map(Period::start).min(ChronoZonedDateTime.timeLineOrder()).get();
+    /**
+     * The maximum consented period starts at the latest of the earliest starts per policy, and
+     * ends at the earliest of the latest ends per policy.
+     *
+     * @return the maximum consented period, empty if there is no policy or the period is empty
+     */
+    private Optional<Period> computeMaxConsentedPeriod() {
+      int start = -1;
+      int end = -1;
+      for (int i = 0; i < size; i++) {
+        if (firstOfPolicy(i)) {
+          var policyStart = minStartOfPolicy(i);
+          var policyEnd = maxEndOfPolicy(i);
+          if (start < 0 || isBefore(start, policyStart)) start = policyStart;
+          if (end < 0 || isBefore(policyEnd, end)) end = policyEnd;
+        }
+      }
+      return start >= 0 && isBefore(start, end)
+          ? Optional.of(new Period(boundary(start), boundary(end)))
+          : Optional.empty();
     }
 
-    private static ZonedDateTime maxEndOfPolicyPeriods(Collection<Period> col) {
-      return col.stream().map(Period::end).max(ChronoZonedDateTime.timeLineOrder()).get();
+    private boolean firstOfPolicy(int i) {
+      for (int j = 0; j < i; j++) {
+        if (policies[j] == policies[i]) return false;
+      }
+      return true;
+    }
+
+    /** @return the boundary index of the earliest start of the policy of period {@code i} */
+    private int minStartOfPolicy(int i) {
+      int min = 2 * i;
+      for (int j = i + 1; j < size; j++) {
+        if (policies[j] == policies[i] && isBefore(2 * j, min)) min = 2 * j;
+      }
+      return min;
+    }
+
+    /** @return the boundary index of the latest end of the policy of period {@code i} */
+    private int maxEndOfPolicy(int i) {
+      int max = 2 * i + 1;
+      for (int j = i + 1; j < size; j++) {
+        if (policies[j] == policies[i] && isBefore(max, 2 * j + 1)) max = 2 * j + 1;
+      }
+      return max;
+    }
+
+    private ZonedDateTime boundary(int index) {
+      var instant = Instant.ofEpochSecond(seconds[index], nanos[index]);
+      return ZonedDateTime.ofInstant(instant, zones[index]);
+    }
+
+    private Period period(int i) {
+      return new Period(boundary(2 * i), boundary(2 * i + 1));
     }
 
     public Boolean hasPolicy(String policy) {
-      return policies.keySet().contains(policy);
+      var id = PolicyCodes.id(policy);
+      for (int i = 0; i < size; i++) {
+        if (policies[i] == id) return true;
+      }
+      return false;
     }
 
     public Set<String> policyNames() {
-      return policies.keySet();
+      var names = new LinkedHashSet<String>();
+      for (int i = 0; i < size; i++) {
+        names.add(PolicyCodes.code(policies[i]));
+      }
+      return names;
     }
 
     public int numberOfPolicies() {
-      return policies.keySet().size();
+      int count = 0;
+      for (int i = 0; i < size; i++) {
+        if (firstOfPolicy(i)) count++;
+      }
+      return count;
     }
 
     public Set<Period> getPeriods(String policy) {
-      return policies.get(policy);
+      var id = PolicyCodes.id(policy);
+      var periods = new LinkedHashSet<Period>();
+      for (int i = 0; i < size; i++) {
+        if (policies[i] == id) periods.add(period(i));
+      }
+      return periods;
     }
 
     public void merge(ConsentedPolicies other) {
-      other.policies.forEach(policies::put);
+      for (int i = 0; i < other.size; i++) {
+        add(
+            other.policies[i],
+            other.seconds[2 * i],
+            other.nanos[2 * i],
+            other.zones[2 * i],
+            other.seconds[2 * i + 1],
+            other.nanos[2 * i + 1],
+            other.zones[2 * i + 1]);
+      }
+    }
+
+    /** @return the periods of each policy, in the order the policies were put */
+    Map<String, Set<Period>> asMap() {
+      var map = new LinkedHashMap<String, Set<Period>>();
+      for (int i = 0; i < size; i++) {
+        map.computeIfAbsent(PolicyCodes.code(policies[i]), p -> new LinkedHashSet<>())
+            .add(period(i));
+      }
+      return map;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ConsentedPolicies other && asMap().equals(other.asMap());
+    }
+
+    @Override
+    public int hashCode() {
+      return asMap().hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return "ConsentedPatient.ConsentedPolicies(policies=" + asMap() + ")";
+    }
+  }
+
+  /**
+   * Interns policy codes to int ids. Only a handful of policy codes are in use, and they are shared
+   * by all patients, so ids are never released.
+   */
+  private static final class PolicyCodes {
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static final List<String> CODES = new CopyOnWriteArrayList<>();
+
+    static int intern(String code) {
+      requireNonNull(code, "Policy code cannot be null");
+      var id = IDS.get(code);
+      return id != null ? id : add(code);
+    }
+
+    private static synchronized int add(String code) {
+      return IDS.computeIfAbsent(
+          code,
+          c -> {
+            CODES.add(c);
+            return CODES.size() - 1;
+          });
+    }
+
+    /** @return the id of the code, or -1 if the code was never interned */
+    static int id(String code) {
+      return IDS.getOrDefault(code, -1);
+    }
+
+    static String code(int id) {
+      return CODES.get(id);
     }
   }
 
-  static class MultimapSerializer extends ValueSerializer<Multimap<String, Period>> {
+  /** Writes consented policies as {@code {"policies": {"<code>": [<period>, ...]}}}. */
+  static class ConsentedPoliciesSerializer extends ValueSerializer<ConsentedPolicies> {
     @Override
-    public void serialize(
-        Multimap<String, Period> value, JsonGenerator gen, SerializationContext ctxt) {
-      Map<String, Collection<Period>> map = value.asMap();
-      gen.writePOJO(map);
+    public void serialize(ConsentedPolicies value, JsonGenerator gen, SerializationContext ctxt) {
+      gen.writeStartObject();
+      gen.writeName("policies");
+      gen.writePOJO(value.asMap());
+      gen.writeEndObject();
     }
   }
 
-  static class MultimapDeserializer extends ValueDeserializer<Multimap<String, Period>> {
+  static class ConsentedPoliciesDeserializer extends ValueDeserializer<ConsentedPolicies> {
     @Override
-    public Multimap<String, Period> deserialize(JsonParser p, DeserializationContext ctxt) {
-      Map<String, Collection<Period>> map =
-          p.readValueAs(new TypeReference<Map<String, Collection<Period>>>() {});
-      SetMultimap<String, Period> multimap = HashMultimap.create();
-      map.forEach(multimap::putAll);
-      return multimap;
+    public ConsentedPolicies deserialize(JsonParser p, DeserializationContext ctxt) {
+      Map<String, Map<String, Collection<Period>>> value =
+          p.readValueAs(new TypeReference<Map<String, Map<String, Collection<Period>>>>() {});
+      var consentedPolicies = new ConsentedPolicies();
+      value
+          .getOrDefault("policies", Map.of())
+          .forEach((code, periods) -> periods.forEach(pd -> consentedPolicies.put(code, pd)));
+      return consentedPolicies;
     }
   }
 }
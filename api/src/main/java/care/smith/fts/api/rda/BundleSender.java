@@ -5,13 +5,23 @@ import static java.lang.System.identityHashCode;
 
 import care.smith.fts.api.TransferProcessStep;
 import care.smith.fts.api.TransferProcessStepFactory;
+import java.util.List;
 import org.hl7.fhir.r4.model.Bundle;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface BundleSender extends TransferProcessStep {
 
   Mono<Result> send(Bundle bundles);
 
+  /**
+   * Sends the bundles of several patients. Senders may combine them into fewer requests, the
+   * default sends one bundle after another.
+   */
+  default Mono<Result> sendAll(List<Bundle> bundles) {
+    return Flux.fromIterable(bundles).concatMap(this::send).then(Mono.just(new Result()));
+  }
+
   /**
    * Stable grouping key for the downstream store this sender targets. Senders that hit a concrete
    * store override this; the default falls back to a per-instance key, so unidentified senders are
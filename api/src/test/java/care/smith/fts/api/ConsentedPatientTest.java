@@ -133,4 +133,82 @@ class ConsentedPatientTest {
     ConsentedPatient ser = om.readValue(des, ConsentedPatient.class);
     assertThat(ser).isEqualTo(consentedPatient);
   }
+
+  @Test
+  void putIgnoresDuplicatePeriods() {
+    ConsentedPatient.ConsentedPolicies consentedPolicies = new ConsentedPatient.ConsentedPolicies();
+    Period period = Period.parse("1234-03-01T00:00:00+00:00", "1234-03-03T00:00:00+00:00");
+    consentedPolicies.put("a", period);
+    consentedPolicies.put("a", period);
+    assertThat(consentedPolicies.getPeriods("a")).containsExactly(period);
+    assertThat(consentedPolicies.numberOfPolicies()).isEqualTo(1);
+  }
+
+  @Test
+  void periodsKeepTheirZone() {
+    ConsentedPatient.ConsentedPolicies consentedPolicies = new ConsentedPatient.ConsentedPolicies();
+    Period offset = Period.parse("1234-03-01T00:00:00+02:00", "1234-03-03T00:00:00+02:00");
+    Period local = Period.parse("2024-01", "2024-12");
+    consentedPolicies.put("a", offset);
+    consentedPolicies.put("b", local);
+    assertThat(consentedPolicies.getPeriods("a")).containsExactly(offset);
+    assertThat(consentedPolicies.getPeriods("b")).containsExactly(local);
+  }
+
+  @Test
+  void unknownPolicyHasNoPeriods() {
+    ConsentedPatient.ConsentedPolicies consentedPolicies = new ConsentedPatient.ConsentedPolicies();
+    assertThat(consentedPolicies.hasPolicy("unknown-policy-174211")).isFalse();
+    assertThat(consentedPolicies.getPeriods("unknown-policy-174211")).isEmpty();
+  }
+
+  @Test
+  void equalityIgnoresOrderOfPut() {
+    Period period1 = Period.parse("1234-03-01T00:00:00+00:00", "1234-03-03T00:00:00+00:00");
+    Period period2 = Period.parse("1234-03-05T00:00:00+00:00", "1234-03-06T00:00:00+00:00");
+    ConsentedPatient.ConsentedPolicies consentedPolicies1 =
+        new ConsentedPatient.ConsentedPolicies();
+    consentedPolicies1.put("a", period1);
+    consentedPolicies1.put("b", period2);
+    ConsentedPatient.ConsentedPolicies consentedPolicies2 =
+        new ConsentedPatient.ConsentedPolicies();
+    consentedPolicies2.put("b", period2);
+    consentedPolicies2.put("a", period1);
+    assertThat(consentedPolicies1).isEqualTo(consentedPolicies2);
+    assertThat(consentedPolicies1.hashCode()).isEqualTo(consentedPolicies2.hashCode());
+  }
+
+  @Test
+  void maxPermittedPeriodFollowsPut() {
+    ConsentedPatient.ConsentedPolicies consentedPolicies = new ConsentedPatient.ConsentedPolicies();
+    consentedPolicies.put(
+        "a", Period.parse("1234-03-01T00:00:00+00:00", "1234-03-06T00:00:00+00:00"));
+    assertThat(consentedPolicies.maxConsentedPeriod())
+        .isEqualTo(
+            Optional.of(Period.parse("1234-03-01T00:00:00+00:00", "1234-03-06T00:00:00+00:00")));
+
+    consentedPolicies.put(
+        "b", Period.parse("1234-03-02T00:00:00+00:00", "1234-03-04T00:00:00+00:00"));
+    assertThat(consentedPolicies.maxConsentedPeriod())
+        .isEqualTo(
+            Optional.of(Period.parse("1234-03-02T00:00:00+00:00", "1234-03-04T00:00:00+00:00")));
+  }
+
+  @Test
+  void serializesPoliciesAsMapOfPeriods() throws JacksonException {
+    ConsentedPatient.ConsentedPolicies consentedPolicies = new ConsentedPatient.ConsentedPolicies();
+    ObjectMapper om = new ObjectMapper();
+
+    consentedPolicies.put(
+        "a", Period.parse("1234-03-01T00:00:00+00:00", "1234-03-03T00:00:00+00:00"));
+    consentedPolicies.put(
+        "a", Period.parse("1234-03-05T00:00:00+00:00", "1234-03-06T00:00:00+00:00"));
+
+    var json = om.readTree(om.writeValueAsString(consentedPolicies));
+    assertThat(json.size()).isEqualTo(1);
+    assertThat(json.get("policies").get("a")).hasSize(2);
+    assertThat(json.get("policies").get("a").get(0).has("start")).isTrue();
+    assertThat(om.readValue(json.toString(), ConsentedPatient.ConsentedPolicies.class))
+        .isEqualTo(consentedPolicies);
+  }
 }
@@ -2,7 +2,11 @@ package care.smith.fts.api.rda;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.ArrayList;
+import java.util.List;
+import org.hl7.fhir.r4.model.Bundle;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
 import tools.jackson.core.JacksonException;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.dataformat.yaml.YAMLMapper;
@@ -29,4 +33,24 @@ class BundleSenderTest {
   void testInstantiateResult() {
     assertThat(new BundleSender.Result()).isNotNull();
   }
+
+  @Test
+  void sendAllSendsEachBundle() {
+    var sent = new ArrayList<Bundle>();
+    BundleSender sender =
+        b -> {
+          sent.add(b);
+          return Mono.just(new BundleSender.Result());
+        };
+    var bundles = List.of(new Bundle(), new Bundle());
+
+    assertThat(sender.sendAll(bundles).block()).isEqualTo(new BundleSender.Result());
+    assertThat(sent).containsExactlyElementsOf(bundles);
+  }
+
+  @Test
+  void sendAllWithoutBundles() {
+    BundleSender sender = b -> Mono.error(new IllegalStateException());
+    assertThat(sender.sendAll(List.of()).block()).isEqualTo(new BundleSender.Result());
+  }
 }
@@ -0,0 +1,73 @@
+package care.smith.fts.benchmarks.cda;
+
+import static care.smith.fts.test.FhirGenerators.patient;
+import static com.typesafe.config.ConfigFactory.parseResources;
+
+import care.smith.fts.cda.services.deidentifhir.DeidentifhirUtils;
+import care.smith.fts.cda.services.deidentifhir.GeneratingReplacementProvider;
+import care.smith.fts.util.deidentifhir.DeidentifhirEngine;
+import com.typesafe.config.Config;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares deidentification of one patient with a profile compiled per patient (before) against a
+ * profile compiled once per project (after).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DeidentifhirBenchmark {
+
+  private static final String PATIENT_ID = "patient-1";
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private Config config;
+  private DeidentifhirEngine<GeneratingReplacementProvider> engine;
+  private Bundle template;
+  private Bundle bundle;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() throws IOException {
+    config = parseResources(DeidentifhirBenchmark.class, "CDtoTransport.profile");
+    engine = DeidentifhirUtils.compile(config);
+    template =
+        patient(() -> PATIENT_ID, () -> "identifierSystem", () -> PATIENT_ID, () -> "2024")
+            .generateResource();
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpInvocation() {
+    bundle = template.copy();
+  }
+
+  @Benchmark
+  public Bundle compilePerPatient() {
+    var provider = new GeneratingReplacementProvider(PATIENT_ID);
+    var registry = DeidentifhirUtils.buildRegistry(provider);
+    return DeidentifhirUtils.deidentify(config, registry, bundle, PATIENT_ID, meterRegistry);
+  }
+
+  @Benchmark
+  public Bundle compiledEngine() {
+    var provider = new GeneratingReplacementProvider(PATIENT_ID);
+    return DeidentifhirUtils.deidentify(engine, provider, bundle, PATIENT_ID, meterRegistry);
+  }
+}
@@ -0,0 +1,56 @@
+package care.smith.fts.benchmarks.cda;
+
+import care.smith.fts.cda.impl.FhirCohortSelector;
+import care.smith.fts.test.FhirCohortGenerator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Groups the patients of one {@code Consent?_include=Consent:patient} page of 10,000 entries with
+ * their consents, as done for every page during cohort selection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FhirCohortSelectorBenchmark {
+
+  private static final int PAGE_ENTRIES = 10_000;
+
+  @Param({"1", "3"})
+  public int consentsPerPatient;
+
+  private Bundle page;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var generator =
+        new FhirCohortGenerator(
+            "https://ths-greifswald.de/fhir/gics/identifiers/Pseudonym",
+            "https://ths-greifswald.de/fhir/CodeSystem/gics/Policy",
+            Set.of("MDAT_erheben"));
+    var patients = PAGE_ENTRIES / (consentsPerPatient + 1);
+    page = generator.generate(patients, consentsPerPatient, patients).findFirst().orElseThrow();
+  }
+
+  @Benchmark
+  public List<Bundle> groupPatientsAndConsents() {
+    return FhirCohortSelector.groupPatientsAndConsents(page);
+  }
+}
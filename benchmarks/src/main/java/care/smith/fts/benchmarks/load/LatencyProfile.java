@@ -0,0 +1,25 @@
+package care.smith.fts.benchmarks.load;
+
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+
+/** Network latency added to every response of the stand-in servers. */
+public enum LatencyProfile {
+  /** Respond immediately. */
+  NONE(0, 0),
+  /** Servers in the same data center, around 5 ms. */
+  LAN(5, 0.2),
+  /** Servers at different sites, around 40 ms with a long tail. */
+  WAN(40, 0.4);
+
+  private final double medianMillis;
+  private final double sigma;
+
+  LatencyProfile(double medianMillis, double sigma) {
+    this.medianMillis = medianMillis;
+    this.sigma = sigma;
+  }
+
+  ResponseDefinitionBuilder apply(ResponseDefinitionBuilder response) {
+    return medianMillis > 0 ? response.withLogNormalRandomDelay(medianMillis, sigma) : response;
+  }
+}
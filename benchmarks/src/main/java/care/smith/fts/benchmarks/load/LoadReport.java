@@ -0,0 +1,119 @@
+package care.smith.fts.benchmarks.load;
+
+import static java.util.Comparator.comparing;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.joining;
+
+import care.smith.fts.cda.TransferProcessStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Samples the heap while a load test runs and summarizes throughput, the agents' timers and GC
+ * activity afterwards. All agents share the JVM, so heap and GC figures are totals of all agents
+ * and stand-ins.
+ */
+class LoadReport implements AutoCloseable {
+
+  private static final Duration SAMPLE_INTERVAL = Duration.ofMillis(100);
+
+  private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+  private final ScheduledExecutorService sampler =
+      Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().factory());
+  private final AtomicLong peakHeap = new AtomicLong();
+  private final long gcCount = gcTotal(GarbageCollectorMXBean::getCollectionCount);
+  private final long gcTime = gcTotal(GarbageCollectorMXBean::getCollectionTime);
+  private final long start = System.nanoTime();
+
+  LoadReport() {
+    sampler.scheduleAtFixedRate(
+        () -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+        0,
+        SAMPLE_INTERVAL.toMillis(),
+        MILLISECONDS);
+  }
+
+  /**
+   * Prints the report.
+   *
+   * @param out the stream to print to
+   * @param status final status of the transfer process
+   * @param registries meter registries by agent name
+   */
+  void print(PrintStream out, TransferProcessStatus status, Map<String, MeterRegistry> registries) {
+    var elapsed = Duration.ofNanos(System.nanoTime() - start);
+    var seconds = elapsed.toMillis() / 1000.0;
+
+    out.printf("%nTransfer %s: %s%n", status.processId(), status.phase());
+    out.printf(
+        "  %d patients, %d bundles sent, %d skipped in %.1f s%n",
+        status.totalPatients(), status.sentBundles(), status.skippedBundles(), seconds);
+    out.printf("  %.0f patients/hour%n", status.totalPatients() * 3600 / seconds);
+    out.printf("  peak heap %d MiB%n", peakHeap.get() >> 20);
+    out.printf(
+        "  %d GCs taking %d ms%n",
+        gcTotal(GarbageCollectorMXBean::getCollectionCount) - gcCount,
+        gcTotal(GarbageCollectorMXBean::getCollectionTime) - gcTime);
+
+    registries.forEach((agent, registry) -> printTimers(out, agent, registry));
+  }
+
+  private static void printTimers(PrintStream out, String agent, MeterRegistry registry) {
+    out.printf("%n%-90s %8s %9s %9s %9s%n", agent, "count", "p50 ms", "p99 ms", "max ms");
+    registry.getMeters().stream()
+        .filter(Timer.class::isInstance)
+        .map(Timer.class::cast)
+        .filter(t -> t.count() > 0)
+        .sorted(comparing(LoadReport::describe))
+        .forEach(
+            t -> {
+              var snapshot = t.takeSnapshot();
+              out.printf(
+                  "%-90s %8d %9.1f %9.1f %9.1f%n",
+                  describe(t),
+                  snapshot.count(),
+                  percentile(snapshot.percentileValues(), 0.5),
+                  percentile(snapshot.percentileValues(), 0.99),
+                  snapshot.max(MILLISECONDS));
+            });
+  }
+
+  private static String describe(Timer timer) {
+    var id = timer.getId();
+    var tags =
+        id.getTags().stream()
+            .filter(t -> !t.getValue().equals("none"))
+            .map(t -> t.getKey() + "=" + t.getValue())
+            .collect(joining(","));
+    return tags.isEmpty() ? id.getName() : id.getName() + "{" + tags + "}";
+  }
+
+  private static double percentile(ValueAtPercentile[] values, double percentile) {
+    return Arrays.stream(values)
+        .filter(v -> v.percentile() == percentile)
+        .mapToDouble(v -> v.value(MILLISECONDS))
+        .findFirst()
+        .orElse(Double.NaN);
+  }
+
+  private static long gcTotal(ToLongFunction<GarbageCollectorMXBean> value) {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(value).sum();
+  }
+
+  @Override
+  public void close() {
+    sampler.shutdownNow();
+  }
+}
@@ -0,0 +1,238 @@
+package care.smith.fts.benchmarks.load;
+
+import static care.smith.fts.cda.TransferProcessStatus.isCompleted;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import care.smith.fts.cda.ClinicalDomainAgent;
+import care.smith.fts.cda.TransferProcessRunner.Phase;
+import care.smith.fts.cda.TransferProcessStatus;
+import care.smith.fts.rda.ResearchDomainAgent;
+import care.smith.fts.tca.TrustCenterAgent;
+import com.redis.testcontainers.RedisContainer;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+/**
+ * Runs one transfer through all three agents in this JVM against WireMock stand-ins for the health
+ * data stores, gPAS and gICS, and a Redis keystore. Prints throughput, per-agent timer percentiles,
+ * peak heap and GC activity when the transfer completed.
+ *
+ * <p>Options:
+ *
+ * <ul>
+ *   <li>{@code --patients=<n>} number of consented patients, defaults to 100
+ *   <li>{@code --latency=NONE|LAN|WAN} latency of the stand-ins, defaults to LAN
+ *   <li>{@code --redis=<url>} use an existing Redis instead of starting a Valkey container
+ *   <li>{@code --timeout=<duration>} maximum duration of the transfer, defaults to PT1H
+ * </ul>
+ */
+@Slf4j
+public class LoadTest implements AutoCloseable {
+
+  private static final String PROJECT = "loadtest";
+  private static final String DEIDENTIFHIR = "/care/smith/fts/benchmarks/cda/";
+  private static final List<String> DEIDENTIFHIR_FILES =
+      List.of(
+          "CDtoTransport.profile",
+          "de.medizininformatikinitiative.kerndatensatz.person-1.0.14/patient/base.conf",
+          "de.medizininformatikinitiative.kerndatensatz.person-1.0.14/patient/CDtoTransport.conf",
+          "de.medizininformatikinitiative.kerndatensatz.fall-1.0.1/kontakt/base.conf",
+          "de.medizininformatikinitiative.kerndatensatz.fall-1.0.1/kontakt/CDtoTransport.conf");
+
+  // renovate: datasource=docker depName=valkey/valkey versioning=docker
+  private static final String VALKEY_VERSION =
+      "9.1.1-alpine@sha256:de31910896150d5e754a07d57d227cfdde4e258ddd0d1aa4607f2d2f95843715";
+
+  private final Options options;
+  private final Deque<AutoCloseable> resources = new ArrayDeque<>();
+  private final Map<String, MeterRegistry> registries = new LinkedHashMap<>();
+
+  LoadTest(Options options) {
+    this.options = options;
+  }
+
+  public static void main(String... args) throws Exception {
+    var options = Options.parse(args);
+    TransferProcessStatus status;
+    try (var loadTest = new LoadTest(options)) {
+      status = loadTest.run();
+    }
+    System.exit(status.phase() == Phase.COMPLETED ? 0 : 1);
+  }
+
+  TransferProcessStatus run() throws IOException {
+    log.info("Starting stand-ins with {} patients, latency {}", options.patients, options.latency);
+    var standIns = register(new StandIns(options.patients, options.latency));
+    var keystore = options.redis.orElseGet(this::startRedis);
+
+    var tca =
+        startAgent(
+            TrustCenterAgent.class,
+            "tca",
+            "--de-identification.keystore-url=" + keystore,
+            "--de-identification.gpas.fhir.base-url=" + standIns.gpasUrl(),
+            "--consent.gics.fhir.base-url=" + standIns.gicsUrl());
+
+    var rdaProjects = projects("rda");
+    writeProject(
+        rdaProjects, "rda", Map.of("$TCA_URL", baseUrl(tca), "$HDS_URL", standIns.rdHdsUrl()));
+    var rda = startAgent(ResearchDomainAgent.class, "rda", "--projects.directory=" + rdaProjects);
+
+    var cdaProjects = projects("cda");
+    var profile = copyDeidentifhirProfile(cdaProjects.resolve(PROJECT).resolve("deidentifhir"));
+    writeProject(
+        cdaProjects,
+        "cda",
+        Map.of(
+            "$TCA_URL", baseUrl(tca),
+            "$HDS_URL", standIns.cdHdsUrl(),
+            "$RDA_URL", baseUrl(rda),
+            "$DEIDENTIFHIR_CONFIG", profile.toString()));
+    var cda = startAgent(ClinicalDomainAgent.class, "cda", "--projects.directory=" + cdaProjects);
+
+    try (var report = new LoadReport()) {
+      var status = transfer(WebClient.create(baseUrl(cda)));
+      report.print(System.out, status, registries);
+      return status;
+    }
+  }
+
+  private TransferProcessStatus transfer(WebClient cda) {
+    var statusUri =
+        cda.post()
+            .uri("/api/v2/process/{project}/start", PROJECT)
+            .contentType(APPLICATION_JSON)
+            .retrieve()
+            .toBodilessEntity()
+            .map(r -> requireNonNull(r.getHeaders().getFirst("Content-Location")))
+            .block();
+    log.info("Transfer started, status at {}", statusUri);
+
+    return Flux.interval(Duration.ofSeconds(1))
+        .concatMap(
+            i ->
+                cda.get()
+                    .uri(statusUri)
+                    .exchangeToMono(r -> r.bodyToMono(TransferProcessStatus.class)))
+        .doOnNext(
+            s -> log.info("{}: {}/{} sent", s.phase(), s.sentBundles(), s.totalPatients()))
+        .takeUntil(s -> isCompleted(s.phase()))
+        .last()
+        .timeout(options.timeout)
+        .block();
+  }
+
+  private String startRedis() {
+    log.info("Starting Valkey container");
+    var redis = register(new RedisContainer("valkey/valkey:" + VALKEY_VERSION));
+    redis.start();
+    return "redis://localhost:%d".formatted(redis.getFirstMappedPort());
+  }
+
+  private ConfigurableApplicationContext startAgent(
+      Class<?> application, String name, String... properties) {
+    log.info("Starting {}", name);
+    var args =
+        Stream.concat(
+                Stream.of(
+                    "--spring.config.location=classpath:/loadtest/" + name + ".yaml",
+                    "--spring.application.name=" + name,
+                    "--server.port=0"),
+                Stream.of(properties))
+            .toArray(String[]::new);
+    var context = register(new SpringApplicationBuilder(application).run(args));
+    registries.put(name, context.getBean(MeterRegistry.class));
+    return context;
+  }
+
+  private static String baseUrl(ConfigurableApplicationContext context) {
+    return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+  }
+
+  private Path projects(String agent) throws IOException {
+    var directory = Files.createTempDirectory("fts-loadtest-" + agent);
+    register(() -> FileSystemUtils.deleteRecursively(directory));
+    return directory;
+  }
+
+  /** Writes the project template of the agent with the given placeholders replaced. */
+  private static void writeProject(Path projects, String agent, Map<String, String> replacements)
+      throws IOException {
+    var project = new String(resource("/loadtest/projects/" + agent + ".yaml"), UTF_8);
+    for (var replacement : replacements.entrySet()) {
+      project = project.replace(replacement.getKey(), replacement.getValue());
+    }
+    Files.writeString(projects.resolve(PROJECT + ".yaml"), project);
+  }
+
+  private static Path copyDeidentifhirProfile(Path directory) throws IOException {
+    for (var file : DEIDENTIFHIR_FILES) {
+      var target = directory.resolve(file);
+      Files.createDirectories(target.getParent());
+      Files.write(target, resource(DEIDENTIFHIR + file));
+    }
+    return directory.resolve(DEIDENTIFHIR_FILES.getFirst());
+  }
+
+  private static byte[] resource(String name) throws IOException {
+    try (InputStream in = LoadTest.class.getResourceAsStream(name)) {
+      return requireNonNull(in, "Cannot find resource '" + name + "'").readAllBytes();
+    }
+  }
+
+  private <T extends AutoCloseable> T register(T resource) {
+    resources.push(resource);
+    return resource;
+  }
+
+  @Override
+  public void close() throws Exception {
+    while (!resources.isEmpty()) {
+      resources.pop().close();
+    }
+  }
+
+  record Options(int patients, LatencyProfile latency, Optional<String> redis, Duration timeout) {
+
+    static Options parse(String... args) {
+      var values = new LinkedHashMap<String, String>();
+      for (var arg : args) {
+        var option = arg.replaceFirst("^--", "").split("=", 2);
+        if (option.length != 2) {
+          throw new IllegalArgumentException("Expected --<option>=<value>, got " + arg);
+        }
+        values.put(option[0], option[1]);
+      }
+      var options =
+          new Options(
+              Integer.parseInt(values.getOrDefault("patients", "100")),
+              LatencyProfile.valueOf(values.getOrDefault("latency", "LAN")),
+              Optional.ofNullable(values.get("redis")),
+              Duration.parse(values.getOrDefault("timeout", "PT1H")));
+      values.keySet().removeAll(List.of("patients", "latency", "redis", "timeout"));
+      if (!values.isEmpty()) {
+        throw new IllegalArgumentException("Unknown options " + values.keySet());
+      }
+      return options;
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package care.smith.fts.benchmarks.load;
+
+import static care.smith.fts.test.FhirGenerators.gicsResponse;
+import static care.smith.fts.test.FhirGenerators.patient;
+import static care.smith.fts.test.FhirGenerators.randomUuid;
+import static care.smith.fts.test.FhirGenerators.resolveSearchResponse;
+import static care.smith.fts.test.FhirGenerators.withPrefix;
+import static care.smith.fts.test.GpasTestHelper.pseudonymizeAllowCreate;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON_VALUE;
+import static care.smith.fts.util.fhir.FhirUtils.fhirResourceToString;
+import static care.smith.fts.util.fhir.FhirUtils.stringToFhirResource;
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformerV2;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+import com.github.tomakehurst.wiremock.stubbing.ServeEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.hl7.fhir.r4.model.CapabilityStatement;
+import org.hl7.fhir.r4.model.Parameters;
+
+/**
+ * WireMock servers standing in for the clinical and research health data stores, gPAS and gICS.
+ * Responses are generated per request from the test-util templates, so any number of patients can
+ * be served without preparing them up front.
+ */
+class StandIns implements AutoCloseable {
+
+  static final String PATIENT_IDENTIFIER_SYSTEM =
+      "https://ths-greifswald.de/fhir/gics/identifiers/Pseudonym";
+
+  private static final String TRANSACTION_RESPONSE =
+      """
+      {"resourceType":"Bundle","type":"transaction-response"}""";
+
+  private final WireMockServer cdHds;
+  private final WireMockServer rdHds;
+  private final WireMockServer gpas;
+  private final WireMockServer gics;
+
+  /**
+   * Starts all stand-ins.
+   *
+   * @param patients number of consented patients gICS reports
+   * @param latency latency added to every response
+   */
+  StandIns(int patients, LatencyProfile latency) {
+    cdHds = start(new HdsPatients());
+    rdHds = start();
+    gpas = start(new GpasPseudonyms());
+    gics = start(new GicsConsents(patients));
+
+    cdHds.stubFor(
+        get(urlPathMatching("/fhir/Patient(/[^/]+/\\$everything)?"))
+            .willReturn(latency.apply(fhir().withTransformers(HdsPatients.NAME))));
+    rdHds.stubFor(
+        post(urlPathMatching("/fhir/?"))
+            .willReturn(latency.apply(fhir().withBody(TRANSACTION_RESPONSE))));
+    gpas.stubFor(
+        get(urlPathEqualTo("/gpas/metadata"))
+            .willReturn(fhir().withBody(capabilities("pseudonymizeAllowCreate"))));
+    gpas.stubFor(
+        post(urlPathEqualTo("/gpas/$pseudonymizeAllowCreate"))
+            .willReturn(latency.apply(fhir().withTransformers(GpasPseudonyms.NAME))));
+    gics.stubFor(
+        get(urlPathEqualTo("/gics/metadata"))
+            .willReturn(
+                fhir().withBody(capabilities("allConsentsForDomain", "allConsentsForPerson"))));
+    gics.stubFor(
+        post(urlPathEqualTo("/gics/$allConsentsForDomain"))
+            .willReturn(latency.apply(fhir().withTransformers(GicsConsents.NAME))));
+  }
+
+  String cdHdsUrl() {
+    return cdHds.baseUrl() + "/fhir";
+  }
+
+  String rdHdsUrl() {
+    return rdHds.baseUrl() + "/fhir";
+  }
+
+  String gpasUrl() {
+    return gpas.baseUrl() + "/gpas";
+  }
+
+  String gicsUrl() {
+    return gics.baseUrl() + "/gics";
+  }
+
+  @Override
+  public void close() {
+    cdHds.stop();
+    rdHds.stop();
+    gpas.stop();
+    gics.stop();
+  }
+
+  private static WireMockServer start(ResponseDefinitionTransformerV2... transformers) {
+    var server =
+        new WireMockServer(
+            options()
+                .dynamicPort()
+                .containerThreads(64)
+                .asynchronousResponseEnabled(true)
+                .asynchronousResponseThreads(16)
+                .disableRequestJournal()
+                .extensions(transformers));
+    server.start();
+    return server;
+  }
+
+  private static ResponseDefinitionBuilder fhir() {
+    return aResponse().withHeader(CONTENT_TYPE, APPLICATION_FHIR_JSON_VALUE);
+  }
+
+  private static String capabilities(String... operations) {
+    var capabilities = new CapabilityStatement();
+    var rest = capabilities.addRest();
+    for (var operation : operations) {
+      rest.addOperation().setName(operation);
+    }
+    return fhirResourceToString(capabilities);
+  }
+
+  private static ResponseDefinition withBody(ServeEvent serveEvent, String body) {
+    return ResponseDefinitionBuilder.like(serveEvent.getResponseDefinition())
+        .but()
+        .withBody(body)
+        .build();
+  }
+
+  /**
+   * Resolves patient identifiers to HDS ids and returns a generated patient for {@code
+   * $everything}. The HDS id is the identifier prefixed with {@code hds-}.
+   */
+  private static class HdsPatients implements ResponseDefinitionTransformerV2 {
+    private static final String NAME = "hds-patients";
+
+    @Override
+    public ResponseDefinition transform(ServeEvent serveEvent) {
+      var request = serveEvent.getRequest();
+      var path = request.getUrl().split("\\?", 2)[0];
+      try {
+        if (path.endsWith("$everything")) {
+          var hdsId = path.split("/")[3];
+          var identifier = hdsId.substring("hds-".length());
+          var bundle =
+              patient(() -> hdsId, () -> PATIENT_IDENTIFIER_SYSTEM, () -> identifier, () -> "2024");
+          return withBody(serveEvent, bundle.generateString());
+        } else {
+          var param = request.queryParameter("identifier").firstValue();
+          var identifier = param.substring(param.indexOf('|') + 1);
+          var search =
+              resolveSearchResponse(() -> "hds-" + identifier, () -> identifier, randomUuid());
+          return withBody(serveEvent, search.generateString());
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public String getName() {
+      return NAME;
+    }
+
+    @Override
+    public boolean applyGlobally() {
+      return false;
+    }
+  }
+
+  /** Creates a stable pseudonym for every original in the request. */
+  private static class GpasPseudonyms implements ResponseDefinitionTransformerV2 {
+    private static final String NAME = "gpas-pseudonyms";
+
+    @Override
+    public ResponseDefinition transform(ServeEvent serveEvent) {
+      var params =
+          stringToFhirResource(Parameters.class, serveEvent.getRequest().getBodyAsString());
+      var domain = params.getParameter("target").getValue().primitiveValue();
+      var pseudonyms = new LinkedHashMap<String, String>();
+      params.getParameter().stream()
+          .filter(p -> p.getName().equals("original"))
+          .map(p -> p.getValue().primitiveValue())
+          .forEach(o -> pseudonyms.put(o, UUID.nameUUIDFromBytes(o.getBytes(UTF_8)).toString()));
+      return withBody(serveEvent, pseudonymizeAllowCreate(domain, pseudonyms));
+    }
+
+    @Override
+    public String getName() {
+      return NAME;
+    }
+
+    @Override
+    public boolean applyGlobally() {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the requested page of consents for identifiers {@code patient-0} to {@code
+   * patient-<n-1>}.
+   */
+  private static class GicsConsents implements ResponseDefinitionTransformerV2 {
+    private static final String NAME = "gics-consents";
+
+    private final int patients;
+
+    private GicsConsents(int patients) {
+      this.patients = patients;
+    }
+
+    @Override
+    public ResponseDefinition transform(ServeEvent serveEvent) {
+      var request = serveEvent.getRequest();
+      var count = Integer.parseInt(request.queryParameter("_count").firstValue());
+      var offset = Integer.parseInt(request.queryParameter("_offset").firstValue());
+      var end = Math.min(offset + count, patients);
+      try {
+        var consent = gicsResponse(randomUuid(), randomUuid(), withPrefix("patient-", offset));
+        var entries =
+            IntStream.range(offset, end)
+                .mapToObj(i -> "{\"resource\":" + consent.generateString() + "}")
+                .collect(joining(","));
+        var body =
+            """
+            {"resourceType":"Bundle","type":"searchset","total":%d,"entry":[%s]}"""
+                .formatted(patients, entries);
+        return withBody(serveEvent, body);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public String getName() {
+      return NAME;
+    }
+
+    @Override
+    public boolean applyGlobally() {
+      return false;
+    }
+  }
+}
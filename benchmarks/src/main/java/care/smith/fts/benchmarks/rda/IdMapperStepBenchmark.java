@@ -0,0 +1,97 @@
+package care.smith.fts.benchmarks.rda;
+
+import static care.smith.fts.test.FhirGenerators.patient;
+import static com.typesafe.config.ConfigFactory.parseResources;
+import static java.util.stream.Collectors.toMap;
+
+import care.smith.fts.api.TransportBundle;
+import care.smith.fts.benchmarks.cda.DeidentifhirBenchmark;
+import care.smith.fts.cda.services.deidentifhir.DeidentifhirUtils;
+import care.smith.fts.cda.services.deidentifhir.GeneratingReplacementProvider;
+import care.smith.fts.rda.impl.IdMapperStep;
+import care.smith.fts.util.tca.SecureMappingResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Maps the transport IDs and dates of a de-identified patient bundle to their secure values. The
+ * trust center agent is replaced by an exchange function returning a prepared secure mapping, so
+ * the measurement is dominated by the tree walk over the bundle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IdMapperStepBenchmark {
+
+  private static final String PATIENT_ID = "patient-1";
+
+  private IdMapperStep step;
+  private Bundle template;
+  private Bundle bundle;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() throws IOException {
+    var config = parseResources(DeidentifhirBenchmark.class, "CDtoTransport.profile");
+    var provider = new GeneratingReplacementProvider(PATIENT_ID);
+    template =
+        DeidentifhirUtils.deidentify(
+            DeidentifhirUtils.compile(config),
+            provider,
+            patient(() -> PATIENT_ID, () -> "identifierSystem", () -> PATIENT_ID, () -> "2024")
+                .generateResource(),
+            PATIENT_ID,
+            new SimpleMeterRegistry());
+
+    var secureMapping =
+        new SecureMappingResponse(
+            provider.getIdMappings().values().stream()
+                .distinct()
+                .collect(toMap(Function.identity(), tId -> "sid-" + tId)),
+            provider.getDateMappings());
+    var json = JsonMapper.builder().build().writeValueAsString(secureMapping);
+    var client =
+        WebClient.builder()
+            .exchangeFunction(
+                request ->
+                    Mono.just(
+                        ClientResponse.create(HttpStatus.OK)
+                            .header("Content-Type", "application/json")
+                            .body(json)
+                            .build()))
+            .build();
+    step = new IdMapperStep(client, name -> Retry.max(0));
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpInvocation() {
+    bundle = template.copy();
+  }
+
+  @Benchmark
+  public Bundle deidentify() {
+    return step.deidentify(new TransportBundle(bundle, "transfer-1")).block();
+  }
+}
@@ -0,0 +1,42 @@
+package care.smith.fts.benchmarks.tca;
+
+import care.smith.fts.api.DateShiftPreserve;
+import care.smith.fts.tca.deidentification.DateShiftUtil;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Shifts single dates of different precisions, as done for every date of a patient. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DateShiftBenchmark {
+
+  private static final Duration SHIFT =
+      DateShiftUtil.generate("patient-1", Duration.ofDays(14), DateShiftPreserve.NONE);
+
+  @Param({"2024", "2024-03-15", "2024-03-15T10:30:00+01:00", "2024-03-15T10:30:00.123Z"})
+  public String date;
+
+  @Benchmark
+  public String shiftDate() {
+    return DateShiftUtil.shiftDate(date, SHIFT);
+  }
+
+  @Benchmark
+  public Duration generate() {
+    return DateShiftUtil.generate(date, Duration.ofDays(14), DateShiftPreserve.WEEKDAY);
+  }
+}
@@ -0,0 +1,54 @@
+package care.smith.fts.benchmarks.tca;
+
+import static care.smith.fts.util.NanoIdUtils.nanoId;
+
+import care.smith.fts.tca.deidentification.FhirMappingProvider;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hashes the transport mappings of one patient into secure IDs, as the trust center agent does when
+ * storing a transport mapping.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SecureMappingBenchmark {
+
+  /** Number of IDs in the transport mapping, i.e. roughly the resources of one patient. */
+  @Param({"100", "1000", "10000"})
+  public int ids;
+
+  private String salt;
+  private Map<String, String> idMappings;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    salt = nanoId(32);
+    idMappings = HashMap.newHashMap(ids);
+    for (int i = 0; i < ids; i++) {
+      idMappings.put("patient-1.Observation:observation-" + i, nanoId());
+    }
+  }
+
+  @Benchmark
+  public Map<String, String> generateSecureMapping() {
+    return FhirMappingProvider.generateSecureMapping(salt, idMappings);
+  }
+}
@@ -0,0 +1,90 @@
+package care.smith.fts.benchmarks.util;
+
+import static care.smith.fts.test.FhirGenerators.patient;
+import static care.smith.fts.test.FhirGenerators.withPrefix;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+
+import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.util.fhir.FhirDecoder;
+import care.smith.fts.util.fhir.FhirEncoder;
+import care.smith.fts.util.fhir.FhirJsonParsers;
+import care.smith.fts.util.fhir.FhirStreamingDecoder;
+import care.smith.fts.util.fhir.FhirStreamingEncoder;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Mono;
+
+/**
+ * Encodes a bundle of generated patients and decodes it again, once with the buffered FHIR codecs
+ * and once with the streaming bundle codecs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FhirCodecBenchmark {
+
+  private static final ResolvableType BUNDLE = ResolvableType.forClass(Bundle.class);
+
+  @Param({"1", "10"})
+  public int patients;
+
+  private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+  private FhirEncoder encoder;
+  private FhirDecoder decoder;
+  private FhirStreamingEncoder streamingEncoder;
+  private FhirStreamingDecoder streamingDecoder;
+  private Bundle bundle;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    var parsers = new FhirJsonParsers(FhirContext.forR4());
+    encoder = new FhirEncoder(parsers);
+    decoder = new FhirDecoder(parsers);
+    streamingEncoder = new FhirStreamingEncoder(parsers);
+    streamingDecoder = new FhirStreamingDecoder(parsers);
+
+    var generator =
+        patient(
+            withPrefix("patient-"),
+            () -> "identifierSystem",
+            withPrefix("identifier-"),
+            () -> "2024");
+    bundle = new Bundle();
+    generator
+        .generateResources()
+        .limit(patients)
+        .forEach(p -> bundle.getEntry().addAll(p.getEntry()));
+  }
+
+  @Benchmark
+  public Object buffered() {
+    var buffer = encoder.encodeValue(bundle, bufferFactory, BUNDLE, APPLICATION_FHIR_JSON, null);
+    return decoder.decode(buffer, BUNDLE, APPLICATION_FHIR_JSON, null);
+  }
+
+  @Benchmark
+  public Object streaming() {
+    var buffers =
+        streamingEncoder.encode(
+            Mono.just(bundle), bufferFactory, BUNDLE, APPLICATION_FHIR_JSON, null);
+    return streamingDecoder.decodeToMono(buffers, BUNDLE, APPLICATION_FHIR_JSON, null).block();
+  }
+}
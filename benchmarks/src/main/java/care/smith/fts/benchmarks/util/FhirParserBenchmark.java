@@ -0,0 +1,82 @@
+package care.smith.fts.benchmarks.util;
+
+import static care.smith.fts.test.FhirGenerators.patient;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+
+import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.util.fhir.FhirDecoder;
+import care.smith.fts.util.fhir.FhirEncoder;
+import care.smith.fts.util.fhir.FhirJsonParsers;
+import care.smith.fts.util.fhir.FhirJsonParsers.Reuse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+/**
+ * Encodes and decodes one patient bundle with the FHIR codecs from several threads, comparing a new
+ * parser per message against thread-local parser reuse. Run with {@code -prof gc} to see the
+ * allocation per bundle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class FhirParserBenchmark {
+
+  private static final ResolvableType BUNDLE = ResolvableType.forClass(Bundle.class);
+
+  @Param({"NONE", "THREAD_LOCAL"})
+  public Reuse reuse;
+
+  private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+  private FhirEncoder encoder;
+  private FhirDecoder decoder;
+  private Bundle bundle;
+  private byte[] json;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    var fhir = FhirContext.forR4();
+    var parsers = new FhirJsonParsers(fhir, reuse);
+    encoder = new FhirEncoder(parsers);
+    decoder = new FhirDecoder(parsers);
+    bundle =
+        patient(() -> "patient-1", () -> "identifierSystem", () -> "patient-1", () -> "2024")
+            .generateResource();
+    json = fhir.newJsonParser().encodeResourceToString(bundle).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public int encode() {
+    var buffer = encoder.encodeValue(bundle, bufferFactory, BUNDLE, APPLICATION_FHIR_JSON, null);
+    var size = buffer.readableByteCount();
+    DataBufferUtils.release(buffer);
+    return size;
+  }
+
+  @Benchmark
+  public IBaseResource decode() {
+    return decoder.decode(bufferFactory.wrap(json), BUNDLE, APPLICATION_FHIR_JSON, null);
+  }
+}
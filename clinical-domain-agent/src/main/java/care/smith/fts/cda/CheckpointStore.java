@@ -0,0 +1,74 @@
+package care.smith.fts.cda;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Persists the progress of transfer processes, so a process interrupted by a restart of the agent
+ * can be resumed without sending its patients again.
+ */
+public interface CheckpointStore {
+
+  /**
+   * Records the start of a process, replacing any previous checkpoint with the same ID.
+   *
+   * @param identifiers the requested patient identifiers, empty for all consented patients
+   */
+  void started(String processId, String project, List<String> identifiers);
+
+  /** Records that all bundles of a patient were sent. */
+  void patientSent(String processId, String patientIdentifier);
+
+  /** Releases resources held for a process, its checkpoint stays available for a resume. */
+  void close(String processId);
+
+  /** Removes the checkpoint of a process, e.g. once all its patients were sent. */
+  void remove(String processId);
+
+  /**
+   * Removes checkpoints that recorded no progress since {@code before}, e.g. of processes
+   * interrupted by a restart and never resumed.
+   *
+   * @param keep IDs of processes whose checkpoints stay regardless of their age
+   */
+  void removeOlderThan(Instant before, Set<String> keep);
+
+  /**
+   * @return the checkpoint of the process, if any
+   */
+  Optional<Checkpoint> load(String processId);
+
+  /**
+   * @param identifiers the requested patient identifiers, empty for all consented patients
+   * @param sentPatients identifiers of patients whose bundles were all sent
+   */
+  record Checkpoint(
+      String processId, String project, List<String> identifiers, Set<String> sentPatients) {}
+
+  /** A store that never holds any checkpoint. */
+  static CheckpointStore disabled() {
+    return new CheckpointStore() {
+      @Override
+      public void started(String processId, String project, List<String> identifiers) {}
+
+      @Override
+      public void patientSent(String processId, String patientIdentifier) {}
+
+      @Override
+      public void close(String processId) {}
+
+      @Override
+      public void remove(String processId) {}
+
+      @Override
+      public void removeOlderThan(Instant before, Set<String> keep) {}
+
+      @Override
+      public Optional<Checkpoint> load(String processId) {
+        return Optional.empty();
+      }
+    };
+  }
+}
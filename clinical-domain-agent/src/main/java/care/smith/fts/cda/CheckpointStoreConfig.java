@@ -0,0 +1,25 @@
+package care.smith.fts.cda;
+
+import java.nio.file.Path;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Provides the {@link CheckpointStore} of the transfer process runner. Checkpoints are written to
+ * {@code runner.checkpointDirectory}, if set, otherwise processes cannot be resumed.
+ */
+@Slf4j
+@Configuration
+class CheckpointStoreConfig {
+
+  @Bean
+  CheckpointStore checkpointStore(@Value("${runner.checkpointDirectory:#{null}}") Path directory) {
+    if (directory == null) {
+      return CheckpointStore.disabled();
+    }
+    log.info("Writing transfer process checkpoints to {}", directory);
+    return new FileCheckpointStore(directory);
+  }
+}
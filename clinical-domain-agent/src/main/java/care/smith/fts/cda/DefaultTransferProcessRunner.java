@@ -8,13 +8,24 @@ import care.smith.fts.api.ConsentedPatient;
 import care.smith.fts.api.ConsentedPatientBundle;
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.api.cda.BundleSender.Result;
+import care.smith.fts.util.AdaptiveConcurrencyLimiter;
+import care.smith.fts.util.TransferProcessTags;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,26 +40,79 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
 
   private final Map<String, TransferProcessInstance> instances = new HashMap<>();
   private final Queue<TransferProcessInstance> queued = new LinkedList<>() {};
+  private final Map<String, ProjectGauges> gauges = new ConcurrentHashMap<>();
   private final TransferProcessRunnerConfig config;
   private final ObjectMapper om;
+  private final MeterRegistry meterRegistry;
+  private final CheckpointStore checkpoints;
+  private final LastTransferStore lastTransfers;
 
   public DefaultTransferProcessRunner(
-      @Autowired ObjectMapper om, @Autowired TransferProcessRunnerConfig config) {
+      ObjectMapper om, TransferProcessRunnerConfig config, MeterRegistry meterRegistry) {
+    this(om, config, meterRegistry, CheckpointStore.disabled());
+  }
+
+  public DefaultTransferProcessRunner(
+      ObjectMapper om,
+      TransferProcessRunnerConfig config,
+      MeterRegistry meterRegistry,
+      CheckpointStore checkpoints) {
+    this(om, config, meterRegistry, checkpoints, LastTransferStore.disabled());
+  }
+
+  @Autowired
+  public DefaultTransferProcessRunner(
+      ObjectMapper om,
+      TransferProcessRunnerConfig config,
+      MeterRegistry meterRegistry,
+      CheckpointStore checkpoints,
+      LastTransferStore lastTransfers) {
     this.om = om;
     this.config = config;
+    this.meterRegistry = meterRegistry;
+    this.checkpoints = checkpoints;
+    this.lastTransfers = lastTransfers;
+    checkpoints.removeOlderThan(Instant.now().minus(config.processTtl()), Set.of());
   }
 
   @Override
   public String start(TransferProcessDefinition process, List<String> identifiers) {
     var processId = nanoId(6);
     log.info("[Process {}] Created, config: {}", processId, asJson(om, process.rawConfig()));
-    var transferProcessInstance = new TransferProcessInstance(process, processId, identifiers);
+    var transferProcessInstance =
+        new TransferProcessInstance(process, processId, identifiers, Set.of());
 
+    checkpoints.started(processId, process.project(), identifiers);
     startOrQueue(processId, transferProcessInstance);
 
     return processId;
   }
 
+  @Override
+  public synchronized Mono<String> resume(TransferProcessDefinition process, String processId) {
+    var instance = Optional.ofNullable(instances.get(processId));
+    if (instance.filter(TransferProcessInstance::isRunning).isPresent()
+        || queued.stream().anyMatch(q -> q.processId().equals(processId))) {
+      return Mono.error(
+          new IllegalStateException("Transfer process %s is still running".formatted(processId)));
+    }
+    var checkpoint =
+        checkpoints.load(processId).filter(c -> c.project().equalsIgnoreCase(process.project()));
+    if (checkpoint.isEmpty()) {
+      return Mono.error(
+          new IllegalArgumentException(
+              "No checkpoint of transfer process %s in project '%s'"
+                  .formatted(processId, process.project())));
+    }
+
+    var sent = checkpoint.get().sentPatients();
+    log.info("[Process {}] Resuming, skipping {} sent patients", processId, sent.size());
+    instances.remove(processId);
+    var identifiers = checkpoint.get().identifiers();
+    startOrQueue(processId, new TransferProcessInstance(process, processId, identifiers, sent));
+    return Mono.just(processId);
+  }
+
   private synchronized void startOrQueue(
       String processId, TransferProcessInstance transferProcessInstance) {
     removeOldProcesses();
@@ -77,7 +141,18 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
           forRemoval.size(),
           removeBefore);
     }
-    forRemoval.forEach(p -> instances.remove(p.processId()));
+    forRemoval.forEach(
+        p -> {
+          instances.remove(p.processId());
+          checkpoints.remove(p.processId());
+        });
+    checkpoints.removeOlderThan(removeBefore, knownProcessIds());
+  }
+
+  private synchronized Set<String> knownProcessIds() {
+    var ids = new HashSet<>(instances.keySet());
+    queued.forEach(q -> ids.add(q.processId()));
+    return ids;
   }
 
   @Override
@@ -130,16 +205,43 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
     private final AtomicReference<TransferProcessStatus> status;
     private final Queue<PatientError> failedPatients = new ConcurrentLinkedQueue<>();
     private final List<String> identifiers;
-
+    private final Set<String> sentPatients;
+    private final Map<String, PatientProgress> progress = new ConcurrentHashMap<>();
+    private final ProjectGauges projectGauges;
+    private final AtomicInteger selectingData;
+    private final AtomicInteger deidentifying;
+    private final AtomicInteger sending;
+    private final AdaptiveConcurrencyLimiter sendLimiter;
+    private final Tags tags;
+
+    /**
+     * @param sentPatients identifiers of patients sent before a resume, they are skipped
+     */
     public TransferProcessInstance(
-        TransferProcessDefinition process, String processId, List<String> identifiers) {
+        TransferProcessDefinition process,
+        String processId,
+        List<String> identifiers,
+        Set<String> sentPatients) {
       this.process = process;
       status = new AtomicReference<>(TransferProcessStatus.create(processId));
       this.identifiers = identifiers;
+      this.sentPatients = sentPatients;
+      this.sendLimiter =
+          new AdaptiveConcurrencyLimiter(
+              config.minSendConcurrency(),
+              config.maxSendConcurrency(),
+              config.sendLatencyTolerance());
+      this.tags = Tags.of(TransferProcessTags.PROJECT, process.project());
+      this.projectGauges =
+          gauges.computeIfAbsent(process.project(), p -> new ProjectGauges(meterRegistry, tags));
+      this.selectingData = projectGauges.selectingData;
+      this.deidentifying = projectGauges.deidentifying;
+      this.sending = projectGauges.sending;
     }
 
     public void execute() {
       status.updateAndGet(s -> s.setPhase(Phase.RUNNING));
+      projectGauges.sendLimiter = sendLimiter;
       selectCohort(identifiers)
           .transform(this::selectData)
           .transform(this::deidentify)
@@ -150,8 +252,10 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
               e -> {
                 status.updateAndGet(s -> s.setPhase(Phase.FATAL));
                 log.error("[Process {}] Unexpected pipeline error", processId(), e);
+                checkpoints.close(processId());
                 DefaultTransferProcessRunner.this.onComplete();
               })
+          .contextWrite(c -> TransferProcessTags.write(c, process.project()))
           .subscribe();
       log.info("[Process {}] Started", processId());
     }
@@ -161,6 +265,7 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
       return process
           .cohortSelector()
           .selectCohort(identifiers)
+          .filter(p -> !sentPatients.contains(p.identifier()))
           .doOnNext(
               p -> {
                 status.updateAndGet(TransferProcessStatus::incTotalPatients);
@@ -193,20 +298,41 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
 
     private Flux<ConsentedPatientBundle> selectDataForPatient(ConsentedPatient patient) {
       log.trace("[Process {}] selectDataForPatient {}", processId(), patient.identifier());
-      return process
-          .dataSelector()
-          .select(patient)
-          .doOnNext(
-              b -> {
-                var msg = "[Process {}] selectDataForPatient {} produced {} entries";
-                log.trace(msg, processId(), patient.identifier(), b.bundle().getEntry().size());
-              })
-          .doOnComplete(
-              () -> {
-                var msg = "[Process {}] selectDataForPatient {} completed";
-                log.trace(msg, processId(), patient.identifier());
-              })
-          .onErrorResume(e -> handlePatientError(patient.identifier(), Step.SELECT_DATA, e));
+      return Flux.defer(
+          () -> {
+            var pages = new AtomicInteger();
+            var patientProgress = progress(patient.identifier());
+            patientProgress.consent = LastTransferStore.consent(patient);
+            var sample = Timer.start(meterRegistry);
+            selectingData.incrementAndGet();
+            return process
+                .dataSelector()
+                .select(patient)
+                .doOnNext(
+                    b -> {
+                      var entries = b.bundle().getEntry().size();
+                      pages.incrementAndGet();
+                      patientProgress.bundleSelected();
+                      meterRegistry.summary("transfer.bundle.resources", tags).record(entries);
+                      var msg = "[Process {}] selectDataForPatient {} produced {} entries";
+                      log.trace(msg, processId(), patient.identifier(), entries);
+                    })
+                .doOnComplete(
+                    () -> {
+                      var msg = "[Process {}] selectDataForPatient {} completed";
+                      log.trace(msg, processId(), patient.identifier());
+                      if (patientProgress.selectionCompleted()) {
+                        checkpoint(patient.identifier(), patientProgress);
+                      }
+                    })
+                .doFinally(
+                    s -> {
+                      selectingData.decrementAndGet();
+                      sample.stop(meterRegistry.timer("transfer.select.data", tags));
+                      meterRegistry.summary("transfer.select.data.pages", tags).record(pages.get());
+                    })
+                .onErrorResume(e -> handlePatientError(patient.identifier(), Step.SELECT_DATA, e));
+          });
     }
 
     private <T> Mono<T> handlePatientError(String patientId, Step step, Throwable e) {
@@ -215,9 +341,29 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
       // failures than skippedBundles reports.
       status.updateAndGet(TransferProcessStatus::incSkippedBundles);
       failedPatients.add(new PatientError(patientId, step, e.getMessage()));
+      progress(patientId).fail();
       return Mono.empty();
     }
 
+    private PatientProgress progress(String patientId) {
+      return progress.computeIfAbsent(patientId, id -> new PatientProgress());
+    }
+
+    /** Marks a bundle of the patient as done, which may complete the patient. */
+    private void bundleDone(String patientId) {
+      var patientProgress = progress(patientId);
+      if (patientProgress.bundleDone()) {
+        checkpoint(patientId, patientProgress);
+      }
+    }
+
+    private void checkpoint(String patientId, PatientProgress patientProgress) {
+      progress.remove(patientId);
+      checkpoints.patientSent(processId(), patientId);
+      lastTransfers.transferred(
+          process.project(), patientId, patientProgress.started, patientProgress.consent);
+    }
+
     private void logError(Step step, String patientIdentifier, Throwable e) {
       var msg = "[Process {}] Failed to {} for patient {}. {}";
       log.error(
@@ -251,9 +397,13 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
       return process
           .deidentificator()
           .deidentify(bundle)
+          .doOnSubscribe(s -> deidentifying.incrementAndGet())
+          .doFinally(s -> deidentifying.decrementAndGet())
           .doOnNext(t -> log.trace(producedMsg, processId(), patientId))
           .doOnSuccess(v -> log.trace(completedMsg, processId(), patientId))
           .map(t -> new PatientContext<>(t, bundle.consentedPatient()))
+          // A bundle without anything to deidentify is not sent, but done
+          .switchIfEmpty(Mono.fromRunnable(() -> bundleDone(patientId)))
           .onErrorResume(e -> handlePatientError(patientId, Step.DEIDENTIFY, e));
     }
 
@@ -261,6 +411,9 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
       var beforeMsg = "[Process {}] sendBundles for patient {}";
       return deidentification
           .doOnNext(b -> log.trace(beforeMsg, processId(), b.consentedPatient().identifier()))
+          // maxSendConcurrency bundles are taken from upstream, sendLimiter decides how many
+          // requests to the RDA are actually in flight. The bundle sender takes its permits, so a
+          // request sending several patients takes one permit only.
           .flatMap(this::sendBundleForPatient, config.maxSendConcurrency())
           .doOnNext(b -> status.updateAndGet(TransferProcessStatus::incSentBundles));
     }
@@ -272,13 +425,26 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
       return process
           .bundleSender()
           .send(b.data())
-          .doOnSuccess(r -> log.trace(successMsg, processId(), patientId))
+          .transform(TransferProcessTags.timed(meterRegistry, "transfer.send"))
+          .doOnSubscribe(s -> sending.incrementAndGet())
+          .doFinally(s -> sending.decrementAndGet())
+          .contextWrite(c -> AdaptiveConcurrencyLimiter.write(c, sendLimiter))
+          .doOnSuccess(
+              r -> {
+                log.trace(successMsg, processId(), patientId);
+                bundleDone(patientId);
+              })
           .onErrorResume(e -> handlePatientError(patientId, Step.SEND_BUNDLE, e));
     }
 
     private void onComplete() {
       var status = this.status.updateAndGet(s -> s.phase() != Phase.FATAL ? checkCompletion(s) : s);
       log.info("[Process {}] Finished with: {}", processId(), status.phase());
+      if (status.phase() == Phase.COMPLETED) {
+        checkpoints.remove(processId());
+      } else {
+        checkpoints.close(processId());
+      }
       log.trace(
           "[Process {}] Summary: totalPatients={}, totalBundles={}, deidentifiedBundles={}, "
               + "sentBundles={}, skippedBundles={}",
@@ -312,4 +478,69 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
       return status().phase() == Phase.RUNNING;
     }
   }
+
+  /**
+   * Gauges of the processes of one project. Meters are tagged by project only, so processes of the
+   * same project running at the same time add up their patients in flight, and the send limit is
+   * the one of the project's latest process.
+   */
+  private static class ProjectGauges {
+    private final AtomicInteger selectingData = new AtomicInteger();
+    private final AtomicInteger deidentifying = new AtomicInteger();
+    private final AtomicInteger sending = new AtomicInteger();
+    private volatile AdaptiveConcurrencyLimiter sendLimiter;
+
+    ProjectGauges(MeterRegistry meterRegistry, Tags tags) {
+      Map.of("select_data", selectingData, "deidentify", deidentifying, "send", sending)
+          .forEach(
+              (stage, inFlight) ->
+                  Gauge.builder("transfer.in.flight", inFlight, AtomicInteger::get)
+                      .description("Patients currently processed by a stage")
+                      .tags(tags.and("stage", stage))
+                      .register(meterRegistry));
+      Gauge.builder("transfer.send.limit", this, ProjectGauges::sendLimit)
+          .description("Current adaptive limit of concurrently sent bundles")
+          .tags(tags)
+          .register(meterRegistry);
+    }
+
+    private double sendLimit() {
+      var limiter = sendLimiter;
+      return limiter != null ? limiter.limit() : Double.NaN;
+    }
+  }
+
+  /**
+   * Tracks whether all bundles of a patient were sent: its data selection completed, every selected
+   * bundle was sent or had nothing to send, and no step failed.
+   */
+  private static class PatientProgress {
+    private final Instant started = Instant.now();
+    private volatile String consent = "";
+    private int pending;
+    private boolean selected;
+    private boolean failed;
+
+    synchronized void bundleSelected() {
+      pending++;
+    }
+
+    synchronized boolean selectionCompleted() {
+      selected = true;
+      return isSent();
+    }
+
+    synchronized boolean bundleDone() {
+      pending--;
+      return isSent();
+    }
+
+    synchronized void fail() {
+      failed = true;
+    }
+
+    private boolean isSent() {
+      return selected && pending == 0 && !failed;
+    }
+  }
 }
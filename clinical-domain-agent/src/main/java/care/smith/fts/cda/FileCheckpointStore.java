@@ -0,0 +1,171 @@
+package care.smith.fts.cda;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Stores one append-only file per process in a directory. The first line holds the project and
+ * requested identifiers, every further line the identifier of a sent patient, each as JSON. Lines
+ * are flushed as they are written, so they survive a crash of the agent. A line cut off by a crash
+ * is ignored on load.
+ *
+ * <p>The age of a checkpoint is the modification time of its file, i.e. the last recorded
+ * progress of its process.
+ *
+ * <p>Checkpointing is best effort: write errors are logged and do not fail the transfer.
+ */
+@Slf4j
+public class FileCheckpointStore implements CheckpointStore {
+
+  private static final JsonMapper MAPPER = JsonMapper.builder().build();
+  private static final String SUFFIX = ".checkpoint";
+
+  private final Path directory;
+  private final Map<String, Writer> writers = new ConcurrentHashMap<>();
+
+  public FileCheckpointStore(Path directory) {
+    try {
+      this.directory = Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot create checkpoint directory " + directory, e);
+    }
+  }
+
+  record Header(String project, List<String> identifiers) {}
+
+  @Override
+  public void started(String processId, String project, List<String> identifiers) {
+    close(processId);
+    write(processId, new Header(project, identifiers), CREATE, TRUNCATE_EXISTING);
+  }
+
+  @Override
+  public void patientSent(String processId, String patientIdentifier) {
+    write(processId, patientIdentifier, CREATE, APPEND);
+  }
+
+  private void write(String processId, Object line, OpenOption... options) {
+    try {
+      var writer = writers.computeIfAbsent(processId, id -> open(id, options));
+      synchronized (writer) {
+        writer.write(MAPPER.writeValueAsString(line));
+        writer.write('\n');
+        writer.flush();
+      }
+    } catch (IOException | UncheckedIOException e) {
+      log.warn("[Process {}] Cannot write checkpoint: {}", processId, e.getMessage());
+    }
+  }
+
+  private Writer open(String processId, OpenOption... options) {
+    try {
+      return Files.newBufferedWriter(file(processId), UTF_8, options);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close(String processId) {
+    var writer = writers.remove(processId);
+    if (writer != null) {
+      try {
+        synchronized (writer) {
+          writer.close();
+        }
+      } catch (IOException e) {
+        log.warn("[Process {}] Cannot close checkpoint: {}", processId, e.getMessage());
+      }
+    }
+  }
+
+  @Override
+  public void remove(String processId) {
+    close(processId);
+    try {
+      Files.deleteIfExists(file(processId));
+    } catch (IOException e) {
+      log.warn("[Process {}] Cannot remove checkpoint: {}", processId, e.getMessage());
+    }
+  }
+
+  @Override
+  public void removeOlderThan(Instant before, Set<String> keep) {
+    List<String> expired;
+    try (var files = Files.list(directory)) {
+      expired =
+          files
+              .filter(f -> f.getFileName().toString().endsWith(SUFFIX))
+              .filter(f -> lastModified(f).isBefore(before))
+              .map(f -> f.getFileName().toString())
+              .map(name -> name.substring(0, name.length() - SUFFIX.length()))
+              .filter(id -> !keep.contains(id) && !writers.containsKey(id))
+              .toList();
+    } catch (IOException | UncheckedIOException e) {
+      log.warn("Cannot list checkpoints in {}: {}", directory, e.getMessage());
+      return;
+    }
+    if (!expired.isEmpty()) {
+      log.info("Removing {} checkpoints without progress since {}", expired.size(), before);
+    }
+    expired.forEach(this::remove);
+  }
+
+  private static Instant lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toInstant();
+    } catch (IOException e) {
+      // Removed concurrently or unreadable, leave it alone
+      return Instant.MAX;
+    }
+  }
+
+  @Override
+  public Optional<Checkpoint> load(String processId) {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(file(processId), UTF_8);
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read checkpoint of process " + processId, e);
+    }
+    if (lines.isEmpty()) {
+      return Optional.empty();
+    }
+    var header = MAPPER.readValue(lines.getFirst(), Header.class);
+    var sent = new HashSet<String>();
+    for (var line : lines.subList(1, lines.size())) {
+      try {
+        sent.add(MAPPER.readValue(line, String.class));
+      } catch (JacksonException e) {
+        log.warn("[Process {}] Ignoring incomplete checkpoint line", processId);
+      }
+    }
+    return Optional.of(new Checkpoint(processId, header.project(), header.identifiers(), sent));
+  }
+
+  private Path file(String processId) {
+    return directory.resolve(processId + SUFFIX);
+  }
+}
@@ -0,0 +1,176 @@
+package care.smith.fts.cda;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Stores one append-only file per project in a directory, every line holds a patient identifier,
+ * the time of its last transfer and the consent it was transferred with as JSON. A project's file
+ * is read once on first access and rewritten with the latest transfer of each patient only, so it
+ * does not grow with every transfer. A line cut off by a crash is ignored on load. The latest
+ * transfers of an accessed project are held in memory, one entry per patient ever transferred.
+ *
+ * <p>Storing transfers is best effort: write errors are logged and do not fail the transfer. A
+ * patient without a stored transfer is transferred in full. Every transfer is flushed once it is
+ * written, the files are closed with the store.
+ */
+@Slf4j
+public class FileLastTransferStore implements LastTransferStore, Closeable {
+
+  private static final JsonMapper MAPPER = JsonMapper.builder().build();
+  private static final String SUFFIX = ".transfers";
+
+  private final Path directory;
+  private final Map<String, ProjectTransfers> projects = new ConcurrentHashMap<>();
+
+  public FileLastTransferStore(Path directory) {
+    try {
+      this.directory = Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot create last transfer directory " + directory, e);
+    }
+  }
+
+  /** Lines written before the consent was stored have none, so their patients are fetched again. */
+  record Entry(String patient, String time, String consent) {}
+
+  private record Transfer(Instant time, String consent) {
+    static Transfer latest(Transfer a, Transfer b) {
+      return a.time().isAfter(b.time()) ? a : b;
+    }
+  }
+
+  @Override
+  public void transferred(String project, String patientIdentifier, Instant time, String consent) {
+    projects
+        .computeIfAbsent(project, this::load)
+        .put(patientIdentifier, new Transfer(time, consent));
+  }
+
+  @Override
+  public Optional<Instant> lastTransfer(String project, String patientIdentifier, String consent) {
+    var transfers = projects.computeIfAbsent(project, this::load);
+    return Optional.ofNullable(transfers.get(patientIdentifier))
+        .filter(t -> consent.equals(t.consent()))
+        .map(Transfer::time);
+  }
+
+  @Override
+  public void close() {
+    projects.values().forEach(ProjectTransfers::close);
+  }
+
+  private ProjectTransfers load(String project) {
+    var transfers = new ProjectTransfers(project);
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(file(project), UTF_8);
+    } catch (NoSuchFileException e) {
+      return transfers;
+    } catch (IOException e) {
+      log.warn("[Project {}] Cannot read last transfers: {}", project, e.getMessage());
+      return transfers;
+    }
+    for (var line : lines) {
+      try {
+        var entry = MAPPER.readValue(line, Entry.class);
+        var transfer = new Transfer(Instant.parse(entry.time()), entry.consent());
+        transfers.times.merge(entry.patient(), transfer, Transfer::latest);
+      } catch (JacksonException | DateTimeParseException e) {
+        log.warn("[Project {}] Ignoring incomplete last transfer line", project);
+      }
+    }
+    compact(project, transfers.times);
+    return transfers;
+  }
+
+  private void compact(String project, Map<String, Transfer> times) {
+    var compacted = directory.resolve(project + SUFFIX + ".tmp");
+    try (var writer = Files.newBufferedWriter(compacted, UTF_8)) {
+      for (var e : times.entrySet()) {
+        writeLine(writer, e.getKey(), e.getValue());
+      }
+    } catch (IOException e) {
+      log.warn("[Project {}] Cannot compact last transfers: {}", project, e.getMessage());
+      return;
+    }
+    try {
+      Files.move(compacted, file(project), REPLACE_EXISTING, ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("[Project {}] Cannot compact last transfers: {}", project, e.getMessage());
+    }
+  }
+
+  private static void writeLine(Writer writer, String patient, Transfer transfer)
+      throws IOException {
+    var entry = new Entry(patient, transfer.time().toString(), transfer.consent());
+    writer.write(MAPPER.writeValueAsString(entry));
+    writer.write('\n');
+  }
+
+  private Path file(String project) {
+    return directory.resolve(project + SUFFIX);
+  }
+
+  /** Last transfers of one project, held in memory and appended to the project's file. */
+  private class ProjectTransfers {
+    private final String project;
+    private final Map<String, Transfer> times = new ConcurrentHashMap<>();
+    private Writer writer;
+
+    ProjectTransfers(String project) {
+      this.project = project;
+    }
+
+    Transfer get(String patient) {
+      return times.get(patient);
+    }
+
+    synchronized void put(String patient, Transfer transfer) {
+      times.merge(patient, transfer, Transfer::latest);
+      try {
+        if (writer == null) {
+          writer = Files.newBufferedWriter(file(project), UTF_8, CREATE, APPEND);
+        }
+        writeLine(writer, patient, transfer);
+        writer.flush();
+      } catch (IOException e) {
+        log.warn("[Project {}] Cannot write last transfer: {}", project, e.getMessage());
+      }
+    }
+
+    /** Closes the project's file, a later transfer opens it again. */
+    synchronized void close() {
+      if (writer == null) {
+        return;
+      }
+      try {
+        writer.close();
+      } catch (IOException e) {
+        log.warn("[Project {}] Cannot close last transfers: {}", project, e.getMessage());
+      } finally {
+        writer = null;
+      }
+    }
+  }
+}
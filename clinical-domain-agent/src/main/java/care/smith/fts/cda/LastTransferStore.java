@@ -0,0 +1,55 @@
+package care.smith.fts.cda;
+
+import care.smith.fts.api.ConsentedPatient;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Persists when the data of a patient was last transferred successfully in a project, so that
+ * incremental transfers only fetch data changed since then. The consent the data was selected with
+ * is stored along, as data changed before the last transfer but outside its consent was never
+ * transferred.
+ */
+public interface LastTransferStore {
+
+  /**
+   * Records a successful transfer of all data of a patient.
+   *
+   * @param time the time data selection of the patient started, data changed afterward is fetched
+   *     again by the next incremental transfer
+   * @param consent the consent data was selected with, see {@link #consent(ConsentedPatient)}
+   */
+  void transferred(String project, String patientIdentifier, Instant time, String consent);
+
+  /**
+   * @param consent the consent data is selected with now, see {@link #consent(ConsentedPatient)}
+   * @return the time of the last successful transfer of the patient in the project, if any and if
+   *     its data was selected with the same consent
+   */
+  Optional<Instant> lastTransfer(String project, String patientIdentifier, String consent);
+
+  /**
+   * @return the maximum consented period of the patient as text, empty if the patient has none
+   */
+  static String consent(ConsentedPatient patient) {
+    return patient
+        .maxConsentedPeriod()
+        .map(p -> p.start().toInstant() + "/" + p.end().toInstant())
+        .orElse("");
+  }
+
+  /** A store that never holds any transfer, so every transfer is a full one. */
+  static LastTransferStore disabled() {
+    return new LastTransferStore() {
+      @Override
+      public void transferred(
+          String project, String patientIdentifier, Instant time, String consent) {}
+
+      @Override
+      public Optional<Instant> lastTransfer(
+          String project, String patientIdentifier, String consent) {
+        return Optional.empty();
+      }
+    };
+  }
+}
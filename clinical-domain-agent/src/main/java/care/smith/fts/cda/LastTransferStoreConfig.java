@@ -0,0 +1,27 @@
+package care.smith.fts.cda;
+
+import java.nio.file.Path;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Provides the {@link LastTransferStore} used by incremental transfers. Last transfers are written
+ * to {@code runner.lastTransferDirectory}, if set, otherwise every transfer is a full one. Spring
+ * closes the store's files on shutdown.
+ */
+@Slf4j
+@Configuration
+class LastTransferStoreConfig {
+
+  @Bean
+  LastTransferStore lastTransferStore(
+      @Value("${runner.lastTransferDirectory:#{null}}") Path directory) {
+    if (directory == null) {
+      return LastTransferStore.disabled();
+    }
+    log.info("Writing last transfers of patients to {}", directory);
+    return new FileLastTransferStore(directory);
+  }
+}
@@ -7,6 +7,14 @@ import reactor.core.publisher.Mono;
 public interface TransferProcessRunner {
   String start(TransferProcessDefinition process, @NotNull List<String> identifiers);
 
+  /**
+   * Resumes an interrupted or partially failed process from its checkpoint under the same process
+   * ID. Patients whose bundles were all sent before are skipped.
+   *
+   * @return the process ID, or an error if the process is still running or has no checkpoint
+   */
+  Mono<String> resume(TransferProcessDefinition process, String processId);
+
   Mono<List<TransferProcessStatus>> statuses();
 
   Mono<TransferProcessStatus> status(String processId);
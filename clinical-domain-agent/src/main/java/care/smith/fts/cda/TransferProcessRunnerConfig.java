@@ -13,34 +13,55 @@ public record TransferProcessRunnerConfig(
     Integer maxConcurrentPatients,
 
     /*
-     * Maximum number of patient bundles sent to the RDA concurrently. This is the real bottleneck and
-     * should match the target Blaze's transaction capacity. Must not exceed maxConcurrentPatients.
+     * Maximum number of patient bundles sent to the RDA concurrently. If minSendConcurrency is set
+     * below it, the send concurrency adapts between both to the RDA's latency and 429/503
+     * responses. Must not exceed maxConcurrentPatients.
      */
     Integer maxSendConcurrency,
+
+    /*
+     * Number of patient bundles sent concurrently when a process starts, and the lower bound of the
+     * adaptive send concurrency. Defaults to maxSendConcurrency when unset, which sends with a fixed
+     * concurrency; setting it lower enables the adaptation.
+     */
+    Integer minSendConcurrency,
+
+    /*
+     * Factor of the send latency baseline after which a send counts as slow and decreases the send
+     * concurrency. Defaults to DEFAULT_SEND_LATENCY_TOLERANCE when unset.
+     */
+    Double sendLatencyTolerance,
     Integer maxConcurrentProcesses,
 
     /*
-     * Number of concurrent workers grouping patients with their consents during cohort selection.
-     * Also sizes the dedicated cohort-selection scheduler, bounding this CPU-bound work to its own
-     * pool instead of the JVM-wide common ForkJoinPool. Defaults to
-     * DEFAULT_COHORT_SELECTION_CONCURRENCY when unset.
+     * Deprecated, has no effect. Grouping patients with their consents during cohort selection is
+     * a single linear pass per page and no longer runs on a dedicated pool. Still validated, so
+     * existing configurations stay valid.
      */
     Integer cohortSelectionConcurrency,
     Duration processTtl) {
 
-  /**
-   * Default number of cohort selection workers when {@code cohortSelectionConcurrency} is unset.
-   */
+  /** Default of the deprecated {@code cohortSelectionConcurrency}. */
   public static final int DEFAULT_COHORT_SELECTION_CONCURRENCY = 4;
 
+  /** Default send latency tolerance when {@code sendLatencyTolerance} is unset. */
+  public static final double DEFAULT_SEND_LATENCY_TOLERANCE = 2.0;
+
   public TransferProcessRunnerConfig {
     cohortSelectionConcurrency =
         requireNonNullElse(cohortSelectionConcurrency, DEFAULT_COHORT_SELECTION_CONCURRENCY);
+    sendLatencyTolerance = requireNonNullElse(sendLatencyTolerance, DEFAULT_SEND_LATENCY_TOLERANCE);
     checkArgument(maxConcurrentPatients > 0, "runner.maxConcurrentPatients must be greater than 0");
     checkArgument(maxSendConcurrency > 0, "runner.maxSendConcurrency must be greater than 0");
     checkArgument(
         maxSendConcurrency <= maxConcurrentPatients,
         "runner.maxSendConcurrency must not exceed runner.maxConcurrentPatients");
+    minSendConcurrency = requireNonNullElse(minSendConcurrency, maxSendConcurrency);
+    checkArgument(minSendConcurrency > 0, "runner.minSendConcurrency must be greater than 0");
+    checkArgument(
+        minSendConcurrency <= maxSendConcurrency,
+        "runner.minSendConcurrency must not exceed runner.maxSendConcurrency");
+    checkArgument(sendLatencyTolerance > 1, "runner.sendLatencyTolerance must be greater than 1");
     checkArgument(
         cohortSelectionConcurrency > 0, "runner.cohortSelectionConcurrency must be greater than 0");
   }
@@ -0,0 +1,313 @@
+package care.smith.fts.cda.impl;
+
+import static care.smith.fts.util.HeaderTypes.PREFER;
+import static care.smith.fts.util.HeaderTypes.X_PROGRESS;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_NDJSON;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_NDJSON_VALUE;
+import static org.springframework.http.HttpHeaders.CONTENT_LOCATION;
+
+import ca.uhn.fhir.util.FhirTerser;
+import care.smith.fts.api.ConsentedPatient;
+import care.smith.fts.api.ConsentedPatientBundle;
+import care.smith.fts.api.cda.DataSelector;
+import care.smith.fts.cda.services.PatientIdResolver;
+import care.smith.fts.util.RequestBatcher;
+import care.smith.fts.util.RetryStrategy;
+import care.smith.fts.util.error.TransferProcessException;
+import care.smith.fts.util.fhir.FhirJsonParsers;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Bundle.BundleType;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.Resource;
+import org.hl7.fhir.r4.model.StringType;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Selects patient data with the FHIR bulk data {@code Patient/$export} operation. Patients arriving
+ * concurrently are collected into batches, and each batch is exported with one request. The NDJSON
+ * files of the export are streamed line by line, and their resources are regrouped by the patient
+ * they reference. A patient's resources are passed on as soon as they fill a page, so only the
+ * partial pages of a batch are held until its export is downloaded.
+ *
+ * <p>Bulk export has no notion of a consented period, so all data of a patient is exported.
+ *
+ * @see <a href="https://hl7.org/fhir/uv/bulkdata/export.html">Bulk Data Export</a>
+ */
+@Slf4j
+public class BulkExportDataSelector implements DataSelector {
+
+  private final WebClient hdsClient;
+  private final PatientIdResolver pidResolver;
+  private final RetryStrategy retryStrategy;
+  private final FhirJsonParsers parsers;
+  private final FhirTerser terser;
+  private final BulkExportDataSelectorConfig config;
+  private final RequestBatcher<String, Flux<List<Resource>>> batcher;
+
+  public BulkExportDataSelector(
+      WebClient hdsClient,
+      PatientIdResolver patientIdResolver,
+      RetryStrategy retryStrategy,
+      FhirJsonParsers parsers,
+      BulkExportDataSelectorConfig config) {
+    this.hdsClient = hdsClient;
+    this.pidResolver = patientIdResolver;
+    this.retryStrategy = retryStrategy;
+    this.parsers = parsers;
+    this.terser = parsers.context().newTerser();
+    this.config = config;
+    var batch = config.patientBatch();
+    this.batcher =
+        new RequestBatcher<>(batch.size(), batch.maxWait(), batch.concurrency(), this::export);
+  }
+
+  @Override
+  public Flux<ConsentedPatientBundle> select(ConsentedPatient patient) {
+    return pidResolver
+        .resolve(patient)
+        .map(IIdType::getIdPart)
+        .doOnNext(id -> log.trace("Resolved patient {} to FHIR ID {}", patient.identifier(), id))
+        .flatMap(batcher::submit)
+        .flatMapMany(pages -> pages)
+        .map(page -> new ConsentedPatientBundle(toBundle(page), patient))
+        .doOnComplete(() -> log.trace("select for patient {} completed", patient.identifier()));
+  }
+
+  private static Bundle toBundle(List<Resource> resources) {
+    var bundle = new Bundle().setType(BundleType.SEARCHSET);
+    resources.forEach(r -> bundle.addEntry().setResource(r));
+    return bundle.setTotal(resources.size());
+  }
+
+  /**
+   * Exports the data of a batch of patients. The pages of each patient are emitted right away and
+   * filled while the export is downloaded, a patient's pages are buffered while its consumer is
+   * slower than the download. The returned mono completes once the export is downloaded, so the
+   * export counts towards the batch concurrency until then.
+   *
+   * @param fhirIds FHIR IDs of the patients
+   * @return the pages of each patient, in the order of {@code fhirIds}
+   */
+  private Mono<List<Flux<List<Resource>>>> export(List<String> fhirIds) {
+    log.debug("Exporting data of {} patients", fhirIds.size());
+    var pages = new PatientPages(fhirIds);
+    var download =
+        exportResources(fhirIds)
+            .doOnNext(pages::add)
+            .then()
+            .timeout(config.timeout())
+            .doOnSuccess(v -> pages.complete())
+            .doOnError(pages::fail)
+            .doOnError(
+                e -> log.error("Unable to export patient data from HDS: {}", e.getMessage()));
+    return Mono.fromDirect(Mono.just(pages.fluxes()).concatWith(download.then(Mono.empty())));
+  }
+
+  /** Runs an export and deletes it on the server once it completed, failed or was cancelled. */
+  private Flux<Resource> exportResources(List<String> fhirIds) {
+    return Flux.usingWhen(
+        kickOff(fhirIds),
+        statusUrl -> awaitManifest(statusUrl).flatMapMany(this::download),
+        this::delete,
+        (statusUrl, e) -> delete(statusUrl),
+        this::delete);
+  }
+
+  private Mono<String> kickOff(List<String> fhirIds) {
+    var parameters = new Parameters();
+    fhirIds.forEach(id -> parameters.addParameter().setName("patient").setValue(patientRef(id)));
+    parameters.addParameter("_outputFormat", APPLICATION_FHIR_NDJSON_VALUE);
+    if (!config.types().isEmpty()) {
+      parameters.addParameter("_type", new StringType(String.join(",", config.types())));
+    }
+    return hdsClient
+        .post()
+        .uri("/Patient/$export")
+        .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_JSON)))
+        .header(PREFER, "respond-async")
+        .contentType(APPLICATION_FHIR_JSON)
+        .bodyValue(parameters)
+        .retrieve()
+        .toBodilessEntity()
+        .retryWhen(retryStrategy.forRequest("bulkExportKickOff"))
+        .flatMap(
+            r ->
+                Mono.justOrEmpty(r.getHeaders().getFirst(CONTENT_LOCATION))
+                    .filter(url -> !url.isBlank())
+                    .switchIfEmpty(
+                        Mono.error(new TransferProcessException("Missing Content-Location"))))
+        .doOnNext(url -> log.trace("Bulk export started, status at {}", url));
+  }
+
+  private static Reference patientRef(String fhirId) {
+    return new Reference("Patient/" + fhirId);
+  }
+
+  /** Polls the export status until the export completed. */
+  private Mono<Manifest> awaitManifest(String statusUrl) {
+    return Mono.defer(() -> pollStatus(statusUrl))
+        .repeatWhenEmpty(attempts -> attempts.delayElements(config.pollInterval()))
+        .doOnNext(m -> log.trace("Bulk export completed with {} files", m.output().size()));
+  }
+
+  private Mono<Manifest> pollStatus(String statusUrl) {
+    return hdsClient
+        .get()
+        .uri(statusUrl)
+        .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_JSON)))
+        .exchangeToMono(this::manifestOrEmpty)
+        .retryWhen(retryStrategy.forRequest("bulkExportStatus"));
+  }
+
+  /** A {@code 202 Accepted} status response means the export is still in progress. */
+  private Mono<Manifest> manifestOrEmpty(ClientResponse response) {
+    if (response.statusCode().isSameCodeAs(HttpStatus.ACCEPTED)) {
+      log.trace("Bulk export in progress: {}", response.headers().header(X_PROGRESS));
+      return response.releaseBody().then(Mono.empty());
+    } else if (response.statusCode().is2xxSuccessful()) {
+      return response.bodyToMono(Manifest.class);
+    } else {
+      return response.createError();
+    }
+  }
+
+  private Flux<Resource> download(Manifest manifest) {
+    manifest
+        .error()
+        .forEach(e -> log.warn("Bulk export reported errors of type {} at {}", e.type(), e.url()));
+    return Flux.fromIterable(manifest.output()).concatMap(file -> downloadFile(file.url()));
+  }
+
+  /** Streams a file line by line, a retry resumes after the last line read. */
+  private Flux<Resource> downloadFile(String url) {
+    log.trace("Downloading bulk export file {}", url);
+    return retryStrategy
+        .resuming(
+            "bulkExportDownload",
+            () ->
+                hdsClient
+                    .get()
+                    .uri(url)
+                    .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_NDJSON)))
+                    .retrieve()
+                    .bodyToFlux(String.class))
+        .filter(line -> !line.isBlank())
+        .map(line -> parsers.apply(p -> p.parseResource(Resource.class, line)));
+  }
+
+  /**
+   * @return the FHIR ID of the batch patient {@code resource} is, or references first
+   */
+  Optional<String> patientOf(Resource resource, Set<String> patients) {
+    if (resource instanceof Patient) {
+      return Optional.of(resource.getIdElement().getIdPart()).filter(patients::contains);
+    }
+    return terser.getAllPopulatedChildElementsOfType(resource, Reference.class).stream()
+        .map(Reference::getReferenceElement)
+        .filter(id -> "Patient".equals(id.getResourceType()))
+        .map(IIdType::getIdPart)
+        .filter(patients::contains)
+        .findFirst();
+  }
+
+  /** Deletes the export's files on the server, failures are only logged. */
+  private Mono<Void> delete(String statusUrl) {
+    return hdsClient
+        .delete()
+        .uri(statusUrl)
+        .retrieve()
+        .toBodilessEntity()
+        .doOnError(e -> log.warn("Unable to delete bulk export {}: {}", statusUrl, e.getMessage()))
+        .onErrorComplete()
+        .then();
+  }
+
+  /**
+   * The pages of the patients of one export. Resources are added by the export's sequential
+   * download, so pages are not synchronized.
+   */
+  private class PatientPages {
+    private final Map<String, List<Sinks.Many<List<Resource>>>> sinks = new HashMap<>();
+    private final List<Flux<List<Resource>>> fluxes = new ArrayList<>();
+    private final Map<String, List<Resource>> partial = new HashMap<>();
+    private long skipped;
+
+    /** Patients submitted twice in one batch each receive all of their pages. */
+    PatientPages(List<String> fhirIds) {
+      for (var id : fhirIds) {
+        var sink = Sinks.many().unicast().<List<Resource>>onBackpressureBuffer();
+        sinks.computeIfAbsent(id, k -> new ArrayList<>()).add(sink);
+        fluxes.add(sink.asFlux());
+      }
+    }
+
+    List<Flux<List<Resource>>> fluxes() {
+      return fluxes;
+    }
+
+    void add(Resource resource) {
+      patientOf(resource, sinks.keySet())
+          .ifPresentOrElse(
+              id -> add(id, resource),
+              () -> {
+                log.trace("Skipping {} without patient of batch", resource.getIdBase());
+                skipped++;
+              });
+    }
+
+    private void add(String fhirId, Resource resource) {
+      var page = partial.computeIfAbsent(fhirId, k -> new ArrayList<>());
+      page.add(resource);
+      if (page.size() == config.pageSize()) {
+        emit(fhirId, partial.remove(fhirId));
+      }
+    }
+
+    void complete() {
+      partial.forEach(this::emit);
+      partial.clear();
+      sinks.values().forEach(s -> s.forEach(Sinks.Many::tryEmitComplete));
+      if (skipped > 0) {
+        log.warn("Skipped {} exported resources not referencing a patient of the batch", skipped);
+      }
+    }
+
+    void fail(Throwable e) {
+      partial.clear();
+      sinks.values().forEach(s -> s.forEach(sink -> sink.tryEmitError(e)));
+    }
+
+    private void emit(String fhirId, List<Resource> page) {
+      sinks.get(fhirId).forEach(sink -> sink.tryEmitNext(page));
+    }
+  }
+
+  /** The completed export's status response, listing the files written. */
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  record Manifest(List<OutputFile> output, List<OutputFile> error) {
+    Manifest {
+      output = Optional.ofNullable(output).orElse(List.of());
+      error = Optional.ofNullable(error).orElse(List.of());
+    }
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  record OutputFile(String type, String url) {}
+}
@@ -0,0 +1,64 @@
+package care.smith.fts.cda.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import care.smith.fts.util.BatchConfig;
+import care.smith.fts.util.HttpClientConfig;
+import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+
+public record BulkExportDataSelectorConfig(
+    /* FHIR server offering the bulk data Patient/$export operation */
+    @NotNull HttpClientConfig fhirServer,
+
+    /* Resource types to export, all types of the patient compartment if empty */
+    Set<String> types,
+
+    /* Patients exported together by one $export request */
+    BatchConfig patientBatch,
+
+    /* Interval in which the status of a running export is polled */
+    Duration pollInterval,
+
+    /* Maximum duration of one export, from kick-off until all files are downloaded */
+    Duration timeout,
+
+    /* Maximum number of resources in a bundle handed to the deidentificator */
+    Integer pageSize) {
+
+  public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(5);
+  public static final Duration DEFAULT_TIMEOUT = Duration.ofHours(1);
+  public static final int DEFAULT_PAGE_SIZE = 500;
+
+  /**
+   * Exports the data of up to {@code size} patients with one {@code $export} request. A batch is
+   * exported once it is full or {@code maxWait} after its first patient arrived.
+   */
+  public static final BatchConfig DEFAULT_PATIENT_BATCH =
+      new BatchConfig(100, Duration.ofSeconds(5), 1);
+
+  public BulkExportDataSelectorConfig(
+      HttpClientConfig fhirServer,
+      Set<String> types,
+      BatchConfig patientBatch,
+      Duration pollInterval,
+      Duration timeout,
+      Integer pageSize) {
+    this.fhirServer = requireNonNull(fhirServer, "fhirServer must not be null");
+    this.types = Optional.ofNullable(types).orElse(Set.of());
+    this.patientBatch = BatchConfig.withDefaults(patientBatch, DEFAULT_PATIENT_BATCH);
+    this.pollInterval = Optional.ofNullable(pollInterval).orElse(DEFAULT_POLL_INTERVAL);
+    this.timeout = Optional.ofNullable(timeout).orElse(DEFAULT_TIMEOUT);
+    this.pageSize = Optional.ofNullable(pageSize).orElse(DEFAULT_PAGE_SIZE);
+    checkArgument(this.pollInterval.isPositive(), "pollInterval must be positive");
+    checkArgument(this.timeout.isPositive(), "timeout must be positive");
+    checkArgument(this.pageSize > 0, "pageSize must be greater than 0");
+  }
+
+  public BulkExportDataSelectorConfig(HttpClientConfig fhirServer) {
+    this(fhirServer, null, null, null, null, null);
+  }
+}
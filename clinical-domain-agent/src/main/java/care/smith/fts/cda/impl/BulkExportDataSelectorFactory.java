@@ -0,0 +1,45 @@
+package care.smith.fts.cda.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import care.smith.fts.api.cda.DataSelector;
+import care.smith.fts.cda.services.FhirResolveService;
+import care.smith.fts.util.RetryStrategy;
+import care.smith.fts.util.WebClientFactory;
+import care.smith.fts.util.fhir.FhirJsonParsers;
+import org.springframework.stereotype.Component;
+
+@Component("bulkExportDataSelector")
+public class BulkExportDataSelectorFactory
+    implements DataSelector.Factory<BulkExportDataSelectorConfig> {
+
+  private final WebClientFactory clientFactory;
+  private final RetryStrategy retryStrategy;
+  private final FhirJsonParsers parsers;
+
+  public BulkExportDataSelectorFactory(
+      WebClientFactory clientFactory, RetryStrategy retryStrategy, FhirJsonParsers parsers) {
+    this.clientFactory = clientFactory;
+    this.retryStrategy = retryStrategy;
+    this.parsers = parsers;
+  }
+
+  @Override
+  public Class<BulkExportDataSelectorConfig> getConfigType() {
+    return BulkExportDataSelectorConfig.class;
+  }
+
+  @Override
+  public DataSelector create(DataSelector.Config common, BulkExportDataSelectorConfig config) {
+    checkArgument(
+        common != null && common.ignoreConsent(),
+        "bulkExport cannot restrict data to consented periods, requires ignoreConsent: true");
+    var client = clientFactory.create(config.fhirServer());
+    // Patients of an export batch arrive together, so their identifiers are resolved together
+    var batch = config.patientBatch();
+    var resolver =
+        new FhirResolveService(
+            client, retryStrategy, batch.size(), batch.maxWait(), batch.concurrency());
+    return new BulkExportDataSelector(client, resolver, retryStrategy, parsers, config);
+  }
+}
@@ -1,22 +1,34 @@
 package care.smith.fts.cda.impl;
 
-import static care.smith.fts.cda.services.deidentifhir.DeidentifhirUtils.buildRegistry;
-
 import care.smith.fts.api.ConsentedPatient;
 import care.smith.fts.api.ConsentedPatientBundle;
 import care.smith.fts.api.DateShiftPreserve;
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.api.cda.Deidentificator;
+import care.smith.fts.cda.impl.DeidentifhirStepConfig.MappingEncoding;
 import care.smith.fts.cda.services.deidentifhir.DeidentifhirUtils;
 import care.smith.fts.cda.services.deidentifhir.GeneratingReplacementProvider;
+import care.smith.fts.util.BatchConfig;
+import care.smith.fts.util.RequestBatcher;
 import care.smith.fts.util.RetryStrategy;
+import care.smith.fts.util.TransferProcessTags;
+import care.smith.fts.util.deidentifhir.DeidentifhirEngine;
 import care.smith.fts.util.error.TransferProcessException;
 import care.smith.fts.util.tca.TcaDomains;
+import care.smith.fts.util.tca.TransportMappingBatchRequest;
+import care.smith.fts.util.tca.TransportMappingBatchResponse;
 import care.smith.fts.util.tca.TransportMappingRequest;
 import care.smith.fts.util.tca.TransportMappingResponse;
+import com.google.common.base.Suppliers;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -27,13 +39,17 @@ import reactor.core.publisher.Mono;
 
 @Slf4j
 class DeidentifhirStep implements Deidentificator {
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
   private final WebClient tcaClient;
   private final TcaDomains domains;
   private final Duration maxDateShift;
   private final DateShiftPreserve preserve;
-  private final com.typesafe.config.Config config;
+  private final Supplier<DeidentifhirEngine<GeneratingReplacementProvider>> engine;
   private final MeterRegistry meterRegistry;
   private final RetryStrategy retryStrategy;
+  private final RequestBatcher<TransportMappingRequest, String> batcher;
+  private final MediaType mediaType;
 
   public DeidentifhirStep(
       WebClient tcaClient,
@@ -43,28 +59,77 @@ class DeidentifhirStep implements Deidentificator {
       com.typesafe.config.Config config,
       MeterRegistry meterRegistry,
       RetryStrategy retryStrategy) {
+    this(
+        tcaClient,
+        domains,
+        maxDateShift,
+        preserve,
+        config,
+        meterRegistry,
+        retryStrategy,
+        DeidentifhirStepConfig.DEFAULT_TRANSPORT_MAPPING_BATCH);
+  }
+
+  public DeidentifhirStep(
+      WebClient tcaClient,
+      TcaDomains domains,
+      Duration maxDateShift,
+      DateShiftPreserve preserve,
+      com.typesafe.config.Config config,
+      MeterRegistry meterRegistry,
+      RetryStrategy retryStrategy,
+      BatchConfig batch) {
+    this(
+        tcaClient,
+        domains,
+        maxDateShift,
+        preserve,
+        config,
+        meterRegistry,
+        retryStrategy,
+        batch,
+        MappingEncoding.JSON);
+  }
+
+  public DeidentifhirStep(
+      WebClient tcaClient,
+      TcaDomains domains,
+      Duration maxDateShift,
+      DateShiftPreserve preserve,
+      com.typesafe.config.Config config,
+      MeterRegistry meterRegistry,
+      RetryStrategy retryStrategy,
+      BatchConfig batch,
+      MappingEncoding encoding) {
     this.tcaClient = tcaClient;
+    this.mediaType = encoding.mediaType();
     this.domains = domains;
     this.maxDateShift = maxDateShift;
     this.preserve = preserve;
-    this.config = config;
+    this.engine = Suppliers.memoize(() -> DeidentifhirUtils.compile(config));
     this.meterRegistry = meterRegistry;
     this.retryStrategy = retryStrategy;
+    this.batcher =
+        batch.enabled()
+            ? new RequestBatcher<>(
+                batch.size(), batch.maxWait(), batch.concurrency(), this::sendBatchToTca)
+            : null;
   }
 
   @Override
   public Mono<TransportBundle> deidentify(ConsentedPatientBundle bundle) {
-    return Mono.defer(
-        () -> {
+    return Mono.deferContextual(
+        context -> {
           var patient = bundle.consentedPatient();
           var inputBundleSize = bundle.bundle().getEntry().size();
           var deidentifyMsg = "deidentify for patient {}, input bundle has {} entries";
           log.trace(deidentifyMsg, patient.identifier(), inputBundleSize);
           var provider = new GeneratingReplacementProvider(patient.identifier());
-          var registry = buildRegistry(provider);
+          var cpuTime = THREADS.getCurrentThreadCpuTime();
           var deidentified =
               DeidentifhirUtils.deidentify(
-                  config, registry, bundle.bundle(), patient.identifier(), meterRegistry);
+                  engine.get(), provider, bundle.bundle(), patient.identifier(), meterRegistry);
+          recordCpuTime(cpuTime, TransferProcessTags.read(context));
           var deidentifiedMsg = "deidentified bundle for patient {} has {} entries";
           log.trace(deidentifiedMsg, patient.identifier(), deidentified.getEntry().size());
 
@@ -76,10 +141,19 @@ class DeidentifhirStep implements Deidentificator {
           return (idMappings.isEmpty() && dateMappings.isEmpty())
               ? Mono.fromRunnable(() -> log.warn("No mappings to send to TCA"))
               : sendMappingsToTca(patient, idMappings, dateMappings)
+                  .transform(TransferProcessTags.timed(meterRegistry, "transfer.tca.mapping"))
                   .map(transferId -> new TransportBundle(deidentified, transferId));
         });
   }
 
+  /** Deidentification runs on a single thread, so its thread CPU time is the work it did. */
+  private void recordCpuTime(long start, Tags tags) {
+    if (start >= 0) {
+      var cpuTime = THREADS.getCurrentThreadCpuTime() - start;
+      meterRegistry.timer("deidentify.cpu", tags).record(cpuTime, TimeUnit.NANOSECONDS);
+    }
+  }
+
   private Mono<String> sendMappingsToTca(
       ConsentedPatient patient, Map<String, String> idMappings, Map<String, String> dateMappings) {
     var request =
@@ -96,10 +170,18 @@ class DeidentifhirStep implements Deidentificator {
         "Send transport mappings for {} IDs and {} dates to TCA",
         idMappings.size(),
         dateMappings.size());
+    return batcher != null ? batcher.submit(request) : sendToTca(request);
+  }
+
+  private Mono<String> sendToTca(TransportMappingRequest request) {
     return tcaClient
         .post()
         .uri("/api/v2/cd/transport-mapping")
-        .headers(h -> h.setContentType(MediaType.APPLICATION_JSON))
+        .headers(
+            h -> {
+              h.setContentType(mediaType);
+              h.setAccept(List.of(mediaType));
+            })
         .bodyValue(request)
         .retrieve()
         .onStatus(r -> r.equals(HttpStatus.BAD_REQUEST), DeidentifhirStep::handleBadRequest)
@@ -110,6 +192,26 @@ class DeidentifhirStep implements Deidentificator {
         .map(TransportMappingResponse::transferId);
   }
 
+  private Mono<List<String>> sendBatchToTca(List<TransportMappingRequest> requests) {
+    log.trace("Send transport mappings of {} patients to TCA", requests.size());
+    return tcaClient
+        .post()
+        .uri("/api/v2/cd/transport-mapping/batch")
+        .headers(
+            h -> {
+              h.setContentType(mediaType);
+              h.setAccept(List.of(mediaType));
+            })
+        .bodyValue(new TransportMappingBatchRequest(requests))
+        .retrieve()
+        .onStatus(r -> r.equals(HttpStatus.BAD_REQUEST), DeidentifhirStep::handleBadRequest)
+        .bodyToMono(TransportMappingBatchResponse.class)
+        .timeout(Duration.ofSeconds(30))
+        .retryWhen(retryStrategy.forRequest("sendMappingsToTca"))
+        .doOnError(DeidentifhirStep::handleError)
+        .map(TransportMappingBatchResponse::transferIds);
+  }
+
   private static Mono<Throwable> handleBadRequest(ClientResponse s) {
     return s.bodyToMono(ProblemDetail.class)
         .flatMap(b -> Mono.error(new TransferProcessException(b.getDetail())));
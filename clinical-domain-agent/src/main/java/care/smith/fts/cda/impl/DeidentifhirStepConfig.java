@@ -1,28 +1,78 @@
 package care.smith.fts.cda.impl;
 
 import care.smith.fts.api.DateShiftPreserve;
+import care.smith.fts.util.BatchConfig;
 import care.smith.fts.util.HttpClientConfig;
 import care.smith.fts.util.tca.TcaDomains;
 import java.io.File;
 import java.time.Duration;
 import java.util.Optional;
+import org.springframework.http.MediaType;
 
 public record DeidentifhirStepConfig(
     TCAConfig trustCenterAgent,
     Duration maxDateShift,
     File deidentifhirConfig,
-    DateShiftPreserve dateShiftPreserve) {
+    DateShiftPreserve dateShiftPreserve,
+    BatchConfig transportMappingBatch) {
+
+  /**
+   * Collects the transport mappings of up to {@code size} patients into one TCA request, disabled
+   * by default.
+   */
+  public static final BatchConfig DEFAULT_TRANSPORT_MAPPING_BATCH =
+      new BatchConfig(1, Duration.ofMillis(100), 4);
 
   public DeidentifhirStepConfig(
       TCAConfig trustCenterAgent,
       Duration maxDateShift,
       File deidentifhirConfig,
-      DateShiftPreserve dateShiftPreserve) {
+      DateShiftPreserve dateShiftPreserve,
+      BatchConfig transportMappingBatch) {
     this.trustCenterAgent = trustCenterAgent;
     this.maxDateShift = maxDateShift;
     this.deidentifhirConfig = deidentifhirConfig;
     this.dateShiftPreserve = Optional.ofNullable(dateShiftPreserve).orElse(DateShiftPreserve.NONE);
+    this.transportMappingBatch =
+        BatchConfig.withDefaults(transportMappingBatch, DEFAULT_TRANSPORT_MAPPING_BATCH);
+  }
+
+  public DeidentifhirStepConfig(
+      TCAConfig trustCenterAgent,
+      Duration maxDateShift,
+      File deidentifhirConfig,
+      DateShiftPreserve dateShiftPreserve) {
+    this(trustCenterAgent, maxDateShift, deidentifhirConfig, dateShiftPreserve, null);
+  }
+
+  /**
+   * @param encoding of the transport mappings sent to the TCA, the TCA answers in the same encoding
+   */
+  public record TCAConfig(HttpClientConfig server, TcaDomains domains, MappingEncoding encoding) {
+    public TCAConfig(HttpClientConfig server, TcaDomains domains, MappingEncoding encoding) {
+      this.server = server;
+      this.domains = domains;
+      this.encoding = Optional.ofNullable(encoding).orElse(MappingEncoding.JSON);
+    }
+
+    public TCAConfig(HttpClientConfig server, TcaDomains domains) {
+      this(server, domains, null);
+    }
   }
 
-  public record TCAConfig(HttpClientConfig server, TcaDomains domains) {}
+  /** CBOR shrinks large transport mappings, it requires a TCA of version 5.8 or newer. */
+  public enum MappingEncoding {
+    JSON(MediaType.APPLICATION_JSON),
+    CBOR(MediaType.APPLICATION_CBOR);
+
+    private final MediaType mediaType;
+
+    MappingEncoding(MediaType mediaType) {
+      this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+      return mediaType;
+    }
+  }
 }
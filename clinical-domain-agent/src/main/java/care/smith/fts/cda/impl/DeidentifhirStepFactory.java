@@ -41,6 +41,8 @@ public class DeidentifhirStepFactory implements Deidentificator.Factory<Deidenti
         implConfig.dateShiftPreserve(),
         config,
         meterRegistry,
-        retryStrategy);
+        retryStrategy,
+        implConfig.transportMappingBatch(),
+        implConfig.trustCenterAgent().encoding());
   }
 }
@@ -2,20 +2,31 @@ package care.smith.fts.cda.impl;
 
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE;
+import static java.time.temporal.ChronoUnit.SECONDS;
+import static java.util.Objects.requireNonNull;
 import static java.util.Optional.ofNullable;
 
 import care.smith.fts.api.ConsentedPatient;
 import care.smith.fts.api.ConsentedPatientBundle;
 import care.smith.fts.api.cda.DataSelector;
+import care.smith.fts.cda.LastTransferStore;
 import care.smith.fts.cda.services.PatientIdResolver;
 import care.smith.fts.util.RetryStrategy;
+import care.smith.fts.util.TransferProcessTags;
+import care.smith.fts.util.fhir.FhirJsonParsers;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.ByteArrayInputStream;
 import java.net.URI;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Function;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.Bundle;
@@ -24,6 +35,9 @@ import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.json.JsonMapper;
 
 @Slf4j
 public class EverythingDataSelector implements DataSelector {
@@ -31,24 +45,42 @@ public class EverythingDataSelector implements DataSelector {
   private static final String RESOLVED_MSG = "Resolved patient {} to FHIR ID {}";
   private static final String FETCH_EVERYTHING_MSG =
       "fetchEverything for patient {}, FHIR ID {}, ignoreConsent={}";
+  private static final JsonMapper MAPPER = JsonMapper.builder().build();
 
   private final Config common;
   private final WebClient hdsClient;
   private final PatientIdResolver pidResolver;
   private final RetryStrategy retryStrategy;
   private final int pageSize;
+  private final LastTransferStore lastTransfers;
+  private final Duration sinceMargin;
+  private final FhirJsonParsers parsers;
+  private final int prefetchPages;
+  private final MeterRegistry meterRegistry;
 
+  /**
+   * @param lastTransfers last transfers of patients, only used if the config is incremental
+   * @param parsers decode prefetched pages
+   */
   public EverythingDataSelector(
       Config common,
       WebClient hdsClient,
       PatientIdResolver patientIdResolver,
       RetryStrategy retryStrategy,
-      int pageSize) {
+      LastTransferStore lastTransfers,
+      FhirJsonParsers parsers,
+      MeterRegistry meterRegistry,
+      EverythingDataSelectorConfig config) {
     this.common = common;
     this.hdsClient = hdsClient;
     this.pidResolver = patientIdResolver;
     this.retryStrategy = retryStrategy;
-    this.pageSize = pageSize;
+    this.pageSize = config.pageSize();
+    this.lastTransfers = config.incremental() ? lastTransfers : LastTransferStore.disabled();
+    this.sinceMargin = config.sinceMargin();
+    this.parsers = requireNonNull(parsers, "parsers must not be null");
+    this.prefetchPages = config.prefetchPages();
+    this.meterRegistry = meterRegistry;
   }
 
   @Override
@@ -56,33 +88,111 @@ public class EverythingDataSelector implements DataSelector {
     return pidResolver
         .resolve(patient)
         .doOnNext(fhirId -> log.trace(RESOLVED_MSG, patient.identifier(), fhirId.getIdPart()))
-        .flatMapMany(fhirId -> fetchEverything(patient, fhirId))
+        .flatMapMany(
+            fhirId ->
+                lastTransfer(patient).flatMapMany(since -> fetchEverything(patient, fhirId, since)))
         .map(b -> new ConsentedPatientBundle(b, patient))
         .doOnComplete(() -> log.trace("select for patient {} completed", patient.identifier()));
   }
 
-  private Flux<Bundle> fetchEverything(ConsentedPatient patient, IIdType fhirId) {
+  /** A patient whose consent changed since the last transfer has all its data fetched again. */
+  private Mono<Optional<Instant>> lastTransfer(ConsentedPatient patient) {
+    var patientId = patient.identifier();
+    var consent = LastTransferStore.consent(patient);
+    return Mono.deferContextual(
+        context ->
+            Mono.just(
+                TransferProcessTags.project(context)
+                    .flatMap(project -> lastTransfers.lastTransfer(project, patientId, consent))
+                    .map(t -> t.minus(sinceMargin))));
+  }
+
+  private Flux<Bundle> fetchEverything(
+      ConsentedPatient patient, IIdType fhirId, Optional<Instant> since) {
     log.trace(
         FETCH_EVERYTHING_MSG, patient.identifier(), fhirId.getIdPart(), common.ignoreConsent());
-    var uriBuilder = common.ignoreConsent() ? withoutConsent(fhirId) : withConsent(patient, fhirId);
-    return fetchBundle("/Patient/{id}/$everything", uriBuilder)
-        .doOnError(e -> log.error("Unable to fetch patient data from HDS: {}", e.getMessage()))
-        .expand(this::fetchNextPage);
+    since.ifPresent(t -> log.trace("fetchEverything since last transfer at {}", t));
+    var uriBuilder =
+        common.ignoreConsent()
+            ? withoutConsent(fhirId, since)
+            : withConsent(patient, fhirId, since);
+    return fetchPages("/Patient/{id}/$everything", uriBuilder)
+        .doOnError(e -> log.error("Unable to fetch patient data from HDS: {}", e.getMessage()));
+  }
+
+  private Flux<Bundle> fetchPages(String uri, Function<UriBuilder, URI> builder) {
+    if (prefetchPages == 0) {
+      return fetchBundle(uri, builder).expand(this::fetchNextPage);
+    }
+    // The next link is read from the raw page, so its request starts while the page is decoded
+    // on another thread. flatMapSequential only requests further pages once decoded ones were
+    // consumed, this bounds the look-ahead to prefetchPages.
+    return fetchPage(uri, builder)
+        .expand(
+            page ->
+                Mono.justOrEmpty(page.next())
+                    .doOnNext(url -> log.trace("fetchNextPage: {}", url))
+                    .flatMap(url -> fetchPage(url, UriBuilder::build)))
+        .flatMapSequential(this::decode, prefetchPages);
   }
 
   private Mono<Bundle> fetchBundle(String uri, Function<UriBuilder, URI> builder) {
+    return fetchPage(uri, builder).flatMap(this::decode);
+  }
+
+  private Mono<Page> fetchPage(String uri, Function<UriBuilder, URI> builder) {
     log.debug("Fetching patient data from HDS: {}", uri);
     return hdsClient
         .get()
         .uri(uri, builder)
         .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_JSON)))
         .retrieve()
-        .bodyToMono(Bundle.class)
+        .bodyToMono(byte[].class)
         .retryWhen(retryStrategy.forRequest("fetchEverything"))
         .timeout(Duration.ofSeconds(30))
-        .doOnNext(b -> log.trace("Fetched Bundle with {} resources", b.getEntry().size()));
+        .transform(TransferProcessTags.timed(meterRegistry, "transfer.select.data.page"))
+        .map(body -> new Page(body, nextLink(body)));
   }
 
+  private Mono<Bundle> decode(Page page) {
+    return Mono.fromCallable(
+            () ->
+                parsers.apply(
+                    p -> p.parseResource(Bundle.class, new ByteArrayInputStream(page.body()))))
+        .subscribeOn(Schedulers.parallel())
+        .doOnNext(b -> log.trace("Decoded Bundle with {} resources", b.getEntry().size()));
+  }
+
+  /** A fetched page, not decoded yet. */
+  private record Page(byte[] body, Optional<String> next) {}
+
+  /**
+   * Reads the next link of a bundle without decoding its entries. Servers write the links before
+   * the entries, so usually only the beginning of the page is read.
+   */
+  static Optional<String> nextLink(byte[] bundle) {
+    try (var parser = MAPPER.createParser(bundle)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return Optional.empty();
+      }
+      while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+        var name = parser.currentName();
+        parser.nextToken();
+        if ("link".equals(name)) {
+          return Stream.of(MAPPER.readValue(parser, Link[].class))
+              .filter(l -> "next".equals(l.relation()))
+              .map(Link::url)
+              .findFirst();
+        }
+        parser.skipChildren();
+      }
+      return Optional.empty();
+    }
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  record Link(String relation, String url) {}
+
   private Mono<Bundle> fetchNextPage(Bundle bundle) {
     var nextLink = ofNullable(bundle.getLink("next"));
     if (nextLink.isEmpty()) log.trace("fetchNextPage: no next link");
@@ -92,11 +202,16 @@ public class EverythingDataSelector implements DataSelector {
         .flatMap(uri -> fetchBundle(uri, UriBuilder::build));
   }
 
-  private Function<UriBuilder, URI> withoutConsent(IIdType fhirId) {
-    return (uriBuilder) -> uriBuilder.queryParam("_count", pageSize).build(fhirId.getIdPart());
+  private Function<UriBuilder, URI> withoutConsent(IIdType fhirId, Optional<Instant> since) {
+    return (uriBuilder) ->
+        uriBuilder
+            .queryParam("_count", pageSize)
+            .queryParamIfPresent("_since", since.map(EverythingDataSelector::formatSince))
+            .build(fhirId.getIdPart());
   }
 
-  private Function<UriBuilder, URI> withConsent(ConsentedPatient patient, IIdType fhirId) {
+  private Function<UriBuilder, URI> withConsent(
+      ConsentedPatient patient, IIdType fhirId, Optional<Instant> since) {
     var period = patient.maxConsentedPeriod();
     if (period.isEmpty()) {
       var msg = "Patient has no consent configured, and ignoreConsent is false.";
@@ -110,10 +225,16 @@ public class EverythingDataSelector implements DataSelector {
             .queryParam("_count", pageSize)
             .queryParam("start", formatWithSystemTZ(p.start()))
             .queryParam("end", formatWithSystemTZ(p.end()))
+            .queryParamIfPresent("_since", since.map(EverythingDataSelector::formatSince))
             .build(Map.of("id", fhirId.getIdPart()));
   }
 
   private static String formatWithSystemTZ(ZonedDateTime t) {
     return t.format(ISO_LOCAL_DATE.withZone(ZoneId.systemDefault()));
   }
+
+  /** Truncating to seconds moves the instant back, so no change is missed. */
+  private static String formatSince(Instant t) {
+    return t.truncatedTo(SECONDS).toString();
+  }
 }
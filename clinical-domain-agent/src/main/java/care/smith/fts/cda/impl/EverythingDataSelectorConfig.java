@@ -4,10 +4,13 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 import static lombok.AccessLevel.PRIVATE;
 
+import care.smith.fts.util.BatchConfig;
 import care.smith.fts.util.HttpClientConfig;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.Optional;
 import lombok.EqualsAndHashCode;
 import lombok.Setter;
 import lombok.ToString;
@@ -17,16 +20,47 @@ import lombok.ToString;
 @ToString
 public final class EverythingDataSelectorConfig {
   public static int DEFAULT_PAGE_SIZE = 500;
+  public static final Duration DEFAULT_SINCE_MARGIN = Duration.ofMinutes(5);
+
+  /**
+   * Resolves the identifiers of up to {@code size} patients with one {@code Patient?identifier=}
+   * search, disabled by default.
+   */
+  public static final BatchConfig DEFAULT_RESOLVE_BATCH =
+      new BatchConfig(1, Duration.ofMillis(50), 4);
 
   private @NotNull HttpClientConfig fhirServer;
   private int pageSize;
+  private boolean incremental;
+  private Duration sinceMargin;
+  private BatchConfig resolveBatch;
+  private int prefetchPages;
 
+  /**
+   * @param incremental whether only resources changed since the last successful transfer of a
+   *     patient are fetched, defaults to false
+   * @param sinceMargin subtracted from the last transfer of a patient, covers the clock skew
+   *     between agent and health data server, defaults to {@link #DEFAULT_SINCE_MARGIN}
+   * @param resolveBatch how patient identifiers are resolved in batches, disabled by default
+   * @param prefetchPages number of {@code $everything} pages fetched ahead of the pages being
+   *     processed, defaults to 0
+   */
   @JsonCreator
   public EverythingDataSelectorConfig(
       @JsonProperty("fhirServer") @NotNull HttpClientConfig fhirServer,
-      @JsonProperty("pageSize") Integer pageSize) {
+      @JsonProperty("pageSize") Integer pageSize,
+      @JsonProperty("incremental") Boolean incremental,
+      @JsonProperty("resolveBatch") BatchConfig resolveBatch,
+      @JsonProperty("prefetchPages") Integer prefetchPages,
+      @JsonProperty("sinceMargin") Duration sinceMargin) {
     this.fhirServer = requireNonNull(fhirServer, "fhirServer must not be null");
     this.pageSize = checkPageSize(pageSize);
+    this.incremental = Boolean.TRUE.equals(incremental);
+    this.resolveBatch = BatchConfig.withDefaults(resolveBatch, DEFAULT_RESOLVE_BATCH);
+    this.prefetchPages = Optional.ofNullable(prefetchPages).orElse(0);
+    checkArgument(this.prefetchPages >= 0, "prefetchPages must not be negative");
+    this.sinceMargin = Optional.ofNullable(sinceMargin).orElse(DEFAULT_SINCE_MARGIN);
+    checkArgument(!this.sinceMargin.isNegative(), "sinceMargin must not be negative");
   }
 
   private static int checkPageSize(Integer pageSize) {
@@ -45,4 +79,20 @@ public final class EverythingDataSelectorConfig {
   public int pageSize() {
     return pageSize;
   }
+
+  public boolean incremental() {
+    return incremental;
+  }
+
+  public Duration sinceMargin() {
+    return sinceMargin;
+  }
+
+  public BatchConfig resolveBatch() {
+    return resolveBatch;
+  }
+
+  public int prefetchPages() {
+    return prefetchPages;
+  }
 }
@@ -1,9 +1,12 @@
 package care.smith.fts.cda.impl;
 
 import care.smith.fts.api.cda.DataSelector;
+import care.smith.fts.cda.LastTransferStore;
 import care.smith.fts.cda.services.FhirResolveService;
 import care.smith.fts.util.RetryStrategy;
 import care.smith.fts.util.WebClientFactory;
+import care.smith.fts.util.fhir.FhirJsonParsers;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Component;
 
 @Component("everythingDataSelector")
@@ -12,11 +15,21 @@ public class EverythingDataSelectorFactory
 
   private final WebClientFactory clientFactory;
   private final RetryStrategy retryStrategy;
+  private final LastTransferStore lastTransfers;
+  private final FhirJsonParsers parsers;
+  private final MeterRegistry meterRegistry;
 
   public EverythingDataSelectorFactory(
-      WebClientFactory clientFactory, RetryStrategy retryStrategy) {
+      WebClientFactory clientFactory,
+      RetryStrategy retryStrategy,
+      LastTransferStore lastTransfers,
+      FhirJsonParsers parsers,
+      MeterRegistry meterRegistry) {
     this.clientFactory = clientFactory;
     this.retryStrategy = retryStrategy;
+    this.lastTransfers = lastTransfers;
+    this.parsers = parsers;
+    this.meterRegistry = meterRegistry;
   }
 
   @Override
@@ -27,7 +40,11 @@ public class EverythingDataSelectorFactory
   @Override
   public DataSelector create(DataSelector.Config common, EverythingDataSelectorConfig config) {
     var client = clientFactory.create(config.fhirServer());
-    var resolver = new FhirResolveService(client, retryStrategy);
-    return new EverythingDataSelector(common, client, resolver, retryStrategy, config.pageSize());
+    var batch = config.resolveBatch();
+    var resolver =
+        new FhirResolveService(
+            client, retryStrategy, batch.size(), batch.maxWait(), batch.concurrency());
+    return new EverythingDataSelector(
+        common, client, resolver, retryStrategy, lastTransfers, parsers, meterRegistry, config);
   }
 }
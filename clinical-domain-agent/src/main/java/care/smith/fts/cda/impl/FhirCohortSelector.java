@@ -3,6 +3,7 @@ package care.smith.fts.cda.impl;
 import static care.smith.fts.util.ConsentedPatientExtractor.*;
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
 import static care.smith.fts.util.fhir.FhirUtils.typedResourceStream;
+import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.joining;
 import static org.springframework.web.util.UriComponentsBuilder.*;
 
@@ -10,9 +11,11 @@ import care.smith.fts.api.ConsentedPatient;
 import care.smith.fts.api.cda.CohortSelector;
 import care.smith.fts.util.RetryStrategy;
 import care.smith.fts.util.error.TransferProcessException;
+import com.google.common.annotations.VisibleForTesting;
 import java.net.URI;
 import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.r4.model.Bundle;
@@ -25,27 +28,18 @@ import org.springframework.web.reactive.function.client.WebClientException;
 import org.springframework.web.util.UriBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
 
 @Slf4j
-class FhirCohortSelector implements CohortSelector {
+public class FhirCohortSelector implements CohortSelector {
   private final FhirCohortSelectorConfig config;
   private final WebClient fhirClient;
   private final RetryStrategy retryStrategy;
-  private final Scheduler scheduler;
-  private final int cohortSelectionConcurrency;
 
   public FhirCohortSelector(
-      FhirCohortSelectorConfig config,
-      WebClient fhirClient,
-      RetryStrategy retryStrategy,
-      Scheduler scheduler,
-      int cohortSelectionConcurrency) {
+      FhirCohortSelectorConfig config, WebClient fhirClient, RetryStrategy retryStrategy) {
     this.config = config;
     this.fhirClient = fhirClient;
     this.retryStrategy = retryStrategy;
-    this.scheduler = scheduler;
-    this.cohortSelectionConcurrency = cohortSelectionConcurrency;
   }
 
   @Override
@@ -103,7 +97,7 @@ class FhirCohortSelector implements CohortSelector {
 
   private Flux<ConsentedPatient> extractConsentedPatients(Bundle bundle) {
     var patientIdentifierSystem = config.patientIdentifierSystem();
-    return groupPatientsAndConsents(bundle)
+    return Flux.fromIterable(groupPatientsAndConsents(bundle))
         .mapNotNull(
             b ->
                 processConsentedPatient(
@@ -118,31 +112,28 @@ class FhirCohortSelector implements CohortSelector {
   }
 
   /**
-   * Groups each patient in the bundle with its matching consents. The CPU-bound grouping is spread
-   * across {@code cohortSelectionConcurrency} concurrent workers on the injected, dedicated {@link
-   * Scheduler}, instead of the JVM-wide common ForkJoinPool that a parallel {@link
-   * java.util.stream.Stream} would use.
+   * Groups each patient in the bundle with its consents. Consents are indexed by the patient they
+   * reference in one pass, so grouping is linear in the size of the bundle.
    */
-  private Flux<Bundle> groupPatientsAndConsents(Bundle bundle) {
-    var patients = typedResourceStream(bundle, Patient.class).toList();
-    return Flux.fromIterable(patients)
-        .parallel(cohortSelectionConcurrency)
-        .runOn(scheduler)
-        .map(p -> groupPatientWithConsents(bundle, p))
-        .sequential();
+  @VisibleForTesting
+  public static List<Bundle> groupPatientsAndConsents(Bundle bundle) {
+    Map<String, List<Consent>> consentsByPatient =
+        typedResourceStream(bundle, Consent.class)
+            .filter(c -> c.getPatient().getReferenceElement().hasIdPart())
+            .collect(groupingBy(c -> c.getPatient().getReferenceElement().getIdPart()));
+    return typedResourceStream(bundle, Patient.class)
+        .map(p -> groupPatientWithConsents(p, consentsOf(consentsByPatient, p)))
+        .toList();
   }
 
-  private static Bundle groupPatientWithConsents(Bundle bundle, Patient p) {
-    var inner = new Bundle().addEntry(new BundleEntryComponent().setResource(p));
-    typedResourceStream(bundle, Consent.class)
-        .filter(c -> isConsentOfPatient(p, c))
-        .forEach(c -> inner.addEntry(new BundleEntryComponent().setResource(c)));
-    return inner;
+  private static List<Consent> consentsOf(Map<String, List<Consent>> consents, Patient patient) {
+    return consents.getOrDefault(patient.getIdPart(), List.of());
   }
 
-  private static boolean isConsentOfPatient(Patient patient, Consent c) {
-    var patientRefId = c.getPatient().getReferenceElement().getIdPart();
-    return patientRefId.equals(patient.getIdPart());
+  private static Bundle groupPatientWithConsents(Patient p, List<Consent> consents) {
+    var inner = new Bundle().addEntry(new BundleEntryComponent().setResource(p));
+    consents.forEach(c -> inner.addEntry(new BundleEntryComponent().setResource(c)));
+    return inner;
   }
 
   private static Mono<Bundle> handleWebClientException(WebClientException e) {
@@ -1,29 +1,19 @@
 package care.smith.fts.cda.impl;
 
 import care.smith.fts.api.cda.CohortSelector;
-import care.smith.fts.cda.TransferProcessRunnerConfig;
 import care.smith.fts.util.RetryStrategy;
 import care.smith.fts.util.WebClientFactory;
 import org.springframework.stereotype.Component;
-import reactor.core.scheduler.Scheduler;
 
 @Component("fhirCohortSelector")
 public class FhirCohortSelectorFactory implements CohortSelector.Factory<FhirCohortSelectorConfig> {
 
   private final WebClientFactory clientFactory;
   private final RetryStrategy retryStrategy;
-  private final Scheduler cohortSelectionScheduler;
-  private final int cohortSelectionConcurrency;
 
-  public FhirCohortSelectorFactory(
-      WebClientFactory clientFactory,
-      RetryStrategy retryStrategy,
-      Scheduler cohortSelectionScheduler,
-      TransferProcessRunnerConfig runnerConfig) {
+  public FhirCohortSelectorFactory(WebClientFactory clientFactory, RetryStrategy retryStrategy) {
     this.clientFactory = clientFactory;
     this.retryStrategy = retryStrategy;
-    this.cohortSelectionScheduler = cohortSelectionScheduler;
-    this.cohortSelectionConcurrency = runnerConfig.cohortSelectionConcurrency();
   }
 
   @Override
@@ -34,7 +24,6 @@ public class FhirCohortSelectorFactory implements CohortSelector.Factory<FhirCoh
   @Override
   public CohortSelector create(CohortSelector.Config ignored, FhirCohortSelectorConfig config) {
     var client = clientFactory.create(config.server());
-    return new FhirCohortSelector(
-        config, client, retryStrategy, cohortSelectionScheduler, cohortSelectionConcurrency);
+    return new FhirCohortSelector(config, client, retryStrategy);
   }
 }
@@ -1,5 +1,7 @@
 package care.smith.fts.cda.impl;
 
+import static care.smith.fts.util.HeaderTypes.PREFER;
+import static care.smith.fts.util.HeaderTypes.PREFERENCE_APPLIED;
 import static care.smith.fts.util.fhir.FhirUtils.resourceStream;
 import static care.smith.fts.util.fhir.FhirUtils.toBundle;
 import static java.util.Objects.requireNonNull;
@@ -12,37 +14,90 @@ import static org.springframework.http.HttpStatus.OK;
 
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.api.cda.BundleSender;
+import care.smith.fts.util.AdaptiveConcurrencyLimiter;
 import care.smith.fts.util.MediaTypes;
+import care.smith.fts.util.RequestBatcher;
 import care.smith.fts.util.RetryStrategy;
+import care.smith.fts.util.TransferProcessTags;
 import care.smith.fts.util.error.TransferProcessException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
 import java.net.URI;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Parameters;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ClientHttpRequestDecorator;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Slf4j
 final class RdaBundleSender implements BundleSender {
   private final RdaBundleSenderConfig config;
   private final WebClient rdaClient;
+  private final WebClient sendClient;
   private final RetryStrategy retryStrategy;
+  private final MeterRegistry meterRegistry;
+  private final RequestBatcher<TransportBundle, Result> batcher;
 
   public RdaBundleSender(
-      RdaBundleSenderConfig config, WebClient rdaClient, RetryStrategy retryStrategy) {
+      RdaBundleSenderConfig config,
+      WebClient rdaClient,
+      RetryStrategy retryStrategy,
+      MeterRegistry meterRegistry) {
     this.config = config;
     this.rdaClient = rdaClient;
+    this.sendClient =
+        rdaClient
+            .mutate()
+            .filter(recordBundleBytes())
+            .filter(AdaptiveConcurrencyLimiter.reportOverload())
+            .build();
     this.retryStrategy = retryStrategy;
+    this.meterRegistry = meterRegistry;
+    var batch = config.patientBatch();
+    this.batcher =
+        batch.enabled()
+            ? new RequestBatcher<>(
+                batch.size(), batch.maxWait(), batch.concurrency(), this::sendBatch)
+            : null;
   }
 
   @Override
   public Mono<Result> send(TransportBundle bundle) {
     log.trace("send bundle with transferId {}", bundle.transferId());
-    return sendBundle(toPlainBundle(requireNonNull(bundle))).map(v -> new Result());
+    return batcher != null
+        ? batcher.submit(bundle)
+        : sendBundle("/api/v2/process/{project}/patient", toPlainBundle(bundle), 1)
+            .map(v -> new Result());
+  }
+
+  /**
+   * Sends the bundles of several patients in one envelope bundle. The RDA reports one status for
+   * the batch, so either all patients of a batch succeed or all fail. A failed batch may be partly
+   * stored, if the RDA split it into several transactions; sending its patients again overwrites
+   * what was stored. The batch runs in the context of its first patient and takes one send permit
+   * of each transfer process it holds patients of.
+   */
+  private Mono<List<Result>> sendBatch(List<TransportBundle> bundles) {
+    log.trace("send batch of {} bundles", bundles.size());
+    var envelope = bundles.stream().map(RdaBundleSender::toPlainBundle).collect(toBundle());
+    return sendBundle("/api/v2/process/{project}/patients", envelope, bundles.size())
+        .map(v -> Collections.nCopies(bundles.size(), new Result()));
   }
 
   private static Bundle toPlainBundle(TransportBundle transportBundle) {
@@ -55,43 +110,71 @@ final class RdaBundleSender implements BundleSender {
     return concat(of(transportIdMap), resourceStream(transportBundle.bundle())).collect(toBundle());
   }
 
-  private Mono<ResponseEntity<Void>> sendBundle(Bundle bundle) {
+  /**
+   * Sends a bundle holding {@code patients} patients, once it holds a send permit of each transfer
+   * process it is sent for.
+   */
+  private Mono<ResponseEntity<Void>> sendBundle(String path, Bundle bundle, int patients) {
     log.trace("sendBundle to project {}", config.project());
-    return rdaClient
+    return Mono.deferContextual(
+        context ->
+            AdaptiveConcurrencyLimiter.limit(
+                RequestBatcher.contexts(context), postBundle(path, bundle, patients)));
+  }
+
+  private Mono<ResponseEntity<Void>> postBundle(String path, Bundle bundle, int patients) {
+    return sendClient
         .post()
-        .uri("/api/v2/process/{project}/patient", Map.of("project", config.project()))
-        .headers(h -> h.setContentType(MediaTypes.APPLICATION_FHIR_JSON))
+        .uri(path, Map.of("project", config.project()))
+        .headers(
+            h -> {
+              h.setContentType(MediaTypes.APPLICATION_FHIR_JSON);
+              h.set(PREFER, "respond-async, wait=" + STATUS_WAIT.toSeconds());
+            })
         .bodyValue(requireNonNull(bundle))
         .retrieve()
         .toBodilessEntity()
-        .flatMap(this::processOrWaitForRDACompleted)
+        .flatMap(r -> processOrWaitForRDACompleted(r, patients))
         .retryWhen(retryStrategy.forRequest("sendBundleToRda"))
         .doOnError(e -> log.error("Unable to send Bundle to RDA: {}", e.getMessage()));
   }
 
-  private Mono<ResponseEntity<Void>> processOrWaitForRDACompleted(ResponseEntity<Void> response) {
+  private Mono<ResponseEntity<Void>> processOrWaitForRDACompleted(
+      ResponseEntity<Void> response, int patients) {
     if (response.getStatusCode() == OK) {
       log.trace("RDA responded with OK, sync path");
       return Mono.just(response);
     } else {
       log.trace("RDA responded with {}, async polling path", response.getStatusCode());
-      return waitForRDACompleted(response);
+      return waitForRDACompleted(response, patients);
     }
   }
 
+  /** Status polls per patient, a batch of patients may be polled as often as all of them. */
   private static final int MAX_STATUS_POLLS = 10;
 
-  private Mono<ResponseEntity<Void>> waitForRDACompleted(ResponseEntity<Void> response) {
+  /**
+   * Time the RDA may hold a request until the patient finished, it answers as soon as the patient
+   * finished. Must stay below the exchange timeout of {@code WebClientDefaults}. RDAs not
+   * supporting {@code Prefer: wait} answer immediately and are polled after their {@code
+   * Retry-After}.
+   */
+  private static final Duration STATUS_WAIT = Duration.ofSeconds(5);
+
+  private Mono<ResponseEntity<Void>> waitForRDACompleted(
+      ResponseEntity<Void> response, int patients) {
+    var maxPolls = MAX_STATUS_POLLS * patients;
+    var polls = new AtomicInteger();
     return Mono.just(response)
         .flatMap(this::extractStatusUri)
         .doOnNext(uri -> log.trace("Status Uri: {}", uri))
         .flatMap(
             uri ->
                 fetchStatus(uri)
-                    .expand(
-                        r -> fetchStatus(uri).delayElement(Duration.ofSeconds(getRetryAfter(r))))
+                    .expand(r -> Mono.delay(pollDelay(r)).then(fetchStatus(uri)))
                     .takeUntil(r -> r.getStatusCode() != ACCEPTED)
-                    .take(MAX_STATUS_POLLS)
+                    .take(maxPolls)
+                    .doOnNext(r -> polls.incrementAndGet())
                     .last())
         .flatMap(
             r -> {
@@ -100,20 +183,59 @@ final class RdaBundleSender implements BundleSender {
                 return Mono.just(r);
               } else if (status == ACCEPTED) {
                 var msg = "RDA polling budget exhausted after {} attempts, status still ACCEPTED";
-                log.error(msg, MAX_STATUS_POLLS);
+                log.error(msg, maxPolls);
                 return Mono.error(new TransferProcessException("RDA polling budget exhausted"));
               } else {
                 log.error("Unexpected RDA status: {}", status);
                 return Mono.error(new TransferProcessException("Unexpected RDA status: " + status));
               }
+            })
+        .transformDeferredContextual(
+            (mono, context) ->
+                mono.doFinally(
+                    s ->
+                        meterRegistry
+                            .summary("transfer.rda.polls", TransferProcessTags.read(context))
+                            .record(polls.get())));
+  }
+
+  /** Records the size of each bundle as written to the RDA, including every retry. */
+  private ExchangeFilterFunction recordBundleBytes() {
+    return (request, next) ->
+        Mono.deferContextual(
+            context -> {
+              var bytes = new AtomicLong();
+              var counting =
+                  ClientRequest.from(request)
+                      .body((msg, ctx) -> request.body().insert(countBytes(msg, bytes), ctx))
+                      .build();
+              return next.exchange(counting)
+                  .doOnNext(
+                      r ->
+                          DistributionSummary.builder("transfer.bundle.bytes")
+                              .baseUnit(BaseUnits.BYTES)
+                              .tags(TransferProcessTags.read(context))
+                              .register(meterRegistry)
+                              .record(bytes.get()));
             });
   }
 
+  private static ClientHttpRequest countBytes(ClientHttpRequest request, AtomicLong bytes) {
+    return new ClientHttpRequestDecorator(request) {
+      @Override
+      public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        return super.writeWith(
+            Flux.from(body).doOnNext(b -> bytes.addAndGet(b.readableByteCount())));
+      }
+    };
+  }
+
   private Mono<ResponseEntity<Void>> fetchStatus(URI uri) {
     log.trace("fetchStatus from {}", uri);
     return rdaClient
         .get()
         .uri(uri.toString())
+        .header(PREFER, "wait=" + STATUS_WAIT.toSeconds())
         .retrieve()
         .toBodilessEntity()
         .doOnSuccess(r -> log.trace("fetchStatus response: {}", r.getStatusCode()));
@@ -134,6 +256,13 @@ final class RdaBundleSender implements BundleSender {
     return Mono.just(URI.create(uri.getFirst()));
   }
 
+  /** An RDA that already waited for the patient to finish may be asked again right away. */
+  private static Duration pollDelay(ResponseEntity<Void> response) {
+    return response.getHeaders().getFirst(PREFERENCE_APPLIED) != null
+        ? Duration.ZERO
+        : Duration.ofSeconds(getRetryAfter(response));
+  }
+
   /**
    * @return the duration in seconds after which a retry may be performed
    */
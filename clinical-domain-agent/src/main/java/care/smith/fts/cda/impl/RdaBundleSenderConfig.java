@@ -1,11 +1,33 @@
 package care.smith.fts.cda.impl;
 
+import care.smith.fts.util.BatchConfig;
 import care.smith.fts.util.HttpClientConfig;
 import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
 
 public record RdaBundleSenderConfig(
     /* */
     @NotNull HttpClientConfig server,
 
     /* */
-    String project) {}
+    String project,
+
+    /* */
+    BatchConfig patientBatch) {
+
+  /**
+   * Collects the bundles of up to {@code size} patients into one RDA request, disabled by default.
+   */
+  public static final BatchConfig DEFAULT_PATIENT_BATCH =
+      new BatchConfig(1, Duration.ofMillis(100), 4);
+
+  public RdaBundleSenderConfig(HttpClientConfig server, String project, BatchConfig patientBatch) {
+    this.server = server;
+    this.project = project;
+    this.patientBatch = BatchConfig.withDefaults(patientBatch, DEFAULT_PATIENT_BATCH);
+  }
+
+  public RdaBundleSenderConfig(HttpClientConfig server, String project) {
+    this(server, project, null);
+  }
+}
@@ -12,9 +12,11 @@ public class RdaBundleSenderFactory implements BundleSender.Factory<RdaBundleSen
 
   private final WebClientFactory clientFactory;
   private final BackpressureRetryStrategy retryStrategy;
+  private final MeterRegistry meterRegistry;
 
   public RdaBundleSenderFactory(WebClientFactory clientFactory, MeterRegistry meterRegistry) {
     this.clientFactory = clientFactory;
+    this.meterRegistry = meterRegistry;
     this.retryStrategy =
         new BackpressureRetryStrategy(meterRegistry, new DefaultRetryStrategy(meterRegistry));
   }
@@ -27,6 +29,6 @@ public class RdaBundleSenderFactory implements BundleSender.Factory<RdaBundleSen
   @Override
   public BundleSender create(BundleSender.Config commonConfig, RdaBundleSenderConfig implConfig) {
     return new RdaBundleSender(
-        implConfig, clientFactory.create(implConfig.server()), retryStrategy);
+        implConfig, clientFactory.create(implConfig.server()), retryStrategy, meterRegistry);
   }
 }
@@ -1,21 +1,29 @@
 package care.smith.fts.cda.impl;
 
 import static care.smith.fts.util.ConsentedPatientExtractor.getPatientIdentifier;
+import static care.smith.fts.util.ConsentedPatientExtractor.processConsentedPatient;
 import static care.smith.fts.util.ConsentedPatientExtractor.processConsentedPatients;
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_NDJSON;
 import static care.smith.fts.util.fhir.FhirUtils.typedResourceStream;
+import static com.google.common.base.Preconditions.checkArgument;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
 import care.smith.fts.api.ConsentedPatient;
 import care.smith.fts.api.cda.CohortSelector;
 import care.smith.fts.util.RetryStrategy;
+import care.smith.fts.util.TransferProcessTags;
 import care.smith.fts.util.error.TransferProcessException;
 import care.smith.fts.util.error.fhir.FhirException;
+import care.smith.fts.util.fhir.FhirJsonParsers;
 import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Bundle.BundleLinkComponent;
@@ -23,20 +31,73 @@ import org.hl7.fhir.r4.model.OperationOutcome;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientException;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
 
 @Slf4j
 class TcaCohortSelector implements CohortSelector {
+  private static final Duration FIRST_LINE_TIMEOUT = Duration.ofSeconds(30);
+  private static final Duration LINE_TIMEOUT = Duration.ofSeconds(30);
+
   private final TcaCohortSelectorConfig config;
   private final WebClient tcaClient;
   private final RetryStrategy retryStrategy;
+  private final MeterRegistry meterRegistry;
+  private final FhirJsonParsers parsers;
+  private final Duration firstLineTimeout;
+  private final Duration lineTimeout;
+
+  public TcaCohortSelector(
+      TcaCohortSelectorConfig config,
+      WebClient tcaClient,
+      RetryStrategy retryStrategy,
+      MeterRegistry meterRegistry) {
+    this(config, tcaClient, retryStrategy, meterRegistry, null);
+  }
 
+  /**
+   * @param parsers parse the NDJSON lines of a streamed cohort, required if {@code
+   *     config.streaming()} is set
+   */
   public TcaCohortSelector(
-      TcaCohortSelectorConfig config, WebClient tcaClient, RetryStrategy retryStrategy) {
+      TcaCohortSelectorConfig config,
+      WebClient tcaClient,
+      RetryStrategy retryStrategy,
+      MeterRegistry meterRegistry,
+      FhirJsonParsers parsers) {
+    this(
+        config,
+        tcaClient,
+        retryStrategy,
+        meterRegistry,
+        parsers,
+        FIRST_LINE_TIMEOUT,
+        LINE_TIMEOUT);
+  }
+
+  /**
+   * @param firstLineTimeout maximum time until the first line of a streamed cohort arrives
+   * @param lineTimeout maximum time the next line of a streamed cohort may take while it is
+   *     requested
+   */
+  TcaCohortSelector(
+      TcaCohortSelectorConfig config,
+      WebClient tcaClient,
+      RetryStrategy retryStrategy,
+      MeterRegistry meterRegistry,
+      FhirJsonParsers parsers,
+      Duration firstLineTimeout,
+      Duration lineTimeout) {
+    checkArgument(!config.streaming() || parsers != null, "streaming requires FHIR parsers");
     this.config = config;
     this.tcaClient = tcaClient;
     this.retryStrategy = retryStrategy;
+    this.meterRegistry = meterRegistry;
+    this.parsers = parsers;
+    this.firstLineTimeout = firstLineTimeout;
+    this.lineTimeout = lineTimeout;
   }
 
   private String getGicsIdentifierSystem() {
@@ -50,13 +111,16 @@ class TcaCohortSelector implements CohortSelector {
             ? "/api/v2/cd/consented-patients/fetch-all"
             : "/api/v2/cd/consented-patients/fetch";
     log.trace("selectCohort: url={}, {} identifiers", url, identifiers.size());
+    if (config.streaming()) {
+      return streamCohort(url, identifiers);
+    }
 
     return fetchBundle(url, identifiers)
         .expand(bundle -> fetchNextPage(bundle, identifiers))
         .timeout(Duration.ofSeconds(30))
         .doOnNext(b -> log.debug("Found {} consented patient bundles", b.getEntry().size()))
         .doOnError(e -> log.error("Error fetching cohort: {}", e.getMessage()))
-        .onErrorResume(WebClientException.class, TcaCohortSelector::handleWebClientException)
+        .onErrorResume(WebClientException.class, TcaCohortSelector::handleCommunicationError)
         .flatMap(this::extractConsentedPatients);
   }
 
@@ -71,7 +135,64 @@ class TcaCohortSelector implements CohortSelector {
         .retrieve()
         .onStatus(r -> r.equals(BAD_REQUEST), TcaCohortSelector::handleBadRequest)
         .bodyToMono(Bundle.class)
-        .retryWhen(retryStrategy.forRequest("fetchBundle"));
+        .retryWhen(retryStrategy.forRequest("fetchBundle"))
+        .transform(TransferProcessTags.timed(meterRegistry, "transfer.cohort.page"));
+  }
+
+  /**
+   * Requests all consented patients with a single NDJSON response, every line holds the bundle of
+   * one patient. Patients are emitted as their line arrives, without waiting for a whole page.
+   *
+   * <p>A large cohort takes as long as downstream steps need to consume it, so the stream as a
+   * whole is not limited. The first line and each following line that downstream steps requested
+   * are awaited with a timeout, a stalled stream is retried from the first line not yet emitted.
+   */
+  private Flux<ConsentedPatient> streamCohort(String uri, List<String> identifiers) {
+    return retryStrategy
+        .resuming("streamCohort", () -> streamBundles(uri, identifiers))
+        .doOnError(e -> log.error("Error streaming cohort: {}", e.getMessage()))
+        .onErrorResume(
+            TcaCohortSelector::isCommunicationError, TcaCohortSelector::handleCommunicationError)
+        .mapNotNull(
+            b ->
+                processConsentedPatient(
+                        config.patientIdentifierSystem(),
+                        config.policySystem(),
+                        b,
+                        config.policies(),
+                        p -> getPatientIdentifier(getGicsIdentifierSystem(), p))
+                    .orElse(null))
+        .doOnNext(p -> log.trace("streamCohort: emitted {}", p.identifier()));
+  }
+
+  private Flux<Bundle> streamBundles(String uri, List<String> identifiers) {
+    log.debug("streamBundles URL: {}", uri);
+    var requested = new AtomicLong();
+    return tcaClient
+        .post()
+        .uri(uri)
+        .bodyValue(constructBody(config, identifiers))
+        .headers(h -> h.setContentType(APPLICATION_JSON))
+        .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_NDJSON)))
+        .retrieve()
+        .onStatus(r -> r.equals(BAD_REQUEST), TcaCohortSelector::handleBadRequest)
+        .bodyToFlux(String.class)
+        .timeout(Mono.delay(firstLineTimeout), line -> nextLineTimeout(requested))
+        .doOnNext(line -> requested.decrementAndGet())
+        .doOnRequest(n -> requested.accumulateAndGet(n, Operators::addCap))
+        .filter(line -> !line.isBlank())
+        .map(line -> parsers.apply(p -> p.parseResource(Bundle.class, line)));
+  }
+
+  /**
+   * Starts the timeout of the next line once downstream steps requested it, a slow consumer that
+   * requests no line does not time out the stream.
+   */
+  private Mono<Long> nextLineTimeout(AtomicLong requested) {
+    return Flux.interval(Duration.ZERO, lineTimeout.dividedBy(10))
+        .filter(tick -> requested.get() > 0)
+        .next()
+        .then(Mono.delay(lineTimeout));
   }
 
   private Mono<Bundle> fetchNextPage(Bundle bundle, List<String> identifiers) {
@@ -111,7 +232,13 @@ class TcaCohortSelector implements CohortSelector {
         .doOnComplete(() -> log.trace("extractConsentedPatients completed for bundle"));
   }
 
-  private static Mono<Bundle> handleWebClientException(WebClientException e) {
+  /** Failed or timed out requests, also once their retries are exhausted. */
+  private static boolean isCommunicationError(Throwable e) {
+    var cause = Exceptions.isRetryExhausted(e) ? e.getCause() : e;
+    return cause instanceof WebClientException || cause instanceof TimeoutException;
+  }
+
+  private static <T> Mono<T> handleCommunicationError(Throwable e) {
     return Mono.error(
         new TransferProcessException("Error communicating with trust center agent", e));
   }
@@ -22,7 +22,10 @@ public record TcaCohortSelectorConfig(
     String domain,
 
     /* Type of identifier used for consent signing (defaults to "Pseudonym" if not specified) */
-    String signerIdType) {
+    String signerIdType,
+
+    /* Whether consented patients are streamed as NDJSON instead of fetched page by page */
+    Boolean streaming) {
 
   public TcaCohortSelectorConfig(
       HttpClientConfig server,
@@ -30,12 +33,24 @@ public record TcaCohortSelectorConfig(
       String policySystem,
       Set<String> policies,
       String domain,
-      String signerIdType) {
+      String signerIdType,
+      Boolean streaming) {
     this.server = server;
     this.patientIdentifierSystem = patientIdentifierSystem;
     this.policySystem = policySystem;
     this.policies = policies;
     this.domain = domain;
     this.signerIdType = Optional.ofNullable(signerIdType).orElse("Pseudonym");
+    this.streaming = Boolean.TRUE.equals(streaming);
+  }
+
+  public TcaCohortSelectorConfig(
+      HttpClientConfig server,
+      String patientIdentifierSystem,
+      String policySystem,
+      Set<String> policies,
+      String domain,
+      String signerIdType) {
+    this(server, patientIdentifierSystem, policySystem, policies, domain, signerIdType, null);
   }
 }
@@ -3,6 +3,8 @@ package care.smith.fts.cda.impl;
 import care.smith.fts.api.cda.CohortSelector;
 import care.smith.fts.util.RetryStrategy;
 import care.smith.fts.util.WebClientFactory;
+import care.smith.fts.util.fhir.FhirJsonParsers;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Component;
 
 @Component("trustCenterAgentCohortSelector")
@@ -10,10 +12,18 @@ public class TcaCohortSelectorFactory implements CohortSelector.Factory<TcaCohor
 
   private final WebClientFactory clientFactory;
   private final RetryStrategy retryStrategy;
+  private final MeterRegistry meterRegistry;
+  private final FhirJsonParsers parsers;
 
-  public TcaCohortSelectorFactory(WebClientFactory clientFactory, RetryStrategy retryStrategy) {
+  public TcaCohortSelectorFactory(
+      WebClientFactory clientFactory,
+      RetryStrategy retryStrategy,
+      MeterRegistry meterRegistry,
+      FhirJsonParsers parsers) {
     this.clientFactory = clientFactory;
     this.retryStrategy = retryStrategy;
+    this.meterRegistry = meterRegistry;
+    this.parsers = parsers;
   }
 
   @Override
@@ -24,6 +34,6 @@ public class TcaCohortSelectorFactory implements CohortSelector.Factory<TcaCohor
   @Override
   public CohortSelector create(CohortSelector.Config ignored, TcaCohortSelectorConfig config) {
     var client = clientFactory.create(config.server());
-    return new TcaCohortSelector(config, client, retryStrategy);
+    return new TcaCohortSelector(config, client, retryStrategy, meterRegistry, parsers);
   }
 }
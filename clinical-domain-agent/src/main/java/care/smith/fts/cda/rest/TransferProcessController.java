@@ -115,6 +115,63 @@ public class TransferProcessController {
     }
   }
 
+  @PostMapping(
+      value = "/process/{project:[\\w-]+}/resume/{processId:[\\w-]+}",
+      produces = APPLICATION_JSON_VALUE)
+  @Operation(
+      summary = "Resume a transfer process",
+      description =
+          """
+          **Since 5.8**
+
+          Resume a transfer process that was interrupted, e.g. by a restart of the agent, or that
+           completed with errors. Patients whose bundles were all sent before are skipped. Requires
+           `runner.checkpointDirectory` to be set.
+          """,
+      parameters = {
+        @Parameter(
+            name = "project",
+            required = true,
+            schema = @Schema(implementation = String.class),
+            description = "Project name"),
+        @Parameter(
+            name = "processId",
+            required = true,
+            schema = @Schema(implementation = String.class),
+            description = "Transfer process ID")
+      },
+      responses = {
+        @ApiResponse(
+            responseCode = "202",
+            headers =
+                @Header(
+                    name = "Content-Location",
+                    description = "Link to process status",
+                    schema = @Schema(implementation = URI.class)),
+            description = "The transfer has resumed successfully"),
+        @ApiResponse(responseCode = "400", description = "The process is still running"),
+        @ApiResponse(
+            responseCode = "404",
+            description = "The project or a checkpoint of the process could not be found")
+      })
+  Mono<ResponseEntity<Object>> resume(
+      @PathVariable("project") String project,
+      @PathVariable("processId") String processId,
+      UriComponentsBuilder uriBuilder) {
+    var process = findProcess(project);
+    if (process.isEmpty()) {
+      log.warn("Project '{}' not found", project);
+      return notFound(
+          new IllegalArgumentException("Project '%s' could not be found".formatted(project)));
+    }
+    return processRunner
+        .resume(process.get(), processId)
+        .map(id -> generateJobUri(uriBuilder, id).toString())
+        .map(uri -> ResponseEntity.accepted().headers(h -> h.add("Content-Location", uri)).build())
+        .onErrorResume(IllegalStateException.class, ErrorResponseUtil::badRequest)
+        .onErrorResume(IllegalArgumentException.class, ErrorResponseUtil::notFound);
+  }
+
   private URI generateJobUri(UriComponentsBuilder uriBuilder, String id) {
     return uriBuilder.replacePath("api/v2/process/status/{id}").build(id);
   }
@@ -5,16 +5,25 @@ import static com.google.common.base.Strings.emptyToNull;
 import static java.util.Objects.requireNonNull;
 
 import care.smith.fts.api.ConsentedPatient;
+import care.smith.fts.util.RequestBatcher;
 import care.smith.fts.util.RetryStrategy;
 import care.smith.fts.util.error.TransferProcessException;
 import java.net.URI;
+import java.time.Duration;
 import java.util.List;
+import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.r4.model.Bundle.BundleLinkComponent;
 import org.hl7.fhir.r4.model.Patient;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClient.RequestHeadersSpec;
 import org.springframework.web.reactive.function.client.WebClientException;
 import org.springframework.web.util.UriBuilder;
 import reactor.core.publisher.Mono;
@@ -27,10 +36,32 @@ public class FhirResolveService implements PatientIdResolver {
 
   private final WebClient hdsClient;
   private final RetryStrategy retryStrategy;
+  private final RequestBatcher<ConsentedPatient, List<IIdType>> batcher;
 
   public FhirResolveService(WebClient hdsClient, RetryStrategy retryStrategy) {
     this.hdsClient = hdsClient;
     this.retryStrategy = retryStrategy;
+    this.batcher = null;
+  }
+
+  /**
+   * Creates a service that resolves the identifiers of up to {@code maxBatchSize} patients with one
+   * search. A batch is searched once it is full or {@code maxWait} after its first patient arrived.
+   *
+   * @param concurrency maximum number of concurrent searches
+   */
+  public FhirResolveService(
+      WebClient hdsClient,
+      RetryStrategy retryStrategy,
+      int maxBatchSize,
+      Duration maxWait,
+      int concurrency) {
+    this.hdsClient = hdsClient;
+    this.retryStrategy = retryStrategy;
+    this.batcher =
+        maxBatchSize > 1
+            ? new RequestBatcher<>(maxBatchSize, maxWait, concurrency, this::resolveBatch)
+            : null;
   }
 
   /**
@@ -43,9 +74,69 @@ public class FhirResolveService implements PatientIdResolver {
   @Override
   public Mono<IIdType> resolve(ConsentedPatient patient) {
     log.trace("resolve patient identifier {}", patient.identifier());
+    if (batcher != null) {
+      requireNonNull(
+          emptyToNull(patient.identifier()), "patient identifier must not be null or empty");
+      return batcher.submit(patient).map(ids -> singleId(ids, patient.identifier()));
+    }
     return this.resolveFromPatient(patient).map(IBaseResource::getIdElement);
   }
 
+  private static IIdType singleId(List<IIdType> ids, String patientIdentifier) {
+    if (ids.isEmpty()) {
+      var msg = "Unable to resolve patient identifier %s";
+      throw new IllegalStateException(msg.formatted(patientIdentifier));
+    } else if (ids.size() > 1) {
+      var errMsg = "Received more then one result while resolving patient identifier %s";
+      throw new IllegalStateException(errMsg.formatted(patientIdentifier));
+    }
+    log.trace(RESOLVED_MSG, patientIdentifier, ids.getFirst().getIdPart());
+    return ids.getFirst();
+  }
+
+  /**
+   * Searches the patients of a batch with one {@code identifier} search listing all their
+   * identifiers, and follows the result pages. The search is posted as a form to {@code
+   * Patient/_search}, as a long identifier list exceeds the request line limit of servers.
+   *
+   * @return the IDs of the patients matching each identifier, in the order of {@code patients}
+   */
+  private Mono<List<List<IIdType>>> resolveBatch(List<ConsentedPatient> patients) {
+    log.trace("resolve batch of {} patient identifiers", patients.size());
+    var identifiers = patients.stream().map(FhirResolveService::escapedIdentifierParam).distinct();
+    var search = String.join(",", identifiers.toList());
+    var count = patients.size();
+    var form = new LinkedMultiValueMap<String, String>();
+    form.add("identifier", search);
+    form.add("_count", String.valueOf(count));
+    return searchBundle(form)
+        .expand(this::fetchNextPage)
+        .flatMapIterable(Bundle::getEntry)
+        .map(BundleEntryComponent::getResource)
+        .ofType(Patient.class)
+        .collectList()
+        .map(found -> patients.stream().map(p -> idsOf(found, p)).toList());
+  }
+
+  private Mono<Bundle> fetchNextPage(Bundle bundle) {
+    return Mono.justOrEmpty(bundle.getLink("next"))
+        .map(BundleLinkComponent::getUrl)
+        .flatMap(url -> fetchBundle(url, UriBuilder::build));
+  }
+
+  private static List<IIdType> idsOf(List<Patient> found, ConsentedPatient patient) {
+    return found.stream()
+        .filter(
+            p ->
+                p.getIdentifier().stream()
+                    .anyMatch(
+                        i ->
+                            patient.patientIdentifierSystem().equals(i.getSystem())
+                                && patient.identifier().equals(i.getValue())))
+        .<IIdType>map(Patient::getIdElement)
+        .toList();
+  }
+
   private Mono<IBaseResource> resolveFromPatient(ConsentedPatient patient) {
     requireNonNull(
         emptyToNull(patient.identifier()), "patient identifier must not be null or empty");
@@ -59,10 +150,28 @@ public class FhirResolveService implements PatientIdResolver {
 
   private Mono<Bundle> fetchPatientBundle(ConsentedPatient patient) {
     log.trace("fetchPatientBundle {}", patient);
-    return hdsClient
-        .get()
-        .uri("/Patient", uri -> buildUri(patient, uri))
-        .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_JSON)))
+    return fetchBundle("/Patient", uri -> buildUri(patient, uri));
+  }
+
+  private Mono<Bundle> fetchBundle(String url, Function<UriBuilder, URI> uriFunction) {
+    return retrieveBundle(
+        hdsClient
+            .get()
+            .uri(url, uriFunction)
+            .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_JSON))));
+  }
+
+  private Mono<Bundle> searchBundle(MultiValueMap<String, String> form) {
+    return retrieveBundle(
+        hdsClient
+            .post()
+            .uri("/Patient/_search")
+            .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_JSON)))
+            .body(BodyInserters.fromFormData(form)));
+  }
+
+  private Mono<Bundle> retrieveBundle(RequestHeadersSpec<?> request) {
+    return request
         .retrieve()
         .bodyToMono(Bundle.class)
         .retryWhen(retryStrategy.forRequest("fetchPatientBundleResolvePID"))
@@ -73,11 +182,24 @@ public class FhirResolveService implements PatientIdResolver {
   }
 
   private URI buildUri(ConsentedPatient patient, UriBuilder uri) {
-    var identifierParam = patient.patientIdentifierSystem() + "|" + patient.identifier();
+    var identifierParam = identifierParam(patient);
     log.trace("buildUri: identifier={}", identifierParam);
     return uri.queryParam("identifier", identifierParam).build();
   }
 
+  private static String identifierParam(ConsentedPatient patient) {
+    return patient.patientIdentifierSystem() + "|" + patient.identifier();
+  }
+
+  /** Escapes the separators of FHIR search parameter values, so several can be combined. */
+  private static String escapedIdentifierParam(ConsentedPatient patient) {
+    return escape(patient.patientIdentifierSystem()) + "|" + escape(patient.identifier());
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace(",", "\\,").replace("|", "\\|").replace("$", "\\$");
+  }
+
   private void checkSinglePatient(Bundle patients, String patientIdentifier) {
     if (patients.getEntry().size() != 1) {
       var logMsg = "Expected single patient for identifier {}, got {}";
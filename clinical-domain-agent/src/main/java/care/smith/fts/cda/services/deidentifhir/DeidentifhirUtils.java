@@ -2,13 +2,18 @@ package care.smith.fts.cda.services.deidentifhir;
 
 import static care.smith.fts.util.deidentifhir.DateShiftConstants.DATE_SHIFT_EXTENSION_URL;
 
+import care.smith.fts.util.deidentifhir.DeidentifhirEngine;
+import care.smith.fts.util.deidentifhir.ThreadBoundReplacementProvider;
 import com.typesafe.config.Config;
 import de.ume.deidentifhir.Deidentifhir;
 import de.ume.deidentifhir.Registry;
 import de.ume.deidentifhir.util.Handlers;
+import de.ume.deidentifhir.util.IDReplacementProvider;
+import de.ume.deidentifhir.util.IdentifierValueReplacementProvider;
 import de.ume.deidentifhir.util.JavaCompat;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import java.util.function.Supplier;
 import org.hl7.fhir.r4.model.Base;
 import org.hl7.fhir.r4.model.BaseDateTimeType;
 import org.hl7.fhir.r4.model.Bundle;
@@ -28,6 +33,23 @@ public interface DeidentifhirUtils {
    * @return configured registry for deidentification
    */
   static Registry buildRegistry(GeneratingReplacementProvider provider) {
+    return buildRegistry(provider, () -> provider);
+  }
+
+  /**
+   * Builds a registry whose handlers forward to the provider bound at deidentification time, see
+   * {@link #compile(Config)}.
+   *
+   * @param provider the thread bound replacement provider
+   * @return configured registry for deidentification
+   */
+  static Registry buildRegistry(
+      ThreadBoundReplacementProvider<GeneratingReplacementProvider> provider) {
+    return buildRegistry(provider, provider::current);
+  }
+
+  private static <P extends IDReplacementProvider & IdentifierValueReplacementProvider>
+      Registry buildRegistry(P provider, Supplier<GeneratingReplacementProvider> dateProvider) {
     Registry registry = new Registry();
     registry.addHander("postalCodeHandler", Handlers.generalizePostalCodeHandler().get());
     registry.addHander(
@@ -55,11 +77,22 @@ public interface DeidentifhirUtils {
     registry.addHander(
         "shiftDateHandler",
         (Function4<Seq<String>, BaseDateTimeType, Seq<Base>, Map<String, String>, BaseDateTimeType>)
-            (path, date, parents, context) -> shiftDate(date, provider));
+            (path, date, parents, context) -> shiftDate(date, dateProvider.get()));
 
     return registry;
   }
 
+  /**
+   * Compiles the deidentifhir profile once. The returned engine is reused for all patients of a
+   * project, only the {@link GeneratingReplacementProvider} is bound per patient.
+   *
+   * @param config the deidentifhir profile
+   * @return compiled deidentifhir engine
+   */
+  static DeidentifhirEngine<GeneratingReplacementProvider> compile(Config config) {
+    return new DeidentifhirEngine<>(config, DeidentifhirUtils::buildRegistry);
+  }
+
   /**
    * Generates a tID for the date value, adds extension with tID, and nulls the original value.
    *
@@ -92,4 +125,19 @@ public interface DeidentifhirUtils {
     sample.stop(meterRegistry.timer("deidentify"));
     return deidentified;
   }
+
+  static Bundle deidentify(
+      DeidentifhirEngine<GeneratingReplacementProvider> engine,
+      GeneratingReplacementProvider provider,
+      Bundle bundle,
+      String patientIdentifier,
+      MeterRegistry meterRegistry) {
+    var sample = Timer.start(meterRegistry);
+
+    Map<String, String> staticContext =
+        new Map.Map1<>(Handlers.patientIdentifierKey(), patientIdentifier);
+    var deidentified = engine.deidentify(bundle, provider, staticContext);
+    sample.stop(meterRegistry.timer("deidentify"));
+    return deidentified;
+  }
 }
@@ -14,18 +14,28 @@ import care.smith.fts.api.cda.DataSelector;
 import care.smith.fts.api.cda.Deidentificator;
 import care.smith.fts.cda.TransferProcessRunner.Phase;
 import care.smith.fts.cda.TransferProcessRunner.Step;
+import care.smith.fts.util.AdaptiveConcurrencyLimiter;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 import org.hl7.fhir.r4.model.Bundle;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -45,17 +55,18 @@ class DefaultTransferProcessRunnerTest {
       new ConsentedPatient(PATIENT_IDENTIFIER_3, "system");
 
   private DefaultTransferProcessRunner runner;
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
   private final TransferProcessRunnerConfig config;
   private final TransferProcessConfig rawConfig = new TransferProcessConfig(null, null, null, null);
 
   DefaultTransferProcessRunnerTest() {
-    config = new TransferProcessRunnerConfig(64, 64, 2, 4, Duration.ofSeconds(3));
+    config = new TransferProcessRunnerConfig(64, 64, null, null, 2, 4, Duration.ofSeconds(3));
   }
 
   @BeforeEach
   void setUp() {
-    runner = new DefaultTransferProcessRunner(new ObjectMapper(), config);
+    runner = new DefaultTransferProcessRunner(new ObjectMapper(), config, meterRegistry);
   }
 
   @Test
@@ -79,6 +90,39 @@ class DefaultTransferProcessRunnerTest {
         .verifyComplete();
   }
 
+  @Test
+  void stageMetricsAreTaggedWithProjectAndProcess() {
+    var bundle = new Bundle();
+    bundle.addEntry();
+    bundle.addEntry();
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            rawConfig,
+            pids -> fromIterable(List.of(PATIENT)),
+            p ->
+                fromIterable(
+                    List.of(
+                        new ConsentedPatientBundle(bundle, PATIENT),
+                        new ConsentedPatientBundle(bundle, PATIENT))),
+            b -> just(new TransportBundle(new Bundle(), "transferId")),
+            b -> just(new Result()));
+
+    runner.start(process, List.of());
+
+    var pages = meterRegistry.find("transfer.select.data.pages").tag("project", "test").summary();
+    assertThat(pages).isNotNull();
+    assertThat(pages.totalAmount()).isEqualTo(2);
+    var resources = meterRegistry.get("transfer.bundle.resources").tag("project", "test");
+    assertThat(resources.summary().totalAmount()).isEqualTo(4);
+    var send = meterRegistry.get("transfer.send").tag("project", "test").timer();
+    assertThat(send.count()).isEqualTo(2);
+    var inFlight = meterRegistry.get("transfer.in.flight").tag("stage", "send").gauge();
+    assertThat(inFlight.value()).isZero();
+    var sendLimit = meterRegistry.get("transfer.send.limit").tag("project", "test").gauge();
+    assertThat(sendLimit.value()).isBetween(1.0, 64.0);
+  }
+
   @Test
   void errorInCohortSelectorIsFatal() {
     var process =
@@ -217,7 +261,8 @@ class DefaultTransferProcessRunnerTest {
 
   @Test
   void ttl() throws InterruptedException {
-    var config = new TransferProcessRunnerConfig(64, 64, 2, 4, Duration.ofMillis(100));
+    var config =
+        new TransferProcessRunnerConfig(64, 64, null, null, 2, 4, Duration.ofMillis(100));
     var process =
         new TransferProcessDefinition(
             "test",
@@ -226,7 +271,7 @@ class DefaultTransferProcessRunnerTest {
             p -> fromIterable(List.of(new ConsentedPatientBundle(new Bundle(), PATIENT))),
             b -> just(new TransportBundle(new Bundle(), "transferId")),
             b -> just(new Result()));
-    var runner = new DefaultTransferProcessRunner(new ObjectMapper(), config);
+    var runner = new DefaultTransferProcessRunner(new ObjectMapper(), config, meterRegistry);
     runner.start(process, List.of());
     runner.start(process, List.of());
 
@@ -572,8 +617,9 @@ class DefaultTransferProcessRunnerTest {
     int patientCount = 10;
     int maxSend = 2;
 
-    var cfg = new TransferProcessRunnerConfig(8, maxSend, 1, 4, Duration.ofSeconds(10));
-    var boundedRunner = new DefaultTransferProcessRunner(new ObjectMapper(), cfg);
+    var cfg =
+        new TransferProcessRunnerConfig(8, maxSend, null, null, 1, 4, Duration.ofSeconds(10));
+    var boundedRunner = new DefaultTransferProcessRunner(new ObjectMapper(), cfg, meterRegistry);
 
     var inFlight = new AtomicInteger(0);
     var peakInFlight = new AtomicInteger(0);
@@ -607,12 +653,53 @@ class DefaultTransferProcessRunnerTest {
     assertThat(peakInFlight.get()).isLessThanOrEqualTo(maxSend);
   }
 
+  @Test
+  void overloadedSendsKeepSendConcurrencyAtMinimum() {
+    var cfg = new TransferProcessRunnerConfig(8, 8, 1, null, 1, 4, Duration.ofSeconds(10));
+    var adaptiveRunner = new DefaultTransferProcessRunner(new ObjectMapper(), cfg, meterRegistry);
+
+    var inFlight = new AtomicInteger(0);
+    var peakInFlight = new AtomicInteger(0);
+
+    var patients =
+        IntStream.range(0, 10)
+            .mapToObj(i -> new ConsentedPatient("patient-" + i, "system"))
+            .toList();
+
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            rawConfig,
+            pids -> fromIterable(patients),
+            p -> fromIterable(List.of(new ConsentedPatientBundle(new Bundle(), p))),
+            b -> just(new TransportBundle(new Bundle(), "transferId")),
+            b ->
+                AdaptiveConcurrencyLimiter.limit(
+                    Mono.deferContextual(
+                        ctx -> {
+                          AdaptiveConcurrencyLimiter.overloaded(ctx);
+                          int current = inFlight.incrementAndGet();
+                          peakInFlight.updateAndGet(peak -> Math.max(peak, current));
+                          return Mono.just(new Result())
+                              .delayElement(Duration.ofMillis(20))
+                              .doOnNext(r -> inFlight.decrementAndGet());
+                        })));
+
+    var processId = adaptiveRunner.start(process, List.of());
+    waitForCompletion(adaptiveRunner, processId);
+
+    assertThat(peakInFlight.get()).isEqualTo(1);
+    var sendLimit = meterRegistry.get("transfer.send.limit").tag("project", "test").gauge();
+    assertThat(sendLimit.value()).isEqualTo(1.0);
+  }
+
   @Test
   void serializedConcurrencyTransfersEveryPatient() {
     int patientCount = 5;
 
-    var cfg = new TransferProcessRunnerConfig(1, 1, 1, 4, Duration.ofSeconds(10));
-    var serializedRunner = new DefaultTransferProcessRunner(new ObjectMapper(), cfg);
+    var cfg = new TransferProcessRunnerConfig(1, 1, null, null, 1, 4, Duration.ofSeconds(10));
+    var serializedRunner =
+        new DefaultTransferProcessRunner(new ObjectMapper(), cfg, meterRegistry);
 
     var inFlight = new AtomicInteger(0);
     var peakInFlight = new AtomicInteger(0);
@@ -653,6 +740,154 @@ class DefaultTransferProcessRunnerTest {
     waitForCompletion(runner, processId);
   }
 
+  @Test
+  void resumeSkipsSentPatients(@TempDir Path directory) {
+    var checkpoints = new FileCheckpointStore(directory);
+    var checkpointRunner =
+        new DefaultTransferProcessRunner(new ObjectMapper(), config, meterRegistry, checkpoints);
+    var failSecond = new AtomicBoolean(true);
+    var sent = new CopyOnWriteArrayList<String>();
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            rawConfig,
+            pids -> fromIterable(List.of(PATIENT, PATIENT_2)),
+            p -> fromIterable(List.of(new ConsentedPatientBundle(new Bundle(), p))),
+            b -> just(new TransportBundle(new Bundle(), b.consentedPatient().identifier())),
+            b ->
+                failSecond.get() && b.transferId().equals(PATIENT_IDENTIFIER_2)
+                    ? Mono.error(new RuntimeException("Cannot send bundle"))
+                    : Mono.fromRunnable(() -> sent.add(b.transferId())).thenReturn(new Result()));
+
+    var processId = checkpointRunner.start(process, List.of());
+    waitForCompletion(checkpointRunner, processId);
+    assertThat(sent).containsExactly(PATIENT_IDENTIFIER);
+
+    failSecond.set(false);
+    create(checkpointRunner.resume(process, processId)).expectNext(processId).verifyComplete();
+    waitForCompletion(checkpointRunner, processId);
+
+    assertThat(sent).containsExactly(PATIENT_IDENTIFIER, PATIENT_IDENTIFIER_2);
+    create(checkpointRunner.status(processId))
+        .assertNext(s -> assertThat(s.phase()).isEqualTo(Phase.COMPLETED))
+        .verifyComplete();
+    assertThat(checkpoints.load(processId)).isEmpty();
+  }
+
+  @Test
+  void patientWithFailedBundleIsNotCheckpointed(@TempDir Path directory) {
+    var checkpoints = new FileCheckpointStore(directory);
+    var checkpointRunner =
+        new DefaultTransferProcessRunner(new ObjectMapper(), config, meterRegistry, checkpoints);
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            rawConfig,
+            pids -> fromIterable(List.of(PATIENT)),
+            p ->
+                fromIterable(
+                    List.of(
+                        new ConsentedPatientBundle(new Bundle(), p),
+                        new ConsentedPatientBundle(new Bundle(), p))),
+            b -> just(new TransportBundle(new Bundle(), "transferId")),
+            new BundleSender() {
+              private final AtomicInteger calls = new AtomicInteger();
+
+              @Override
+              public Mono<Result> send(TransportBundle bundle) {
+                return calls.incrementAndGet() == 1
+                    ? Mono.just(new Result())
+                    : Mono.error(new RuntimeException("Cannot send bundle"));
+              }
+            });
+
+    var processId = checkpointRunner.start(process, List.of());
+    waitForCompletion(checkpointRunner, processId);
+
+    assertThat(checkpoints.load(processId))
+        .hasValueSatisfying(c -> assertThat(c.sentPatients()).isEmpty());
+  }
+
+  @Test
+  void startupRemovesStaleCheckpoints(@TempDir Path directory) throws IOException {
+    var checkpoints = new FileCheckpointStore(directory);
+    checkpoints.started("stale", "test", List.of());
+    checkpoints.close("stale");
+    Files.setLastModifiedTime(
+        directory.resolve("stale.checkpoint"), FileTime.from(Instant.now().minusSeconds(60)));
+    checkpoints.started("recent", "test", List.of());
+    checkpoints.close("recent");
+
+    new DefaultTransferProcessRunner(new ObjectMapper(), config, meterRegistry, checkpoints);
+
+    assertThat(checkpoints.load("stale")).isEmpty();
+    assertThat(checkpoints.load("recent")).isPresent();
+  }
+
+  @Test
+  void resumeWithoutCheckpointErrors() {
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            rawConfig,
+            pids -> fromIterable(List.of(PATIENT)),
+            p -> fromIterable(List.of(new ConsentedPatientBundle(new Bundle(), PATIENT))),
+            b -> just(new TransportBundle(new Bundle(), "transferId")),
+            b -> just(new Result()));
+
+    create(runner.resume(process, "unknown"))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+  }
+
+  @Test
+  void resumeRunningProcessErrors(@TempDir Path directory) {
+    var checkpointRunner =
+        new DefaultTransferProcessRunner(
+            new ObjectMapper(), config, meterRegistry, new FileCheckpointStore(directory));
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            rawConfig,
+            pids -> fromIterable(List.of(PATIENT)),
+            p -> fromIterable(List.of(new ConsentedPatientBundle(new Bundle(), PATIENT))),
+            b -> just(new TransportBundle(new Bundle(), "transferId")),
+            b -> Mono.never());
+
+    var processId = checkpointRunner.start(process, List.of());
+
+    create(checkpointRunner.resume(process, processId))
+        .expectError(IllegalStateException.class)
+        .verify();
+  }
+
+  @Test
+  void recordsLastTransferOfSentPatientsOnly(@TempDir Path directory) {
+    var lastTransfers = new FileLastTransferStore(directory);
+    var lastTransferRunner =
+        new DefaultTransferProcessRunner(
+            new ObjectMapper(), config, meterRegistry, CheckpointStore.disabled(), lastTransfers);
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            rawConfig,
+            pids -> fromIterable(List.of(PATIENT, PATIENT_2)),
+            p -> fromIterable(List.of(new ConsentedPatientBundle(new Bundle(), p))),
+            b -> just(new TransportBundle(new Bundle(), b.consentedPatient().identifier())),
+            b ->
+                b.transferId().equals(PATIENT_IDENTIFIER_2)
+                    ? Mono.error(new RuntimeException("Cannot send bundle"))
+                    : Mono.just(new Result()));
+    var before = Instant.now();
+
+    var processId = lastTransferRunner.start(process, List.of());
+    waitForCompletion(lastTransferRunner, processId);
+
+    assertThat(lastTransfers.lastTransfer("test", PATIENT_IDENTIFIER, ""))
+        .hasValueSatisfying(t -> assertThat(t).isBetween(before, Instant.now()));
+    assertThat(lastTransfers.lastTransfer("test", PATIENT_IDENTIFIER_2, "")).isEmpty();
+  }
+
   private void waitForCompletion(DefaultTransferProcessRunner r, String processId) {
     Flux.interval(Duration.ofMillis(10))
         .flatMap(i -> r.status(processId))
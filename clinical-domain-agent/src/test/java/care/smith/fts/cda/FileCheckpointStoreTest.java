@@ -0,0 +1,138 @@
+package care.smith.fts.cda;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileCheckpointStoreTest {
+
+  @TempDir Path directory;
+
+  private FileCheckpointStore store;
+
+  @BeforeEach
+  void setUp() {
+    store = new FileCheckpointStore(directory.resolve("checkpoints"));
+  }
+
+  @Test
+  void loadsSentPatients() {
+    store.started("process-1", "example", List.of("patient-1", "patient-2"));
+    store.patientSent("process-1", "patient-1");
+    store.close("process-1");
+
+    assertThat(store.load("process-1"))
+        .hasValueSatisfying(
+            c -> {
+              assertThat(c.project()).isEqualTo("example");
+              assertThat(c.identifiers()).containsExactly("patient-1", "patient-2");
+              assertThat(c.sentPatients()).containsExactly("patient-1");
+            });
+  }
+
+  @Test
+  void appendsAfterResume() {
+    store.started("process-1", "example", List.of());
+    store.patientSent("process-1", "patient-1");
+    store.close("process-1");
+
+    var resumed = new FileCheckpointStore(directory.resolve("checkpoints"));
+    resumed.patientSent("process-1", "patient-2");
+
+    assertThat(resumed.load("process-1"))
+        .hasValueSatisfying(
+            c -> assertThat(c.sentPatients()).containsExactlyInAnyOrder("patient-1", "patient-2"));
+  }
+
+  @Test
+  void startReplacesCheckpoint() {
+    store.started("process-1", "example", List.of());
+    store.patientSent("process-1", "patient-1");
+    store.started("process-1", "other", List.of());
+
+    assertThat(store.load("process-1"))
+        .hasValueSatisfying(
+            c -> {
+              assertThat(c.project()).isEqualTo("other");
+              assertThat(c.sentPatients()).isEmpty();
+            });
+  }
+
+  @Test
+  void ignoresIncompleteLine() throws IOException {
+    store.started("process-1", "example", List.of());
+    store.patientSent("process-1", "patient-1");
+    store.close("process-1");
+    var file = directory.resolve("checkpoints/process-1.checkpoint");
+    Files.writeString(file, "\"pati", UTF_8, APPEND);
+
+    assertThat(store.load("process-1"))
+        .hasValueSatisfying(c -> assertThat(c.sentPatients()).containsExactly("patient-1"));
+  }
+
+  @Test
+  void removeDeletesCheckpoint() {
+    store.started("process-1", "example", List.of());
+    store.remove("process-1");
+
+    assertThat(store.load("process-1")).isEmpty();
+  }
+
+  @Test
+  void removeOlderThanDeletesStaleCheckpoints() throws IOException {
+    var now = Instant.now();
+    store.started("stale", "example", List.of());
+    store.close("stale");
+    Files.setLastModifiedTime(
+        directory.resolve("checkpoints/stale.checkpoint"),
+        FileTime.from(now.minus(Duration.ofDays(2))));
+    store.started("recent", "example", List.of());
+    store.close("recent");
+
+    store.removeOlderThan(now.minus(Duration.ofDays(1)), Set.of());
+
+    assertThat(store.load("stale")).isEmpty();
+    assertThat(store.load("recent")).isPresent();
+  }
+
+  @Test
+  void removeOlderThanKeepsOpenAndKeptCheckpoints() throws IOException {
+    var old = FileTime.from(Instant.now().minus(Duration.ofDays(2)));
+    store.started("open", "example", List.of());
+    Files.setLastModifiedTime(directory.resolve("checkpoints/open.checkpoint"), old);
+    store.started("kept", "example", List.of());
+    store.close("kept");
+    Files.setLastModifiedTime(directory.resolve("checkpoints/kept.checkpoint"), old);
+
+    store.removeOlderThan(Instant.now(), Set.of("kept"));
+
+    assertThat(store.load("open")).isPresent();
+    assertThat(store.load("kept")).isPresent();
+  }
+
+  @Test
+  void unknownProcessHasNoCheckpoint() {
+    assertThat(store.load("unknown")).isEmpty();
+  }
+
+  @Test
+  void disabledStoreHasNoCheckpoint() {
+    var disabled = CheckpointStore.disabled();
+    disabled.started("process-1", "example", List.of());
+    disabled.patientSent("process-1", "patient-1");
+
+    assertThat(disabled.load("process-1")).isEmpty();
+  }
+}
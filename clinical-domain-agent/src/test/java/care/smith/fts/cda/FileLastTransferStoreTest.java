@@ -0,0 +1,134 @@
+package care.smith.fts.cda;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileLastTransferStoreTest {
+
+  private static final Instant FIRST = Instant.parse("2026-01-01T10:00:00Z");
+  private static final Instant SECOND = Instant.parse("2026-01-02T10:00:00Z");
+  private static final String CONSENT = "2026-01-01T00:00:00Z/2031-01-01T00:00:00Z";
+
+  @TempDir Path directory;
+
+  private FileLastTransferStore store;
+
+  @BeforeEach
+  void setUp() {
+    store = new FileLastTransferStore(directory.resolve("transfers"));
+  }
+
+  @Test
+  void returnsLastTransfer() {
+    store.transferred("example", "patient-1", FIRST, CONSENT);
+
+    assertThat(store.lastTransfer("example", "patient-1", CONSENT)).hasValue(FIRST);
+  }
+
+  @Test
+  void unknownPatientHasNoLastTransfer() {
+    store.transferred("example", "patient-1", FIRST, CONSENT);
+
+    assertThat(store.lastTransfer("example", "patient-2", CONSENT)).isEmpty();
+    assertThat(store.lastTransfer("other", "patient-1", CONSENT)).isEmpty();
+  }
+
+  @Test
+  void keepsLatestTransfer() {
+    store.transferred("example", "patient-1", SECOND, CONSENT);
+    store.transferred("example", "patient-1", FIRST, CONSENT);
+
+    assertThat(store.lastTransfer("example", "patient-1", CONSENT)).hasValue(SECOND);
+  }
+
+  @Test
+  void loadsTransfersOfPreviousRun() {
+    store.transferred("example", "patient-1", FIRST, CONSENT);
+    store.transferred("example", "patient-1", SECOND, CONSENT);
+    store.transferred("example", "patient-2", FIRST, CONSENT);
+
+    var restarted = new FileLastTransferStore(directory.resolve("transfers"));
+
+    assertThat(restarted.lastTransfer("example", "patient-1", CONSENT)).hasValue(SECOND);
+    assertThat(restarted.lastTransfer("example", "patient-2", CONSENT)).hasValue(FIRST);
+  }
+
+  @Test
+  void compactsFileOnLoad() throws IOException {
+    store.transferred("example", "patient-1", FIRST, CONSENT);
+    store.transferred("example", "patient-1", SECOND, CONSENT);
+
+    new FileLastTransferStore(directory.resolve("transfers"))
+        .lastTransfer("example", "patient-1", CONSENT);
+
+    assertThat(Files.readAllLines(directory.resolve("transfers/example.transfers"))).hasSize(1);
+  }
+
+  @Test
+  void ignoresIncompleteLine() throws IOException {
+    store.transferred("example", "patient-1", FIRST, CONSENT);
+    var file = directory.resolve("transfers/example.transfers");
+    Files.writeString(file, "{\"patient\":\"pati", UTF_8, APPEND);
+
+    var restarted = new FileLastTransferStore(directory.resolve("transfers"));
+
+    assertThat(restarted.lastTransfer("example", "patient-1", CONSENT)).hasValue(FIRST);
+  }
+
+  @Test
+  void changedConsentHasNoLastTransfer() {
+    store.transferred("example", "patient-1", FIRST, CONSENT);
+
+    assertThat(store.lastTransfer("example", "patient-1", "")).isEmpty();
+  }
+
+  @Test
+  void keepsConsentOfLatestTransfer() {
+    store.transferred("example", "patient-1", SECOND, CONSENT);
+    store.transferred("example", "patient-1", FIRST, "");
+
+    var restarted = new FileLastTransferStore(directory.resolve("transfers"));
+
+    assertThat(restarted.lastTransfer("example", "patient-1", CONSENT)).hasValue(SECOND);
+  }
+
+  @Test
+  void lineWithoutConsentHasNoLastTransfer() throws IOException {
+    Files.createDirectories(directory.resolve("transfers"));
+    Files.writeString(
+        directory.resolve("transfers/example.transfers"),
+        "{\"patient\":\"patient-1\",\"time\":\"2026-01-01T10:00:00Z\"}\n");
+
+    assertThat(store.lastTransfer("example", "patient-1", CONSENT)).isEmpty();
+  }
+
+  @Test
+  void closedStoreReopensFileOnTransfer() {
+    store.transferred("example", "patient-1", FIRST, CONSENT);
+    store.close();
+    store.transferred("example", "patient-2", FIRST, CONSENT);
+    store.close();
+
+    var restarted = new FileLastTransferStore(directory.resolve("transfers"));
+
+    assertThat(restarted.lastTransfer("example", "patient-1", CONSENT)).hasValue(FIRST);
+    assertThat(restarted.lastTransfer("example", "patient-2", CONSENT)).hasValue(FIRST);
+  }
+
+  @Test
+  void disabledStoreHasNoLastTransfer() {
+    var disabled = LastTransferStore.disabled();
+    disabled.transferred("example", "patient-1", FIRST, CONSENT);
+
+    assertThat(disabled.lastTransfer("example", "patient-1", CONSENT)).isEmpty();
+  }
+}
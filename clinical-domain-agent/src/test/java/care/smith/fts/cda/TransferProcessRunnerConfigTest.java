@@ -1,6 +1,7 @@
 package care.smith.fts.cda;
 
 import static care.smith.fts.cda.TransferProcessRunnerConfig.DEFAULT_COHORT_SELECTION_CONCURRENCY;
+import static care.smith.fts.cda.TransferProcessRunnerConfig.DEFAULT_SEND_LATENCY_TOLERANCE;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -11,7 +12,7 @@ class TransferProcessRunnerConfigTest {
 
   @Test
   void bindsWhenSendConcurrencyWithinPrefetchWindow() {
-    var config = new TransferProcessRunnerConfig(8, 2, 4, 4, Duration.ofDays(1));
+    var config = new TransferProcessRunnerConfig(8, 2, null, null, 4, 4, Duration.ofDays(1));
     assertThat(config.maxConcurrentPatients()).isEqualTo(8);
     assertThat(config.maxSendConcurrency()).isEqualTo(2);
     assertThat(config.cohortSelectionConcurrency()).isEqualTo(4);
@@ -19,56 +20,97 @@ class TransferProcessRunnerConfigTest {
 
   @Test
   void failsWhenSendConcurrencyExceedsPrefetchWindow() {
-    assertThatThrownBy(() -> new TransferProcessRunnerConfig(2, 8, 4, 4, Duration.ofDays(1)))
+    assertThatThrownBy(
+            () -> new TransferProcessRunnerConfig(2, 8, null, null, 4, 4, Duration.ofDays(1)))
         .isInstanceOf(IllegalArgumentException.class)
         .hasMessageContaining("maxSendConcurrency must not exceed runner.maxConcurrentPatients");
   }
 
   @Test
   void bindsWhenSendConcurrencyIsOne() {
-    var config = new TransferProcessRunnerConfig(8, 1, 4, 4, Duration.ofDays(1));
+    var config = new TransferProcessRunnerConfig(8, 1, null, null, 4, 4, Duration.ofDays(1));
     assertThat(config.maxSendConcurrency()).isEqualTo(1);
   }
 
   @Test
   void bindsWhenPrefetchWindowIsOne() {
-    var config = new TransferProcessRunnerConfig(1, 1, 4, 4, Duration.ofDays(1));
+    var config = new TransferProcessRunnerConfig(1, 1, null, null, 4, 4, Duration.ofDays(1));
     assertThat(config.maxConcurrentPatients()).isEqualTo(1);
     assertThat(config.maxSendConcurrency()).isEqualTo(1);
   }
 
   @Test
   void failsWhenMaxConcurrentPatientsIsZeroOrNegative() {
-    assertThatThrownBy(() -> new TransferProcessRunnerConfig(0, 2, 4, 4, Duration.ofDays(1)))
+    assertThatThrownBy(
+            () -> new TransferProcessRunnerConfig(0, 2, null, null, 4, 4, Duration.ofDays(1)))
         .isInstanceOf(IllegalArgumentException.class)
         .hasMessageContaining("maxConcurrentPatients must be greater than 0");
-    assertThatThrownBy(() -> new TransferProcessRunnerConfig(-1, 2, 4, 4, Duration.ofDays(1)))
+    assertThatThrownBy(
+            () -> new TransferProcessRunnerConfig(-1, 2, null, null, 4, 4, Duration.ofDays(1)))
         .isInstanceOf(IllegalArgumentException.class)
         .hasMessageContaining("maxConcurrentPatients must be greater than 0");
   }
 
   @Test
   void failsWhenMaxSendConcurrencyIsZeroOrNegative() {
-    assertThatThrownBy(() -> new TransferProcessRunnerConfig(8, 0, 4, 4, Duration.ofDays(1)))
+    assertThatThrownBy(
+            () -> new TransferProcessRunnerConfig(8, 0, null, null, 4, 4, Duration.ofDays(1)))
         .isInstanceOf(IllegalArgumentException.class)
         .hasMessageContaining("maxSendConcurrency must be greater than 0");
-    assertThatThrownBy(() -> new TransferProcessRunnerConfig(8, -1, 4, 4, Duration.ofDays(1)))
+    assertThatThrownBy(
+            () -> new TransferProcessRunnerConfig(8, -1, null, null, 4, 4, Duration.ofDays(1)))
         .isInstanceOf(IllegalArgumentException.class)
         .hasMessageContaining("maxSendConcurrency must be greater than 0");
   }
 
+  @Test
+  void sendConcurrencyIsFixedWhenMinSendConcurrencyIsNull() {
+    var config = new TransferProcessRunnerConfig(8, 2, null, null, 4, 4, Duration.ofDays(1));
+    assertThat(config.minSendConcurrency()).isEqualTo(2);
+    assertThat(config.sendLatencyTolerance()).isEqualTo(DEFAULT_SEND_LATENCY_TOLERANCE);
+  }
+
+  @Test
+  void bindsWhenMinSendConcurrencyEqualsMax() {
+    var config = new TransferProcessRunnerConfig(8, 4, 4, 3.0, 4, 4, Duration.ofDays(1));
+    assertThat(config.minSendConcurrency()).isEqualTo(4);
+    assertThat(config.sendLatencyTolerance()).isEqualTo(3.0);
+  }
+
+  @Test
+  void failsWhenMinSendConcurrencyIsOutOfRange() {
+    assertThatThrownBy(
+            () -> new TransferProcessRunnerConfig(8, 2, 0, null, 4, 4, Duration.ofDays(1)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("minSendConcurrency must be greater than 0");
+    assertThatThrownBy(
+            () -> new TransferProcessRunnerConfig(8, 2, 3, null, 4, 4, Duration.ofDays(1)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("minSendConcurrency must not exceed runner.maxSendConcurrency");
+  }
+
+  @Test
+  void failsWhenSendLatencyToleranceIsNotGreaterThanOne() {
+    assertThatThrownBy(
+            () -> new TransferProcessRunnerConfig(8, 2, null, 1.0, 4, 4, Duration.ofDays(1)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("sendLatencyTolerance must be greater than 1");
+  }
+
   @Test
   void cohortSelectionConcurrencyDefaultsWhenNull() {
-    var config = new TransferProcessRunnerConfig(8, 2, 4, null, Duration.ofDays(1));
+    var config = new TransferProcessRunnerConfig(8, 2, null, null, 4, null, Duration.ofDays(1));
     assertThat(config.cohortSelectionConcurrency()).isEqualTo(DEFAULT_COHORT_SELECTION_CONCURRENCY);
   }
 
   @Test
   void failsWhenCohortSelectionConcurrencyIsZeroOrNegative() {
-    assertThatThrownBy(() -> new TransferProcessRunnerConfig(8, 2, 4, 0, Duration.ofDays(1)))
+    assertThatThrownBy(
+            () -> new TransferProcessRunnerConfig(8, 2, null, null, 4, 0, Duration.ofDays(1)))
         .isInstanceOf(IllegalArgumentException.class)
         .hasMessageContaining("cohortSelectionConcurrency must be greater than 0");
-    assertThatThrownBy(() -> new TransferProcessRunnerConfig(8, 2, 4, -1, Duration.ofDays(1)))
+    assertThatThrownBy(
+            () -> new TransferProcessRunnerConfig(8, 2, null, null, 4, -1, Duration.ofDays(1)))
         .isInstanceOf(IllegalArgumentException.class)
         .hasMessageContaining("cohortSelectionConcurrency must be greater than 0");
   }
@@ -0,0 +1,68 @@
+package care.smith.fts.cda.impl;
+
+import static care.smith.fts.cda.impl.BulkExportDataSelectorConfig.DEFAULT_PAGE_SIZE;
+import static care.smith.fts.cda.impl.BulkExportDataSelectorConfig.DEFAULT_PATIENT_BATCH;
+import static care.smith.fts.cda.impl.BulkExportDataSelectorConfig.DEFAULT_POLL_INTERVAL;
+import static care.smith.fts.cda.impl.BulkExportDataSelectorConfig.DEFAULT_TIMEOUT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import care.smith.fts.util.BatchConfig;
+import care.smith.fts.util.HttpClientConfig;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class BulkExportDataSelectorConfigTest {
+
+  private static final HttpClientConfig FHIR_SERVER = new HttpClientConfig("http://localhost");
+
+  @Test
+  void fhirServerCannotBeNull() {
+    assertThatThrownBy(() -> new BulkExportDataSelectorConfig(null))
+        .isInstanceOf(NullPointerException.class);
+  }
+
+  @Test
+  void defaultsWhenNull() {
+    var config = new BulkExportDataSelectorConfig(FHIR_SERVER);
+
+    assertThat(config.types()).isEmpty();
+    assertThat(config.patientBatch()).isEqualTo(DEFAULT_PATIENT_BATCH);
+    assertThat(config.pollInterval()).isEqualTo(DEFAULT_POLL_INTERVAL);
+    assertThat(config.timeout()).isEqualTo(DEFAULT_TIMEOUT);
+    assertThat(config.pageSize()).isEqualTo(DEFAULT_PAGE_SIZE);
+  }
+
+  @Test
+  void patientBatchDefaultsWhenUnset() {
+    var batch =
+        new BulkExportDataSelectorConfig(
+                FHIR_SERVER, null, new BatchConfig(null, null, null), null, null, null)
+            .patientBatch();
+
+    assertThat(batch.size()).isEqualTo(100);
+    assertThat(batch.maxWait()).isEqualTo(Duration.ofSeconds(5));
+    assertThat(batch.concurrency()).isEqualTo(1);
+  }
+
+  @Test
+  void nonPositiveDurationsFail() {
+    assertThatThrownBy(
+            () ->
+                new BulkExportDataSelectorConfig(
+                    FHIR_SERVER, null, null, Duration.ZERO, null, null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(
+            () ->
+                new BulkExportDataSelectorConfig(
+                    FHIR_SERVER, null, null, null, Duration.ofSeconds(-1), null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void zeroPageSizeFails() {
+    assertThatThrownBy(
+            () -> new BulkExportDataSelectorConfig(FHIR_SERVER, null, null, null, null, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,50 @@
+package care.smith.fts.cda.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import care.smith.fts.api.cda.DataSelector;
+import care.smith.fts.util.DefaultRetryStrategy;
+import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.WebClientFactory;
+import care.smith.fts.util.fhir.FhirJsonParsers;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+class BulkExportDataSelectorFactoryIT {
+
+  private static final BulkExportDataSelectorConfig CONFIG =
+      new BulkExportDataSelectorConfig(new HttpClientConfig("http://localhost"));
+
+  private BulkExportDataSelectorFactory factory;
+
+  @BeforeEach
+  void setUp(
+      @Autowired MeterRegistry meterRegistry,
+      @Autowired WebClientFactory clientFactory,
+      @Autowired FhirJsonParsers parsers) {
+    factory =
+        new BulkExportDataSelectorFactory(
+            clientFactory, new DefaultRetryStrategy(meterRegistry), parsers);
+  }
+
+  @Test
+  void testConfigType() {
+    assertThat(factory.getConfigType()).isEqualTo(BulkExportDataSelectorConfig.class);
+  }
+
+  @Test
+  void testCreate() {
+    assertThat(factory.create(new DataSelector.Config(true), CONFIG)).isNotNull();
+  }
+
+  @Test
+  void createWithConsentFails() {
+    assertThatThrownBy(() -> factory.create(new DataSelector.Config(false), CONFIG))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,213 @@
+package care.smith.fts.cda.impl;
+
+import static care.smith.fts.test.MockServerUtil.accepted;
+import static care.smith.fts.test.MockServerUtil.clientConfig;
+import static care.smith.fts.test.MockServerUtil.jsonResponse;
+import static care.smith.fts.test.MockServerUtil.sequentialMock;
+import static care.smith.fts.util.HeaderTypes.PREFER;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_NDJSON_VALUE;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.delete;
+import static com.github.tomakehurst.wiremock.client.WireMock.deleteRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.status;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.summingInt;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpHeaders.CONTENT_LOCATION;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+import static reactor.test.StepVerifier.create;
+
+import care.smith.fts.api.ConsentedPatient;
+import care.smith.fts.api.ConsentedPatientBundle;
+import care.smith.fts.cda.services.PatientIdResolver;
+import care.smith.fts.util.BatchConfig;
+import care.smith.fts.util.DefaultRetryStrategy;
+import care.smith.fts.util.WebClientFactory;
+import care.smith.fts.util.error.TransferProcessException;
+import care.smith.fts.util.fhir.FhirJsonParsers;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.Resource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@SpringBootTest
+@WireMockTest
+class BulkExportDataSelectorIT {
+
+  private static final ConsentedPatient PATIENT_1 = new ConsentedPatient("patient-1", "system");
+  private static final ConsentedPatient PATIENT_2 = new ConsentedPatient("patient-2", "system");
+  private static final PatientIdResolver pidResolver =
+      patient -> Mono.just(new IdType("Patient", patient.identifier()));
+
+  @Autowired MeterRegistry meterRegistry;
+  @Autowired FhirJsonParsers parsers;
+  private WireMock wireMock;
+  private String baseUrl;
+  private BulkExportDataSelector dataSelector;
+
+  @BeforeEach
+  void setUp(WireMockRuntimeInfo wireMockRuntime, @Autowired WebClientFactory clientFactory) {
+    var server = clientConfig(wireMockRuntime);
+    wireMock = wireMockRuntime.getWireMock();
+    baseUrl = wireMockRuntime.getHttpBaseUrl();
+    var config =
+        new BulkExportDataSelectorConfig(
+            server,
+            Set.of("Patient", "Observation"),
+            new BatchConfig(2, Duration.ofMillis(100), 1),
+            Duration.ofMillis(10),
+            Duration.ofSeconds(10),
+            2);
+    dataSelector =
+        new BulkExportDataSelector(
+            clientFactory.create(server),
+            pidResolver,
+            new DefaultRetryStrategy(meterRegistry),
+            parsers,
+            config);
+  }
+
+  private void registerExport(Resource... resources) {
+    wireMock.register(
+        post("/Patient/$export")
+            .withHeader(PREFER, equalTo("respond-async"))
+            .willReturn(accepted().withHeader(CONTENT_LOCATION, baseUrl + "/export/1")));
+    var manifest =
+        """
+        {"transactionTime":"2026-01-01T00:00:00Z","requiresAccessToken":false,
+         "output":[{"type":"Patient","url":"%s/export/1/file"}],"error":[]}
+        """
+            .formatted(baseUrl);
+    sequentialMock(wireMock)
+        .then(get("/export/1"), accepted())
+        .thereafter(get("/export/1"), jsonResponse(manifest));
+    wireMock.register(
+        get("/export/1/file")
+            .willReturn(
+                ok().withHeader(CONTENT_TYPE, APPLICATION_FHIR_NDJSON_VALUE)
+                    .withBody(ndjson(resources))));
+    wireMock.register(delete("/export/1").willReturn(status(202)));
+  }
+
+  private String ndjson(Resource... resources) {
+    var parser = parsers.context().newJsonParser();
+    return String.join("\n", Stream.of(resources).map(parser::encodeResourceToString).toList());
+  }
+
+  private static Observation observation(String id, String patient) {
+    var observation = new Observation().setSubject(new Reference("Patient/" + patient));
+    observation.setId(id);
+    return observation;
+  }
+
+  @Test
+  void exportRegroupsResourcesByPatient() {
+    registerExport(
+        new Patient().setId("patient-1"),
+        new Patient().setId("patient-2"),
+        observation("obs-1", "patient-1"),
+        observation("obs-2", "patient-2"),
+        observation("obs-3", "patient-1"),
+        observation("obs-4", "unknown"));
+
+    var resources =
+        Flux.merge(dataSelector.select(PATIENT_1), dataSelector.select(PATIENT_2))
+            .collect(
+                groupingBy(
+                    (ConsentedPatientBundle b) -> b.consentedPatient().identifier(),
+                    summingInt(b -> b.bundle().getEntry().size())));
+
+    create(resources)
+        .assertNext(r -> assertThat(r).containsEntry("patient-1", 3).containsEntry("patient-2", 2))
+        .verifyComplete();
+    wireMock.verifyThat(1, postRequestedFor(urlEqualTo("/Patient/$export")));
+    wireMock.verifyThat(
+        postRequestedFor(urlEqualTo("/Patient/$export"))
+            .withRequestBody(containing("Patient/patient-1"))
+            .withRequestBody(containing("Patient/patient-2")));
+    wireMock.verifyThat(deleteRequestedFor(urlEqualTo("/export/1")));
+  }
+
+  @Test
+  void bundlesAreLimitedToPageSize() {
+    registerExport(
+        new Patient().setId("patient-1"),
+        observation("obs-1", "patient-1"),
+        observation("obs-2", "patient-1"));
+
+    create(dataSelector.select(PATIENT_1))
+        .assertNext(b -> assertThat(b.bundle().getEntry()).hasSize(2))
+        .assertNext(b -> assertThat(b.bundle().getEntry()).hasSize(1))
+        .verifyComplete();
+  }
+
+  @Test
+  void patientWithoutDataHasNoBundle() {
+    registerExport(new Patient().setId("patient-2"));
+
+    create(dataSelector.select(PATIENT_1)).verifyComplete();
+  }
+
+  @Test
+  void missingContentLocationErrors() {
+    wireMock.register(post("/Patient/$export").willReturn(accepted()));
+
+    create(dataSelector.select(PATIENT_1))
+        .expectErrorSatisfies(
+            e ->
+                assertThat(e)
+                    .isInstanceOf(TransferProcessException.class)
+                    .hasMessage("Missing Content-Location"))
+        .verify();
+  }
+
+  @Test
+  void failedExportErrors() {
+    wireMock.register(
+        post("/Patient/$export")
+            .willReturn(accepted().withHeader(CONTENT_LOCATION, baseUrl + "/export/1")));
+    wireMock.register(get("/export/1").willReturn(status(500)));
+
+    create(dataSelector.select(PATIENT_1)).expectError().verify();
+  }
+
+  @Test
+  void failedDownloadDeletesExport() {
+    registerExport(new Patient().setId("patient-1"));
+    wireMock.register(get("/export/1/file").willReturn(status(404)));
+
+    create(dataSelector.select(PATIENT_1)).expectError().verify();
+    wireMock.verifyThat(deleteRequestedFor(urlEqualTo("/export/1")));
+  }
+
+  @Test
+  void patientOfResolvesReferences() {
+    var patients = Set.of("patient-1");
+
+    assertThat(dataSelector.patientOf(new Patient().setId("patient-1"), patients))
+        .hasValue("patient-1");
+    assertThat(dataSelector.patientOf(observation("obs-1", "patient-1"), patients))
+        .hasValue("patient-1");
+    assertThat(dataSelector.patientOf(observation("obs-2", "patient-2"), patients)).isEmpty();
+  }
+}
@@ -3,7 +3,12 @@ package care.smith.fts.cda.impl;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import care.smith.fts.api.DateShiftPreserve;
+import care.smith.fts.cda.impl.DeidentifhirStepConfig.MappingEncoding;
+import care.smith.fts.cda.impl.DeidentifhirStepConfig.TCAConfig;
+import care.smith.fts.util.BatchConfig;
+import java.time.Duration;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
 
 public class DeidentifhirStepConfigTest {
 
@@ -12,4 +17,27 @@ public class DeidentifhirStepConfigTest {
     var config = new DeidentifhirStepConfig(null, null, null, null);
     assertThat(config.dateShiftPreserve()).isEqualTo(DateShiftPreserve.NONE);
   }
+
+  @Test
+  void missingTransportMappingBatchDisablesBatching() {
+    var config = new DeidentifhirStepConfig(null, null, null, null);
+    assertThat(config.transportMappingBatch().enabled()).isFalse();
+  }
+
+  @Test
+  void missingEncodingDefaultsToJson() {
+    var tca = new TCAConfig(null, null);
+    assertThat(tca.encoding()).isEqualTo(MappingEncoding.JSON);
+    assertThat(MappingEncoding.CBOR.mediaType()).isEqualTo(MediaType.APPLICATION_CBOR);
+  }
+
+  @Test
+  void transportMappingBatchDefaults() {
+    var batch =
+        new DeidentifhirStepConfig(null, null, null, null, new BatchConfig(50, null, null))
+            .transportMappingBatch();
+    assertThat(batch.enabled()).isTrue();
+    assertThat(batch.maxWait()).isEqualTo(Duration.ofMillis(100));
+    assertThat(batch.concurrency()).isEqualTo(4);
+  }
 }
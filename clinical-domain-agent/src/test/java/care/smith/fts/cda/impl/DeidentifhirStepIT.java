@@ -12,9 +12,12 @@ import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.typesafe.config.ConfigFactory.parseResources;
 import static com.typesafe.config.ConfigFactory.parseString;
 import static java.time.Duration.ofDays;
+import static java.time.Duration.ofSeconds;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpHeaders.ACCEPT;
 import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.MediaType.APPLICATION_CBOR_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import static org.springframework.http.ProblemDetail.forStatusAndDetail;
 import static reactor.test.StepVerifier.create;
@@ -23,17 +26,22 @@ import care.smith.fts.api.ConsentedPatient;
 import care.smith.fts.api.ConsentedPatientBundle;
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.cda.ClinicalDomainAgent;
+import care.smith.fts.cda.impl.DeidentifhirStepConfig.MappingEncoding;
 import care.smith.fts.cda.services.deidentifhir.DeidentifhirUtils;
 import care.smith.fts.test.connection_scenario.AbstractConnectionScenarioIT;
+import care.smith.fts.util.BatchConfig;
 import care.smith.fts.util.DefaultRetryStrategy;
 import care.smith.fts.util.WebClientFactory;
 import care.smith.fts.util.tca.TcaDomains;
+import care.smith.fts.util.tca.TransportMappingRequest;
+import care.smith.fts.util.tca.TransportMappingResponse;
 import com.github.tomakehurst.wiremock.client.MappingBuilder;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
+import java.util.ArrayList;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.DateType;
 import org.hl7.fhir.r4.model.Patient;
@@ -43,7 +51,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.util.MimeTypeUtils;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import tools.jackson.dataformat.cbor.CBORMapper;
 
 @SpringBootTest(classes = ClinicalDomainAgent.class)
 @WireMockTest
@@ -223,6 +233,93 @@ class DeidentifhirStepIT extends AbstractConnectionScenarioIT {
         .verifyComplete();
   }
 
+  @Test
+  void batchedMappingsAreSentWithOneRequest(
+      WireMockRuntimeInfo wireMockRuntime,
+      @Autowired WebClientFactory clientFactory,
+      @Autowired MeterRegistry meterRegistry)
+      throws IOException {
+    var client = clientFactory.create(clientConfig(wireMockRuntime));
+    var batchedStep =
+        new DeidentifhirStep(
+            client,
+            new TcaDomains("domain", "domain", "domain"),
+            ofDays(14),
+            NONE,
+            parseResources(DeidentifhirUtils.class, "CDtoTransport.profile"),
+            meterRegistry,
+            new DefaultRetryStrategy(meterRegistry),
+            new BatchConfig(2, ofSeconds(10), 1));
+
+    wireMock.register(
+        post("/api/v2/cd/transport-mapping/batch")
+            .withHeader(CONTENT_TYPE, equalTo(APPLICATION_JSON_VALUE))
+            .willReturn(
+                jsonResponse(
+                    """
+                    {"transferIds": ["transferId1", "transferId2"]}
+                    """)));
+
+    var otherBundle =
+        new ConsentedPatientBundle(
+            generateOnePatient("id2", "2024", "identifierSystem", "identifier2"),
+            new ConsentedPatient("id2", "system"));
+
+    create(
+            Flux.merge(
+                    batchedStep.deidentify(consentedPatientBundle),
+                    batchedStep.deidentify(otherBundle))
+                .map(TransportBundle::transferId))
+        .recordWith(ArrayList::new)
+        .expectNextCount(2)
+        .consumeRecordedWith(
+            ids -> assertThat(ids).containsExactlyInAnyOrder("transferId1", "transferId2"))
+        .verifyComplete();
+
+    var requests =
+        wireMock.find(postRequestedFor(urlEqualTo("/api/v2/cd/transport-mapping/batch")));
+    assertThat(requests).hasSize(1);
+  }
+
+  @Test
+  void mappingsAreSentAsCbor(
+      WireMockRuntimeInfo wireMockRuntime,
+      @Autowired WebClientFactory clientFactory,
+      @Autowired MeterRegistry meterRegistry)
+      throws IOException {
+    var client = clientFactory.create(clientConfig(wireMockRuntime));
+    var cborStep =
+        new DeidentifhirStep(
+            client,
+            new TcaDomains("domain", "domain", "domain"),
+            ofDays(14),
+            NONE,
+            parseResources(DeidentifhirUtils.class, "CDtoTransport.profile"),
+            meterRegistry,
+            new DefaultRetryStrategy(meterRegistry),
+            DeidentifhirStepConfig.DEFAULT_TRANSPORT_MAPPING_BATCH,
+            MappingEncoding.CBOR);
+
+    var cbor = CBORMapper.builder().build();
+    wireMock.register(
+        post("/api/v2/cd/transport-mapping")
+            .withHeader(CONTENT_TYPE, equalTo(APPLICATION_CBOR_VALUE))
+            .withHeader(ACCEPT, equalTo(APPLICATION_CBOR_VALUE))
+            .willReturn(
+                ok().withHeader(CONTENT_TYPE, APPLICATION_CBOR_VALUE)
+                    .withBody(
+                        cbor.writeValueAsBytes(new TransportMappingResponse("transferId")))));
+
+    create(cborStep.deidentify(consentedPatientBundle))
+        .assertNext(tb -> assertThat(tb.transferId()).isEqualTo("transferId"))
+        .verifyComplete();
+
+    var requests = wireMock.find(postRequestedFor(urlEqualTo("/api/v2/cd/transport-mapping")));
+    var request = cbor.readValue(requests.getFirst().getBody(), TransportMappingRequest.class);
+    assertThat(request.patientIdentifier()).isEqualTo("id1");
+    assertThat(request.idMappings()).isNotEmpty();
+  }
+
   @Test
   void handleBadRequest() {
     var response = jsonResponse(forStatusAndDetail(BAD_REQUEST, "TCA Returns Bad Request"));
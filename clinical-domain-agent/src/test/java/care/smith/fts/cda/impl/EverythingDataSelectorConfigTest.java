@@ -4,7 +4,9 @@ import static care.smith.fts.cda.impl.EverythingDataSelectorConfig.DEFAULT_PAGE_
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
+import care.smith.fts.util.BatchConfig;
 import care.smith.fts.util.HttpClientConfig;
+import java.time.Duration;
 import org.junit.jupiter.api.Test;
 
 class EverythingDataSelectorConfigTest {
@@ -13,31 +15,31 @@ class EverythingDataSelectorConfigTest {
 
   @Test
   void fhirServerCannotBeNull() {
-    assertThrows(NullPointerException.class, () -> new EverythingDataSelectorConfig(null, null));
+    assertThrows(
+        NullPointerException.class,
+        () -> new EverythingDataSelectorConfig(null, null, null, null, null, null));
   }
 
   @Test
   void fhirServerIsReturned() {
-    assertThat(new EverythingDataSelectorConfig(FHIR_SERVER, null))
+    assertThat(config(null))
         .extracting(EverythingDataSelectorConfig::fhirServer)
         .isEqualTo(FHIR_SERVER);
   }
 
   @Test
   void zeroPageSizeIsInvalid() {
-    assertThrows(
-        IllegalArgumentException.class, () -> new EverythingDataSelectorConfig(FHIR_SERVER, 0));
+    assertThrows(IllegalArgumentException.class, () -> config(0));
   }
 
   @Test
   void negativePageSizeIsInvalid() {
-    assertThrows(
-        IllegalArgumentException.class, () -> new EverythingDataSelectorConfig(FHIR_SERVER, -1));
+    assertThrows(IllegalArgumentException.class, () -> config(-1));
   }
 
   @Test
   void nullPageSizeUsesDefault() {
-    assertThat(new EverythingDataSelectorConfig(FHIR_SERVER, null))
+    assertThat(config(null))
         .extracting(EverythingDataSelectorConfig::pageSize)
         .isEqualTo(DEFAULT_PAGE_SIZE);
   }
@@ -45,8 +47,72 @@ class EverythingDataSelectorConfigTest {
   @Test
   void positivePageSizeIsvalid() {
     final int somePageSize = 15;
-    assertThat(new EverythingDataSelectorConfig(FHIR_SERVER, somePageSize))
+    assertThat(config(somePageSize))
         .extracting(EverythingDataSelectorConfig::pageSize)
         .isEqualTo(somePageSize);
   }
+
+  @Test
+  void incrementalDefaultsToFalse() {
+    assertThat(config(null))
+        .extracting(EverythingDataSelectorConfig::incremental)
+        .isEqualTo(false);
+  }
+
+  @Test
+  void incrementalIsReturned() {
+    assertThat(new EverythingDataSelectorConfig(FHIR_SERVER, null, true, null, null, null))
+        .extracting(EverythingDataSelectorConfig::incremental)
+        .isEqualTo(true);
+  }
+
+  @Test
+  void resolveBatchIsDisabledByDefault() {
+    assertThat(config(null))
+        .extracting(EverythingDataSelectorConfig::resolveBatch)
+        .isEqualTo(EverythingDataSelectorConfig.DEFAULT_RESOLVE_BATCH);
+    assertThat(EverythingDataSelectorConfig.DEFAULT_RESOLVE_BATCH.enabled()).isFalse();
+  }
+
+  @Test
+  void resolveBatchIsEnabledAboveOne() {
+    var config =
+        new EverythingDataSelectorConfig(
+            FHIR_SERVER, null, null, new BatchConfig(50, null, null), null, null);
+    assertThat(config.resolveBatch().enabled()).isTrue();
+    assertThat(config.resolveBatch().maxWait()).isPositive();
+    assertThat(config.resolveBatch().concurrency()).isEqualTo(4);
+  }
+
+  @Test
+  void prefetchPagesDefaultsToZero() {
+    assertThat(config(null)).extracting(EverythingDataSelectorConfig::prefetchPages).isEqualTo(0);
+  }
+
+  @Test
+  void negativePrefetchPagesIsInvalid() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new EverythingDataSelectorConfig(FHIR_SERVER, null, null, null, -1, null));
+  }
+
+  @Test
+  void sinceMarginHasDefault() {
+    assertThat(config(null))
+        .extracting(EverythingDataSelectorConfig::sinceMargin)
+        .isEqualTo(EverythingDataSelectorConfig.DEFAULT_SINCE_MARGIN);
+  }
+
+  @Test
+  void negativeSinceMarginIsInvalid() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new EverythingDataSelectorConfig(
+                FHIR_SERVER, null, true, null, null, Duration.ofSeconds(-1)));
+  }
+
+  private static EverythingDataSelectorConfig config(Integer pageSize) {
+    return new EverythingDataSelectorConfig(FHIR_SERVER, pageSize, null, null, null, null);
+  }
 }
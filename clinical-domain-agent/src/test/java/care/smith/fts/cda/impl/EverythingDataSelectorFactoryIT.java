@@ -2,9 +2,11 @@ package care.smith.fts.cda.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import care.smith.fts.cda.LastTransferStore;
 import care.smith.fts.util.DefaultRetryStrategy;
 import care.smith.fts.util.HttpClientConfig;
 import care.smith.fts.util.WebClientFactory;
+import care.smith.fts.util.fhir.FhirJsonParsers;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,9 +19,17 @@ class EverythingDataSelectorFactoryIT {
   private static EverythingDataSelectorFactory factory;
 
   @BeforeEach
-  void setUp(@Autowired MeterRegistry meterRegistry, @Autowired WebClientFactory clientFactory) {
+  void setUp(
+      @Autowired MeterRegistry meterRegistry,
+      @Autowired WebClientFactory clientFactory,
+      @Autowired FhirJsonParsers parsers) {
     factory =
-        new EverythingDataSelectorFactory(clientFactory, new DefaultRetryStrategy(meterRegistry));
+        new EverythingDataSelectorFactory(
+            clientFactory,
+            new DefaultRetryStrategy(meterRegistry),
+            LastTransferStore.disabled(),
+            parsers,
+            meterRegistry);
   }
 
   @Test
@@ -31,7 +41,16 @@ class EverythingDataSelectorFactoryIT {
   void testCreate() {
     var dataSelector =
         factory.create(
-            null, new EverythingDataSelectorConfig(new HttpClientConfig("http://localhost"), 500));
+            null,
+            new EverythingDataSelectorConfig(
+                new HttpClientConfig("http://localhost"), 500, null, null, null, null));
     assertThat(dataSelector).isNotNull();
   }
+
+  @Test
+  void testCreateIncremental() {
+    var fhirServer = new HttpClientConfig("http://localhost");
+    var config = new EverythingDataSelectorConfig(fhirServer, 500, true, null, null, null);
+    assertThat(factory.create(null, config)).isNotNull();
+  }
 }
@@ -4,9 +4,13 @@ import static care.smith.fts.test.MockServerUtil.APPLICATION_FHIR_JSON;
 import static care.smith.fts.test.MockServerUtil.clientConfig;
 import static care.smith.fts.test.MockServerUtil.fhirResponse;
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON_VALUE;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.anyUrl;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static com.google.common.net.HttpHeaders.ACCEPT;
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE;
 import static org.assertj.core.api.Assertions.assertThat;
 import static reactor.test.StepVerifier.create;
@@ -17,20 +21,27 @@ import care.smith.fts.api.ConsentedPatientBundle;
 import care.smith.fts.api.Period;
 import care.smith.fts.api.cda.DataSelector;
 import care.smith.fts.cda.ClinicalDomainAgent;
+import care.smith.fts.cda.LastTransferStore;
 import care.smith.fts.cda.services.PatientIdResolver;
 import care.smith.fts.test.connection_scenario.AbstractConnectionScenarioIT;
 import care.smith.fts.util.DefaultRetryStrategy;
+import care.smith.fts.util.TransferProcessTags;
 import care.smith.fts.util.WebClientFactory;
+import care.smith.fts.util.fhir.FhirJsonParsers;
 import com.github.tomakehurst.wiremock.client.MappingBuilder;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Observation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -54,27 +65,46 @@ class EverythingDataSelectorIT extends AbstractConnectionScenarioIT {
   private static EverythingDataSelector dataSelector;
   private static WebClient client;
   private static MeterRegistry meterRegistry;
+  private static FhirJsonParsers parsers;
   private static ConsentedPatient consentedPatient;
 
   @BeforeEach
   void setUp(
       WireMockRuntimeInfo wireMockRuntime,
       @Autowired WebClientFactory clientFactory,
-      @Autowired MeterRegistry meterRegistry) {
+      @Autowired MeterRegistry meterRegistry,
+      @Autowired FhirJsonParsers parsers) {
     EverythingDataSelectorIT.wireMockRuntime = wireMockRuntime;
     wireMock = wireMockRuntime.getWireMock();
     client = clientFactory.create(clientConfig(wireMockRuntime));
-    var common = new DataSelector.Config(false);
     EverythingDataSelectorIT.meterRegistry = meterRegistry;
-    dataSelector =
-        new EverythingDataSelector(
-            common, client, pidResolver, new DefaultRetryStrategy(meterRegistry), PAGE_SIZE);
+    EverythingDataSelectorIT.parsers = parsers;
+    dataSelector = dataSelector(false, LastTransferStore.disabled(), config(false, null, null));
 
     var consentedPolicies = new ConsentedPolicies();
     consentedPolicies.put("pol", new Period(ZonedDateTime.now(), ZonedDateTime.now().plusYears(5)));
     consentedPatient = new ConsentedPatient(PATIENT_IDENTIFIER, "system", consentedPolicies);
   }
 
+  private static EverythingDataSelector dataSelector(
+      boolean ignoreConsent, LastTransferStore lastTransfers, EverythingDataSelectorConfig config) {
+    return new EverythingDataSelector(
+        new DataSelector.Config(ignoreConsent),
+        client,
+        pidResolver,
+        new DefaultRetryStrategy(meterRegistry),
+        lastTransfers,
+        parsers,
+        meterRegistry,
+        config);
+  }
+
+  private static EverythingDataSelectorConfig config(
+      boolean incremental, Integer prefetchPages, Duration sinceMargin) {
+    return new EverythingDataSelectorConfig(
+        clientConfig(wireMockRuntime), PAGE_SIZE, incremental, null, prefetchPages, sinceMargin);
+  }
+
   private static MappingBuilder fhirStoreRequestWithoutConsent() {
     return get("/Patient/%s/$everything?_count=%s".formatted(PATIENT_IDENTIFIER, PAGE_SIZE))
         .withHeader(ACCEPT, equalTo(APPLICATION_FHIR_JSON));
@@ -118,10 +148,7 @@ class EverythingDataSelectorIT extends AbstractConnectionScenarioIT {
 
   @Test
   void noConsentSucceedsIfConsentIgnored() {
-    DataSelector.Config common = new DataSelector.Config(true);
-    var dataSelector =
-        new EverythingDataSelector(
-            common, client, pidResolver, new DefaultRetryStrategy(meterRegistry), 500);
+    var dataSelector = dataSelector(true, LastTransferStore.disabled(), config(false, null, null));
 
     wireMock.register(fhirStoreRequestWithoutConsent().willReturn(fhirResponse(new Bundle())));
 
@@ -138,6 +165,96 @@ class EverythingDataSelectorIT extends AbstractConnectionScenarioIT {
     create(dataSelector.select(consentedPatient)).expectNextCount(1).verifyComplete();
   }
 
+  @Test
+  void incrementalSelectionFetchesSinceLastTransfer() {
+    var lastTransfer = Instant.parse("2026-01-01T10:00:00.123Z");
+    var dataSelector =
+        dataSelector(
+            true, lastTransferStore("example", lastTransfer), config(true, null, Duration.ZERO));
+
+    wireMock.register(
+        get(urlPathEqualTo("/Patient/%s/$everything".formatted(PATIENT_IDENTIFIER)))
+            .withQueryParam("_count", equalTo(String.valueOf(PAGE_SIZE)))
+            .withQueryParam("_since", equalTo("2026-01-01T10:00:00Z"))
+            .willReturn(fhirResponse(new Bundle())));
+
+    create(
+            dataSelector
+                .select(consentedPatient)
+                .contextWrite(c -> TransferProcessTags.write(c, "example")))
+        .expectNextCount(1)
+        .verifyComplete();
+  }
+
+  @Test
+  void incrementalSelectionSubtractsSinceMargin() {
+    var dataSelector =
+        dataSelector(
+            true,
+            lastTransferStore("example", Instant.parse("2026-01-01T10:00:00.123Z")),
+            config(true, null, Duration.ofMinutes(5)));
+
+    wireMock.register(
+        get(urlPathEqualTo("/Patient/%s/$everything".formatted(PATIENT_IDENTIFIER)))
+            .withQueryParam("_since", equalTo("2026-01-01T09:55:00Z"))
+            .willReturn(fhirResponse(new Bundle())));
+
+    create(
+            dataSelector
+                .select(consentedPatient)
+                .contextWrite(c -> TransferProcessTags.write(c, "example")))
+        .expectNextCount(1)
+        .verifyComplete();
+  }
+
+  @Test
+  void incrementalSelectionWithoutLastTransferFetchesEverything() {
+    var dataSelector =
+        dataSelector(false, lastTransferStore("other", Instant.now()), config(true, null, null));
+
+    wireMock.register(fhirStoreRequestWithConsent().willReturn(fhirResponse(new Bundle())));
+
+    create(
+            dataSelector
+                .select(consentedPatient)
+                .contextWrite(c -> TransferProcessTags.write(c, "example")))
+        .expectNextCount(1)
+        .verifyComplete();
+  }
+
+  @Test
+  void incrementalSelectionWithChangedConsentFetchesEverything() {
+    var consent = "2020-01-01T00:00:00Z/2025-01-01T00:00:00Z";
+    var store = lastTransferStore("example", Instant.now(), consent);
+    var dataSelector = dataSelector(false, store, config(true, null, null));
+
+    wireMock.register(fhirStoreRequestWithConsent().willReturn(fhirResponse(new Bundle())));
+
+    create(
+            dataSelector
+                .select(consentedPatient)
+                .contextWrite(c -> TransferProcessTags.write(c, "example")))
+        .expectNextCount(1)
+        .verifyComplete();
+  }
+
+  private static LastTransferStore lastTransferStore(String project, Instant lastTransfer) {
+    return lastTransferStore(project, lastTransfer, LastTransferStore.consent(consentedPatient));
+  }
+
+  private static LastTransferStore lastTransferStore(
+      String project, Instant lastTransfer, String consent) {
+    return new LastTransferStore() {
+      @Override
+      public void transferred(String project, String patientIdentifier, Instant time, String c) {}
+
+      @Override
+      public Optional<Instant> lastTransfer(String p, String patientIdentifier, String c) {
+        return Optional.of(lastTransfer).filter(t -> p.equals(project) && c.equals(consent));
+      }
+    };
+  }
+
   @Test
   void selectionFollowsPagination() {
     var firstBundle = new Bundle();
@@ -152,4 +269,101 @@ class EverythingDataSelectorIT extends AbstractConnectionScenarioIT {
 
     create(dataSelector.select(consentedPatient)).expectNextCount(2).verifyComplete();
   }
+
+  @Test
+  void prefetchingSelectionFollowsPaginationInOrder() {
+    var dataSelector = dataSelector(false, LastTransferStore.disabled(), config(false, 2, null));
+
+    wireMock.register(fhirStoreRequestWithConsent().willReturn(fhirResponse(page("page2", "1"))));
+    wireMock.register(get("/page2").willReturn(fhirResponse(page("page3", "2"))));
+    wireMock.register(get("/page3").willReturn(fhirResponse(page(null, "3"))));
+
+    create(
+            dataSelector
+                .select(consentedPatient)
+                .map(b -> b.bundle().getEntryFirstRep().getResource().getIdPart())
+                .contextWrite(c -> TransferProcessTags.write(c, "prefetch")))
+        .expectNext("1", "2", "3")
+        .verifyComplete();
+    assertThat(meterRegistry.find("transfer.select.data.page").tag("project", "prefetch").timer())
+        .satisfies(t -> assertThat(t.count()).isEqualTo(3));
+  }
+
+  /**
+   * Pages are linked, so each page request starts once the previous page arrived. While the
+   * consumer holds back after the first page, further pages are fetched, but no more than
+   * prefetchPages decoded pages plus the one request in flight.
+   */
+  @Test
+  void prefetchingSelectionFetchesAheadUpToPrefetchPages() {
+    var prefetchPages = 2;
+    var dataSelector =
+        dataSelector(false, LastTransferStore.disabled(), config(false, prefetchPages, null));
+
+    wireMock.register(
+        fhirStoreRequestWithConsent()
+            .willReturn(fhirResponse(page("page2", "1")).withFixedDelay(100)));
+    for (int i = 2; i <= 6; i++) {
+      var next = i < 6 ? "page" + (i + 1) : null;
+      var response = fhirResponse(page(next, String.valueOf(i))).withFixedDelay(100);
+      wireMock.register(get("/page" + i).willReturn(response));
+    }
+
+    create(dataSelector.select(consentedPatient), 0)
+        .thenRequest(1)
+        .expectNextCount(1)
+        .thenAwait(Duration.ofSeconds(1))
+        .then(
+            () ->
+                assertThat(wireMock.find(anyRequestedFor(anyUrl())))
+                    .hasSizeGreaterThan(1)
+                    .hasSizeLessThanOrEqualTo(1 + prefetchPages + 1))
+        .thenRequest(Long.MAX_VALUE)
+        .expectNextCount(5)
+        .verifyComplete();
+  }
+
+  private static Bundle page(String next, String observationId) {
+    var bundle = new Bundle();
+    if (next != null) {
+      bundle
+          .addLink()
+          .setRelation("next")
+          .setUrl("http://localhost:" + wireMockRuntime.getHttpPort() + "/" + next);
+    }
+    bundle.addEntry().setResource(new Observation().setId(observationId));
+    return bundle;
+  }
+
+  @Test
+  void prefetchingSelectionFailsOnInvalidPage() {
+    var dataSelector = dataSelector(false, LastTransferStore.disabled(), config(false, 2, null));
+
+    wireMock.register(
+        fhirStoreRequestWithConsent()
+            .willReturn(
+                WireMock.ok().withHeader(CONTENT_TYPE, APPLICATION_FHIR_JSON).withBody("{")));
+
+    create(dataSelector.select(consentedPatient)).expectError().verify();
+  }
+
+  @Test
+  void nextLinkIsReadWithoutEntries() {
+    var linkFirst =
+        """
+        {"resourceType":"Bundle","link":[{"relation":"self","url":"a"},
+         {"relation":"next","url":"b"}],"entry":[{"resource":{"resourceType":"Patient"}}]}
+        """;
+    var linkLast =
+        """
+        {"resourceType":"Bundle","entry":[{"resource":{"link":[{"url":"x"}]}}],
+         "link":[{"relation":"next","url":"c"}]}
+        """;
+
+    assertThat(EverythingDataSelector.nextLink(linkFirst.getBytes())).hasValue("b");
+    assertThat(EverythingDataSelector.nextLink(linkLast.getBytes())).hasValue("c");
+    assertThat(EverythingDataSelector.nextLink("[]".getBytes())).isEmpty();
+    assertThat(EverythingDataSelector.nextLink("{\"resourceType\":\"Bundle\"}".getBytes()))
+        .isEmpty();
+  }
 }
@@ -2,7 +2,6 @@ package care.smith.fts.cda.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-import care.smith.fts.cda.TransferProcessRunnerConfig;
 import care.smith.fts.util.DefaultRetryStrategy;
 import care.smith.fts.util.HttpClientConfig;
 import care.smith.fts.util.WebClientFactory;
@@ -11,25 +10,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import reactor.core.scheduler.Schedulers;
 
 @SpringBootTest
 class FhirCohortSelectorFactoryIT {
 
   @Autowired MeterRegistry meterRegistry;
   @Autowired WebClientFactory clientFactory;
-  @Autowired TransferProcessRunnerConfig runnerConfig;
 
   private FhirCohortSelectorFactory factory;
 
   @BeforeEach
   void setUp() {
-    factory =
-        new FhirCohortSelectorFactory(
-            clientFactory,
-            new DefaultRetryStrategy(meterRegistry),
-            Schedulers.parallel(),
-            runnerConfig);
+    factory = new FhirCohortSelectorFactory(clientFactory, new DefaultRetryStrategy(meterRegistry));
   }
 
   @Test
@@ -24,7 +24,6 @@ import com.github.tomakehurst.wiremock.stubbing.Scenario;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
@@ -36,10 +35,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
-import reactor.core.scheduler.Scheduler;
-import reactor.core.scheduler.Schedulers;
 
 @Slf4j
 @SpringBootTest
@@ -70,12 +66,7 @@ class FhirCohortSelectorIT {
     this.config = MockServerUtil.clientConfig(wireMockRuntime);
     fhirClient = clientFactory.create(this.config);
     cohortSelector =
-        new FhirCohortSelector(
-            selectorConfig,
-            fhirClient,
-            new DefaultRetryStrategy(meterRegistry),
-            Schedulers.parallel(),
-            4);
+        new FhirCohortSelector(selectorConfig, fhirClient, new DefaultRetryStrategy(meterRegistry));
     wireMock = wireMockRuntime.getWireMock();
     cohortGenerator = new FhirCohortGenerator(PID_SYSTEM, POLICY_SYSTEM, POLICIES);
   }
@@ -144,31 +135,29 @@ class FhirCohortSelectorIT {
   }
 
   @Test
-  void groupingRunsOnInjectedScheduler() {
-    var used = new AtomicBoolean(false);
-    var delegate = Schedulers.parallel();
-    Scheduler spy =
-        new Scheduler() {
-          @Override
-          public Disposable schedule(Runnable task) {
-            return delegate.schedule(task);
-          }
-
-          @Override
-          public Worker createWorker() {
-            used.set(true);
-            return delegate.createWorker();
-          }
-        };
-    var selector =
-        new FhirCohortSelector(
-            selectorConfig, fhirClient, new DefaultRetryStrategy(meterRegistry), spy, 4);
+  void groupingAssignsConsentsToTheirPatients() {
+    var bundle =
+        Stream.of(
+                patient("p1"),
+                consent("c1", "p2"),
+                patient("p2"),
+                consent("c2", "p1"),
+                consent("c3", "p2"),
+                consent("c4", "unknown"),
+                patient("p3"))
+            .collect(toBundle());
+
+    assertThat(FhirCohortSelector.groupPatientsAndConsents(bundle))
+        .extracting(b -> b.getEntry().stream().map(e -> e.getResource().getIdPart()).toList())
+        .containsExactly(List.of("p1", "c2"), List.of("p2", "c1", "c3"), List.of("p3"));
+  }
 
-    var bundle = cohortGenerator.generate();
-    wireMock.register(fetchAllRequest().willReturn(fhirResponse(bundle)));
+  private static Resource patient(String id) {
+    return new Patient().setId(id);
+  }
 
-    create(selector.selectCohort(List.of())).expectNextCount(1).verifyComplete();
-    assertThat(used).isTrue();
+  private static Resource consent(String id, String patient) {
+    return new Consent().setPatient(new Reference("Patient/" + patient)).setId(id);
   }
 
   @Test
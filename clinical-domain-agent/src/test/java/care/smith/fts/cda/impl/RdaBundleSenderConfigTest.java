@@ -0,0 +1,25 @@
+package care.smith.fts.cda.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import care.smith.fts.util.BatchConfig;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class RdaBundleSenderConfigTest {
+
+  @Test
+  void missingPatientBatchDisablesBatching() {
+    var config = new RdaBundleSenderConfig(null, "example");
+    assertThat(config.patientBatch().enabled()).isFalse();
+  }
+
+  @Test
+  void patientBatchDefaults() {
+    var config = new RdaBundleSenderConfig(null, "example", new BatchConfig(10, null, null));
+    var batch = config.patientBatch();
+    assertThat(batch.enabled()).isTrue();
+    assertThat(batch.maxWait()).isEqualTo(Duration.ofMillis(100));
+    assertThat(batch.concurrency()).isEqualTo(4);
+  }
+}
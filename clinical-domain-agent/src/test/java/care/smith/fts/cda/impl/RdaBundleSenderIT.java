@@ -4,13 +4,19 @@ import static care.smith.fts.test.MockServerUtil.FIRST;
 import static care.smith.fts.test.MockServerUtil.REST;
 import static care.smith.fts.test.MockServerUtil.accepted;
 import static care.smith.fts.test.MockServerUtil.clientConfig;
+import static care.smith.fts.util.HeaderTypes.PREFER;
+import static care.smith.fts.util.HeaderTypes.PREFERENCE_APPLIED;
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON_VALUE;
 import static care.smith.fts.util.fhir.FhirUtils.toBundle;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
 import static com.github.tomakehurst.wiremock.client.WireMock.created;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.ok;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.matching.UrlPattern.ANY;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.springframework.http.HttpHeaders.CONTENT_LOCATION;
@@ -23,6 +29,7 @@ import care.smith.fts.api.cda.BundleSender;
 import care.smith.fts.api.cda.BundleSender.Result;
 import care.smith.fts.test.connection_scenario.AbstractConnectionScenarioIT;
 import care.smith.fts.util.BackpressureRetryStrategy;
+import care.smith.fts.util.BatchConfig;
 import care.smith.fts.util.DefaultRetryStrategy;
 import care.smith.fts.util.WebClientFactory;
 import care.smith.fts.util.error.TransferProcessException;
@@ -31,6 +38,7 @@ import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
 import java.util.stream.Stream;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Patient;
@@ -42,6 +50,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.web.reactive.function.client.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @SpringBootTest
@@ -53,13 +62,14 @@ class RdaBundleSenderIT extends AbstractConnectionScenarioIT {
 
   @Autowired MeterRegistry meterRegistry;
   private WireMock wireMock;
+  private WebClient client;
 
   private RdaBundleSender bundleSender;
 
   @BeforeEach
   void setUp(WireMockRuntimeInfo wireMockRuntime, @Autowired WebClientFactory clientFactory) {
     var server = clientConfig(wireMockRuntime);
-    var client = clientFactory.create(server);
+    client = clientFactory.create(server);
     wireMock = wireMockRuntime.getWireMock();
 
     var config = new RdaBundleSenderConfig(server, "example");
@@ -67,7 +77,8 @@ class RdaBundleSenderIT extends AbstractConnectionScenarioIT {
         new RdaBundleSender(
             config,
             client,
-            new BackpressureRetryStrategy(meterRegistry, new DefaultRetryStrategy(meterRegistry)));
+            new BackpressureRetryStrategy(meterRegistry, new DefaultRetryStrategy(meterRegistry)),
+            meterRegistry);
   }
 
   private static MappingBuilder rdaRequest() {
@@ -188,6 +199,94 @@ class RdaBundleSenderIT extends AbstractConnectionScenarioIT {
         .verifyComplete();
   }
 
+  @Test
+  void longPollingStatusIsRequestedAgainWithoutRetryAfter() {
+    wireMock.register(
+        rdaRequest()
+            .withHeader(PREFER, equalTo("respond-async, wait=5"))
+            .willReturn(
+                accepted().withHeader(CONTENT_LOCATION, "/api/v2/process/status/processId")));
+
+    wireMock.register(
+        get("/api/v2/process/status/processId")
+            .withHeader(PREFER, equalTo("wait=5"))
+            .inScenario("LongPolling")
+            .whenScenarioStateIs(FIRST)
+            .willReturn(
+                accepted().withHeader(RETRY_AFTER, "3").withHeader(PREFERENCE_APPLIED, "wait=5"))
+            .willSetStateTo(REST));
+
+    wireMock.register(
+        get("/api/v2/process/status/processId")
+            .inScenario("LongPolling")
+            .whenScenarioStateIs(REST)
+            .willReturn(ok()));
+
+    var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
+    create(bundleSender.send(new TransportBundle(bundle, "transferId")))
+        .expectNext(new BundleSender.Result())
+        .expectComplete()
+        .verify(Duration.ofSeconds(2));
+  }
+
+  @Test
+  void okOnPostSkipsStatusRequests() {
+    wireMock.register(rdaRequest().willReturn(ok()));
+
+    var bundle = Stream.of(new Patient().setId(PATIENT_ID)).collect(toBundle());
+    create(bundleSender.send(new TransportBundle(bundle, "transferId")))
+        .expectNext(new BundleSender.Result())
+        .verifyComplete();
+    wireMock.verifyThat(0, getRequestedFor(ANY));
+  }
+
+  @Test
+  void batchedPatientsSentInOneRequest() {
+    var batchSender = batchSender(new BatchConfig(2, Duration.ofSeconds(5), 1));
+    wireMock.register(batchRequest().willReturn(ok()));
+
+    var first = Stream.of(new Patient().setId("patient-1")).collect(toBundle());
+    var second = Stream.of(new Patient().setId("patient-2")).collect(toBundle());
+    create(
+            Flux.merge(
+                batchSender.send(new TransportBundle(first, "transfer-1")),
+                batchSender.send(new TransportBundle(second, "transfer-2"))))
+        .expectNext(new Result(), new Result())
+        .verifyComplete();
+
+    wireMock.verifyThat(
+        1,
+        postRequestedFor(urlEqualTo("/api/v2/process/example/patients"))
+            .withRequestBody(containing("transfer-1"))
+            .withRequestBody(containing("transfer-2")));
+  }
+
+  @Test
+  void failedBatchFailsAllPatients() {
+    var batchSender = batchSender(new BatchConfig(2, Duration.ofSeconds(5), 1));
+    wireMock.register(batchRequest().willReturn(WireMock.badRequest()));
+
+    create(
+            Flux.merge(
+                batchSender.send(new TransportBundle(new Bundle(), "transfer-1")),
+                batchSender.send(new TransportBundle(new Bundle(), "transfer-2"))))
+        .expectError(WebClientResponseException.class)
+        .verify();
+  }
+
+  private RdaBundleSender batchSender(BatchConfig batch) {
+    return new RdaBundleSender(
+        new RdaBundleSenderConfig(null, "example", batch),
+        client,
+        new DefaultRetryStrategy(meterRegistry),
+        meterRegistry);
+  }
+
+  private static MappingBuilder batchRequest() {
+    return post("/api/v2/process/example/patients")
+        .withHeader(CONTENT_TYPE, equalTo(APPLICATION_FHIR_JSON_VALUE));
+  }
+
   @Test
   void withNumberFormatExceptionInGetRetryAfterWithParsingException() {
     wireMock.register(
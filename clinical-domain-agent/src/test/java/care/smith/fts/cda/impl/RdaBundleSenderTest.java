@@ -1,16 +1,25 @@
 package care.smith.fts.cda.impl;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.http.HttpHeaders.CONTENT_LOCATION;
 import static org.springframework.http.HttpHeaders.RETRY_AFTER;
 import static reactor.test.StepVerifier.create;
 
 import care.smith.fts.api.TransportBundle;
+import care.smith.fts.api.cda.BundleSender.Result;
+import care.smith.fts.util.AdaptiveConcurrencyLimiter;
 import care.smith.fts.util.BackpressureRetryStrategy;
+import care.smith.fts.util.BatchConfig;
 import care.smith.fts.util.DefaultRetryStrategy;
 import care.smith.fts.util.HttpClientConfig;
+import care.smith.fts.util.TransferProcessTags;
 import care.smith.fts.util.error.TransferProcessException;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import org.hl7.fhir.r4.model.Bundle;
 import org.junit.jupiter.api.Test;
@@ -20,6 +29,7 @@ import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.ExchangeFunction;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 class RdaBundleSenderTest {
@@ -47,7 +57,7 @@ class RdaBundleSenderTest {
               }
               return ClientResponse.create(HttpStatus.ACCEPTED).header(RETRY_AFTER, "0").build();
             });
-    var sender = new RdaBundleSender(CONFIG, client, buildRetryStrategy());
+    var sender = new RdaBundleSender(CONFIG, client, buildRetryStrategy(), meterRegistry);
 
     create(sender.send(new TransportBundle(new Bundle(), "tid")))
         .expectErrorMatches(
@@ -73,7 +83,7 @@ class RdaBundleSenderTest {
               }
               return ClientResponse.create(HttpStatus.CREATED).build();
             });
-    var sender = new RdaBundleSender(CONFIG, client, buildRetryStrategy());
+    var sender = new RdaBundleSender(CONFIG, client, buildRetryStrategy(), meterRegistry);
 
     create(sender.send(new TransportBundle(new Bundle(), "tid")))
         .expectErrorMatches(
@@ -95,20 +105,128 @@ class RdaBundleSenderTest {
               }
               return ClientResponse.create(HttpStatus.OK).build();
             });
-    var sender = new RdaBundleSender(CONFIG, client, buildRetryStrategy());
+    var sender = new RdaBundleSender(CONFIG, client, buildRetryStrategy(), meterRegistry);
 
     create(sender.send(new TransportBundle(new Bundle(), "tid")))
         .expectNextCount(1)
         .verifyComplete();
+    assertThat(meterRegistry.get("transfer.rda.polls").summary().totalAmount()).isEqualTo(1);
   }
 
   @Test
   void postOkSkipsPolling() {
     var client = buildClient(request -> ClientResponse.create(HttpStatus.OK).build());
-    var sender = new RdaBundleSender(CONFIG, client, buildRetryStrategy());
+    var sender = new RdaBundleSender(CONFIG, client, buildRetryStrategy(), meterRegistry);
 
     create(sender.send(new TransportBundle(new Bundle(), "tid")))
         .expectNextCount(1)
         .verifyComplete();
   }
+
+  @Test
+  void tooManyRequestsMarksPermitOverloaded() {
+    var posts = new AtomicInteger();
+    var client =
+        buildClient(
+            request ->
+                posts.getAndIncrement() == 0
+                    ? ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(RETRY_AFTER, "0")
+                        .build()
+                    : ClientResponse.create(HttpStatus.OK).build());
+    var sender = new RdaBundleSender(CONFIG, client, buildRetryStrategy(), meterRegistry);
+    var permit = new AdaptiveConcurrencyLimiter(1, 2, 2.0).acquire().block();
+
+    create(
+            sender
+                .send(new TransportBundle(new Bundle(), "tid"))
+                .contextWrite(c -> AdaptiveConcurrencyLimiter.write(c, permit)))
+        .expectNextCount(1)
+        .verifyComplete();
+    assertThat(permit.isOverloaded()).isTrue();
+  }
+
+  /** A limiter at limit 2 after one fast call, so one overload lowers it to 1. */
+  private static AdaptiveConcurrencyLimiter limiterAtTwo() {
+    var limiter = new AdaptiveConcurrencyLimiter(1, 4, 2.0);
+    limiter.acquire().block().release();
+    assertThat(limiter.limit()).isEqualTo(2);
+    return limiter;
+  }
+
+  private static Mono<Result> sendFor(
+      RdaBundleSender sender, AdaptiveConcurrencyLimiter limiter, String project) {
+    return sender
+        .send(new TransportBundle(new Bundle(), "tid-" + project))
+        .contextWrite(c -> AdaptiveConcurrencyLimiter.write(c, limiter))
+        .contextWrite(c -> TransferProcessTags.write(c, project));
+  }
+
+  @Test
+  void batchTakesOnePermitPerProcessAndReportsOverloadToAll() {
+    var limiter1 = limiterAtTwo();
+    var limiter2 = limiterAtTwo();
+    var inFlight = new CopyOnWriteArrayList<List<Integer>>();
+    var posts = new AtomicInteger();
+    var client =
+        buildClient(
+            request -> {
+              inFlight.add(List.of(limiter1.inFlight(), limiter2.inFlight()));
+              return posts.getAndIncrement() == 0
+                  ? ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS)
+                      .header(RETRY_AFTER, "0")
+                      .build()
+                  : ClientResponse.create(HttpStatus.OK).build();
+            });
+    var config =
+        new RdaBundleSenderConfig(
+            new HttpClientConfig("http://localhost"),
+            "example",
+            new BatchConfig(2, Duration.ofSeconds(5), 1));
+    var sender = new RdaBundleSender(config, client, buildRetryStrategy(), meterRegistry);
+
+    create(Flux.merge(sendFor(sender, limiter1, "p1"), sendFor(sender, limiter2, "p2")))
+        .expectNextCount(2)
+        .verifyComplete();
+
+    assertThat(posts).hasValue(2);
+    assertThat(inFlight).containsOnly(List.of(1, 1));
+    assertThat(limiter1.limit()).isEqualTo(1);
+    assertThat(limiter2.limit()).isEqualTo(1);
+    assertThat(limiter1.inFlight()).isZero();
+    assertThat(limiter2.inFlight()).isZero();
+    var bytes = meterRegistry.get("transfer.bundle.bytes").tag("project", "p1").summary();
+    assertThat(bytes.count()).isEqualTo(2);
+  }
+
+  @Test
+  void pollingBudgetGrowsWithBatchSize() {
+    var polls = new AtomicInteger();
+    var client =
+        buildClient(
+            request -> {
+              if (request.method() == HttpMethod.POST) {
+                return ClientResponse.create(HttpStatus.ACCEPTED)
+                    .header(CONTENT_LOCATION, STATUS_URI)
+                    .build();
+              }
+              return polls.incrementAndGet() < 15
+                  ? ClientResponse.create(HttpStatus.ACCEPTED).header(RETRY_AFTER, "0").build()
+                  : ClientResponse.create(HttpStatus.OK).build();
+            });
+    var config =
+        new RdaBundleSenderConfig(
+            new HttpClientConfig("http://localhost"),
+            "example",
+            new BatchConfig(2, Duration.ofSeconds(5), 1));
+    var sender = new RdaBundleSender(config, client, buildRetryStrategy(), meterRegistry);
+
+    create(
+            Flux.merge(
+                sender.send(new TransportBundle(new Bundle(), "tid1")),
+                sender.send(new TransportBundle(new Bundle(), "tid2"))))
+        .expectNextCount(2)
+        .verifyComplete();
+    assertThat(polls).hasValue(15);
+  }
 }
@@ -5,6 +5,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import care.smith.fts.util.DefaultRetryStrategy;
 import care.smith.fts.util.HttpClientConfig;
 import care.smith.fts.util.WebClientFactory;
+import care.smith.fts.util.fhir.FhirJsonParsers;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,12 +17,15 @@ class TcaCohortSelectorFactoryIT {
 
   @Autowired MeterRegistry meterRegistry;
   @Autowired WebClientFactory clientFactory;
+  @Autowired FhirJsonParsers parsers;
 
   private TcaCohortSelectorFactory factory;
 
   @BeforeEach
   void setUp() {
-    factory = new TcaCohortSelectorFactory(clientFactory, new DefaultRetryStrategy(meterRegistry));
+    factory =
+        new TcaCohortSelectorFactory(
+            clientFactory, new DefaultRetryStrategy(meterRegistry), meterRegistry, parsers);
   }
 
   @Test
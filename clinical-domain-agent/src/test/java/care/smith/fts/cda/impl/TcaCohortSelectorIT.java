@@ -3,11 +3,16 @@ package care.smith.fts.cda.impl;
 import static care.smith.fts.test.MockServerUtil.clientConfig;
 import static care.smith.fts.test.MockServerUtil.fhirResponse;
 import static care.smith.fts.test.MockServerUtil.jsonResponse;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_NDJSON_VALUE;
 import static care.smith.fts.util.error.fhir.FhirErrorResponseUtil.operationOutcomeWithIssue;
 import static care.smith.fts.util.fhir.FhirUtils.toBundle;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.ok;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.http.HttpHeaders.ACCEPT;
 import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.util.MimeTypeUtils.APPLICATION_JSON_VALUE;
@@ -20,11 +25,13 @@ import care.smith.fts.util.DefaultRetryStrategy;
 import care.smith.fts.util.HttpClientConfig;
 import care.smith.fts.util.WebClientFactory;
 import care.smith.fts.util.error.TransferProcessException;
+import care.smith.fts.util.fhir.FhirJsonParsers;
 import com.github.tomakehurst.wiremock.client.MappingBuilder;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Stream;
@@ -68,7 +75,8 @@ class TcaCohortSelectorIT {
         new TcaCohortSelector(
             config,
             clientFactory.create(clientConfig(wireMockRuntime)),
-            new DefaultRetryStrategy(meterRegistry));
+            new DefaultRetryStrategy(meterRegistry),
+            meterRegistry);
     wireMock = wireMockRuntime.getWireMock();
     allCohortSelector = MockCohortSelector.fetchAll(wireMock);
     listCohortSelector = MockCohortSelector.fetch(wireMock);
@@ -202,6 +210,133 @@ class TcaCohortSelectorIT {
     create(cohortSelector.selectCohort(List.of())).expectNextCount(7).verifyComplete();
   }
 
+  @Test
+  void streamingEmitsPatientsOfAllLines(
+      @Autowired WebClientFactory clientFactory,
+      @Autowired FhirJsonParsers parsers,
+      WireMockRuntimeInfo wireMockRuntime) {
+    var streamingSelector = streamingSelector(clientFactory, parsers, wireMockRuntime);
+    allCohortSelector.streamConsentsForNPatients("pid", 7);
+
+    create(streamingSelector.selectCohort(List.of())).expectNextCount(7).verifyComplete();
+    wireMock.verifyThat(
+        postRequestedFor(urlEqualTo("/api/v2/cd/consented-patients/fetch-all"))
+            .withHeader(ACCEPT, equalTo(APPLICATION_FHIR_NDJSON_VALUE)));
+  }
+
+  @Test
+  void streamingBadRequestErrors(
+      @Autowired WebClientFactory clientFactory,
+      @Autowired FhirJsonParsers parsers,
+      WireMockRuntimeInfo wireMockRuntime) {
+    var streamingSelector = streamingSelector(clientFactory, parsers, wireMockRuntime);
+    var response =
+        fhirResponse(operationOutcomeWithIssue(new Exception("TCA Returns Bad Request")));
+    wireMock.register(fetchListRequest().willReturn(response.withStatus(400)));
+
+    create(streamingSelector.selectCohort(List.of("patient0")))
+        .expectErrorMessage("TCA Returns Bad Request")
+        .verify();
+  }
+
+  @Test
+  void streamingIsNotLimitedBySlowConsumer(
+      @Autowired WebClientFactory clientFactory,
+      @Autowired FhirJsonParsers parsers,
+      WireMockRuntimeInfo wireMockRuntime) {
+    var streamingSelector =
+        new TcaCohortSelector(
+            streamingConfig(),
+            clientFactory.create(clientConfig(wireMockRuntime)),
+            new DefaultRetryStrategy(meterRegistry),
+            meterRegistry,
+            parsers,
+            Duration.ofMillis(500),
+            Duration.ofMillis(500));
+    allCohortSelector.streamConsentsForNPatients("pid", 5);
+
+    // Consuming all patients takes longer than the line timeouts
+    create(streamingSelector.selectCohort(List.of()).delayElements(Duration.ofMillis(300)))
+        .expectNextCount(5)
+        .verifyComplete();
+  }
+
+  @Test
+  void streamingWithoutFirstLineTimesOut(
+      @Autowired WebClientFactory clientFactory,
+      @Autowired FhirJsonParsers parsers,
+      WireMockRuntimeInfo wireMockRuntime) {
+    var streamingSelector =
+        new TcaCohortSelector(
+            streamingConfig(),
+            clientFactory.create(clientConfig(wireMockRuntime)),
+            new DefaultRetryStrategy(meterRegistry, false),
+            meterRegistry,
+            parsers,
+            Duration.ofMillis(500),
+            Duration.ofMillis(500));
+    wireMock.register(
+        fetchAllRequest()
+            .willReturn(
+                ok().withHeader(CONTENT_TYPE, APPLICATION_FHIR_NDJSON_VALUE)
+                    .withFixedDelay(2000)));
+
+    create(streamingSelector.selectCohort(List.of()))
+        .expectError(TransferProcessException.class)
+        .verify();
+  }
+
+  @Test
+  void streamingStalledAfterFirstLineTimesOut(
+      @Autowired WebClientFactory clientFactory,
+      @Autowired FhirJsonParsers parsers,
+      WireMockRuntimeInfo wireMockRuntime) {
+    var streamingSelector =
+        new TcaCohortSelector(
+            streamingConfig(),
+            clientFactory.create(clientConfig(wireMockRuntime)),
+            new DefaultRetryStrategy(meterRegistry, false),
+            meterRegistry,
+            parsers,
+            Duration.ofSeconds(5),
+            Duration.ofMillis(500));
+    allCohortSelector.streamConsentsForNPatientsWithStall("pid", 4, Duration.ofSeconds(2));
+
+    create(streamingSelector.selectCohort(List.of()))
+        .thenConsumeWhile(p -> true)
+        .expectError(TransferProcessException.class)
+        .verify();
+  }
+
+  @Test
+  void streamingRequiresParsers(
+      @Autowired WebClientFactory clientFactory, WireMockRuntimeInfo wireMockRuntime) {
+    var config = streamingConfig();
+    var client = clientFactory.create(clientConfig(wireMockRuntime));
+    var retryStrategy = new DefaultRetryStrategy(meterRegistry);
+
+    assertThatThrownBy(() -> new TcaCohortSelector(config, client, retryStrategy, meterRegistry))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static TcaCohortSelectorConfig streamingConfig() {
+    var server = new HttpClientConfig("http://localhost");
+    return new TcaCohortSelectorConfig(
+        server, PID_SYSTEM, POLICY_SYSTEM, POLICIES, "MII", null, true);
+  }
+
+  private TcaCohortSelector streamingSelector(
+      WebClientFactory clientFactory,
+      FhirJsonParsers parsers,
+      WireMockRuntimeInfo wireMockRuntime) {
+    return new TcaCohortSelector(
+        streamingConfig(),
+        clientFactory.create(clientConfig(wireMockRuntime)),
+        new DefaultRetryStrategy(meterRegistry),
+        meterRegistry,
+        parsers);
+  }
+
   @Test
   void nullSignerIdTypeDefaultsToPseudonym(
       @Autowired WebClientFactory clientFactory, WireMockRuntimeInfo wireMockRuntime) {
@@ -217,12 +352,14 @@ class TcaCohortSelectorIT {
         new TcaCohortSelector(
             configWithNull,
             clientFactory.create(clientConfig(wireMockRuntime)),
-            new DefaultRetryStrategy(meterRegistry));
+            new DefaultRetryStrategy(meterRegistry),
+            meterRegistry);
     var selectorWithPseudonym =
         new TcaCohortSelector(
             configWithPseudonym,
             clientFactory.create(clientConfig(wireMockRuntime)),
-            new DefaultRetryStrategy(meterRegistry));
+            new DefaultRetryStrategy(meterRegistry),
+            meterRegistry);
 
     // Both should behave identically
     var selector = MockCohortSelector.fetchAll(wireMock);
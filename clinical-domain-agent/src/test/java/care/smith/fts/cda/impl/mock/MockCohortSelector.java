@@ -4,15 +4,20 @@ import static care.smith.fts.test.FhirGenerators.withPrefix;
 import static care.smith.fts.test.MockServerUtil.fhirResponse;
 import static care.smith.fts.test.MockServerUtil.jsonResponse;
 import static care.smith.fts.test.MockServerUtil.sequentialMock;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_NDJSON_VALUE;
+import static care.smith.fts.util.fhir.FhirUtils.fhirResourceToString;
 import static care.smith.fts.util.fhir.FhirUtils.toBundle;
 import static care.smith.fts.util.fhir.FhirUtils.typedResourceStream;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
 import static com.github.tomakehurst.wiremock.client.WireMock.status;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static com.google.common.collect.Lists.partition;
 import static java.lang.Math.ceilDiv;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.IntStream.range;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.ProblemDetail.forStatusAndDetail;
 import static org.springframework.web.util.UriComponentsBuilder.fromUriString;
@@ -23,6 +28,7 @@ import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.google.common.collect.Streams;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.function.Supplier;
@@ -100,6 +106,32 @@ public class MockCohortSelector {
     seq.thereafter(request, successResponse(pages.poll(), statusCodes.getLast()));
   }
 
+  /**
+   * Registers a streamed NDJSON response holding one patient bundle per line, as returned by the
+   * TCA if the CDA accepts NDJSON.
+   */
+  public void streamConsentsForNPatients(String idPrefix, int total) {
+    var response =
+        ok().withHeader(CONTENT_TYPE, APPLICATION_FHIR_NDJSON_VALUE)
+            .withBody(ndjsonConsents(idPrefix, total));
+    tca.register(post(urlPathEqualTo(basePath)).willReturn(response));
+  }
+
+  /** Streams the patients as NDJSON in two halves, sent {@code stall} apart. */
+  public void streamConsentsForNPatientsWithStall(String idPrefix, int total, Duration stall) {
+    var response =
+        ok().withHeader(CONTENT_TYPE, APPLICATION_FHIR_NDJSON_VALUE)
+            .withBody(ndjsonConsents(idPrefix, total))
+            .withChunkedDribbleDelay(2, (int) stall.multipliedBy(2).toMillis());
+    tca.register(post(urlPathEqualTo(basePath)).willReturn(response));
+  }
+
+  private String ndjsonConsents(String idPrefix, int total) {
+    return generateConsents(idPrefix, total).stream()
+        .map(b -> fhirResourceToString(b) + "\n")
+        .collect(joining());
+  }
+
   /**
    * Generates a list of paginated Bundle objects from the given list of consent Bundles based on
    * the specified maximum page size.
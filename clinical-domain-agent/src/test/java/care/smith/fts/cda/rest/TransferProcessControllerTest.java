@@ -4,6 +4,7 @@ import static care.smith.fts.util.HeaderTypes.X_PROGRESS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.HttpHeaders.CONTENT_LOCATION;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.web.util.UriComponentsBuilder.fromUriString;
@@ -78,6 +79,47 @@ class TransferProcessControllerTest {
     create(start).expectNext(ResponseEntity.of(result).build()).verifyComplete();
   }
 
+  @Test
+  void resumeSucceeds() {
+    var processId = "resumed-101512";
+    when(mockRunner.resume(Mockito.any(TransferProcessDefinition.class), Mockito.eq(processId)))
+        .thenReturn(Mono.just(processId));
+
+    var resume = api.resume(EXISTING_PROJECT_NAME, processId, fromUriString(MOCK_HOST));
+    var uri = fromUriString(MOCK_HOST).path("api/v2/process/status/" + processId).build().toUri();
+    create(resume)
+        .expectNext(
+            ResponseEntity.accepted().headers(h -> h.add(CONTENT_LOCATION, uri.toString())).build())
+        .verifyComplete();
+  }
+
+  @Test
+  void resumeWithoutCheckpointReturns404() {
+    when(mockRunner.resume(Mockito.any(TransferProcessDefinition.class), Mockito.anyString()))
+        .thenReturn(Mono.error(new IllegalArgumentException("No checkpoint")));
+
+    create(api.resume(EXISTING_PROJECT_NAME, "unknown", fromUriString(MOCK_HOST)))
+        .assertNext(r -> assertThat(r.getStatusCode()).isEqualTo(NOT_FOUND))
+        .verifyComplete();
+  }
+
+  @Test
+  void resumeRunningProcessReturns400() {
+    when(mockRunner.resume(Mockito.any(TransferProcessDefinition.class), Mockito.anyString()))
+        .thenReturn(Mono.error(new IllegalStateException("Still running")));
+
+    create(api.resume(EXISTING_PROJECT_NAME, "running", fromUriString(MOCK_HOST)))
+        .assertNext(r -> assertThat(r.getStatusCode()).isEqualTo(BAD_REQUEST))
+        .verifyComplete();
+  }
+
+  @Test
+  void resumeNonExistingProjectReturns404() {
+    create(api.resume("non-existent", "process", fromUriString(MOCK_HOST)))
+        .assertNext(r -> assertThat(r.getStatusCode()).isEqualTo(NOT_FOUND))
+        .verifyComplete();
+  }
+
   @Test
   void queuedStatus() {
     var processId = "queued-093021";
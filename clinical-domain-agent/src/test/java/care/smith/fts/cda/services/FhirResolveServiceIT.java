@@ -6,14 +6,20 @@ import static care.smith.fts.test.MockServerUtil.APPLICATION_FHIR_JSON;
 import static care.smith.fts.test.MockServerUtil.clientConfig;
 import static care.smith.fts.test.MockServerUtil.fhirResponse;
 import static care.smith.fts.util.fhir.FhirUtils.toBundle;
+import static com.github.tomakehurst.wiremock.client.WireMock.and;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
 import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static com.google.common.net.HttpHeaders.ACCEPT;
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
 import static org.assertj.core.api.Assertions.*;
+import static org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED_VALUE;
 import static reactor.test.StepVerifier.create;
 
 import care.smith.fts.api.ConsentedPatient;
@@ -28,14 +34,20 @@ import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Slf4j
@@ -53,11 +65,13 @@ class FhirResolveServiceIT extends AbstractConnectionScenarioIT {
   private FhirResolveService service;
   private WireMock wireMock;
   private WebClient client;
+  private String wireMockBaseUrl;
 
   @BeforeEach
   void setUp(WireMockRuntimeInfo wiremockRuntime, @Autowired WebClientFactory clientFactory)
       throws Exception {
     client = clientFactory.create(clientConfig(wiremockRuntime));
+    wireMockBaseUrl = wiremockRuntime.getHttpBaseUrl();
     this.service = new FhirResolveService(client, new DefaultRetryStrategy(meterRegistry));
     wireMock = wiremockRuntime.getWireMock();
     try (var inStream = MockServerUtil.getResourceAsStream("metadata.json")) {
@@ -181,6 +195,119 @@ class FhirResolveServiceIT extends AbstractConnectionScenarioIT {
             .withQueryParam("identifier", equalTo(patientSystem + "|patient-456")));
   }
 
+  @Test
+  void batchResolvesPatientsWithOneSearch() {
+    var batchService =
+        new FhirResolveService(
+            client, new DefaultRetryStrategy(meterRegistry), 2, Duration.ofSeconds(1), 1);
+    var bundle =
+        Stream.of(patient("id-1", "patient-1"), patient("id-2", "patient-2")).collect(toBundle());
+    wireMock.register(
+        searchRequest()
+            .withFormParam(
+                "identifier",
+                and(containing(PID_SYSTEM + "|patient-1"), containing(PID_SYSTEM + "|patient-2")))
+            .withFormParam("_count", equalTo("2"))
+            .willReturn(fhirResponse(bundle)));
+
+    var ids =
+        Mono.zip(
+            batchService.resolve(new ConsentedPatient("patient-1", PID_SYSTEM)),
+            batchService.resolve(new ConsentedPatient("patient-2", PID_SYSTEM)));
+
+    create(ids)
+        .assertNext(
+            t -> {
+              assertThat(t.getT1().getIdPart()).isEqualTo("id-1");
+              assertThat(t.getT2().getIdPart()).isEqualTo("id-2");
+            })
+        .verifyComplete();
+    wireMock.verifyThat(1, postRequestedFor(urlPathEqualTo("/Patient/_search")));
+    wireMock.verifyThat(0, getRequestedFor(urlPathEqualTo("/Patient")));
+  }
+
+  @Test
+  void batchBeyondRequestLineLimitIsResolved() {
+    var size = 200;
+    var batchService =
+        new FhirResolveService(
+            client, new DefaultRetryStrategy(meterRegistry), size, Duration.ofSeconds(1), 1);
+    var identifiers =
+        IntStream.range(0, size).mapToObj(i -> "patient-" + UUID.randomUUID()).toList();
+    var bundle =
+        IntStream.range(0, size)
+            .mapToObj(i -> patient("id-" + i, identifiers.get(i)))
+            .collect(toBundle());
+    wireMock.register(searchRequest().willReturn(fhirResponse(bundle)));
+
+    create(
+            Flux.fromIterable(identifiers)
+                .flatMap(id -> batchService.resolve(new ConsentedPatient(id, PID_SYSTEM)), size))
+        .expectNextCount(size)
+        .verifyComplete();
+    wireMock.verifyThat(1, postRequestedFor(urlPathEqualTo("/Patient/_search")));
+  }
+
+  @Test
+  void batchFollowsPagination() {
+    var batchService =
+        new FhirResolveService(
+            client, new DefaultRetryStrategy(meterRegistry), 2, Duration.ofSeconds(1), 1);
+    var firstPage = Stream.of(patient("id-1", "patient-1")).collect(toBundle());
+    firstPage.addLink().setRelation("next").setUrl(wireMockBaseUrl + "/Patient/page-2");
+    var secondPage = Stream.of(patient("id-2", "patient-2")).collect(toBundle());
+    wireMock.register(
+        searchRequest()
+            .withFormParam("identifier", containing("patient-1"))
+            .willReturn(fhirResponse(firstPage)));
+    wireMock.register(get("/Patient/page-2").willReturn(fhirResponse(secondPage)));
+
+    create(
+            Flux.merge(
+                batchService.resolve(new ConsentedPatient("patient-1", PID_SYSTEM)),
+                batchService.resolve(new ConsentedPatient("patient-2", PID_SYSTEM))))
+        .expectNextCount(2)
+        .verifyComplete();
+  }
+
+  @Test
+  void batchErrorsForUnresolvedPatientOnly() {
+    var batchService =
+        new FhirResolveService(
+            client, new DefaultRetryStrategy(meterRegistry), 2, Duration.ofSeconds(1), 1);
+    var bundle = Stream.of(patient("id-1", "patient-1")).collect(toBundle());
+    wireMock.register(searchRequest().willReturn(fhirResponse(bundle)));
+
+    var resolved = batchService.resolve(new ConsentedPatient("patient-1", PID_SYSTEM));
+    var unresolved = batchService.resolve(new ConsentedPatient("patient-2", PID_SYSTEM));
+
+    var results =
+        Flux.merge(
+                resolved.map(IIdType::getIdPart),
+                unresolved.map(IIdType::getIdPart).onErrorResume(e -> Mono.just(e.getMessage())))
+            .collectList();
+
+    create(results)
+        .assertNext(
+            r ->
+                assertThat(r)
+                    .containsExactlyInAnyOrder(
+                        "id-1", "Unable to resolve patient identifier patient-2"))
+        .verifyComplete();
+  }
+
+  private static MappingBuilder searchRequest() {
+    return post(urlPathEqualTo("/Patient/_search"))
+        .withHeader(CONTENT_TYPE, containing(APPLICATION_FORM_URLENCODED_VALUE));
+  }
+
+  private static Patient patient(String id, String identifier) {
+    var patient = new Patient();
+    patient.setId(id);
+    patient.addIdentifier().setSystem(PID_SYSTEM).setValue(identifier);
+    return patient;
+  }
+
   @AfterEach
   void tearDown() {
     wireMock.resetMappings();
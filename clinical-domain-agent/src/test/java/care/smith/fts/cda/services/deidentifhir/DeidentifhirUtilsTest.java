@@ -1,6 +1,7 @@
 package care.smith.fts.cda.services.deidentifhir;
 
 import static care.smith.fts.cda.services.deidentifhir.DeidentifhirUtils.buildRegistry;
+import static care.smith.fts.cda.services.deidentifhir.DeidentifhirUtils.compile;
 import static care.smith.fts.cda.services.deidentifhir.DeidentifhirUtils.deidentify;
 import static care.smith.fts.cda.services.deidentifhir.DeidentifhirUtils.shiftDate;
 import static care.smith.fts.util.deidentifhir.DateShiftConstants.DATE_SHIFT_EXTENSION_URL;
@@ -54,6 +55,32 @@ class DeidentifhirUtilsTest {
     assertThat(p.getIdentifierFirstRep().getValue()).hasSize(21); // NanoId length
   }
 
+  @Test
+  void compiledEngineIsReusedAcrossPatients() throws IOException {
+    var config = parseResources(DeidentifhirUtilsTest.class, "CDtoTransport.profile");
+    var engine = compile(config);
+
+    var provider1 = new GeneratingReplacementProvider("id1");
+    var bundle1 =
+        TestPatientGenerator.generateOnePatient("id1", "2023", "identifierSystem1", "identifier1");
+    var provider2 = new GeneratingReplacementProvider("id2");
+    var bundle2 =
+        TestPatientGenerator.generateOnePatient("id2", "2023", "identifierSystem1", "identifier2");
+
+    var p1 = firstPatient(deidentify(engine, provider1, bundle1, "id1", meterRegistry));
+    var p2 = firstPatient(deidentify(engine, provider2, bundle2, "id2", meterRegistry));
+
+    assertThat(provider1.getIdMappings()).containsValue(p1.getIdPart());
+    assertThat(provider2.getIdMappings()).containsValue(p2.getIdPart());
+    assertThat(provider1.getIdMappings()).doesNotContainValue(p2.getIdPart());
+    assertThat(provider2.getIdMappings()).doesNotContainValue(p1.getIdPart());
+  }
+
+  private static Patient firstPatient(Bundle deidentified) {
+    Bundle b = (Bundle) deidentified.getEntryFirstRep().getResource();
+    return (Patient) b.getEntryFirstRep().getResource();
+  }
+
   @Test
   void shiftDateReturnsNullWhenDateIsNull() {
     var result = shiftDate(null, provider);
@@ -7,7 +7,9 @@ import care.smith.fts.api.rda.BundleSender;
 import care.smith.fts.api.rda.Deidentificator;
 import io.github.resilience4j.bulkhead.Bulkhead;
 import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -15,7 +17,9 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import tools.jackson.databind.ObjectMapper;
 
 @Slf4j
@@ -36,6 +40,12 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
 
   @Override
   public StartResult start(TransferProcessDefinition process, Mono<TransportBundle> data) {
+    return startBatch(process, data.map(List::of));
+  }
+
+  @Override
+  public StartResult startBatch(
+      TransferProcessDefinition process, Mono<List<TransportBundle>> data) {
     removeOldProcesses();
     var destination = process.bundleSender().destinationId();
     var bulkhead = bulkheadRegistry.bulkhead(destination);
@@ -67,6 +77,19 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
     }
   }
 
+  @Override
+  public Mono<Status> awaitStatus(String processId, Duration wait) {
+    TransferProcessInstance transferProcessInstance = instances.get(processId);
+    if (transferProcessInstance != null) {
+      return transferProcessInstance
+          .finished()
+          .timeout(wait, Mono.empty())
+          .then(Mono.fromSupplier(() -> transferProcessInstance.status(processId)));
+    } else {
+      return Mono.error(new IllegalArgumentException());
+    }
+  }
+
   public static class TransferProcessInstance {
     private final Deidentificator deidentificator;
     private final BundleSender bundleSender;
@@ -74,6 +97,7 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
     private final AtomicLong receivedResources;
     private final AtomicLong sentResources;
     private final AtomicReference<Instant> finishedAt;
+    private final Sinks.Empty<Void> finished = Sinks.empty();
 
     public TransferProcessInstance(TransferProcessDefinition process) {
       deidentificator = process.deidentificator();
@@ -85,15 +109,18 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
       finishedAt = new AtomicReference<>();
     }
 
-    public void execute(Mono<TransportBundle> data, Bulkhead bulkhead) {
-      data.doOnNext(
+    public void execute(Mono<List<TransportBundle>> data, Bulkhead bulkhead) {
+      data.flatMapMany(Flux::fromIterable)
+          .doOnNext(
               b ->
                   log.debug(
                       "processing patient bundle, resources: {}", b.bundle().getEntry().size()))
           .doOnNext(b -> receivedResources.getAndAdd(b.bundle().getEntry().size()))
           .flatMap(deidentificator::deidentify)
           .doOnNext(b -> sentResources.getAndAdd(b.getEntry().size()))
-          .flatMap(bundleSender::send)
+          .collectList()
+          .filter(bundles -> !bundles.isEmpty())
+          .flatMap(bundleSender::sendAll)
           .doOnError(err -> log.info("Could not process patient: {}", err.getMessage()))
           .doOnError(err -> log.trace("The exception:", err))
           .doOnError(err -> phase.set(Phase.ERROR))
@@ -106,9 +133,17 @@ public class DefaultTransferProcessRunner implements TransferProcessRunner {
               })
           .onErrorComplete()
           .doOnSuccess(ignored -> phase.compareAndSet(Phase.RUNNING, Phase.COMPLETED))
+          .doFinally(s -> finished.tryEmitEmpty())
           .subscribe();
     }
 
+    /**
+     * @return completes once the process finished
+     */
+    public Mono<Void> finished() {
+      return finished.asMono();
+    }
+
     public boolean isFinishedBefore(Instant cutoff) {
       var finished = finishedAt.get();
       return finished != null && finished.isBefore(cutoff);
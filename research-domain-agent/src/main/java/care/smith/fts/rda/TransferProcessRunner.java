@@ -1,15 +1,30 @@
 package care.smith.fts.rda;
 
 import care.smith.fts.api.TransportBundle;
+import java.time.Duration;
+import java.util.List;
 import reactor.core.publisher.Mono;
 
 public interface TransferProcessRunner {
   StartResult start(TransferProcessDefinition process, Mono<TransportBundle> data);
 
+  /**
+   * Starts one process for the bundles of several patients, that are deidentified separately and
+   * sent together.
+   */
+  StartResult startBatch(TransferProcessDefinition process, Mono<List<TransportBundle>> data);
+
   record Result(long receivedResources, long sentResources) {}
 
   Mono<Status> status(String processId);
 
+  /**
+   * Waits at most {@code wait} for the process to finish.
+   *
+   * @return the status of the process once it finished or {@code wait} elapsed
+   */
+  Mono<Status> awaitStatus(String processId, Duration wait);
+
   record Status(String processId, Phase phase, long receivedResources, long sentResources) {}
 
   enum Phase {
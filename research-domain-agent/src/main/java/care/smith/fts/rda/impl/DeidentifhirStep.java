@@ -1,13 +1,17 @@
 package care.smith.fts.rda.impl;
 
-import static care.smith.fts.rda.services.deidentifhir.DeidentifhirUtil.generateRegistry;
+import static care.smith.fts.util.MediaTypes.CBOR_OR_JSON;
 
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.api.rda.Deidentificator;
 import care.smith.fts.rda.services.deidentifhir.DeidentifhirUtil;
 import care.smith.fts.util.RetryStrategy;
+import care.smith.fts.util.deidentifhir.DeidentifhirEngine;
+import care.smith.fts.util.deidentifhir.NamespacingReplacementProvider;
 import care.smith.fts.util.tca.SecureMappingResponse;
+import com.google.common.base.Suppliers;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.r4.model.Bundle;
 import org.springframework.http.MediaType;
@@ -18,7 +22,7 @@ import reactor.core.publisher.Mono;
 @Deprecated(forRemoval = true)
 class DeidentifhirStep implements Deidentificator {
   private final WebClient tcaClient;
-  private final com.typesafe.config.Config deidentifhirConfig;
+  private final Supplier<DeidentifhirEngine<NamespacingReplacementProvider>> engine;
   private final MeterRegistry meterRegistry;
   private final RetryStrategy retryStrategy;
 
@@ -28,7 +32,7 @@ class DeidentifhirStep implements Deidentificator {
       MeterRegistry meterRegistry,
       RetryStrategy retryStrategy) {
     this.tcaClient = tcaClient;
-    this.deidentifhirConfig = config;
+    this.engine = Suppliers.memoize(() -> DeidentifhirUtil.compile(config));
     this.meterRegistry = meterRegistry;
     this.retryStrategy = retryStrategy;
   }
@@ -39,10 +43,9 @@ class DeidentifhirStep implements Deidentificator {
         .map(
             response -> {
               // Apply ID replacement via deidentifhir
-              var registry = generateRegistry(response.tidPidMap());
               var deidentified =
                   DeidentifhirUtil.deidentify(
-                      deidentifhirConfig, registry, bundle.bundle(), meterRegistry);
+                      engine.get(), response.tidPidMap(), bundle.bundle(), meterRegistry);
 
               // Restore shifted dates from TCA using tID extensions
               DeidentifhirUtil.restoreShiftedDates(deidentified, response.dateShiftMap());
@@ -56,7 +59,11 @@ class DeidentifhirStep implements Deidentificator {
     return tcaClient
         .post()
         .uri("/api/v2/rd/secure-mapping")
-        .headers(h -> h.setContentType(MediaType.APPLICATION_JSON))
+        .headers(
+            h -> {
+              h.setContentType(MediaType.APPLICATION_JSON);
+              h.setAccept(CBOR_OR_JSON);
+            })
         .bodyValue(transferId)
         .retrieve()
         .bodyToMono(SecureMappingResponse.class)
@@ -1,7 +1,6 @@
 package care.smith.fts.rda.impl;
 
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
-import static care.smith.fts.util.fhir.FhirUtils.resourceStream;
 import static java.lang.Integer.parseInt;
 import static java.util.Optional.empty;
 import static java.util.function.Predicate.not;
@@ -10,7 +9,11 @@ import static org.hl7.fhir.r4.model.Bundle.BundleType.TRANSACTION;
 import care.smith.fts.api.rda.BundleSender;
 import care.smith.fts.util.RetryStrategy;
 import care.smith.fts.util.error.TransferProcessException;
+import care.smith.fts.util.fhir.FhirUtils;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
@@ -18,6 +21,7 @@ import org.hl7.fhir.r4.model.Bundle.BundleEntryResponseComponent;
 import org.hl7.fhir.r4.model.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Slf4j
@@ -25,12 +29,17 @@ final class FhirStoreBundleSender implements BundleSender {
   private final WebClient hdsClient;
   private final RetryStrategy retryStrategy;
   private final String destinationId;
+  private final int maxTransactionEntries;
 
   public FhirStoreBundleSender(
-      WebClient hdsClient, RetryStrategy retryStrategy, String destinationId) {
+      WebClient hdsClient,
+      RetryStrategy retryStrategy,
+      String destinationId,
+      int maxTransactionEntries) {
     this.hdsClient = hdsClient;
     this.retryStrategy = retryStrategy;
     this.destinationId = destinationId;
+    this.maxTransactionEntries = maxTransactionEntries;
   }
 
   @Override
@@ -41,11 +50,73 @@ final class FhirStoreBundleSender implements BundleSender {
   @Override
   public Mono<Result> send(Bundle bundle) {
     log.trace("Sending bundle");
+    return sendTransaction(toTransactionBundle(List.of(bundle)));
+  }
+
+  /**
+   * Combines the bundles into as few transactions of at most {@code maxTransactionEntries} entries
+   * as possible and sends them one after another. A patient's bundle is never split, as the FHIR
+   * store may require references to resolve within a transaction, so a patient with more entries is
+   * sent in an oversized transaction of its own.
+   *
+   * <p>Each transaction is stored on its own, a failed transaction does not stop the following
+   * ones. The result fails if any transaction failed, while the patients of the other transactions
+   * are stored. Sending them again overwrites their resources, as each resource is put by its ID.
+   */
+  @Override
+  public Mono<Result> sendAll(List<Bundle> bundles) {
+    var transactions = groupTransactions(bundles, maxTransactionEntries);
+    log.trace("Sending {} bundles in {} transactions", bundles.size(), transactions.size());
+    var failed = new AtomicInteger();
+    return Flux.fromIterable(transactions)
+        .concatMap(
+            t ->
+                sendTransaction(toTransactionBundle(t))
+                    .doOnError(e -> failed.incrementAndGet())
+                    .doOnError(e -> log.warn(TRANSACTION_FAILED, t.size(), e.getMessage()))
+                    .onErrorComplete())
+        .then(Mono.defer(() -> result(failed.get(), transactions.size())));
+  }
+
+  private static final String TRANSACTION_FAILED = "Transaction of {} patients failed: {}";
+
+  private static Mono<Result> result(int failed, int transactions) {
+    return failed == 0
+        ? Mono.just(new Result())
+        : Mono.error(
+            new TransferProcessException(
+                "%d of %d transactions failed".formatted(failed, transactions)));
+  }
+
+  static List<List<Bundle>> groupTransactions(List<Bundle> bundles, int maxEntries) {
+    var transactions = new ArrayList<List<Bundle>>();
+    var current = new ArrayList<Bundle>();
+    var entries = 0;
+    for (var bundle : bundles) {
+      var size = bundle.getEntry().size();
+      if (size > maxEntries) {
+        log.warn("Bundle of {} entries exceeds {} entries per transaction", size, maxEntries);
+      }
+      if (!current.isEmpty() && entries + size > maxEntries) {
+        transactions.add(current);
+        current = new ArrayList<>();
+        entries = 0;
+      }
+      current.add(bundle);
+      entries += size;
+    }
+    if (!current.isEmpty()) {
+      transactions.add(current);
+    }
+    return transactions;
+  }
+
+  private Mono<Result> sendTransaction(Bundle transaction) {
     return hdsClient
         .post()
         .uri("")
         .headers(h -> h.setContentType(APPLICATION_FHIR_JSON))
-        .bodyValue(toTransactionBundle(bundle))
+        .bodyValue(transaction)
         .retrieve()
         .bodyToMono(Bundle.class)
         .retryWhen(retryStrategy.forRequest("sendBundleToHds"))
@@ -102,9 +173,10 @@ final class FhirStoreBundleSender implements BundleSender {
     return response.getStatus();
   }
 
-  private static Bundle toTransactionBundle(Bundle bundle) {
+  private static Bundle toTransactionBundle(List<Bundle> bundles) {
     Bundle transactionBundle = new Bundle();
-    resourceStream(bundle)
+    bundles.stream()
+        .flatMap(FhirUtils::resourceStream)
         .map(FhirStoreBundleSender::createPutEntry)
         .forEach(transactionBundle::addEntry);
     transactionBundle.setType(TRANSACTION);
@@ -1,5 +1,8 @@
 package care.smith.fts.rda.impl;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNullElse;
+
 import care.smith.fts.util.HttpClientConfig;
 import jakarta.validation.constraints.NotNull;
 
@@ -8,4 +11,20 @@ public record FhirStoreBundleSenderConfig(
     @NotNull HttpClientConfig server,
 
     /* */
-    @NotNull String project) {}
+    @NotNull String project,
+
+    /* Upper bound of entries per transaction if the bundles of several patients are combined */
+    Integer maxTransactionEntries) {
+
+  public static final int DEFAULT_MAX_TRANSACTION_ENTRIES = 10_000;
+
+  public FhirStoreBundleSenderConfig {
+    maxTransactionEntries =
+        requireNonNullElse(maxTransactionEntries, DEFAULT_MAX_TRANSACTION_ENTRIES);
+    checkArgument(maxTransactionEntries > 0, "maxTransactionEntries must be greater than 0");
+  }
+
+  public FhirStoreBundleSenderConfig(HttpClientConfig server, String project) {
+    this(server, project, null);
+  }
+}
@@ -29,6 +29,7 @@ public class FhirStoreBundleSenderFactory
       BundleSender.Config commonConfig, FhirStoreBundleSenderConfig implConfig) {
     var client = clientFactory.create(implConfig.server());
     var destinationId = fromBaseUrl(implConfig.server().baseUrl());
-    return new FhirStoreBundleSender(client, retryStrategy, destinationId);
+    return new FhirStoreBundleSender(
+        client, retryStrategy, destinationId, implConfig.maxTransactionEntries());
   }
 }
@@ -1,11 +1,18 @@
 package care.smith.fts.rda.impl;
 
+import static care.smith.fts.util.MediaTypes.CBOR_OR_JSON;
 import static care.smith.fts.util.deidentifhir.DateShiftConstants.DATE_SHIFT_EXTENSION_URL;
 
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.api.rda.Deidentificator;
+import care.smith.fts.util.BatchConfig;
+import care.smith.fts.util.RequestBatcher;
 import care.smith.fts.util.RetryStrategy;
+import care.smith.fts.util.tca.SecureMappingBatchRequest;
+import care.smith.fts.util.tca.SecureMappingBatchResponse;
 import care.smith.fts.util.tca.SecureMappingResponse;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -23,13 +30,27 @@ import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 @Slf4j
-class IdMapperStep implements Deidentificator {
+public class IdMapperStep implements Deidentificator {
+  private static final SecureMappingResponse EMPTY_MAPPING =
+      new SecureMappingResponse(Map.of(), Map.of());
+
   private final WebClient tcaClient;
   private final RetryStrategy retryStrategy;
+  private final RequestBatcher<String, SecureMappingResponse> batcher;
+
+  @VisibleForTesting
+  public IdMapperStep(WebClient tcaClient, RetryStrategy retryStrategy) {
+    this(tcaClient, retryStrategy, IdMapperStepConfig.DEFAULT_SECURE_MAPPING_BATCH);
+  }
 
-  IdMapperStep(WebClient tcaClient, RetryStrategy retryStrategy) {
+  IdMapperStep(WebClient tcaClient, RetryStrategy retryStrategy, BatchConfig batch) {
     this.tcaClient = tcaClient;
     this.retryStrategy = retryStrategy;
+    this.batcher =
+        batch.enabled()
+            ? new RequestBatcher<>(
+                batch.size(), batch.maxWait(), batch.concurrency(), this::fetchSecureMappings)
+            : null;
   }
 
   @Override
@@ -52,10 +73,18 @@ class IdMapperStep implements Deidentificator {
   }
 
   private Mono<SecureMappingResponse> fetchSecureMapping(String transferId) {
+    return batcher != null ? batcher.submit(transferId) : fetchSingleSecureMapping(transferId);
+  }
+
+  private Mono<SecureMappingResponse> fetchSingleSecureMapping(String transferId) {
     return tcaClient
         .post()
         .uri("/api/v2/rd/secure-mapping")
-        .headers(h -> h.setContentType(MediaType.APPLICATION_JSON))
+        .headers(
+            h -> {
+              h.setContentType(MediaType.APPLICATION_JSON);
+              h.setAccept(CBOR_OR_JSON);
+            })
         .bodyValue(transferId)
         .retrieve()
         .bodyToMono(SecureMappingResponse.class)
@@ -64,6 +93,28 @@ class IdMapperStep implements Deidentificator {
             e -> log.error("Unable to resolve transport IDs for transferId={}", transferId, e));
   }
 
+  private Mono<List<SecureMappingResponse>> fetchSecureMappings(List<String> transferIds) {
+    log.trace("Fetch secure mappings of {} transfers", transferIds.size());
+    return tcaClient
+        .post()
+        .uri("/api/v2/rd/secure-mapping/batch")
+        .headers(
+            h -> {
+              h.setContentType(MediaType.APPLICATION_JSON);
+              h.setAccept(CBOR_OR_JSON);
+            })
+        .bodyValue(new SecureMappingBatchRequest(transferIds))
+        .retrieve()
+        .bodyToMono(SecureMappingBatchResponse.class)
+        .retryWhen(retryStrategy.forRequest("fetchSecureMappings"))
+        .doOnError(e -> log.error("Unable to resolve transport IDs of {}", transferIds, e))
+        .map(
+            response ->
+                transferIds.stream()
+                    .map(id -> response.mappings().getOrDefault(id, EMPTY_MAPPING))
+                    .toList());
+  }
+
   private void processEntries(
       Bundle bundle, Map<String, String> idMapping, Map<String, String> dateShiftMap) {
     bundle.getEntry().stream()
@@ -1,8 +1,27 @@
 package care.smith.fts.rda.impl;
 
+import care.smith.fts.util.BatchConfig;
 import care.smith.fts.util.HttpClientConfig;
+import java.time.Duration;
 
-public record IdMapperStepConfig(TCAConfig trustCenterAgent) {
+public record IdMapperStepConfig(TCAConfig trustCenterAgent, BatchConfig secureMappingBatch) {
+
+  /**
+   * Collects the secure mapping lookups of up to {@code size} patients into one TCA request,
+   * disabled by default.
+   */
+  public static final BatchConfig DEFAULT_SECURE_MAPPING_BATCH =
+      new BatchConfig(1, Duration.ofMillis(100), 4);
+
+  public IdMapperStepConfig(TCAConfig trustCenterAgent, BatchConfig secureMappingBatch) {
+    this.trustCenterAgent = trustCenterAgent;
+    this.secureMappingBatch =
+        BatchConfig.withDefaults(secureMappingBatch, DEFAULT_SECURE_MAPPING_BATCH);
+  }
+
+  public IdMapperStepConfig(TCAConfig trustCenterAgent) {
+    this(trustCenterAgent, null);
+  }
 
   record TCAConfig(HttpClientConfig server) {}
 }
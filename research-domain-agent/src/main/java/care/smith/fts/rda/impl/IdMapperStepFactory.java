@@ -31,6 +31,6 @@ public class IdMapperStepFactory implements Deidentificator.Factory<IdMapperStep
     var httpClient =
         clientFactory.create(
             requireNonNull(tcaConfig.server(), "trustCenterAgent.server config is required"));
-    return new IdMapperStep(httpClient, retryStrategy);
+    return new IdMapperStep(httpClient, retryStrategy, implConfig.secureMappingBatch());
   }
 }
@@ -1,5 +1,7 @@
 package care.smith.fts.rda.rest;
 
+import static care.smith.fts.util.HeaderTypes.PREFER;
+import static care.smith.fts.util.HeaderTypes.PREFERENCE_APPLIED;
 import static care.smith.fts.util.HeaderTypes.X_PROGRESS;
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON_VALUE;
 import static care.smith.fts.util.error.ErrorResponseUtil.notFound;
@@ -14,6 +16,8 @@ import care.smith.fts.api.TransportBundle;
 import care.smith.fts.rda.TransferProcessConfig;
 import care.smith.fts.rda.TransferProcessDefinition;
 import care.smith.fts.rda.TransferProcessRunner;
+import care.smith.fts.rda.TransferProcessRunner.Phase;
+import care.smith.fts.rda.TransferProcessRunner.StartResult;
 import care.smith.fts.rda.TransferProcessRunner.Status;
 import care.smith.fts.util.error.ErrorResponseUtil;
 import io.swagger.v3.oas.annotations.Operation;
@@ -26,8 +30,11 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiFunction;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Parameters;
@@ -48,6 +55,9 @@ import reactor.core.publisher.Mono;
 @Validated
 public class TransferProcessController {
 
+  /** Upper bound of the {@code Prefer: wait} a client may ask for. */
+  static final Duration MAX_WAIT = Duration.ofSeconds(30);
+
   private final TransferProcessRunner processRunner;
   private final List<TransferProcessDefinition> processes;
   private final StartResponseMapper responseMapper;
@@ -72,7 +82,13 @@ public class TransferProcessController {
         @Parameter(
             name = "project",
             schema = @Schema(implementation = String.class),
-            description = "Project name")
+            description = "Project name"),
+        @Parameter(
+            name = PREFER,
+            schema = @Schema(implementation = String.class),
+            description =
+                "**Since 5.8** `wait=<seconds>` to wait for the transfer to finish before"
+                    + " responding, at most 30 seconds")
       },
       requestBody =
           @io.swagger.v3.oas.annotations.parameters.RequestBody(
@@ -82,6 +98,9 @@ public class TransferProcessController {
                       mediaType = "application/fhir",
                       schema = @Schema(implementation = Bundle.class))),
       responses = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "The transfer finished within the preferred wait"),
         @ApiResponse(
             responseCode = "202",
             headers =
@@ -95,11 +114,86 @@ public class TransferProcessController {
   Mono<ResponseEntity<Object>> start(
       @PathVariable("project") String project,
       @Valid @NotNull @RequestBody Mono<Bundle> data,
-      UriComponentsBuilder uriBuilder) {
+      UriComponentsBuilder uriBuilder,
+      @RequestHeader(name = PREFER, required = false) String prefer) {
+    return startProcess(
+        project,
+        data,
+        uriBuilder,
+        prefer,
+        (process, bundle) -> processRunner.start(process, Mono.just(fromPlainBundle(bundle))));
+  }
 
-    var process = findProcess(project);
-    return process
-        .map(transferProcessDefinition -> startProcess(data, uriBuilder, transferProcessDefinition))
+  @PostMapping(
+      value = "/process/{project:[\\w-]+}/patients",
+      consumes = APPLICATION_FHIR_JSON_VALUE,
+      produces = APPLICATION_FHIR_JSON_VALUE)
+  @Operation(
+      summary = "Start a transfer process for several patients",
+      description =
+          "**Since 5.8**\n\nStart the transfer of several patients' bundles, that are stored"
+              + " in as few transactions as possible. The process fails if any transaction"
+              + " failed, the other transactions are stored nonetheless",
+      parameters = {
+        @Parameter(
+            name = "project",
+            schema = @Schema(implementation = String.class),
+            description = "Project name"),
+        @Parameter(
+            name = PREFER,
+            schema = @Schema(implementation = String.class),
+            description =
+                "`wait=<seconds>` to wait for the transfer to finish before responding, at most 30"
+                    + " seconds")
+      },
+      requestBody =
+          @io.swagger.v3.oas.annotations.parameters.RequestBody(
+              description = "Bundle with one entry per patient, each a bundle with patient data",
+              content =
+                  @Content(
+                      mediaType = "application/fhir",
+                      schema = @Schema(implementation = Bundle.class))),
+      responses = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "The transfer finished within the preferred wait"),
+        @ApiResponse(
+            responseCode = "202",
+            headers =
+                @Header(
+                    name = "Content-Location",
+                    description = "Link to process status",
+                    schema = @Schema(implementation = URI.class)),
+            description = "The transfer has started successfully"),
+        @ApiResponse(responseCode = "404", description = "The project could not be found")
+      })
+  Mono<ResponseEntity<Object>> startBatch(
+      @PathVariable("project") String project,
+      @Valid @NotNull @RequestBody Mono<Bundle> data,
+      UriComponentsBuilder uriBuilder,
+      @RequestHeader(name = PREFER, required = false) String prefer) {
+    return startProcess(
+        project,
+        data,
+        uriBuilder,
+        prefer,
+        (process, bundle) -> processRunner.startBatch(process, Mono.just(fromEnvelope(bundle))));
+  }
+
+  private Mono<ResponseEntity<Object>> startProcess(
+      String project,
+      Mono<Bundle> data,
+      UriComponentsBuilder uriBuilder,
+      String prefer,
+      BiFunction<TransferProcessDefinition, Bundle, StartResult> start) {
+    var wait = preferredWait(prefer);
+    return findProcess(project)
+        .map(
+            transferProcessDefinition ->
+                data.doOnNext(b -> log.debug("Running process: {}", transferProcessDefinition))
+                    .map(b -> start.apply(transferProcessDefinition, b))
+                    .doOnNext(result -> log.trace("startResult {}", result))
+                    .flatMap(result -> awaitStarted(result, wait, uriBuilder)))
         .orElseGet(
             () ->
                 notFound(
@@ -107,15 +201,23 @@ public class TransferProcessController {
                         "Project '%s' could not be found".formatted(project))));
   }
 
-  private Mono<ResponseEntity<Object>> startProcess(
-      Mono<Bundle> data,
-      UriComponentsBuilder uriBuilder,
-      TransferProcessDefinition transferProcessDefinition) {
-    return data.map(TransferProcessController::fromPlainBundle)
-        .doOnNext(b -> log.debug("Running process: {}", transferProcessDefinition))
-        .map(tb -> processRunner.start(transferProcessDefinition, Mono.just(tb)))
-        .doOnNext(result -> log.trace("startResult {}", result))
-        .map(result -> responseMapper.fromResult(result, uriBuilder).response());
+  /**
+   * Responds like the status endpoint if the process finished within the preferred wait, so that
+   * the client needs no status request at all.
+   */
+  private Mono<ResponseEntity<Object>> awaitStarted(
+      StartResult result, Optional<Duration> wait, UriComponentsBuilder uriBuilder) {
+    var response = responseMapper.fromResult(result, uriBuilder).response();
+    if (result instanceof StartResult.Accepted(var processId) && wait.isPresent()) {
+      return processRunner
+          .awaitStatus(processId, wait.get())
+          .map(
+              s ->
+                  s.phase() == Phase.RUNNING
+                      ? response
+                      : responseForStatus(s, wait).<Object>build());
+    }
+    return Mono.just(response);
   }
 
   static TransportBundle fromPlainBundle(Bundle bundle) {
@@ -140,6 +242,19 @@ public class TransferProcessController {
     return new TransportBundle(bundleWithoutParameters, transferId);
   }
 
+  static List<TransportBundle> fromEnvelope(Bundle envelope) {
+    log.trace("Converting {} PlainBundles to TransportBundles", envelope.getEntry().size());
+    return resourceStream(envelope)
+        .map(
+            r -> {
+              if (r instanceof Bundle bundle) {
+                return fromPlainBundle(bundle);
+              }
+              throw new IllegalArgumentException("Expected a bundle per patient");
+            })
+        .toList();
+  }
+
   private Optional<TransferProcessDefinition> findProcess(String project) {
     return processes.stream().filter(p -> p.project().equalsIgnoreCase(project)).findFirst();
   }
@@ -152,7 +267,13 @@ public class TransferProcessController {
         @Parameter(
             name = "processId",
             schema = @Schema(implementation = String.class),
-            description = "Transfer process ID")
+            description = "Transfer process ID"),
+        @Parameter(
+            name = PREFER,
+            schema = @Schema(implementation = String.class),
+            description =
+                "**Since 5.8** `wait=<seconds>` to wait for the process to finish before"
+                    + " responding, at most 30 seconds")
       },
       responses = {
         @ApiResponse(
@@ -163,15 +284,18 @@ public class TransferProcessController {
                     schema = @Schema(implementation = Status.class))),
         @ApiResponse(responseCode = "404", description = "The project could not be found")
       })
-  Mono<ResponseEntity<Status>> status(@PathVariable("processId") String processId) {
+  Mono<ResponseEntity<Status>> status(
+      @PathVariable("processId") String processId,
+      @RequestHeader(name = PREFER, required = false) String prefer) {
     log.trace("Process ID: {}", processId);
-    return processRunner
-        .status(processId)
-        .map(s -> responseForStatus(s).body(s))
+    var wait = preferredWait(prefer);
+    return wait.map(w -> processRunner.awaitStatus(processId, w))
+        .orElseGet(() -> processRunner.status(processId))
+        .map(s -> responseForStatus(s, wait).body(s))
         .onErrorResume(ErrorResponseUtil::notFound);
   }
 
-  private BodyBuilder responseForStatus(Status s) {
+  private static BodyBuilder responseForStatus(Status s, Optional<Duration> wait) {
     return switch (s.phase()) {
       case RUNNING ->
           ResponseEntity.accepted()
@@ -179,12 +303,36 @@ public class TransferProcessController {
                   h -> {
                     h.add(X_PROGRESS, "Running");
                     h.add(RETRY_AFTER, "3");
+                    wait.ifPresent(w -> h.add(PREFERENCE_APPLIED, "wait=" + w.toSeconds()));
                   });
       case COMPLETED -> ResponseEntity.ok();
       case ERROR -> ResponseEntity.internalServerError();
     };
   }
 
+  /**
+   * @return the {@code wait} preference of a {@code Prefer} header, capped at {@link #MAX_WAIT}
+   */
+  static Optional<Duration> preferredWait(String prefer) {
+    return Optional.ofNullable(prefer).stream()
+        .flatMap(p -> Arrays.stream(p.split(",")))
+        .map(preference -> preference.split(";", 2)[0].trim())
+        .filter(preference -> preference.startsWith("wait="))
+        .findFirst()
+        .flatMap(preference -> parseSeconds(preference.substring("wait=".length())))
+        .filter(Duration::isPositive)
+        .map(w -> w.compareTo(MAX_WAIT) > 0 ? MAX_WAIT : w);
+  }
+
+  private static Optional<Duration> parseSeconds(String seconds) {
+    try {
+      return Optional.of(Duration.ofSeconds(Long.parseLong(seconds.trim())));
+    } catch (NumberFormatException e) {
+      log.debug("Ignoring invalid wait preference: {}", seconds);
+      return Optional.empty();
+    }
+  }
+
   @GetMapping("/projects")
   @Operation(
       summary = "List available projects",
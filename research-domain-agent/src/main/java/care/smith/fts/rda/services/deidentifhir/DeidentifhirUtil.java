@@ -2,11 +2,14 @@ package care.smith.fts.rda.services.deidentifhir;
 
 import static care.smith.fts.util.deidentifhir.DateShiftConstants.DATE_SHIFT_EXTENSION_URL;
 
+import care.smith.fts.util.deidentifhir.DeidentifhirEngine;
 import care.smith.fts.util.deidentifhir.NamespacingReplacementProvider;
 import com.typesafe.config.Config;
 import de.ume.deidentifhir.Deidentifhir;
 import de.ume.deidentifhir.Registry;
 import de.ume.deidentifhir.util.Handlers;
+import de.ume.deidentifhir.util.IDReplacementProvider;
+import de.ume.deidentifhir.util.IdentifierValueReplacementProvider;
 import de.ume.deidentifhir.util.JavaCompat;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
@@ -23,8 +26,11 @@ import org.hl7.fhir.r4.model.StringType;
 public interface DeidentifhirUtil {
 
   static Registry generateRegistry(Map<String, String> secureMapping) {
-    var keyCreator = NamespacingReplacementProvider.withoutNamespacing();
-    var replacementProvider = NamespacingReplacementProvider.of(keyCreator, secureMapping);
+    return generateRegistry(replacementProvider(secureMapping));
+  }
+
+  private static <P extends IDReplacementProvider & IdentifierValueReplacementProvider>
+      Registry generateRegistry(P replacementProvider) {
     Registry registry = new Registry();
     registry.addHander(
         "idReplacementHandler",
@@ -45,6 +51,22 @@ public interface DeidentifhirUtil {
     return registry;
   }
 
+  private static NamespacingReplacementProvider replacementProvider(
+      Map<String, String> secureMapping) {
+    var keyCreator = NamespacingReplacementProvider.withoutNamespacing();
+    return NamespacingReplacementProvider.of(keyCreator, secureMapping);
+  }
+
+  /**
+   * Compiles the deidentifhir profile once, the secure mapping is bound per bundle.
+   *
+   * @param config the deidentifhir profile
+   * @return compiled deidentifhir engine
+   */
+  static DeidentifhirEngine<NamespacingReplacementProvider> compile(Config config) {
+    return new DeidentifhirEngine<>(config, DeidentifhirUtil::generateRegistry);
+  }
+
   /**
    * Replace all IDs contained in the provided bundle with the replacement stored in the provided
    * pseudonymMap.
@@ -58,6 +80,21 @@ public interface DeidentifhirUtil {
     return deidentified;
   }
 
+  /**
+   * Replace all IDs contained in the provided bundle with the replacement stored in the provided
+   * secureMapping, using a precompiled engine.
+   */
+  static Bundle deidentify(
+      DeidentifhirEngine<NamespacingReplacementProvider> engine,
+      Map<String, String> secureMapping,
+      Bundle bundle,
+      MeterRegistry meterRegistry) {
+    var sample = Timer.start(meterRegistry);
+    var deidentified = engine.deidentify(bundle, replacementProvider(secureMapping));
+    sample.stop(meterRegistry.timer("deidentify"));
+    return deidentified;
+  }
+
   /**
    * Restores shifted dates from TCA. Finds date elements with tID extensions, looks up the shifted
    * date using the tID, sets the date value, and removes the extension.
@@ -12,11 +12,14 @@ import care.smith.fts.rda.TransferProcessRunner.Phase;
 import io.github.resilience4j.bulkhead.BulkheadConfig;
 import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import org.hl7.fhir.r4.model.Bundle;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import tools.jackson.databind.ObjectMapper;
 
 class DefaultTransferProcessRunnerTest {
@@ -76,6 +79,45 @@ class DefaultTransferProcessRunnerTest {
     assertThat(status.sentResources()).isEqualTo(1);
   }
 
+  @Test
+  void batchOfPatientsSentTogether() {
+    var sent = new ArrayList<List<Bundle>>();
+    var sender =
+        new BundleSender() {
+          @Override
+          public Mono<Result> send(Bundle bundle) {
+            return Mono.error(new IllegalStateException("Expected a single batch"));
+          }
+
+          @Override
+          public Mono<Result> sendAll(List<Bundle> bundles) {
+            sent.add(bundles);
+            return just(new Result());
+          }
+        };
+    var process =
+        new TransferProcessDefinition(
+            "test",
+            new TransferProcessConfig(null, null),
+            (b) -> Mono.just(b.bundle()),
+            sender);
+    var patients =
+        List.of(
+            new TransportBundle(new Bundle().addEntry(new Bundle().getEntryFirstRep()), "t1"),
+            new TransportBundle(new Bundle().addEntry(new Bundle().getEntryFirstRep()), "t2"));
+
+    var startResult = runner.startBatch(process, Mono.just(patients));
+
+    assertThat(startResult).isInstanceOf(TransferProcessRunner.StartResult.Accepted.class);
+    String processId = ((TransferProcessRunner.StartResult.Accepted) startResult).processId();
+    var status = awaitCompletion(runner, processId);
+    assertThat(status.phase()).isEqualTo(Phase.COMPLETED);
+    assertThat(status.receivedResources()).isEqualTo(2);
+    assertThat(status.sentResources()).isEqualTo(2);
+    assertThat(sent).hasSize(1);
+    assertThat(sent.getFirst()).hasSize(2);
+  }
+
   @Test
   void rejectsWhenSaturated() {
     var registry = bulkheadRegistry(1);
@@ -304,4 +346,49 @@ class DefaultTransferProcessRunnerTest {
       return id;
     }
   }
+
+  @Test
+  void awaitStatusCompletesWhenProcessFinishes() {
+    var sent = Sinks.<Result>one();
+    TransferProcessDefinition process =
+        new TransferProcessDefinition(
+            "test",
+            new TransferProcessConfig(null, null),
+            (b) -> Mono.just(new Bundle().addEntry(new Bundle().getEntryFirstRep())),
+            (b) -> sent.asMono());
+
+    var startResult =
+        runner.start(process, Mono.just(new TransportBundle(new Bundle(), "transferId")));
+    var processId = ((TransferProcessRunner.StartResult.Accepted) startResult).processId();
+
+    create(runner.awaitStatus(processId, Duration.ofSeconds(10)))
+        .then(() -> sent.tryEmitValue(new Result()))
+        .assertNext(s -> assertThat(s.phase()).isEqualTo(Phase.COMPLETED))
+        .verifyComplete();
+  }
+
+  @Test
+  void awaitStatusReturnsRunningAfterWait() {
+    TransferProcessDefinition process =
+        new TransferProcessDefinition(
+            "test",
+            new TransferProcessConfig(null, null),
+            (b) -> Mono.just(new Bundle().addEntry(new Bundle().getEntryFirstRep())),
+            (b) -> Mono.never());
+
+    var startResult =
+        runner.start(process, Mono.just(new TransportBundle(new Bundle(), "transferId")));
+    var processId = ((TransferProcessRunner.StartResult.Accepted) startResult).processId();
+
+    create(runner.awaitStatus(processId, Duration.ofMillis(50)))
+        .assertNext(s -> assertThat(s.phase()).isEqualTo(Phase.RUNNING))
+        .verifyComplete();
+  }
+
+  @Test
+  void awaitStatusOfUnknownProcessErrors() {
+    create(runner.awaitStatus("unknown", Duration.ofMillis(50)))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+  }
 }
@@ -0,0 +1,25 @@
+package care.smith.fts.rda.impl;
+
+import static care.smith.fts.rda.impl.FhirStoreBundleSenderConfig.DEFAULT_MAX_TRANSACTION_ENTRIES;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import care.smith.fts.util.HttpClientConfig;
+import org.junit.jupiter.api.Test;
+
+class FhirStoreBundleSenderConfigTest {
+
+  private static final HttpClientConfig SERVER = new HttpClientConfig("http://localhost");
+
+  @Test
+  void maxTransactionEntriesDefaultsWhenNull() {
+    var config = new FhirStoreBundleSenderConfig(SERVER, "example");
+    assertThat(config.maxTransactionEntries()).isEqualTo(DEFAULT_MAX_TRANSACTION_ENTRIES);
+  }
+
+  @Test
+  void invalidMaxTransactionEntriesThrows() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new FhirStoreBundleSenderConfig(SERVER, "example", 0));
+  }
+}
@@ -5,9 +5,12 @@ import static care.smith.fts.test.MockServerUtil.fhirResponse;
 import static care.smith.fts.util.DestinationId.fromBaseUrl;
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON_VALUE;
 import static com.github.tomakehurst.wiremock.client.WireMock.badRequest;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.ok;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.matching.UrlPattern.ANY;
 import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
 import static reactor.test.StepVerifier.create;
@@ -23,6 +26,7 @@ import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.AfterEach;
@@ -66,7 +70,8 @@ class FhirStoreBundleSenderIT extends AbstractConnectionScenarioIT {
     var config = clientConfig(wireMockRuntime);
     var client = clientFactory.create(config);
     var registry = new DefaultRetryStrategy(meterRegistry);
-    bundleSender = new FhirStoreBundleSender(client, registry, fromBaseUrl(config.baseUrl()));
+    bundleSender =
+        new FhirStoreBundleSender(client, registry, fromBaseUrl(config.baseUrl()), 2);
     wireMock = wireMockRuntime.getWireMock();
   }
 
@@ -102,6 +107,52 @@ class FhirStoreBundleSenderIT extends AbstractConnectionScenarioIT {
     create(bundleSender.send(bundle)).expectError(TransferProcessException.class).verify();
   }
 
+  @Test
+  void bundlesOfSeveralPatientsSentInTransactionsOfMaxEntries() {
+    var bundles = List.of(patientBundle("a"), patientBundle("b"), patientBundle("c"));
+    wireMock.register(fhirStoreRequest().willReturn(fhirResponse(transactionResponse("200 OK"))));
+
+    create(bundleSender.sendAll(bundles)).expectNext(new Result()).verifyComplete();
+
+    wireMock.verifyThat(2, postRequestedFor(urlEqualTo("/")));
+    wireMock.verifyThat(
+        1,
+        postRequestedFor(urlEqualTo("/"))
+            .withRequestBody(containing("Patient/a"))
+            .withRequestBody(containing("Patient/b")));
+  }
+
+  @Test
+  void failedTransactionDoesNotStopFollowingTransactions() {
+    var bundles = List.of(patientBundle("a"), patientBundle("b"), patientBundle("c"));
+    wireMock.register(
+        fhirStoreRequest()
+            .withRequestBody(containing("Patient/a"))
+            .willReturn(fhirResponse(transactionResponse("400 Bad Request"))));
+    wireMock.register(
+        fhirStoreRequest()
+            .withRequestBody(containing("Patient/c"))
+            .willReturn(fhirResponse(transactionResponse("200 OK"))));
+
+    create(bundleSender.sendAll(bundles))
+        .expectErrorMessage("1 of 2 transactions failed")
+        .verify();
+
+    wireMock.verifyThat(2, postRequestedFor(urlEqualTo("/")));
+  }
+
+  @Test
+  void noTransactionSentWithoutBundles() {
+    create(bundleSender.sendAll(List.of())).expectNext(new Result()).verifyComplete();
+    wireMock.verifyThat(0, postRequestedFor(urlEqualTo("/")));
+  }
+
+  private static Bundle patientBundle(String id) {
+    var bundle = new Bundle();
+    bundle.addEntry().setResource(new Patient().setId(id));
+    return bundle;
+  }
+
   private static Bundle transactionResponse(String... statusCodes) {
     var responseBundle = new Bundle();
     responseBundle.setType(Bundle.BundleType.TRANSACTIONRESPONSE);
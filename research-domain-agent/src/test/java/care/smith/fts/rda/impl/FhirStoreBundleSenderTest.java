@@ -1,5 +1,6 @@
 package care.smith.fts.rda.impl;
 
+import static care.smith.fts.rda.impl.FhirStoreBundleSender.groupTransactions;
 import static care.smith.fts.rda.impl.FhirStoreBundleSender.hasHttpSuccess;
 import static care.smith.fts.rda.impl.FhirStoreBundleSender.validateTransactionResponse;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -7,8 +8,10 @@ import static reactor.test.StepVerifier.create;
 
 import care.smith.fts.api.rda.BundleSender.Result;
 import care.smith.fts.util.error.TransferProcessException;
+import java.util.List;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -17,7 +20,7 @@ class FhirStoreBundleSenderTest {
 
   @Test
   void destinationIdReturnsPreComputedValue() {
-    var sender = new FhirStoreBundleSender(null, null, "https://blaze.example/fhir");
+    var sender = new FhirStoreBundleSender(null, null, "https://blaze.example/fhir", 10);
     assertThat(sender.destinationId()).isEqualTo("https://blaze.example/fhir");
   }
 
@@ -97,6 +100,38 @@ class FhirStoreBundleSenderTest {
         .verify();
   }
 
+  @Test
+  void groupTransactionsFillsUpToMaxEntries() {
+    var a = patientBundle(2);
+    var b = patientBundle(1);
+    var c = patientBundle(3);
+
+    assertThat(groupTransactions(List.of(a, b, c), 3)).containsExactly(List.of(a, b), List.of(c));
+  }
+
+  @Test
+  void groupTransactionsKeepsOversizedBundleWhole() {
+    var a = patientBundle(1);
+    var b = patientBundle(5);
+    var c = patientBundle(1);
+
+    assertThat(groupTransactions(List.of(a, b, c), 3))
+        .containsExactly(List.of(a), List.of(b), List.of(c));
+  }
+
+  @Test
+  void groupTransactionsWithoutBundles() {
+    assertThat(groupTransactions(List.of(), 3)).isEmpty();
+  }
+
+  private static Bundle patientBundle(int resources) {
+    var bundle = new Bundle();
+    for (var i = 0; i < resources; i++) {
+      bundle.addEntry().setResource(new Patient());
+    }
+    return bundle;
+  }
+
   private static BundleEntryComponent entryWithStatus(String status) {
     return new BundleEntryComponent()
         .setResponse(new Bundle.BundleEntryResponseComponent().setStatus(status));
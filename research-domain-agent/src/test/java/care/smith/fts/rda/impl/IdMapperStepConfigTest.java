@@ -0,0 +1,25 @@
+package care.smith.fts.rda.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import care.smith.fts.util.BatchConfig;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class IdMapperStepConfigTest {
+
+  @Test
+  void missingSecureMappingBatchDisablesBatching() {
+    var config = new IdMapperStepConfig(null);
+    assertThat(config.secureMappingBatch().enabled()).isFalse();
+  }
+
+  @Test
+  void secureMappingBatchDefaults() {
+    var batch =
+        new IdMapperStepConfig(null, new BatchConfig(20, null, null)).secureMappingBatch();
+    assertThat(batch.enabled()).isTrue();
+    assertThat(batch.maxWait()).isEqualTo(Duration.ofMillis(100));
+    assertThat(batch.concurrency()).isEqualTo(4);
+  }
+}
@@ -6,8 +6,10 @@ import static care.smith.fts.test.MockServerUtil.jsonResponse;
 import static care.smith.fts.test.TestPatientGenerator.generateOnePatient;
 import static care.smith.fts.util.deidentifhir.DateShiftConstants.DATE_SHIFT_EXTENSION_URL;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
 import static com.github.tomakehurst.wiremock.client.WireMock.ok;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
@@ -16,6 +18,7 @@ import static reactor.test.StepVerifier.create;
 
 import care.smith.fts.api.TransportBundle;
 import care.smith.fts.test.connection_scenario.AbstractConnectionScenarioIT;
+import care.smith.fts.util.BatchConfig;
 import care.smith.fts.util.DefaultRetryStrategy;
 import care.smith.fts.util.WebClientFactory;
 import com.github.tomakehurst.wiremock.client.MappingBuilder;
@@ -24,6 +27,7 @@ import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
+import java.time.Duration;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.DateTimeType;
 import org.hl7.fhir.r4.model.DateType;
@@ -40,6 +44,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @SpringBootTest
@@ -602,6 +607,46 @@ class IdMapperStepIT extends AbstractConnectionScenarioIT {
         .verifyComplete();
   }
 
+  @Test
+  void batchedDeidentificationFetchesMappingsInOneRequest(
+      @Autowired WebClientFactory clientFactory, WireMockRuntimeInfo wireMockRuntime) {
+    var client = clientFactory.create(clientConfig(wireMockRuntime));
+    var batchStep =
+        new IdMapperStep(
+            client,
+            new DefaultRetryStrategy(meterRegistry),
+            new BatchConfig(2, Duration.ofSeconds(5), 1));
+    var first = new Patient();
+    first.setId("Patient/tid1");
+    var second = new Patient();
+    second.setId("Patient/tid2");
+
+    wireMock.register(
+        post("/api/v2/rd/secure-mapping/batch")
+            .withRequestBody(equalToJson("{\"transferIds\": [\"transfer1\", \"transfer2\"]}"))
+            .willReturn(
+                jsonResponse(
+                    """
+                    {"mappings": {
+                      "transfer1": {"tidPidMap": {"tid1": "pid1"}, "dateShiftMap": {}},
+                      "transfer2": {"tidPidMap": {"tid2": "pid2"}, "dateShiftMap": {}}}}
+                    """)));
+
+    create(
+            Flux.mergeSequential(
+                batchStep.deidentify(new TransportBundle(wrapInOuterBundle(first), "transfer1")),
+                batchStep.deidentify(new TransportBundle(wrapInOuterBundle(second), "transfer2"))))
+        .assertNext(b -> assertThat(innerResourceId(b)).isEqualTo("pid1"))
+        .assertNext(b -> assertThat(innerResourceId(b)).isEqualTo("pid2"))
+        .verifyComplete();
+    wireMock.verifyThat(0, postRequestedFor(urlPathEqualTo("/api/v2/rd/secure-mapping")));
+  }
+
+  private static String innerResourceId(Bundle bundle) {
+    Bundle inner = (Bundle) bundle.getEntryFirstRep().getResource();
+    return inner.getEntryFirstRep().getResource().getIdPart();
+  }
+
   /**
    * Builds a {@code SecureMappingResponse} JSON body that exceeds WebFlux's 256KB default in-memory
    * codec limit. A client left at the default limit fails to decode this with {@code
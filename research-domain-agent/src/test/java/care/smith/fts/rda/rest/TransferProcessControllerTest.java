@@ -1,6 +1,9 @@
 package care.smith.fts.rda.rest;
 
+import static care.smith.fts.rda.rest.TransferProcessController.fromEnvelope;
 import static care.smith.fts.rda.rest.TransferProcessController.fromPlainBundle;
+import static care.smith.fts.rda.rest.TransferProcessController.preferredWait;
+import static care.smith.fts.util.HeaderTypes.PREFERENCE_APPLIED;
 import static care.smith.fts.util.HeaderTypes.X_PROGRESS;
 import static care.smith.fts.util.fhir.FhirUtils.resourceStream;
 import static care.smith.fts.util.fhir.FhirUtils.toBundle;
@@ -21,6 +24,7 @@ import care.smith.fts.rda.TransferProcessRunner.Phase;
 import care.smith.fts.rda.TransferProcessRunner.StartResult;
 import care.smith.fts.rda.TransferProcessRunner.Status;
 import care.smith.fts.rda.TransferProcessRunnerConfig;
+import java.time.Duration;
 import java.util.stream.Stream;
 import org.hl7.fhir.r4.model.*;
 import org.junit.jupiter.api.BeforeEach;
@@ -73,7 +77,8 @@ class TransferProcessControllerTest {
         api.start(
             "example",
             Mono.just(bundle),
-            UriComponentsBuilder.fromUriString("http://localhost:1234"));
+            UriComponentsBuilder.fromUriString("http://localhost:1234"),
+            null);
     var uri =
         UriComponentsBuilder.fromUriString("http://localhost:1234")
             .path("api/v2/process/status/runningProcessId")
@@ -102,7 +107,8 @@ class TransferProcessControllerTest {
         api.start(
             "example",
             Mono.just(bundle),
-            UriComponentsBuilder.fromUriString("http://localhost:1234"));
+            UriComponentsBuilder.fromUriString("http://localhost:1234"),
+            null);
     create(start)
         .assertNext(
             response -> {
@@ -121,7 +127,8 @@ class TransferProcessControllerTest {
             api.start(
                 "non-existent",
                 Mono.just(new Bundle()),
-                UriComponentsBuilder.fromUriString("http://localhost:1234")))
+                UriComponentsBuilder.fromUriString("http://localhost:1234"),
+                null))
         .expectNext(
             ResponseEntity.of(
                     ProblemDetail.forStatusAndDetail(
@@ -184,6 +191,63 @@ class TransferProcessControllerTest {
     assertThrows(IllegalArgumentException.class, () -> fromPlainBundle(bundle));
   }
 
+  @Test
+  void startBatchPassesAllPatientsToRunner() {
+    var envelope =
+        Stream.of(plainBundle("transfer-1"), plainBundle("transfer-2")).collect(toBundle());
+    when(mockRunner.startBatch(any(TransferProcessDefinition.class), any(Mono.class)))
+        .thenReturn(new StartResult.Accepted(RUNNING_PROCESS_ID));
+
+    var start =
+        api.startBatch(
+            "example",
+            Mono.just(envelope),
+            UriComponentsBuilder.fromUriString("http://localhost:1234"),
+            null);
+
+    create(start)
+        .assertNext(response -> assertThat(response.getStatusCode().value()).isEqualTo(202))
+        .verifyComplete();
+    verify(mockRunner).startBatch(any(TransferProcessDefinition.class), any(Mono.class));
+    verify(mockRunner, never()).start(any(TransferProcessDefinition.class), any(Mono.class));
+  }
+
+  @Test
+  void startBatchNonExistingProjectErrors() {
+    create(
+            api.startBatch(
+                "non-existent",
+                Mono.just(new Bundle()),
+                UriComponentsBuilder.fromUriString("http://localhost:1234"),
+                null))
+        .assertNext(response -> assertThat(response.getStatusCode().value()).isEqualTo(404))
+        .verifyComplete();
+  }
+
+  @Test
+  void envelopeConversionSucceeds() {
+    var envelope =
+        Stream.of(plainBundle("transfer-1"), plainBundle("transfer-2")).collect(toBundle());
+
+    assertThat(fromEnvelope(envelope))
+        .extracting(TransportBundle::transferId)
+        .containsExactly("transfer-1", "transfer-2");
+  }
+
+  @Test
+  void envelopeWithoutPatientBundleErrors() {
+    var envelope = Stream.of(plainBundle("transfer-1"), new Patient()).collect(toBundle());
+
+    assertThrows(IllegalArgumentException.class, () -> fromEnvelope(envelope));
+  }
+
+  private static Bundle plainBundle(String transferId) {
+    return Stream.of(
+            new Parameters().addParameter("id", new StringType(transferId)).setId("transfer-id"),
+            new Patient())
+        .collect(toBundle());
+  }
+
   private static TransferProcessDefinition mockTransferProcess() {
     return new TransferProcessDefinition(
         "example",
@@ -196,7 +260,7 @@ class TransferProcessControllerTest {
   void statusIsRunning() {
     when(mockRunner.status(RUNNING_PROCESS_ID)).thenReturn(Mono.just(RUNNING_PROCESS_STATUS));
 
-    var status = api.status(RUNNING_PROCESS_ID);
+    var status = api.status(RUNNING_PROCESS_ID, null);
     create(status)
         .expectNext(
             ResponseEntity.accepted()
@@ -213,7 +277,7 @@ class TransferProcessControllerTest {
   void statusIsCompleted() {
     when(mockRunner.status(COMPLETED_PROCESS_ID)).thenReturn(Mono.just(COMPLETED_PROCESS_STATUS));
 
-    var status = api.status(COMPLETED_PROCESS_ID);
+    var status = api.status(COMPLETED_PROCESS_ID, null);
     create(status).expectNext(ResponseEntity.ok().body(COMPLETED_PROCESS_STATUS)).verifyComplete();
   }
 
@@ -221,9 +285,90 @@ class TransferProcessControllerTest {
   void statusIsError() {
     when(mockRunner.status(ERROR_PROCESS_ID)).thenReturn(Mono.just(ERROR_PROCESS_STATUS));
 
-    var status = api.status(ERROR_PROCESS_ID);
+    var status = api.status(ERROR_PROCESS_ID, null);
     create(status)
         .expectNext(ResponseEntity.internalServerError().body(ERROR_PROCESS_STATUS))
         .verifyComplete();
   }
+
+  @Test
+  void statusWaitsWhenPreferred() {
+    when(mockRunner.awaitStatus(COMPLETED_PROCESS_ID, Duration.ofSeconds(5)))
+        .thenReturn(Mono.just(COMPLETED_PROCESS_STATUS));
+
+    var status = api.status(COMPLETED_PROCESS_ID, "wait=5");
+    create(status).expectNext(ResponseEntity.ok().body(COMPLETED_PROCESS_STATUS)).verifyComplete();
+  }
+
+  @Test
+  void statusStillRunningAfterWaitAppliesPreference() {
+    when(mockRunner.awaitStatus(RUNNING_PROCESS_ID, Duration.ofSeconds(5)))
+        .thenReturn(Mono.just(RUNNING_PROCESS_STATUS));
+
+    var status = api.status(RUNNING_PROCESS_ID, "respond-async, wait=5");
+    create(status)
+        .assertNext(
+            response -> {
+              assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+              assertThat(response.getHeaders().getFirst(PREFERENCE_APPLIED)).isEqualTo("wait=5");
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void startRespondsOkWhenFinishedWithinWait() {
+    var bundle =
+        concat(
+                Stream.of(
+                    new Parameters().addParameter("id", "transfer-142603").setId("transfer-id")),
+                resourceStream(new Bundle()))
+            .collect(toBundle());
+    when(mockRunner.start(any(TransferProcessDefinition.class), any(Mono.class)))
+        .thenReturn(new StartResult.Accepted(COMPLETED_PROCESS_ID));
+    when(mockRunner.awaitStatus(COMPLETED_PROCESS_ID, Duration.ofSeconds(5)))
+        .thenReturn(Mono.just(COMPLETED_PROCESS_STATUS));
+
+    var start =
+        api.start(
+            "example",
+            Mono.just(bundle),
+            UriComponentsBuilder.fromUriString("http://localhost:1234"),
+            "respond-async, wait=5");
+    create(start).expectNext(ResponseEntity.ok().build()).verifyComplete();
+  }
+
+  @Test
+  void startRespondsAcceptedWhenRunningAfterWait() {
+    var bundle =
+        concat(
+                Stream.of(
+                    new Parameters().addParameter("id", "transfer-142604").setId("transfer-id")),
+                resourceStream(new Bundle()))
+            .collect(toBundle());
+    when(mockRunner.start(any(TransferProcessDefinition.class), any(Mono.class)))
+        .thenReturn(new StartResult.Accepted(RUNNING_PROCESS_ID));
+    when(mockRunner.awaitStatus(RUNNING_PROCESS_ID, Duration.ofSeconds(5)))
+        .thenReturn(Mono.just(RUNNING_PROCESS_STATUS));
+
+    var start =
+        api.start(
+            "example",
+            Mono.just(bundle),
+            UriComponentsBuilder.fromUriString("http://localhost:1234"),
+            "wait=5");
+    create(start)
+        .assertNext(r -> assertThat(r.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED))
+        .verifyComplete();
+  }
+
+  @Test
+  void preferredWaitIsParsedAndCapped() {
+    assertThat(preferredWait(null)).isEmpty();
+    assertThat(preferredWait("respond-async")).isEmpty();
+    assertThat(preferredWait("wait=abc")).isEmpty();
+    assertThat(preferredWait("wait=0")).isEmpty();
+    assertThat(preferredWait("respond-async, wait=5")).contains(Duration.ofSeconds(5));
+    assertThat(preferredWait("wait=10; foo, handling=lenient")).contains(Duration.ofSeconds(10));
+    assertThat(preferredWait("wait=3600")).contains(TransferProcessController.MAX_WAIT);
+  }
 }
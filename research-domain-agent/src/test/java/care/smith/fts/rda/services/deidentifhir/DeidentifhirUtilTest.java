@@ -1,5 +1,6 @@
 package care.smith.fts.rda.services.deidentifhir;
 
+import static care.smith.fts.rda.services.deidentifhir.DeidentifhirUtil.compile;
 import static care.smith.fts.rda.services.deidentifhir.DeidentifhirUtil.generateRegistry;
 import static care.smith.fts.rda.services.deidentifhir.DeidentifhirUtil.restoreShiftedDates;
 import static care.smith.fts.test.TestPatientGenerator.generateOnePatient;
@@ -48,6 +49,35 @@ class DeidentifhirUtilTest {
     assertThat(p.getIdentifierFirstRep().getValue()).isEqualTo("pidentifier1");
   }
 
+  @Test
+  void deidentifyWithCompiledEngine() throws IOException {
+    var config = parseResources(DeidentifhirUtilTest.class, "TransportToRD.profile");
+    var engine = compile(config);
+
+    var first =
+        DeidentifhirUtil.deidentify(
+            engine,
+            Map.of("tid1", "pid1", "tidentifier1", "pidentifier1"),
+            generateOnePatient("tid1", "2023", "identifierSystem1", "tidentifier1"),
+            meterRegistry);
+    var second =
+        DeidentifhirUtil.deidentify(
+            engine,
+            Map.of("tid2", "pid2", "tidentifier2", "pidentifier2"),
+            generateOnePatient("tid2", "2023", "identifierSystem1", "tidentifier2"),
+            meterRegistry);
+
+    Bundle b1 = (Bundle) first.getEntryFirstRep().getResource();
+    Patient p1 = (Patient) b1.getEntryFirstRep().getResource();
+    Bundle b2 = (Bundle) second.getEntryFirstRep().getResource();
+    Patient p2 = (Patient) b2.getEntryFirstRep().getResource();
+
+    assertThat(p1.getId()).isEqualTo("Patient/pid1");
+    assertThat(p1.getIdentifierFirstRep().getValue()).isEqualTo("pidentifier1");
+    assertThat(p2.getId()).isEqualTo("Patient/pid2");
+    assertThat(p2.getIdentifierFirstRep().getValue()).isEqualTo("pidentifier2");
+  }
+
   @Test
   void restoreShiftedDatesRestoresDateWithExtension() {
     var bundle = new Bundle();
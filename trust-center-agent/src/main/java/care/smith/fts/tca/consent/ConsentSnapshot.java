@@ -0,0 +1,56 @@
+package care.smith.fts.tca.consent;
+
+import static care.smith.fts.util.ConsentedPatientExtractor.getPatientIdentifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.hl7.fhir.r4.model.Bundle;
+
+/**
+ * The consented patients of a domain for one set of policies, as read from gICS at {@code created}.
+ * Each patient is a Bundle holding its Patient and Consent resources, as returned by {@link
+ * ConsentedPatientsProvider}.
+ */
+public final class ConsentSnapshot {
+  private final Instant created;
+  private final List<Bundle> patients;
+  private final Map<String, Map<String, Bundle>> bySystem = new ConcurrentHashMap<>();
+
+  public ConsentSnapshot(Instant created, List<Bundle> patients) {
+    this.created = created;
+    this.patients = List.copyOf(patients);
+  }
+
+  public Instant created() {
+    return created;
+  }
+
+  public List<Bundle> patients() {
+    return patients;
+  }
+
+  boolean isOlderThan(Duration age, Instant now) {
+    return created.plus(age).isBefore(now);
+  }
+
+  /**
+   * @return the bundle of the patient with the given identifier, patients are indexed by their
+   *     identifier on the first lookup of a system
+   */
+  Optional<Bundle> patient(String identifierSystem, String identifier) {
+    var index = bySystem.computeIfAbsent(identifierSystem, this::index);
+    return Optional.ofNullable(index.get(identifier));
+  }
+
+  private Map<String, Bundle> index(String identifierSystem) {
+    var index = new HashMap<String, Bundle>(patients.size());
+    patients.forEach(
+        b -> getPatientIdentifier(identifierSystem, b).ifPresent(id -> index.putIfAbsent(id, b)));
+    return index;
+  }
+}
@@ -0,0 +1,34 @@
+package care.smith.fts.tca.consent;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Persists consent snapshots, so they survive restarts of the TCA and are shared between TCA
+ * instances. Snapshots in use are held in memory by {@link SnapshotConsentedPatientsProvider}.
+ */
+public interface ConsentSnapshotStore {
+
+  /**
+   * @param key identifies the domain and the set of policies of the snapshot
+   * @return the stored snapshot, empty if there is none
+   */
+  Mono<ConsentSnapshot> load(String key);
+
+  /** Replaces the stored snapshot of {@code key}. */
+  Mono<Void> save(String key, ConsentSnapshot snapshot);
+
+  /** A store that keeps no snapshot, snapshots are held in memory only. */
+  static ConsentSnapshotStore inMemory() {
+    return new ConsentSnapshotStore() {
+      @Override
+      public Mono<ConsentSnapshot> load(String key) {
+        return Mono.empty();
+      }
+
+      @Override
+      public Mono<Void> save(String key, ConsentSnapshot snapshot) {
+        return Mono.empty();
+      }
+    };
+  }
+}
@@ -4,6 +4,7 @@ import care.smith.fts.util.tca.ConsentFetchAllRequest;
 import care.smith.fts.util.tca.ConsentFetchRequest;
 import org.hl7.fhir.r4.model.Bundle;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface ConsentedPatientsProvider {
@@ -34,6 +35,23 @@ public interface ConsentedPatientsProvider {
       UriComponentsBuilder requestUrl,
       PagingParams pagingParams);
 
+  /**
+   * Streams the consented patients for all patient identifiers provided by {@code
+   * consentRequest.identifiers()}, requesting {@code pageSize} identifiers at a time.
+   *
+   * @return a Mono emitting once the first page was accepted, with a Flux of one Bundle per
+   *     consented patient that holds its Patient and Consent resources
+   */
+  Mono<Flux<Bundle>> stream(ConsentFetchRequest consentRequest, int pageSize);
+
+  /**
+   * Streams the consented patients of a domain, requesting {@code pageSize} consents at a time.
+   *
+   * @return a Mono emitting once the first page was accepted, with a Flux of one Bundle per
+   *     consented patient that holds its Patient and Consent resources
+   */
+  Mono<Flux<Bundle>> streamAll(ConsentFetchAllRequest consentFetchAllRequest, int pageSize);
+
   record PagingParams(int from, int count) {
     public PagingParams {
       if (from < 0 || count < 1) {
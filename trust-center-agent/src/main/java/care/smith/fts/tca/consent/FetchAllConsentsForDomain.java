@@ -38,6 +38,12 @@ class FetchAllConsentsForDomain implements GicsFhirRequestHelper<ConsentFetchAll
     return bundle;
   }
 
+  /** gICS returns full pages until the last page, so a full page may be followed by another. */
+  @Override
+  public boolean hasNextPage(ConsentFetchAllRequest req, PagingParams paging, int received) {
+    return received >= paging.count();
+  }
+
   @Override
   public String requestName() {
     return "fetchAllConsentsForDomain";
@@ -52,7 +52,7 @@ class FetchAllConsentsForPersons implements GicsFhirRequestHelper<ConsentFetchRe
    * @param pagingParams
    * @return List of patient identifiers in range
    */
-  private static List<String> getIdentifiers(
+  static List<String> getIdentifiers(
       ConsentFetchRequest consentRequest, PagingParams pagingParams) {
     var end = min(consentRequest.identifiers().size(), pagingParams.sum());
     return pagingParams.from() < end
@@ -69,6 +69,11 @@ class FetchAllConsentsForPersons implements GicsFhirRequestHelper<ConsentFetchRe
         : bundle;
   }
 
+  @Override
+  public boolean hasNextPage(ConsentFetchRequest req, PagingParams paging, int received) {
+    return req.identifiers().size() > paging.sum();
+  }
+
   @Override
   public String requestName() {
     return "fetchAllConsentsForPerson";
@@ -4,18 +4,25 @@ import static care.smith.fts.tca.TtpFhirGatewayUtil.handle4xxError;
 import static care.smith.fts.tca.TtpFhirGatewayUtil.handleError;
 import static care.smith.fts.tca.consent.GicsFhirUtil.GICS_OPERATIONS;
 import static care.smith.fts.tca.consent.GicsFhirUtil.filterOuterBundle;
+import static care.smith.fts.util.ConsentedPatientExtractor.hasAllPolicies;
 import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+import static care.smith.fts.util.fhir.FhirUtils.typedResourceStream;
+import static com.google.common.base.Preconditions.checkArgument;
 
 import care.smith.fts.util.RetryStrategy;
 import care.smith.fts.util.tca.ConsentFetchAllRequest;
 import care.smith.fts.util.tca.ConsentFetchRequest;
 import care.smith.fts.util.tca.ConsentRequest;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.r4.model.*;
+import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /** This class provides functionalities for handling FHIR consents using an HTTP client. */
@@ -23,6 +30,7 @@ import reactor.core.publisher.Mono;
 public class GicsFhirConsentedPatientsProvider implements ConsentedPatientsProvider {
   private final WebClient gicsClient;
   private final RetryStrategy retryStrategy;
+  private final int prefetchPages;
 
   /**
    * Constructs a FhirConsentProvider with the specified parameters.
@@ -30,8 +38,19 @@ public class GicsFhirConsentedPatientsProvider implements ConsentedPatientsProvi
    * @param gicsClient the WebClient used for HTTP requests
    */
   public GicsFhirConsentedPatientsProvider(WebClient gicsClient, RetryStrategy retryStrategy) {
+    this(gicsClient, retryStrategy, 0);
+  }
+
+  /**
+   * @param prefetchPages number of pages of a domain fetched concurrently while streaming all its
+   *     consents, pages are fetched one after another if 0
+   */
+  public GicsFhirConsentedPatientsProvider(
+      WebClient gicsClient, RetryStrategy retryStrategy, int prefetchPages) {
+    checkArgument(prefetchPages >= 0, "prefetchPages must not be negative");
     this.gicsClient = gicsClient;
     this.retryStrategy = retryStrategy;
+    this.prefetchPages = prefetchPages;
   }
 
   @Override
@@ -67,6 +86,20 @@ public class GicsFhirConsentedPatientsProvider implements ConsentedPatientsProvi
       UriComponentsBuilder requestUrl,
       PagingParams paging,
       GicsFhirRequestHelper<C> helper) {
+    return fetchPage(req, paging, helper)
+        .map(bundle -> helper.processResponse(bundle, req, requestUrl, paging));
+  }
+
+  /** Fetches one page of gICS and filters its consent bundles by policies. */
+  private <C extends ConsentRequest> Mono<Bundle> fetchPage(
+      C req, PagingParams paging, GicsFhirRequestHelper<C> helper) {
+    return fetchOuterBundle(req, paging, helper)
+        .map(outerBundle -> filterOuterBundle(req.policySystem(), req.policies(), outerBundle));
+  }
+
+  /** Fetches one page of gICS unfiltered, so its entries can still be counted. */
+  private <C extends ConsentRequest> Mono<Bundle> fetchOuterBundle(
+      C req, PagingParams paging, GicsFhirRequestHelper<C> helper) {
     var body = helper.buildBody(req, paging);
     return gicsClient
         .post()
@@ -82,8 +115,162 @@ public class GicsFhirConsentedPatientsProvider implements ConsentedPatientsProvi
         .doOnNext(b -> log.trace("body(n: {})", b.getEntry().size()))
         .retryWhen(retryStrategy.forRequest(helper.requestName()))
         .onErrorResume(e -> handleError("gICS", e))
-        .doOnError(b -> log.error("Unable to fetch consent from gICS", b))
-        .map(outerBundle -> filterOuterBundle(req.policySystem(), req.policies(), outerBundle))
-        .map(bundle -> helper.processResponse(bundle, req, requestUrl, paging));
+        .doOnError(b -> log.error("Unable to fetch consent from gICS", b));
+  }
+
+  @Override
+  public Mono<Flux<Bundle>> stream(ConsentFetchRequest req, int pageSize) {
+    if (req.policies().isEmpty() || req.identifiers().isEmpty()) {
+      return Mono.just(Flux.empty());
+    }
+
+    return doStream(req, pageSize, new FetchAllConsentsForPersons());
+  }
+
+  @Override
+  public Mono<Flux<Bundle>> streamAll(ConsentFetchAllRequest req, int pageSize) {
+    if (req.policies().isEmpty()) {
+      return Mono.just(Flux.empty());
+    }
+
+    log.trace("Streaming consents from gics with page size {}", pageSize);
+    return prefetchPages > 0
+        ? prefetchAll(req, pageSize, new FetchAllConsentsForDomain())
+        : doStream(req, pageSize, new FetchAllConsentsForDomain());
+  }
+
+  /**
+   * Streams the consent bundles of a domain, fetching up to {@code prefetchPages} pages
+   * concurrently. The offsets of all pages are computed from the total of the first page, and the
+   * pages are emitted in order. Consents added to the domain during the scan may be missed, as with
+   * paging. If the first page has no total, the following pages are fetched one after another.
+   */
+  private Mono<Flux<Bundle>> prefetchAll(
+      ConsentFetchAllRequest req, int pageSize, FetchAllConsentsForDomain helper) {
+    var first = new PagingParams(0, pageSize);
+    return fetchOuterBundle(req, first, helper)
+        .map(
+            firstPage ->
+                (firstPage.hasTotal()
+                        ? prefetchedPages(req, first, firstPage, helper)
+                        : sequentialPages(req, first, firstPage, helper))
+                    .map(page -> filterOuterBundle(req.policySystem(), req.policies(), page))
+                    .flatMapIterable(page -> typedResourceStream(page, Bundle.class).toList()));
+  }
+
+  private Flux<Bundle> prefetchedPages(
+      ConsentFetchAllRequest req,
+      PagingParams first,
+      Bundle firstPage,
+      FetchAllConsentsForDomain helper) {
+    return Flux.concat(
+        Flux.just(firstPage),
+        followingPages(first, firstPage.getTotal())
+            .flatMapSequential(paging -> fetchOuterBundle(req, paging, helper), prefetchPages));
+  }
+
+  /** Requests each following page once the previous one was received, while it was full. */
+  private Flux<Bundle> sequentialPages(
+      ConsentFetchAllRequest req,
+      PagingParams first,
+      Bundle firstPage,
+      FetchAllConsentsForDomain helper) {
+    log.debug("gICS page has no total, fetching pages one after another");
+    return Mono.just(new Page(first, firstPage))
+        .expand(
+            previous -> {
+              var paging = previous.paging();
+              if (!helper.hasNextPage(req, paging, previous.bundle().getEntry().size())) {
+                return Mono.empty();
+              }
+              var next = new PagingParams(paging.sum(), paging.count());
+              return fetchOuterBundle(req, next, helper).map(bundle -> new Page(next, bundle));
+            })
+        .map(Page::bundle);
+  }
+
+  private record Page(PagingParams paging, Bundle bundle) {}
+
+  /**
+   * @return the pages following {@code first} up to {@code total} consents
+   */
+  static Flux<PagingParams> followingPages(PagingParams first, int total) {
+    var count = first.count();
+    return Flux.range(1, Math.max(0, Math.ceilDiv(total - first.from(), count) - 1))
+        .map(page -> new PagingParams(first.from() + page * count, count));
+  }
+
+  /**
+   * Streams the consent bundles of gICS page by page. Each page is decoded entry by entry while it
+   * arrives, and each entry is filtered by policies on its own, so neither the page nor a filtered
+   * copy of it is held in memory. Errors of the first request are emitted by the returned Mono, so
+   * they can still be answered with an error status.
+   */
+  private <C extends ConsentRequest> Mono<Flux<Bundle>> doStream(
+      C req, int pageSize, GicsFhirRequestHelper<C> helper) {
+    var first = new PagingParams(0, pageSize);
+    return fetchEntries(req, first, helper)
+        .retryWhen(retryStrategy.forRequest(helper.requestName()))
+        .onErrorResume(e -> handleError("gICS", e))
+        .doOnError(e -> log.error("Unable to fetch consent from gICS", e))
+        .map(
+            entries ->
+                streamPages(req, first, entries, helper)
+                    .map(BundleEntryComponent::getResource)
+                    .ofType(Bundle.class)
+                    .filter(b -> hasAllPolicies(req.policySystem(), b, req.policies()))
+                    .map(GicsFhirUtil::filterInnerBundle));
+  }
+
+  /**
+   * Emits the entries of the first page, then requests each following page once the previous one
+   * was read completely, as long as the helper expects a further page.
+   */
+  private <C extends ConsentRequest> Flux<BundleEntryComponent> streamPages(
+      C req,
+      PagingParams first,
+      Flux<BundleEntryComponent> firstEntries,
+      GicsFhirRequestHelper<C> helper) {
+    var received = new AtomicInteger();
+    Flux<PagingParams> following =
+        Flux.generate(
+            () -> first,
+            (previous, sink) -> {
+              if (!helper.hasNextPage(req, previous, received.getAndSet(0))) {
+                sink.complete();
+                return previous;
+              }
+              var next = new PagingParams(previous.sum(), previous.count());
+              sink.next(next);
+              return next;
+            });
+    return Flux.concat(
+            firstEntries.doOnNext(e -> received.incrementAndGet()),
+            following.concatMap(
+                paging ->
+                    retryStrategy
+                        .resuming(
+                            helper.requestName(),
+                            () -> fetchEntries(req, paging, helper).flatMapMany(f -> f))
+                        .doOnNext(e -> received.incrementAndGet()),
+                0))
+        .onErrorResume(e -> handleError("gICS", e));
+  }
+
+  private <C extends ConsentRequest> Mono<Flux<BundleEntryComponent>> fetchEntries(
+      C req, PagingParams paging, GicsFhirRequestHelper<C> helper) {
+    log.trace("Streaming consents from gics with PagingParams {}", paging);
+    return gicsClient
+        .post()
+        .uri(uri -> helper.buildUri(uri, paging))
+        .bodyValue(helper.buildBody(req, paging))
+        .headers(h -> h.setContentType(APPLICATION_FHIR_JSON))
+        .headers(h -> h.setAccept(List.of(APPLICATION_FHIR_JSON)))
+        .retrieve()
+        .onStatus(
+            HttpStatusCode::is4xxClientError,
+            r -> handle4xxError("gICS", gicsClient, GICS_OPERATIONS, r))
+        .toEntityFlux(BundleEntryComponent.class)
+        .map(HttpEntity::getBody);
   }
 }
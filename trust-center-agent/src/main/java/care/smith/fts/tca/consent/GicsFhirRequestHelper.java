@@ -21,6 +21,12 @@ interface GicsFhirRequestHelper<C extends ConsentRequest> {
 
   String requestName();
 
+  /**
+   * @param received number of consent bundles gICS returned for {@code paging}
+   * @return whether gICS has to be asked for the page following {@code paging}
+   */
+  boolean hasNextPage(C req, PagingParams paging, int received);
+
   /**
    * Creates a "next" link component for pagination to the Bundle.
    *
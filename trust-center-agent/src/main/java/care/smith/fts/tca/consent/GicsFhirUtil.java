@@ -36,11 +36,12 @@ public interface GicsFhirUtil {
    */
   static Bundle filterOuterBundle(
       String policySystem, Set<String> policiesToCheck, Bundle outerBundle) {
-    return typedResourceStream(outerBundle, Bundle.class)
-        .filter(b -> hasAllPolicies(policySystem, b, policiesToCheck))
-        .map(GicsFhirUtil::filterInnerBundle)
-        .collect(toBundle())
-        .setTotal(outerBundle.getTotal());
+    var filtered =
+        typedResourceStream(outerBundle, Bundle.class)
+            .filter(b -> hasAllPolicies(policySystem, b, policiesToCheck))
+            .map(GicsFhirUtil::filterInnerBundle)
+            .collect(toBundle());
+    return outerBundle.hasTotal() ? filtered.setTotal(outerBundle.getTotal()) : filtered;
   }
 
   /**
@@ -49,7 +50,7 @@ public interface GicsFhirUtil {
    * @param b the inner Bundle to filter
    * @return a filtered Bundle
    */
-  private static Bundle filterInnerBundle(Bundle b) {
+  static Bundle filterInnerBundle(Bundle b) {
     return resourceStream(b)
         .filter(Predicates.or(Patient.class::isInstance, Consent.class::isInstance))
         .collect(toBundle());
@@ -0,0 +1,97 @@
+package care.smith.fts.tca.consent;
+
+import static org.redisson.api.BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC;
+
+import care.smith.fts.util.fhir.FhirJsonParsers;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.hl7.fhir.r4.model.Bundle;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link ConsentSnapshotStore} in the keystore. The patients of a snapshot are kept as a list of
+ * FHIR JSON strings next to the time the snapshot was created.
+ *
+ * <p>A snapshot is written to a list with a unique temporary name first, so concurrent saves do not
+ * mix their patients. Renaming it and setting the creation time happen in one atomic batch, and a
+ * load reads both in one atomic batch, so a load returns either the previous or the new snapshot as
+ * a whole. A temporary list left behind by an interrupted save expires after an hour.
+ */
+public class RedisConsentSnapshotStore implements ConsentSnapshotStore {
+
+  private static final String PREFIX = "consent-snapshots:";
+  private static final Duration TMP_TTL = Duration.ofHours(1);
+  private static final BatchOptions ATOMIC =
+      BatchOptions.defaults().executionMode(IN_MEMORY_ATOMIC);
+
+  private final RedissonClient redisClient;
+  private final FhirJsonParsers parsers;
+
+  public RedisConsentSnapshotStore(RedissonClient redisClient, FhirJsonParsers parsers) {
+    this.redisClient = redisClient;
+    this.parsers = parsers;
+  }
+
+  @Override
+  public Mono<ConsentSnapshot> load(String key) {
+    var batch = redisClient.reactive().createBatch(ATOMIC);
+    batch.<String>getBucket(PREFIX + key + ":created", StringCodec.INSTANCE).get();
+    batch.<String>getList(PREFIX + key, StringCodec.INSTANCE).readAll();
+    return batch.execute().mapNotNull(this::snapshot);
+  }
+
+  private ConsentSnapshot snapshot(BatchResult<?> result) {
+    var responses = result.getResponses();
+    if (responses.getFirst() instanceof String created
+        && responses.get(1) instanceof List<?> patients) {
+      return new ConsentSnapshot(
+          Instant.parse(created), patients.stream().map(p -> decode((String) p)).toList());
+    }
+    return null;
+  }
+
+  @Override
+  public Mono<Void> save(String key, ConsentSnapshot snapshot) {
+    var encoded = snapshot.patients().stream().map(this::encode).toList();
+    var tmp = PREFIX + key + ":tmp:" + UUID.randomUUID();
+    var written = encoded.isEmpty() ? Mono.<Void>empty() : write(tmp, encoded);
+    return written.then(Mono.defer(() -> publish(key, tmp, encoded.isEmpty(), snapshot)));
+  }
+
+  private Mono<Void> write(String tmp, List<String> encoded) {
+    var batch = redisClient.reactive().createBatch();
+    var list = batch.<String>getList(tmp, StringCodec.INSTANCE);
+    list.addAll(encoded);
+    list.expire(TMP_TTL);
+    return batch.execute().then();
+  }
+
+  /** Replaces the patients and creation time of the snapshot at once. */
+  private Mono<Void> publish(String key, String tmp, boolean empty, ConsentSnapshot snapshot) {
+    var batch = redisClient.reactive().createBatch(ATOMIC);
+    if (empty) {
+      batch.getList(PREFIX + key, StringCodec.INSTANCE).delete();
+    } else {
+      batch.getList(tmp, StringCodec.INSTANCE).rename(PREFIX + key);
+      batch.getList(PREFIX + key, StringCodec.INSTANCE).clearExpire();
+    }
+    batch
+        .<String>getBucket(PREFIX + key + ":created", StringCodec.INSTANCE)
+        .set(snapshot.created().toString());
+    return batch.execute().then();
+  }
+
+  private String encode(Bundle patient) {
+    return parsers.apply(p -> p.encodeResourceToString(patient));
+  }
+
+  private Bundle decode(String patient) {
+    return parsers.apply(p -> p.parseResource(Bundle.class, patient));
+  }
+}
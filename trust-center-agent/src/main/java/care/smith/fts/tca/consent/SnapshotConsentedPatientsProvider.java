@@ -0,0 +1,283 @@
+package care.smith.fts.tca.consent;
+
+import static care.smith.fts.tca.consent.FetchAllConsentsForPersons.getIdentifiers;
+import static java.lang.Math.min;
+import static java.util.stream.Collectors.joining;
+
+import care.smith.fts.util.tca.ConsentFetchAllRequest;
+import care.smith.fts.util.tca.ConsentFetchRequest;
+import care.smith.fts.util.tca.ConsentRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.Bundle;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Serves consented patients from a snapshot of each domain and set of policies, instead of reading
+ * all consents from gICS for every request. A snapshot is created by scanning the domain once with
+ * the wrapped provider, or loaded from the {@link ConsentSnapshotStore} if it holds one.
+ *
+ * <p>The first scan of a domain reads all of its consents and may take longer than a client waits
+ * for a response. Until it completed, it runs in the background and requests are passed through to
+ * the wrapped provider.
+ *
+ * <p>Snapshots are refreshed on a schedule once they are older than half the {@code
+ * refreshInterval}, the previous snapshot is served while the domain is scanned again. A snapshot
+ * older than {@code refreshInterval}, because its refresh failed or is still running, is not served
+ * at all, requests are passed through to the wrapped provider until a refresh succeeded.
+ */
+@Slf4j
+public class SnapshotConsentedPatientsProvider implements ConsentedPatientsProvider, AutoCloseable {
+
+  private final ConsentedPatientsProvider gics;
+  private final ConsentSnapshotStore store;
+  private final Duration refreshInterval;
+  private final int pageSize;
+  private final Clock clock;
+  private final Timer scans;
+  private final Map<String, Snapshots> snapshots = new ConcurrentHashMap<>();
+  private final Disposable schedule;
+
+  public SnapshotConsentedPatientsProvider(
+      ConsentedPatientsProvider gics,
+      ConsentSnapshotStore store,
+      Duration refreshInterval,
+      int pageSize,
+      MeterRegistry meterRegistry) {
+    this(
+        gics,
+        store,
+        refreshInterval,
+        pageSize,
+        meterRegistry,
+        Clock.systemUTC(),
+        Schedulers.parallel());
+  }
+
+  SnapshotConsentedPatientsProvider(
+      ConsentedPatientsProvider gics,
+      ConsentSnapshotStore store,
+      Duration refreshInterval,
+      int pageSize,
+      MeterRegistry meterRegistry,
+      Clock clock,
+      Scheduler scheduler) {
+    this.gics = gics;
+    this.store = store;
+    this.refreshInterval = refreshInterval;
+    this.pageSize = pageSize;
+    this.clock = clock;
+    this.scans = meterRegistry.timer("consent.snapshot.scan");
+    var period = refreshInterval.dividedBy(4);
+    this.schedule =
+        Flux.interval(period, period, scheduler).subscribe(tick -> refreshAgingSnapshots());
+  }
+
+  /** Refreshes each snapshot older than half the refresh interval, so it never becomes stale. */
+  void refreshAgingSnapshots() {
+    snapshots.values().forEach(Snapshots::refreshIfAging);
+  }
+
+  /** Stops the scheduled refreshes. */
+  @Override
+  public void close() {
+    schedule.dispose();
+  }
+
+  @Override
+  public Mono<Bundle> fetch(
+      ConsentFetchRequest req, UriComponentsBuilder requestUrl, PagingParams paging) {
+    if (req.policies().isEmpty() || req.identifiers().isEmpty()) {
+      return Mono.just(new Bundle());
+    }
+
+    var helper = new FetchAllConsentsForPersons();
+    return snapshot(req)
+        .map(s -> toBundle(patients(s, req, getIdentifiers(req, paging))))
+        .map(bundle -> helper.processResponse(bundle, req, requestUrl, paging))
+        .switchIfEmpty(Mono.defer(() -> gics.fetch(req, requestUrl, paging)));
+  }
+
+  @Override
+  public Mono<Bundle> fetchAll(
+      ConsentFetchAllRequest req, UriComponentsBuilder requestUrl, PagingParams paging) {
+    if (req.policies().isEmpty()) {
+      return Mono.just(new Bundle());
+    }
+
+    var helper = new FetchAllConsentsForDomain();
+    return snapshot(req)
+        .map(s -> toBundle(page(s.patients(), paging)).setTotal(s.patients().size()))
+        .map(bundle -> helper.processResponse(bundle, req, requestUrl, paging))
+        .switchIfEmpty(Mono.defer(() -> gics.fetchAll(req, requestUrl, paging)));
+  }
+
+  @Override
+  public Mono<Flux<Bundle>> stream(ConsentFetchRequest req, int pageSize) {
+    if (req.policies().isEmpty() || req.identifiers().isEmpty()) {
+      return Mono.just(Flux.empty());
+    }
+
+    return snapshot(req)
+        .map(s -> Flux.fromIterable(patients(s, req, req.identifiers())))
+        .switchIfEmpty(Mono.defer(() -> gics.stream(req, pageSize)));
+  }
+
+  @Override
+  public Mono<Flux<Bundle>> streamAll(ConsentFetchAllRequest req, int pageSize) {
+    if (req.policies().isEmpty()) {
+      return Mono.just(Flux.empty());
+    }
+
+    return snapshot(req)
+        .map(s -> Flux.fromIterable(s.patients()))
+        .switchIfEmpty(Mono.defer(() -> gics.streamAll(req, pageSize)));
+  }
+
+  private static List<Bundle> page(List<Bundle> patients, PagingParams paging) {
+    var end = min(patients.size(), paging.sum());
+    return paging.from() < end ? patients.subList(paging.from(), end) : List.of();
+  }
+
+  private static List<Bundle> patients(
+      ConsentSnapshot snapshot, ConsentFetchRequest req, List<String> identifiers) {
+    return identifiers.stream()
+        .map(id -> snapshot.patient(req.patientIdentifierSystem(), id))
+        .flatMap(Optional::stream)
+        .toList();
+  }
+
+  private static Bundle toBundle(List<Bundle> patients) {
+    var bundle = new Bundle();
+    patients.forEach(p -> bundle.addEntry().setResource(p));
+    return bundle;
+  }
+
+  /**
+   * @return the snapshot of the request's domain and policies, empty while the first one is built
+   */
+  private Mono<ConsentSnapshot> snapshot(ConsentRequest req) {
+    var scan = new ConsentFetchAllRequest(req.domain(), req.policies(), req.policySystem());
+    return snapshots.computeIfAbsent(key(scan), k -> new Snapshots(k, scan)).get();
+  }
+
+  /**
+   * @return the key of a domain and set of policies, independent of the order of the policies
+   */
+  static String key(ConsentFetchAllRequest req) {
+    var policies = req.policies().stream().sorted().collect(joining(","));
+    return String.join(":", req.domain(), req.policySystem(), policies);
+  }
+
+  /** The snapshot of one domain and set of policies, and its running scan, if any. */
+  private class Snapshots {
+    private final String key;
+    private final ConsentFetchAllRequest scanRequest;
+    private volatile ConsentSnapshot current;
+    private Mono<ConsentSnapshot> refresh;
+
+    Snapshots(String key, ConsentFetchAllRequest scanRequest) {
+      this.key = key;
+      this.scanRequest = scanRequest;
+    }
+
+    /**
+     * @return the current snapshot, empty while there is none or it is stale
+     */
+    Mono<ConsentSnapshot> get() {
+      return Mono.fromSupplier(() -> current)
+          .switchIfEmpty(Mono.defer(this::loadOrScan))
+          .filter(this::isFresh);
+    }
+
+    /** Loads the stored snapshot, without one the first scan is started in the background. */
+    private Mono<ConsentSnapshot> loadOrScan() {
+      return store
+          .load(key)
+          .onErrorResume(this::loadFailed)
+          .doOnNext(this::loaded)
+          .switchIfEmpty(Mono.fromRunnable(this::refreshInBackground));
+    }
+
+    /** A stale snapshot is not served, it is refreshed in the background instead. */
+    private boolean isFresh(ConsentSnapshot snapshot) {
+      if (snapshot.isOlderThan(refreshInterval, clock.instant())) {
+        refreshInBackground();
+        return false;
+      }
+      return true;
+    }
+
+    void refreshIfAging() {
+      var snapshot = current;
+      if (snapshot != null && snapshot.isOlderThan(refreshInterval.dividedBy(2), clock.instant())) {
+        refreshInBackground();
+      }
+    }
+
+    private void refreshInBackground() {
+      refresh()
+          .subscribe(
+              s -> log.debug("Refreshed consent snapshot {}", key),
+              e -> log.warn("Cannot refresh consent snapshot {}: {}", key, e.getMessage()));
+    }
+
+    /** Starts a scan unless one is running. */
+    private synchronized Mono<ConsentSnapshot> refresh() {
+      if (refresh == null) {
+        refresh = Mono.defer(this::scan).doOnNext(this::replace).doOnError(e -> done()).cache();
+      }
+      return refresh;
+    }
+
+    private synchronized void loaded(ConsentSnapshot snapshot) {
+      if (current == null) {
+        current = snapshot;
+      }
+    }
+
+    private synchronized void replace(ConsentSnapshot snapshot) {
+      current = snapshot;
+      refresh = null;
+    }
+
+    private synchronized void done() {
+      refresh = null;
+    }
+
+    private Mono<ConsentSnapshot> scan() {
+      log.info("Scanning gICS for consent snapshot {}", key);
+      var created = clock.instant();
+      var sample = Timer.start();
+      return gics.streamAll(scanRequest, pageSize)
+          .flatMapMany(patients -> patients)
+          .collectList()
+          .map(patients -> new ConsentSnapshot(created, patients))
+          .doOnNext(s -> sample.stop(scans))
+          .doOnNext(s -> log.info("Snapshot {} holds {} patients", key, s.patients().size()))
+          .flatMap(s -> store.save(key, s).onErrorResume(this::saveFailed).thenReturn(s));
+    }
+
+    private Mono<ConsentSnapshot> loadFailed(Throwable e) {
+      log.warn("Cannot load consent snapshot {}: {}", key, e.getMessage());
+      return Mono.empty();
+    }
+
+    private Mono<Void> saveFailed(Throwable e) {
+      log.warn("Cannot store consent snapshot {}: {}", key, e.getMessage());
+      return Mono.empty();
+    }
+  }
+}
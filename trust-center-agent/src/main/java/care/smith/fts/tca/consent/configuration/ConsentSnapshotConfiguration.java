@@ -0,0 +1,65 @@
+package care.smith.fts.tca.consent.configuration;
+
+import care.smith.fts.tca.consent.ConsentSnapshotStore;
+import care.smith.fts.tca.consent.ConsentedPatientsProvider;
+import care.smith.fts.tca.consent.GicsConfigured;
+import care.smith.fts.tca.consent.GicsFhirConsentedPatientsProvider;
+import care.smith.fts.tca.consent.RedisConsentSnapshotStore;
+import care.smith.fts.tca.consent.SnapshotConsentedPatientsProvider;
+import care.smith.fts.util.fhir.FhirJsonParsers;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
+import lombok.Data;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Conditional(GicsConfigured.class)
+@Configuration
+@ConfigurationProperties("consent.snapshot")
+@Data
+public class ConsentSnapshotConfiguration {
+
+  /** Where snapshots of the consented patients of a domain are kept, if at all. */
+  @NotNull private Type type = Type.NONE;
+
+  /** Maximum age of a served snapshot, snapshots are refreshed from gICS before. */
+  @NotNull private Duration refreshInterval = Duration.ofHours(1);
+
+  @Bean
+  @Primary
+  public ConsentedPatientsProvider snapshotConsentedPatientsProvider(
+      GicsFhirConsentedPatientsProvider gics,
+      @Qualifier("gicsPageSize") int pageSize,
+      RedissonClient redisClient,
+      FhirJsonParsers parsers,
+      MeterRegistry meterRegistry) {
+    return switch (type) {
+      case NONE -> gics;
+      case LOCAL -> snapshots(gics, ConsentSnapshotStore.inMemory(), pageSize, meterRegistry);
+      case REDIS ->
+          snapshots(
+              gics, new RedisConsentSnapshotStore(redisClient, parsers), pageSize, meterRegistry);
+    };
+  }
+
+  private ConsentedPatientsProvider snapshots(
+      ConsentedPatientsProvider gics,
+      ConsentSnapshotStore store,
+      int pageSize,
+      MeterRegistry meterRegistry) {
+    return new SnapshotConsentedPatientsProvider(
+        gics, store, refreshInterval, pageSize, meterRegistry);
+  }
+
+  public enum Type {
+    NONE,
+    LOCAL,
+    REDIS
+  }
+}
@@ -29,6 +29,7 @@ public class GicsConfiguration {
   private static final int DEFAULT_PAGE_SIZE = 50;
 
   private Integer pageSize = null;
+  private int prefetchPages = 0;
   private HttpClientConfig fhir;
 
   @Bean("gicsPageSize")
@@ -64,6 +65,6 @@ public class GicsConfiguration {
   @Bean
   public GicsFhirConsentedPatientsProvider fhirConsentedPatientsProvider(
       @Qualifier("gicsFhirHttpClient") WebClient gicsClient, RetryStrategy retryStrategy) {
-    return new GicsFhirConsentedPatientsProvider(gicsClient, retryStrategy);
+    return new GicsFhirConsentedPatientsProvider(gicsClient, retryStrategy, prefetchPages);
   }
 }
@@ -4,33 +4,47 @@ import static care.smith.fts.tca.deidentification.DateShiftUtil.generate;
 import static care.smith.fts.tca.deidentification.DateShiftUtil.shiftDate;
 import static care.smith.fts.util.deidentifhir.DateShiftConstants.DATE_SHIFT_PREFIX;
 import static java.util.Set.of;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
 import care.smith.fts.tca.deidentification.configuration.TransportMappingConfiguration;
 import care.smith.fts.util.RetryStrategy;
 import care.smith.fts.util.deidentifhir.NamespacingReplacementProvider;
+import care.smith.fts.util.tca.SecureMappingBatchRequest;
+import care.smith.fts.util.tca.SecureMappingBatchResponse;
 import care.smith.fts.util.tca.SecureMappingResponse;
 import care.smith.fts.util.tca.TcaDomains;
+import care.smith.fts.util.tca.TransportMappingBatchRequest;
+import care.smith.fts.util.tca.TransportMappingBatchResponse;
 import care.smith.fts.util.tca.TransportMappingRequest;
 import care.smith.fts.util.tca.TransportMappingResponse;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RMapReactive;
+import org.redisson.api.BatchResult;
 import org.redisson.api.RedissonClient;
-import org.redisson.api.RedissonReactiveClient;
+import org.redisson.client.codec.Codec;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Slf4j
 @Component
 public class FhirMappingProvider implements MappingProvider {
   private static final HashFunction hashFn = Hashing.sha256();
+  private static final String MAP_PREFIX = "transport-mapping:";
 
   record PseudonymData(String patientIdentifierPseudonym, String salt, String dateShiftSeed) {}
 
@@ -39,6 +53,7 @@ public class FhirMappingProvider implements MappingProvider {
   private final RedissonClient redisClient;
   private final RetryStrategy retryStrategy;
   private final RandomStringGenerator randomStringGenerator;
+  private final Codec codec;
 
   public FhirMappingProvider(
       GpasClient gpasClient,
@@ -51,6 +66,7 @@ public class FhirMappingProvider implements MappingProvider {
     this.redisClient = redisClient;
     this.retryStrategy = retryStrategy;
     this.randomStringGenerator = randomStringGenerator;
+    this.codec = configuration.getCodec().redisCodec();
   }
 
   /**
@@ -70,19 +86,38 @@ public class FhirMappingProvider implements MappingProvider {
         r.dateMappings().size());
 
     var transferId = randomStringGenerator.generate();
-    var sMap = redisClient.reactive().<String, String>getMapCache(transferId);
+    return fetchPseudonymAndSalts(r.patientIdentifier(), r.tcaDomains(), r.maxDateShift())
+        .flatMap(data -> saveSecureMappings(Map.of(transferId, secureMapping(r, data))))
+        .thenReturn(new TransportMappingResponse(transferId));
+  }
 
-    return sMap.expire(configuration.getTtl())
-        .then(fetchPseudonymAndSalts(r.patientIdentifier(), r.tcaDomains(), r.maxDateShift()))
-        .flatMap(
-            data -> {
-              var dateShift =
-                  generate(data.dateShiftSeed(), r.maxDateShift(), r.dateShiftPreserve());
-              var tidToShiftedDate = computeTidToShiftedDate(r.dateMappings(), dateShift);
+  /**
+   * Stores secure mappings for a batch of patients. Pseudonyms, salts and date shift seeds of all
+   * patients are fetched with one gPAS request per domain and kind, instead of three requests per
+   * patient.
+   *
+   * @param r the batch of transport mapping requests
+   * @return response containing the transferIds in request order
+   */
+  @Override
+  public Mono<TransportMappingBatchResponse> generateTransportMappings(
+      TransportMappingBatchRequest r) {
+    var requests = r.requests();
+    log.trace("Store transport mappings for {} patients", requests.size());
+    if (requests.isEmpty()) {
+      return Mono.just(new TransportMappingBatchResponse(List.of()));
+    }
 
-              return saveSecureMapping(r, data, tidToShiftedDate, sMap)
-                  .thenReturn(new TransportMappingResponse(transferId));
-            });
+    var transferIds = requests.stream().map(req -> randomStringGenerator.generate()).toList();
+    return fetchPseudonymsAndSalts(requests)
+        .map(
+            data ->
+                IntStream.range(0, requests.size())
+                    .boxed()
+                    .collect(
+                        toMap(transferIds::get, i -> secureMapping(requests.get(i), data.get(i)))))
+        .flatMap(this::saveSecureMappings)
+        .thenReturn(new TransportMappingBatchResponse(transferIds));
   }
 
   private Map<String, String> computeTidToShiftedDate(
@@ -93,8 +128,8 @@ public class FhirMappingProvider implements MappingProvider {
 
   private Mono<PseudonymData> fetchPseudonymAndSalts(
       String patientIdentifier, TcaDomains domains, Duration maxDateShift) {
-    var saltKey = "Salt_" + patientIdentifier;
-    var dateShiftKey = "%s_%s".formatted(maxDateShift.toString(), patientIdentifier);
+    var saltKey = saltKey(patientIdentifier);
+    var dateShiftKey = dateShiftKey(patientIdentifier, maxDateShift);
     return Mono.zip(
             gpasClient
                 .fetchOrCreatePseudonyms(domains.pseudonym(), of(patientIdentifier))
@@ -108,11 +143,86 @@ public class FhirMappingProvider implements MappingProvider {
         .map(t -> new PseudonymData(t.getT1(), t.getT2(), t.getT3()));
   }
 
-  private Mono<Void> saveSecureMapping(
-      TransportMappingRequest r,
-      PseudonymData data,
-      Map<String, String> tidToShiftedDate,
-      RMapReactive<String, String> rMap) {
+  /**
+   * Fetches pseudonyms, salts and date shift seeds of all requests.
+   *
+   * @return pseudonym data in request order
+   */
+  private Mono<List<PseudonymData>> fetchPseudonymsAndSalts(
+      List<TransportMappingRequest> requests) {
+    return Mono.zip(
+            fetchOrCreateByDomain(
+                requests, TcaDomains::pseudonym, TransportMappingRequest::patientIdentifier),
+            fetchOrCreateByDomain(requests, TcaDomains::salt, r -> saltKey(r.patientIdentifier())),
+            fetchOrCreateByDomain(
+                requests,
+                TcaDomains::dateShift,
+                r -> dateShiftKey(r.patientIdentifier(), r.maxDateShift())))
+        .map(
+            t ->
+                requests.stream()
+                    .map(
+                        r -> {
+                          var domains = r.tcaDomains();
+                          return new PseudonymData(
+                              t.getT1().get(domains.pseudonym()).get(r.patientIdentifier()),
+                              t.getT2().get(domains.salt()).get(saltKey(r.patientIdentifier())),
+                              t.getT3()
+                                  .get(domains.dateShift())
+                                  .get(dateShiftKey(r.patientIdentifier(), r.maxDateShift())));
+                        })
+                    .toList());
+  }
+
+  /**
+   * Fetches or creates the pseudonyms of all originals, grouped by gPAS domain.
+   *
+   * @return map of domain to map of original to pseudonym
+   */
+  private Mono<Map<String, Map<String, String>>> fetchOrCreateByDomain(
+      List<TransportMappingRequest> requests,
+      Function<TcaDomains, String> domain,
+      Function<TransportMappingRequest, String> original) {
+    var originalsByDomain =
+        requests.stream()
+            .collect(groupingBy(r -> domain.apply(r.tcaDomains()), mapping(original, toSet())));
+    return Flux.fromIterable(originalsByDomain.entrySet())
+        .flatMap(
+            e ->
+                gpasClient
+                    .fetchOrCreatePseudonyms(e.getKey(), e.getValue())
+                    .map(pseudonyms -> Map.entry(e.getKey(), pseudonyms)))
+        .collectMap(Entry::getKey, Entry::getValue);
+  }
+
+  private static String saltKey(String patientIdentifier) {
+    return "Salt_" + patientIdentifier;
+  }
+
+  private static String dateShiftKey(String patientIdentifier, Duration maxDateShift) {
+    return "%s_%s".formatted(maxDateShift.toString(), patientIdentifier);
+  }
+
+  /**
+   * Stores the secure mappings of all transfers and sets their TTL with one pipelined Redis round
+   * trip. Each mapping is a plain hash that expires as a whole.
+   *
+   * @param mappings map of transferId to secure mapping
+   */
+  private Mono<Void> saveSecureMappings(Map<String, Map<String, String>> mappings) {
+    var batch = redisClient.reactive().createBatch();
+    mappings.forEach(
+        (transferId, mapping) -> {
+          var map = batch.<String, String>getMap(MAP_PREFIX + transferId, codec);
+          map.putAll(mapping);
+          map.expire(configuration.getTtl());
+        });
+    return batch.execute().then();
+  }
+
+  private Map<String, String> secureMapping(TransportMappingRequest r, PseudonymData data) {
+    var dateShift = generate(data.dateShiftSeed(), r.maxDateShift(), r.dateShiftPreserve());
+    var tidToShiftedDate = computeTidToShiftedDate(r.dateMappings(), dateShift);
 
     var resolveMapBuilder =
         ImmutableMap.<String, String>builder()
@@ -128,7 +238,7 @@ public class FhirMappingProvider implements MappingProvider {
     tidToShiftedDate.forEach(
         (tId, shiftedDate) -> resolveMapBuilder.put(DATE_SHIFT_PREFIX + tId, shiftedDate));
 
-    return rMap.putAll(resolveMapBuilder.buildKeepingLast()).then();
+    return resolveMapBuilder.buildKeepingLast();
   }
 
   /**
@@ -139,7 +249,8 @@ public class FhirMappingProvider implements MappingProvider {
    * @param idMappings map of originalID→tID
    * @return map of tID→sID
    */
-  static Map<String, String> generateSecureMapping(
+  @VisibleForTesting
+  public static Map<String, String> generateSecureMapping(
       String transportSalt, Map<String, String> idMappings) {
     return idMappings.entrySet().stream()
         .collect(toMap(Entry::getValue, entry -> transportHash(transportSalt, entry.getKey())));
@@ -174,10 +285,77 @@ public class FhirMappingProvider implements MappingProvider {
 
   @Override
   public Mono<SecureMappingResponse> fetchSecureMapping(String transferId) {
-    RedissonReactiveClient redis = redisClient.reactive();
-    return Mono.just(transferId)
-        .flatMap(name -> redis.<String, String>getMapCache(name).readAllMap())
+    return Mono.defer(() -> readAllMaps(List.of(transferId)))
         .retryWhen(retryStrategy.forRequest("fetchSecureMapping"))
-        .map(SecureMappingResponse::buildResolveResponse);
+        .map(maps -> SecureMappingResponse.buildResolveResponse(maps.getFirst()));
+  }
+
+  /**
+   * Reads the secure mappings of all transfers with one pipelined Redis round trip instead of one
+   * round trip per transfer.
+   */
+  @Override
+  public Mono<SecureMappingBatchResponse> fetchSecureMappings(SecureMappingBatchRequest r) {
+    var transferIds = r.transferIds().stream().distinct().toList();
+    log.trace("Fetch secure mappings of {} transfers", transferIds.size());
+    if (transferIds.isEmpty()) {
+      return Mono.just(new SecureMappingBatchResponse(Map.of()));
+    }
+
+    return Mono.defer(() -> readAllMaps(transferIds))
+        .retryWhen(retryStrategy.forRequest("fetchSecureMappings"))
+        .map(
+            maps ->
+                IntStream.range(0, transferIds.size())
+                    .boxed()
+                    .collect(
+                        toMap(
+                            transferIds::get,
+                            i -> SecureMappingResponse.buildResolveResponse(maps.get(i)))))
+        .map(SecureMappingBatchResponse::new);
+  }
+
+  /**
+   * @return the mappings in the order of the transfer IDs
+   */
+  private Mono<List<Map<String, String>>> readAllMaps(List<String> transferIds) {
+    var batch = redisClient.reactive().createBatch();
+    transferIds.forEach(
+        transferId -> batch.<String, String>getMap(MAP_PREFIX + transferId, codec).readAllMap());
+    return batch
+        .execute()
+        .map(FhirMappingProvider::mapResponses)
+        .flatMap(maps -> withLegacyMappings(transferIds, maps));
+  }
+
+  /**
+   * Reads mappings that were stored as map caches before 5.8, for transfers that started before
+   * the update. Can be removed once no such transfers are left.
+   */
+  private Mono<List<Map<String, String>>> withLegacyMappings(
+      List<String> transferIds, List<Map<String, String>> maps) {
+    var missing =
+        IntStream.range(0, maps.size()).filter(i -> maps.get(i).isEmpty()).boxed().toList();
+    if (missing.isEmpty()) {
+      return Mono.just(maps);
+    }
+    var batch = redisClient.reactive().createBatch();
+    missing.forEach(i -> batch.<String, String>getMapCache(transferIds.get(i)).readAllMap());
+    return batch
+        .execute()
+        .map(FhirMappingProvider::mapResponses)
+        .map(
+            legacy -> {
+              var merged = new ArrayList<>(maps);
+              for (var i = 0; i < missing.size(); i++) {
+                merged.set(missing.get(i), legacy.get(i));
+              }
+              return merged;
+            });
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Map<String, String>> mapResponses(BatchResult<?> result) {
+    return result.getResponses().stream().map(m -> (Map<String, String>) m).toList();
   }
 }
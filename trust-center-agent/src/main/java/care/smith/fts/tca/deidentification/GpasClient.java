@@ -9,6 +9,7 @@ import static java.util.List.of;
 import care.smith.fts.tca.deidentification.configuration.GpasDeIdentificationConfiguration;
 import care.smith.fts.util.RetryStrategy;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -29,20 +30,23 @@ public class GpasClient {
   private final RetryStrategy retryStrategy;
   private final int batchSize;
   private final int concurrency;
+  private final PseudonymCache cache;
 
   public GpasClient(
       @Qualifier("gpasFhirHttpClient") WebClient gpasClient,
       RetryStrategy retryStrategy,
-      GpasDeIdentificationConfiguration config) {
+      GpasDeIdentificationConfiguration config,
+      PseudonymCache cache) {
     this.gpasClient = gpasClient;
     this.retryStrategy = retryStrategy;
     this.batchSize = config.getBatchSize();
     this.concurrency = config.getConcurrency();
+    this.cache = cache;
   }
 
   /**
    * Fetches or creates pseudonyms for multiple IDs, processing in batches to avoid overwhelming
-   * gPAS.
+   * gPAS. IDs found in the {@link PseudonymCache} are not requested from gPAS.
    *
    * @param domain the gPAS domain
    * @param ids the set of IDs to pseudonymize
@@ -53,6 +57,29 @@ public class GpasClient {
       return Mono.just(Map.of());
     }
 
+    return cache
+        .getAll(domain, ids)
+        .doOnError(GpasClient::logCacheError)
+        .onErrorReturn(Map.of())
+        .flatMap(
+            cached -> {
+              var missing = Sets.difference(ids, cached.keySet());
+              log.trace("{} of {} IDs of domain {} are cached", cached.size(), ids.size(), domain);
+              if (missing.isEmpty()) {
+                return Mono.just(cached);
+              }
+              return fetchOrCreateFromGpas(domain, missing)
+                  .flatMap(
+                      fetched ->
+                          cache
+                              .putAll(domain, fetched)
+                              .doOnError(GpasClient::logCacheError)
+                              .onErrorComplete()
+                              .thenReturn(merge(cached, fetched)));
+            });
+  }
+
+  private Mono<Map<String, String>> fetchOrCreateFromGpas(String domain, Set<String> ids) {
     List<List<String>> batches = Lists.partition(new ArrayList<>(ids), batchSize);
     log.trace(
         "fetchOrCreatePseudonyms for domain: {} with {} IDs in {} batches",
@@ -71,6 +98,19 @@ public class GpasClient {
         .map(Map::copyOf);
   }
 
+  private static Map<String, String> merge(Map<String, String> a, Map<String, String> b) {
+    if (a.isEmpty()) {
+      return b;
+    }
+    var merged = new HashMap<>(a);
+    merged.putAll(b);
+    return Map.copyOf(merged);
+  }
+
+  private static void logCacheError(Throwable e) {
+    log.warn("Pseudonym cache unavailable, falling back to gPAS: {}", e.getMessage());
+  }
+
   private Mono<Map<String, String>> fetchBatch(String domain, List<String> ids) {
     List<Map<String, String>> params = new ArrayList<>();
     params.add(param("target", domain));
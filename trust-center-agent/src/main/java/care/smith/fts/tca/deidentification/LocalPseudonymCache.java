@@ -0,0 +1,42 @@
+package care.smith.fts.tca.deidentification;
+
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import reactor.core.publisher.Mono;
+
+/** In-process {@link PseudonymCache} with LRU eviction and a time to live per entry. */
+public class LocalPseudonymCache implements PseudonymCache {
+
+  private final Cache<Key, String> cache;
+
+  public LocalPseudonymCache(long maxSize, Duration ttl, MeterRegistry meterRegistry) {
+    this.cache =
+        CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build();
+    GuavaCacheMetrics.monitor(meterRegistry, cache, "gpas.pseudonyms");
+  }
+
+  @Override
+  public Mono<Map<String, String>> getAll(String domain, Set<String> originals) {
+    var keys = originals.stream().map(o -> new Key(domain, o)).collect(toSet());
+    return Mono.fromSupplier(
+        () ->
+            cache.getAllPresent(keys).entrySet().stream()
+                .collect(toMap(e -> e.getKey().original(), Map.Entry::getValue)));
+  }
+
+  @Override
+  public Mono<Void> putAll(String domain, Map<String, String> pseudonyms) {
+    return Mono.fromRunnable(
+        () -> pseudonyms.forEach((original, p) -> cache.put(new Key(domain, original), p)));
+  }
+
+  private record Key(String domain, String original) {}
+}
@@ -1,6 +1,10 @@
 package care.smith.fts.tca.deidentification;
 
+import care.smith.fts.util.tca.SecureMappingBatchRequest;
+import care.smith.fts.util.tca.SecureMappingBatchResponse;
 import care.smith.fts.util.tca.SecureMappingResponse;
+import care.smith.fts.util.tca.TransportMappingBatchRequest;
+import care.smith.fts.util.tca.TransportMappingBatchResponse;
 import care.smith.fts.util.tca.TransportMappingRequest;
 import care.smith.fts.util.tca.TransportMappingResponse;
 import reactor.core.publisher.Mono;
@@ -13,6 +17,15 @@ public interface MappingProvider {
    */
   Mono<TransportMappingResponse> generateTransportMapping(TransportMappingRequest r);
 
+  /**
+   * Stores the transport mappings of several patients at once. Pseudonyms, salts and date shift
+   * seeds of all patients are resolved together.
+   *
+   * @param r the batch of transport mapping requests
+   * @return the transfer IDs in request order
+   */
+  Mono<TransportMappingBatchResponse> generateTransportMappings(TransportMappingBatchRequest r);
+
   /**
    * Retrieves the mapping of <code>transportId</code> to <code>secureId</code> using the mappings
    * name.
@@ -21,4 +34,12 @@ public interface MappingProvider {
    * @return the mapped tid:sid
    */
   Mono<SecureMappingResponse> fetchSecureMapping(String transferId);
+
+  /**
+   * Retrieves the secure mappings of several transfers at once.
+   *
+   * @param r the transfer IDs
+   * @return the mapped tid:sid of each transfer ID
+   */
+  Mono<SecureMappingBatchResponse> fetchSecureMappings(SecureMappingBatchRequest r);
 }
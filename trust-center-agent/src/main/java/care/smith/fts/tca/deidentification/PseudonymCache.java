@@ -0,0 +1,44 @@
+package care.smith.fts.tca.deidentification;
+
+import java.util.Map;
+import java.util.Set;
+import reactor.core.publisher.Mono;
+
+/**
+ * Cache for gPAS pseudonyms, keyed by domain and original. Pseudonyms, salts and date shift seeds
+ * do not change once created, so repeated transfers of the same patients can skip gPAS.
+ */
+public interface PseudonymCache {
+
+  /**
+   * Looks up the pseudonyms of the given originals.
+   *
+   * @param domain the gPAS domain
+   * @param originals the originals to look up
+   * @return map of original to pseudonym, containing only the cached originals
+   */
+  Mono<Map<String, String>> getAll(String domain, Set<String> originals);
+
+  /**
+   * Stores pseudonyms fetched from gPAS.
+   *
+   * @param domain the gPAS domain
+   * @param pseudonyms map of original to pseudonym
+   */
+  Mono<Void> putAll(String domain, Map<String, String> pseudonyms);
+
+  /** A cache that never holds any pseudonym. */
+  static PseudonymCache disabled() {
+    return new PseudonymCache() {
+      @Override
+      public Mono<Map<String, String>> getAll(String domain, Set<String> originals) {
+        return Mono.just(Map.of());
+      }
+
+      @Override
+      public Mono<Void> putAll(String domain, Map<String, String> pseudonyms) {
+        return Mono.empty();
+      }
+    };
+  }
+}
@@ -0,0 +1,71 @@
+package care.smith.fts.tca.deidentification;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.redisson.api.EvictionMode;
+import org.redisson.api.RMapCacheReactive;
+import org.redisson.api.RedissonClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link PseudonymCache} stored in the keystore, so it is shared between TCA instances and survives
+ * restarts. Each domain is kept in its own map with LRU eviction, its size limit is set on the
+ * first write to the domain only.
+ */
+public class RedisPseudonymCache implements PseudonymCache {
+
+  private static final String MAP_PREFIX = "gpas-pseudonyms:";
+
+  private final RedissonClient redisClient;
+  private final int maxSize;
+  private final Duration ttl;
+  private final Counter hits;
+  private final Counter misses;
+  private final Set<String> sizeLimited = ConcurrentHashMap.newKeySet();
+
+  public RedisPseudonymCache(
+      RedissonClient redisClient, int maxSize, Duration ttl, MeterRegistry meterRegistry) {
+    this.redisClient = redisClient;
+    this.maxSize = maxSize;
+    this.ttl = ttl;
+    this.hits = meterRegistry.counter("cache.gets", "cache", "gpas.pseudonyms", "result", "hit");
+    this.misses = meterRegistry.counter("cache.gets", "cache", "gpas.pseudonyms", "result", "miss");
+  }
+
+  @Override
+  public Mono<Map<String, String>> getAll(String domain, Set<String> originals) {
+    return map(domain)
+        .getAll(originals)
+        .doOnNext(
+            found -> {
+              hits.increment(found.size());
+              misses.increment(originals.size() - found.size());
+            });
+  }
+
+  @Override
+  public Mono<Void> putAll(String domain, Map<String, String> pseudonyms) {
+    var map = map(domain);
+    return limitSize(domain, map)
+        .then(map.putAll(pseudonyms, ttl.toMillis(), TimeUnit.MILLISECONDS));
+  }
+
+  /** Sets the size limit once per domain, concurrent first writes may both set it. */
+  private Mono<Void> limitSize(String domain, RMapCacheReactive<String, String> map) {
+    if (sizeLimited.contains(domain)) {
+      return Mono.empty();
+    }
+    return map.trySetMaxSize(maxSize, EvictionMode.LRU)
+        .doOnSuccess(set -> sizeLimited.add(domain))
+        .then();
+  }
+
+  private RMapCacheReactive<String, String> map(String domain) {
+    return redisClient.reactive().getMapCache(MAP_PREFIX + domain);
+  }
+}
@@ -0,0 +1,84 @@
+package care.smith.fts.tca.deidentification;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.util.HexFormat;
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+
+/**
+ * Encodes the values of stored transport mappings as UTF-8 strings. The compact variant stores
+ * lowercase hex values, such as secure IDs, as raw bytes, which halves their size. Both variants
+ * decode either encoding, so the codec may be changed while mappings are stored. Keys are always
+ * stored as UTF-8 strings.
+ */
+public class TransportMappingCodec extends BaseCodec {
+
+  public static final TransportMappingCodec STRING = new TransportMappingCodec(false);
+  public static final TransportMappingCodec COMPACT = new TransportMappingCodec(true);
+
+  /** Marks a hex value stored as raw bytes, never the first byte of UTF-8 encoded text. */
+  private static final int HEX_MARKER = 0xFF;
+
+  private static final HexFormat HEX = HexFormat.of();
+
+  private final Encoder stringEncoder = in -> encode(in.toString(), false);
+  private final Encoder valueEncoder;
+  private final Decoder<Object> decoder = (buf, state) -> decode(buf);
+
+  private TransportMappingCodec(boolean compact) {
+    this.valueEncoder = in -> encode(in.toString(), compact);
+  }
+
+  @Override
+  public Decoder<Object> getValueDecoder() {
+    return decoder;
+  }
+
+  @Override
+  public Encoder getValueEncoder() {
+    return valueEncoder;
+  }
+
+  @Override
+  public Decoder<Object> getMapKeyDecoder() {
+    return decoder;
+  }
+
+  @Override
+  public Encoder getMapKeyEncoder() {
+    return stringEncoder;
+  }
+
+  private static ByteBuf encode(String value, boolean compact) {
+    var out = ByteBufAllocator.DEFAULT.buffer();
+    if (compact && isLowercaseHex(value)) {
+      out.writeByte(HEX_MARKER);
+      out.writeBytes(HEX.parseHex(value));
+    } else {
+      out.writeCharSequence(value, UTF_8);
+    }
+    return out;
+  }
+
+  private static String decode(ByteBuf buf) {
+    if (buf.isReadable() && buf.getUnsignedByte(buf.readerIndex()) == HEX_MARKER) {
+      buf.skipBytes(1);
+      var bytes = new byte[buf.readableBytes()];
+      buf.readBytes(bytes);
+      return HEX.formatHex(bytes);
+    }
+    var value = buf.toString(UTF_8);
+    buf.readerIndex(buf.writerIndex());
+    return value;
+  }
+
+  static boolean isLowercaseHex(String value) {
+    return !value.isEmpty()
+        && value.length() % 2 == 0
+        && value.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'));
+  }
+}
@@ -0,0 +1,44 @@
+package care.smith.fts.tca.deidentification.configuration;
+
+import care.smith.fts.tca.deidentification.LocalPseudonymCache;
+import care.smith.fts.tca.deidentification.PseudonymCache;
+import care.smith.fts.tca.deidentification.RedisPseudonymCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import lombok.Data;
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties("de-identification.pseudonym-cache")
+@Data
+public class PseudonymCacheConfiguration {
+
+  /** Where pseudonyms fetched from gPAS are cached, if at all. */
+  @NotNull private Type type = Type.NONE;
+
+  /** Maximum number of cached pseudonyms, per domain for {@link Type#REDIS}. */
+  @Positive private int maxSize = 100_000;
+
+  /** Time after which a cached pseudonym is fetched from gPAS again. */
+  @NotNull private Duration ttl = Duration.ofDays(1);
+
+  @Bean
+  public PseudonymCache pseudonymCache(RedissonClient redisClient, MeterRegistry meterRegistry) {
+    return switch (type) {
+      case NONE -> PseudonymCache.disabled();
+      case LOCAL -> new LocalPseudonymCache(maxSize, ttl, meterRegistry);
+      case REDIS -> new RedisPseudonymCache(redisClient, maxSize, ttl, meterRegistry);
+    };
+  }
+
+  public enum Type {
+    NONE,
+    LOCAL,
+    REDIS
+  }
+}
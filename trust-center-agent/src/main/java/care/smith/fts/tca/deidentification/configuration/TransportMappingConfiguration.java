@@ -1,5 +1,6 @@
 package care.smith.fts.tca.deidentification.configuration;
 
+import care.smith.fts.tca.deidentification.TransportMappingCodec;
 import jakarta.validation.constraints.NotNull;
 import java.time.Duration;
 import lombok.Getter;
@@ -13,4 +14,16 @@ import org.springframework.context.annotation.Configuration;
 @Setter
 public class TransportMappingConfiguration {
   @NotNull Duration ttl = Duration.ofMinutes(10);
+
+  /** Encoding of the stored transport mappings. */
+  @NotNull Codec codec = Codec.STRING;
+
+  public enum Codec {
+    STRING,
+    COMPACT;
+
+    public TransportMappingCodec redisCodec() {
+      return this == COMPACT ? TransportMappingCodec.COMPACT : TransportMappingCodec.STRING;
+    }
+  }
 }
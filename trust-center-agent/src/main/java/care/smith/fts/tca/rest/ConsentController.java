@@ -26,6 +26,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Slf4j
@@ -94,6 +95,41 @@ public class ConsentController {
     return response.map(ResponseEntity::ok).onErrorResume(ConsentController::errorResponse);
   }
 
+  @PostMapping(
+      value = "/cd/consented-patients/fetch-all",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaTypes.APPLICATION_FHIR_NDJSON_VALUE)
+  @Operation(
+      summary = "Stream of all consented patients",
+      description =
+          "**Since 5.8**\n\nStreams one Bundle per consented patient as NDJSON, across all pages.",
+      requestBody =
+          @io.swagger.v3.oas.annotations.parameters.RequestBody(
+              content =
+                  @Content(
+                      mediaType = "application/json",
+                      schema = @Schema(implementation = ConsentFetchAllRequest.class))),
+      responses = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Returns a Bundle with Patient and Consents per consented patient"),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Request body is no consent fetch request"),
+        @ApiResponse(responseCode = "404", description = "Unknown domain"),
+        @ApiResponse(
+            responseCode = "500",
+            description = "Configuration error, parsing or other unexpected errors"),
+        @ApiResponse(
+            responseCode = "503",
+            description = "Configuration missing authentication or gICS not available"),
+      })
+  public Mono<ResponseEntity<Flux<Bundle>>> streamAll(
+      @RequestBody @Valid Mono<ConsentFetchAllRequest> request) {
+    var response = request.flatMap(r -> consentedPatientsProvider.streamAll(r, pageSize));
+    return response.map(ResponseEntity::ok).onErrorResume(ConsentController::errorResponse);
+  }
+
   @PostMapping(
       value = "/cd/consented-patients/fetch",
       consumes = MediaType.APPLICATION_JSON_VALUE,
@@ -143,7 +179,42 @@ public class ConsentController {
     return response.map(ResponseEntity::ok).onErrorResume(ConsentController::errorResponse);
   }
 
-  private static Mono<ResponseEntity<Bundle>> errorResponse(Throwable e) {
+  @PostMapping(
+      value = "/cd/consented-patients/fetch",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaTypes.APPLICATION_FHIR_NDJSON_VALUE)
+  @Operation(
+      summary = "Stream of consented patients",
+      description =
+          "**Since 5.8**\n\nStreams one Bundle per consented patient as NDJSON, across all pages.",
+      requestBody =
+          @io.swagger.v3.oas.annotations.parameters.RequestBody(
+              content =
+                  @Content(
+                      mediaType = "application/json",
+                      schema = @Schema(implementation = ConsentFetchRequest.class))),
+      responses = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Returns a Bundle with Patient and Consents per consented patient"),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Request body is no consent fetch request"),
+        @ApiResponse(responseCode = "404", description = "Unknown domain"),
+        @ApiResponse(
+            responseCode = "500",
+            description = "Configuration error, parsing or other unexpected errors"),
+        @ApiResponse(
+            responseCode = "503",
+            description = "Configuration missing authentication or gICS not available"),
+      })
+  public Mono<ResponseEntity<Flux<Bundle>>> stream(
+      @RequestBody @Valid Mono<ConsentFetchRequest> request) {
+    var response = request.flatMap(r -> consentedPatientsProvider.stream(r, pageSize));
+    return response.map(ResponseEntity::ok).onErrorResume(ConsentController::errorResponse);
+  }
+
+  private static <T> Mono<ResponseEntity<T>> errorResponse(Throwable e) {
     if (e instanceof FhirException) {
       return fromFhirException((FhirException) e);
     } else {
@@ -33,8 +33,8 @@ public class DeIdentificationController {
 
   @PostMapping(
       value = "/cd/transport-mapping",
-      consumes = MediaType.APPLICATION_JSON_VALUE,
-      produces = MediaType.APPLICATION_JSON_VALUE)
+      consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
   @ExceptionHandler(UnknownDomainException.class)
   @Operation(
       summary = "Get the transport mapping",
@@ -56,7 +56,35 @@ public class DeIdentificationController {
         .onErrorResume(DeIdentificationController::handleGenerateError);
   }
 
-  private static Mono<ResponseEntity<TransportMappingResponse>> handleGenerateError(Throwable e) {
+  @PostMapping(
+      value = "/cd/transport-mapping/batch",
+      consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+  @Operation(
+      summary = "Get the transport mappings of several patients",
+      description = "**Since 5.8**\n\n",
+      requestBody =
+          @io.swagger.v3.oas.annotations.parameters.RequestBody(
+              content =
+                  @Content(schema = @Schema(implementation = TransportMappingBatchRequest.class))),
+      responses = {
+        @ApiResponse(
+            responseCode = "200",
+            content =
+                @Content(schema = @Schema(implementation = TransportMappingBatchResponse.class))),
+        @ApiResponse(responseCode = "400", description = "Bad request"),
+      })
+  public Mono<ResponseEntity<TransportMappingBatchResponse>> transportMappings(
+      @Valid @RequestBody Mono<TransportMappingBatchRequest> requestData) {
+    return requestData
+        .filter(r -> r.requests() != null)
+        .switchIfEmpty(Mono.error(new IllegalArgumentException("Missing transport requests")))
+        .flatMap(mappingProvider::generateTransportMappings)
+        .map(ResponseEntity::ok)
+        .onErrorResume(DeIdentificationController::handleGenerateError);
+  }
+
+  private static <T> Mono<ResponseEntity<T>> handleGenerateError(Throwable e) {
     if (e instanceof UnknownDomainException || e instanceof IllegalArgumentException) {
       return ErrorResponseUtil.badRequest(e);
     } else {
@@ -68,7 +96,7 @@ public class DeIdentificationController {
   @PostMapping(
       value = "/rd/secure-mapping",
       consumes = MediaType.APPLICATION_JSON_VALUE,
-      produces = MediaType.APPLICATION_JSON_VALUE)
+      produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
   @Operation(
       summary = "Get the secure mapping",
       description = "**Since 5.0**\n\n",
@@ -95,4 +123,35 @@ public class DeIdentificationController {
     log.error("Could not fetch pseudonyms of map {}: {}", transferId, e.getMessage());
     return ErrorResponseUtil.internalServerError(e);
   }
+
+  @PostMapping(
+      value = "/rd/secure-mapping/batch",
+      consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+  @Operation(
+      summary = "Get the secure mappings of several transfers",
+      description = "**Since 5.8**\n\n",
+      requestBody =
+          @io.swagger.v3.oas.annotations.parameters.RequestBody(
+              content =
+                  @Content(schema = @Schema(implementation = SecureMappingBatchRequest.class))),
+      responses = {
+        @ApiResponse(
+            responseCode = "200",
+            content =
+                @Content(schema = @Schema(implementation = SecureMappingBatchResponse.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid transfer id"),
+      })
+  public Mono<ResponseEntity<SecureMappingBatchResponse>> secureMappings(
+      @Valid @RequestBody Mono<SecureMappingBatchRequest> requestData) {
+    return requestData
+        .doOnNext(r -> log.trace("Resolve pseudonyms of {} maps", r.transferIds().size()))
+        .flatMap(mappingProvider::fetchSecureMappings)
+        .map(ResponseEntity::ok)
+        .onErrorResume(
+            e -> {
+              log.error("Could not fetch pseudonyms of maps: {}", e.getMessage());
+              return ErrorResponseUtil.internalServerError(e);
+            });
+  }
 }
@@ -1,9 +1,12 @@
 package care.smith.fts.tca.consent;
 
 import static care.smith.fts.test.MockServerUtil.fhirResponse;
+import static care.smith.fts.util.error.fhir.FhirErrorResponseUtil.operationOutcomeWithIssue;
+import static care.smith.fts.util.fhir.FhirUtils.toBundle;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static java.lang.String.valueOf;
 import static java.util.Map.entry;
@@ -17,11 +20,13 @@ import care.smith.fts.test.TestWebClientFactory;
 import care.smith.fts.util.DefaultRetryStrategy;
 import care.smith.fts.util.tca.ConsentFetchAllRequest;
 import com.github.tomakehurst.wiremock.client.MappingBuilder;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import io.micrometer.core.instrument.MeterRegistry;
 import java.util.Set;
 import org.hl7.fhir.r4.model.Bundle;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -155,4 +160,103 @@ class GicsFhirConsentedPatientsProviderFetchAllIT
   protected ConsentFetchAllRequest createRequestWithEmptyPolicies() {
     return new ConsentFetchAllRequest("MII", Set.of(), POLICY_SYSTEM);
   }
+
+  private void registerPage(int offset, int pageSize, int entries) {
+    registerPage(offset, pageSize, entries, null);
+  }
+
+  private void registerPage(int offset, int pageSize, int entries, Integer total) {
+    var page = gicsConsentGenerator.generateResources().limit(entries).collect(toBundle());
+    if (total != null) {
+      page.setTotal(total);
+    }
+    wireMock.register(
+        getRequestMappingBuilder()
+            .withQueryParams(
+                ofEntries(
+                    entry("_offset", equalTo(valueOf(offset))),
+                    entry("_count", equalTo(valueOf(pageSize)))))
+            .willReturn(fhirResponse(page)));
+  }
+
+  @Test
+  void streamAllFollowsPagesUntilPageIsNotFull() {
+    registerPage(0, 2, 2);
+    registerPage(2, 2, 1);
+
+    create(client.streamAll(CONSENT_FETCH_ALL_REQUEST, 2).flatMapMany(f -> f))
+        .expectNextCount(3)
+        .verifyComplete();
+  }
+
+  @Test
+  void streamAllRequestsEmptyPageAfterFullPage() {
+    registerPage(0, 2, 2);
+    registerPage(2, 2, 0);
+
+    create(client.streamAll(CONSENT_FETCH_ALL_REQUEST, 2).flatMapMany(f -> f))
+        .expectNextCount(2)
+        .verifyComplete();
+  }
+
+  @Test
+  void streamAllWithEmptyPoliciesIsEmpty() {
+    create(client.streamAll(createRequestWithEmptyPolicies(), 2).flatMapMany(f -> f))
+        .verifyComplete();
+  }
+
+  @Test
+  void streamAllErrorsBeforeStreaming() {
+    var outcome = operationOutcomeWithIssue(new Exception("Unknown domain"));
+    wireMock.register(getRequestMappingBuilder().willReturn(fhirResponse(outcome, 404)));
+
+    create(client.streamAll(CONSENT_FETCH_ALL_REQUEST, 2)).expectError().verify();
+  }
+
+  @Test
+  void streamAllPrefetchesPagesInOrder(WireMockRuntimeInfo wireMockRuntime) {
+    var prefetching =
+        new GicsFhirConsentedPatientsProvider(
+            httpClientBuilder.baseUrl(wireMockRuntime.getHttpBaseUrl()).build(),
+            new DefaultRetryStrategy(meterRegistry),
+            2);
+    registerPage(0, 2, 2, 5);
+    registerPage(2, 2, 2, 5);
+    registerPage(4, 2, 1, 5);
+
+    create(prefetching.streamAll(CONSENT_FETCH_ALL_REQUEST, 2).flatMapMany(f -> f))
+        .expectNextCount(5)
+        .verifyComplete();
+    wireMock.verifyThat(3, postRequestedFor(urlPathEqualTo("/$allConsentsForDomain")));
+  }
+
+  @Test
+  void streamAllPrefetchingWithoutTotalFollowsPagesUntilPageIsNotFull(
+      WireMockRuntimeInfo wireMockRuntime) {
+    var prefetching =
+        new GicsFhirConsentedPatientsProvider(
+            httpClientBuilder.baseUrl(wireMockRuntime.getHttpBaseUrl()).build(),
+            new DefaultRetryStrategy(meterRegistry),
+            2);
+    registerPage(0, 2, 2);
+    registerPage(2, 2, 2);
+    registerPage(4, 2, 1);
+
+    create(prefetching.streamAll(CONSENT_FETCH_ALL_REQUEST, 2).flatMapMany(f -> f))
+        .expectNextCount(5)
+        .verifyComplete();
+    wireMock.verifyThat(3, postRequestedFor(urlPathEqualTo("/$allConsentsForDomain")));
+  }
+
+  @Test
+  void followingPagesCoverTotal() {
+    create(GicsFhirConsentedPatientsProvider.followingPages(new PagingParams(0, 2), 5))
+        .expectNext(new PagingParams(2, 2), new PagingParams(4, 2))
+        .verifyComplete();
+    create(GicsFhirConsentedPatientsProvider.followingPages(new PagingParams(0, 2), 4))
+        .expectNext(new PagingParams(2, 2))
+        .verifyComplete();
+    create(GicsFhirConsentedPatientsProvider.followingPages(new PagingParams(0, 2), 0))
+        .verifyComplete();
+  }
 }
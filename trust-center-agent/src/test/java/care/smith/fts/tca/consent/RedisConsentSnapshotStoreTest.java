@@ -0,0 +1,142 @@
+package care.smith.fts.tca.consent;
+
+import static care.smith.fts.util.fhir.FhirUtils.fhirResourceToString;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static reactor.test.StepVerifier.create;
+
+import care.smith.fts.util.fhir.FhirUtils;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatchReactive;
+import org.redisson.api.RBucketReactive;
+import org.redisson.api.RListReactive;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.RedissonReactiveClient;
+import org.redisson.client.codec.Codec;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+class RedisConsentSnapshotStoreTest {
+
+  private static final Instant CREATED = Instant.parse("2026-01-01T00:00:00Z");
+
+  @Mock RedissonClient redisClient;
+  @Mock RedissonReactiveClient redis;
+  @Mock RBatchReactive batch;
+  @Mock RBatchReactive atomicBatch;
+  @Mock RBucketReactive<Object> created;
+  @Mock RListReactive<Object> patients;
+  @Mock RListReactive<Object> written;
+
+  private RedisConsentSnapshotStore store;
+
+  @BeforeEach
+  void setUp() {
+    given(redisClient.reactive()).willReturn(redis);
+    store = new RedisConsentSnapshotStore(redisClient, FhirUtils.parsers);
+  }
+
+  private static Bundle patient() {
+    var bundle = new Bundle();
+    bundle.addEntry().setResource(new Patient().setId("p1"));
+    return bundle;
+  }
+
+  private void givenAtomicBatch(Object... responses) {
+    given(redis.createBatch(any(BatchOptions.class))).willReturn(atomicBatch);
+    given(atomicBatch.getBucket(eq("consent-snapshots:key:created"), any(Codec.class)))
+        .willReturn(created);
+    given(atomicBatch.execute())
+        .willReturn(Mono.just(new BatchResult<>(Arrays.asList(responses), 0)));
+  }
+
+  @Test
+  void loadDecodesPatients() {
+    givenAtomicBatch(CREATED.toString(), List.of(fhirResourceToString(patient())));
+    given(atomicBatch.getList(eq("consent-snapshots:key"), any(Codec.class))).willReturn(patients);
+
+    create(store.load("key"))
+        .assertNext(
+            s -> {
+              assertThat(s.created()).isEqualTo(CREATED);
+              assertThat(s.patients()).hasSize(1);
+            })
+        .verifyComplete();
+    verify(created).get();
+    verify(patients).readAll();
+  }
+
+  @Test
+  void loadWithoutSnapshotIsEmpty() {
+    givenAtomicBatch(null, List.of());
+    given(atomicBatch.getList(anyString(), any(Codec.class))).willReturn(patients);
+
+    create(store.load("key")).verifyComplete();
+  }
+
+  @Test
+  void saveRenamesUniqueTemporaryListWithCreationTime() {
+    given(redis.createBatch()).willReturn(batch);
+    given(batch.getList(startsWith("consent-snapshots:key:tmp:"), any(Codec.class)))
+        .willReturn(written);
+    given(batch.execute()).willReturn(Mono.just(new BatchResult<>(List.of(), 0)));
+    givenAtomicBatch();
+    given(atomicBatch.getList(anyString(), any(Codec.class))).willReturn(patients);
+
+    create(store.save("key", new ConsentSnapshot(CREATED, List.of(patient())))).verifyComplete();
+
+    verify(written).addAll(List.of(fhirResourceToString(patient())));
+    verify(written).expire(Duration.ofHours(1));
+    verify(patients).rename("consent-snapshots:key");
+    verify(patients).clearExpire();
+    verify(created).set(CREATED.toString());
+  }
+
+  @Test
+  void concurrentSavesUseDistinctTemporaryLists() {
+    given(redis.createBatch()).willReturn(batch);
+    given(batch.getList(anyString(), any(Codec.class))).willReturn(written);
+    given(batch.execute()).willReturn(Mono.just(new BatchResult<>(List.of(), 0)));
+    givenAtomicBatch();
+    given(atomicBatch.getList(anyString(), any(Codec.class))).willReturn(patients);
+
+    var snapshot = new ConsentSnapshot(CREATED, List.of(patient()));
+    create(Mono.when(store.save("key", snapshot), store.save("key", snapshot))).verifyComplete();
+
+    var names = ArgumentCaptor.forClass(String.class);
+    verify(batch, atLeastOnce()).getList(names.capture(), any(Codec.class));
+    assertThat(names.getAllValues()).hasSize(2).doesNotHaveDuplicates();
+  }
+
+  @Test
+  void saveOfEmptySnapshotDeletesPatients() {
+    givenAtomicBatch();
+    given(atomicBatch.getList(eq("consent-snapshots:key"), any(Codec.class))).willReturn(patients);
+
+    create(store.save("key", new ConsentSnapshot(CREATED, List.of()))).verifyComplete();
+
+    verify(redis, never()).createBatch();
+    verify(patients).delete();
+    verify(created).set(CREATED.toString());
+  }
+}
@@ -0,0 +1,297 @@
+package care.smith.fts.tca.consent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.web.util.UriComponentsBuilder.fromUriString;
+import static reactor.test.StepVerifier.create;
+
+import care.smith.fts.tca.consent.ConsentedPatientsProvider.PagingParams;
+import care.smith.fts.util.tca.ConsentFetchAllRequest;
+import care.smith.fts.util.tca.ConsentFetchRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+@ExtendWith(MockitoExtension.class)
+class SnapshotConsentedPatientsProviderTest {
+
+  private static final String SYSTEM = "https://ths-greifswald.de/fhir/gics/identifiers/Pseudonym";
+  private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+  private static final ConsentFetchAllRequest FETCH_ALL =
+      new ConsentFetchAllRequest("MII", Set.of("a", "b"), "sys");
+  private static final PagingParams FIRST_PAGE = new PagingParams(0, 2);
+
+  @Mock ConsentedPatientsProvider gics;
+  @Mock ConsentSnapshotStore store;
+
+  private final AtomicReference<Instant> now = new AtomicReference<>(NOW);
+  private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+  private SnapshotConsentedPatientsProvider provider;
+
+  @BeforeEach
+  void setUp() {
+    var clock =
+        new Clock() {
+          @Override
+          public ZoneId getZone() {
+            return ZoneOffset.UTC;
+          }
+
+          @Override
+          public Clock withZone(ZoneId zone) {
+            return this;
+          }
+
+          @Override
+          public Instant instant() {
+            return now.get();
+          }
+        };
+    provider =
+        new SnapshotConsentedPatientsProvider(
+            gics, store, Duration.ofHours(1), 2, new SimpleMeterRegistry(), clock, scheduler);
+  }
+
+  @AfterEach
+  void tearDown() {
+    provider.close();
+  }
+
+  private static Bundle patient(String id) {
+    var patient = new Patient().addIdentifier(new Identifier().setSystem(SYSTEM).setValue(id));
+    var bundle = new Bundle();
+    bundle.addEntry().setResource(patient);
+    return bundle;
+  }
+
+  private Flux<Bundle> streamAll(ConsentFetchAllRequest req) {
+    return provider.streamAll(req, 2).flatMapMany(f -> f);
+  }
+
+  private Mono<Bundle> fetchAll(ConsentFetchAllRequest req, PagingParams paging) {
+    return provider.fetchAll(req, fromUriString("http://tca:8080"), paging);
+  }
+
+  private void givenGics(Bundle... patients) {
+    given(store.load(anyString())).willReturn(Mono.empty());
+    given(store.save(anyString(), any())).willReturn(Mono.empty());
+    given(gics.streamAll(FETCH_ALL, 2)).willReturn(Mono.just(Flux.just(patients)));
+  }
+
+  /** Sends a cold request, with the mocked gICS the scan it starts completes at once. */
+  private void coldRequest() {
+    given(gics.fetchAll(any(), any(), any())).willReturn(Mono.just(new Bundle()));
+    create(fetchAll(FETCH_ALL, FIRST_PAGE)).expectNextCount(1).verifyComplete();
+  }
+
+  @Test
+  void coldRequestsArePassedThroughWhileScanning() {
+    given(store.load(anyString())).willReturn(Mono.empty());
+    given(gics.streamAll(FETCH_ALL, 2)).willReturn(Mono.never());
+    var req = new ConsentFetchRequest("MII", Set.of("a", "b"), "sys", SYSTEM, List.of("p1"));
+    given(gics.fetchAll(any(), any(), any())).willReturn(Mono.just(new Bundle().setTotal(7)));
+    given(gics.fetch(any(), any(), any())).willReturn(Mono.just(patient("p1")));
+    given(gics.stream(req, 2)).willReturn(Mono.just(Flux.just(patient("p1"))));
+    given(gics.streamAll(FETCH_ALL, 5)).willReturn(Mono.just(Flux.just(patient("p1"))));
+
+    create(fetchAll(FETCH_ALL, FIRST_PAGE))
+        .assertNext(b -> assertThat(b.getTotal()).isEqualTo(7))
+        .verifyComplete();
+    create(provider.fetch(req, fromUriString("http://tca:8080"), FIRST_PAGE))
+        .expectNextCount(1)
+        .verifyComplete();
+    create(provider.stream(req, 2).flatMapMany(f -> f)).expectNextCount(1).verifyComplete();
+    create(provider.streamAll(FETCH_ALL, 5).flatMapMany(f -> f))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    verify(gics, times(1)).streamAll(FETCH_ALL, 2);
+  }
+
+  @Test
+  void fetchAllPagesSnapshot() {
+    givenGics(patient("p1"), patient("p2"), patient("p3"));
+    coldRequest();
+
+    create(fetchAll(FETCH_ALL, FIRST_PAGE))
+        .assertNext(
+            b -> {
+              assertThat(b.getEntry()).hasSize(2);
+              assertThat(b.getTotal()).isEqualTo(3);
+              assertThat(b.getLink("next")).isNotNull();
+            })
+        .verifyComplete();
+    create(fetchAll(FETCH_ALL, new PagingParams(2, 2)))
+        .assertNext(
+            b -> {
+              assertThat(b.getEntry()).hasSize(1);
+              assertThat(b.getLink("next")).isNull();
+            })
+        .verifyComplete();
+
+    verify(gics, times(1)).streamAll(FETCH_ALL, 2);
+  }
+
+  @Test
+  void requestsShareSnapshotIndependentOfPolicyOrder() {
+    givenGics(patient("p1"));
+    coldRequest();
+    var reordered = new ConsentFetchAllRequest("MII", Set.of("b", "a"), "sys");
+
+    create(streamAll(FETCH_ALL)).expectNextCount(1).verifyComplete();
+    create(streamAll(reordered)).expectNextCount(1).verifyComplete();
+
+    verify(gics, times(1)).streamAll(any(), anyInt());
+  }
+
+  @Test
+  void fetchServesRequestedIdentifiers() {
+    givenGics(patient("p1"), patient("p2"), patient("p3"));
+    coldRequest();
+    var req =
+        new ConsentFetchRequest("MII", Set.of("a", "b"), "sys", SYSTEM, List.of("p3", "p4"));
+
+    create(provider.fetch(req, fromUriString("http://tca:8080"), FIRST_PAGE))
+        .assertNext(
+            b -> {
+              assertThat(b.getEntry()).hasSize(1);
+              assertThat(b.getLink("next")).isNull();
+            })
+        .verifyComplete();
+    create(provider.stream(req, 2).flatMapMany(f -> f)).expectNextCount(1).verifyComplete();
+  }
+
+  @Test
+  void storedSnapshotIsLoadedInsteadOfScanning() {
+    var stored = new ConsentSnapshot(NOW, List.of(patient("p1")));
+    given(store.load(SnapshotConsentedPatientsProvider.key(FETCH_ALL)))
+        .willReturn(Mono.just(stored));
+
+    create(streamAll(FETCH_ALL)).expectNextCount(1).verifyComplete();
+
+    verify(gics, never()).streamAll(any(), anyInt());
+  }
+
+  @Test
+  void agingSnapshotIsRefreshedOnSchedule() {
+    given(store.load(anyString())).willReturn(Mono.empty());
+    given(store.save(anyString(), any())).willReturn(Mono.empty());
+    given(gics.streamAll(FETCH_ALL, 2))
+        .willReturn(Mono.just(Flux.just(patient("p1"))))
+        .willReturn(Mono.just(Flux.just(patient("p1"), patient("p2"))));
+    coldRequest();
+
+    now.set(NOW.plus(Duration.ofMinutes(40)));
+    scheduler.advanceTimeBy(Duration.ofMinutes(15));
+
+    create(streamAll(FETCH_ALL)).expectNextCount(2).verifyComplete();
+    verify(gics, times(2)).streamAll(FETCH_ALL, 2);
+  }
+
+  @Test
+  void freshSnapshotIsNotRefreshedOnSchedule() {
+    givenGics(patient("p1"));
+    coldRequest();
+
+    now.set(NOW.plus(Duration.ofMinutes(10)));
+    scheduler.advanceTimeBy(Duration.ofMinutes(15));
+
+    verify(gics, times(1)).streamAll(FETCH_ALL, 2);
+  }
+
+  @Test
+  void staleSnapshotIsPassedThroughWhenRefreshFails() {
+    given(store.load(anyString())).willReturn(Mono.empty());
+    given(store.save(anyString(), any())).willReturn(Mono.empty());
+    given(gics.streamAll(FETCH_ALL, 2))
+        .willReturn(Mono.just(Flux.just(patient("p1"))))
+        .willReturn(Mono.error(new IllegalStateException("gICS unavailable")));
+    coldRequest();
+    given(gics.fetchAll(any(), any(), any())).willReturn(Mono.just(new Bundle().setTotal(7)));
+
+    now.set(NOW.plus(Duration.ofHours(2)));
+
+    create(fetchAll(FETCH_ALL, FIRST_PAGE))
+        .assertNext(b -> assertThat(b.getTotal()).isEqualTo(7))
+        .verifyComplete();
+    create(fetchAll(FETCH_ALL, FIRST_PAGE))
+        .assertNext(b -> assertThat(b.getTotal()).isEqualTo(7))
+        .verifyComplete();
+    verify(gics, times(3)).streamAll(FETCH_ALL, 2);
+  }
+
+  @Test
+  void staleStoredSnapshotIsNotServed() {
+    var stored = new ConsentSnapshot(NOW.minus(Duration.ofHours(2)), List.of(patient("p1")));
+    given(store.load(anyString())).willReturn(Mono.just(stored));
+    given(store.save(anyString(), any())).willReturn(Mono.empty());
+    given(gics.streamAll(FETCH_ALL, 2))
+        .willReturn(Mono.just(Flux.just(patient("p1"), patient("p2"))));
+    coldRequest();
+
+    create(streamAll(FETCH_ALL)).expectNextCount(2).verifyComplete();
+    verify(gics, times(1)).fetchAll(any(), any(), any());
+  }
+
+  @Test
+  void failedScanIsRetried() {
+    given(store.load(anyString())).willReturn(Mono.empty());
+    given(store.save(anyString(), any())).willReturn(Mono.empty());
+    given(gics.streamAll(FETCH_ALL, 2))
+        .willReturn(Mono.error(new IllegalStateException("gICS unavailable")))
+        .willReturn(Mono.just(Flux.just(patient("p1"))));
+    coldRequest();
+    coldRequest();
+
+    create(streamAll(FETCH_ALL)).expectNextCount(1).verifyComplete();
+
+    verify(gics, times(2)).streamAll(FETCH_ALL, 2);
+  }
+
+  @Test
+  void failingStoreDoesNotFailScan() {
+    given(store.load(anyString())).willReturn(Mono.error(new IllegalStateException("down")));
+    given(store.save(anyString(), any()))
+        .willReturn(Mono.error(new IllegalStateException("down")));
+    given(gics.streamAll(FETCH_ALL, 2)).willReturn(Mono.just(Flux.just(patient("p1"))));
+    coldRequest();
+
+    create(streamAll(FETCH_ALL)).expectNextCount(1).verifyComplete();
+
+    verify(gics, times(1)).streamAll(FETCH_ALL, 2);
+  }
+
+  @Test
+  void emptyPoliciesYieldEmptyResults() {
+    var req = new ConsentFetchAllRequest("MII", Set.of(), "sys");
+
+    create(fetchAll(req, FIRST_PAGE))
+        .assertNext(b -> assertThat(b.getEntry()).isEmpty())
+        .verifyComplete();
+    create(streamAll(req)).verifyComplete();
+  }
+}
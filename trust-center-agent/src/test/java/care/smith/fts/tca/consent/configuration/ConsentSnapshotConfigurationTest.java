@@ -0,0 +1,58 @@
+package care.smith.fts.tca.consent.configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import care.smith.fts.tca.consent.ConsentedPatientsProvider;
+import care.smith.fts.tca.consent.GicsFhirConsentedPatientsProvider;
+import care.smith.fts.tca.consent.SnapshotConsentedPatientsProvider;
+import care.smith.fts.tca.consent.configuration.ConsentSnapshotConfiguration.Type;
+import care.smith.fts.util.fhir.FhirUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+@SpringBootTest
+class ConsentSnapshotConfigurationTest {
+
+  @Autowired private ConsentSnapshotConfiguration configuration;
+
+  @MockitoBean
+  RedissonClient redisClient; // We need to mock the redisClient otherwise the tests won't start
+
+  @Test
+  void snapshotsAreDisabledByDefault(@Autowired ConsentedPatientsProvider provider) {
+    assertThat(configuration.getType()).isEqualTo(Type.NONE);
+    assertThat(configuration.getRefreshInterval()).isEqualTo(Duration.ofHours(1));
+    assertThat(provider).isInstanceOf(GicsFhirConsentedPatientsProvider.class);
+  }
+
+  @Test
+  void createsConfiguredProvider() {
+    var config = new ConsentSnapshotConfiguration();
+    var gics = mock(GicsFhirConsentedPatientsProvider.class);
+    var meterRegistry = new SimpleMeterRegistry();
+
+    config.setType(Type.LOCAL);
+    assertThat(
+            config.snapshotConsentedPatientsProvider(
+                gics, 50, redisClient, FhirUtils.parsers, meterRegistry))
+        .isInstanceOf(SnapshotConsentedPatientsProvider.class);
+
+    config.setType(Type.REDIS);
+    assertThat(
+            config.snapshotConsentedPatientsProvider(
+                gics, 50, redisClient, FhirUtils.parsers, meterRegistry))
+        .isInstanceOf(SnapshotConsentedPatientsProvider.class);
+
+    config.setType(Type.NONE);
+    assertThat(
+            config.snapshotConsentedPatientsProvider(
+                gics, 50, redisClient, FhirUtils.parsers, meterRegistry))
+        .isSameAs(gics);
+  }
+}
@@ -1,6 +1,7 @@
 package care.smith.fts.tca.consent.configuration;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import care.smith.fts.util.WebClientFactory;
 import org.junit.jupiter.api.Test;
@@ -35,6 +36,15 @@ class GicsConfigurationIT {
     assertThat(localGicsConfiguration.pageSize()).isEqualTo(50);
   }
 
+  @Test
+  void negativePrefetchPagesIsRejected() {
+    var localGicsConfiguration = new GicsConfiguration();
+    localGicsConfiguration.setPrefetchPages(-1);
+
+    assertThatThrownBy(() -> localGicsConfiguration.fhirConsentedPatientsProvider(null, null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
   @Test
   void gicsClientNotNull(@Autowired WebClientFactory factory) {
     assertThat(gicsConfiguration.gicsClient(factory)).isNotNull();
@@ -4,19 +4,24 @@ import static care.smith.fts.test.FhirGenerators.fromList;
 import static care.smith.fts.test.MockServerUtil.APPLICATION_FHIR_JSON;
 import static care.smith.fts.test.MockServerUtil.fhirResponse;
 import static care.smith.fts.util.fhir.FhirUtils.fhirResourceToString;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.status;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.OK;
@@ -29,7 +34,9 @@ import care.smith.fts.test.FhirGenerators;
 import care.smith.fts.test.TestWebClientFactory;
 import care.smith.fts.util.DefaultRetryStrategy;
 import care.smith.fts.util.error.fhir.FhirException;
+import care.smith.fts.util.tca.SecureMappingBatchRequest;
 import care.smith.fts.util.tca.TcaDomains;
+import care.smith.fts.util.tca.TransportMappingBatchRequest;
 import care.smith.fts.util.tca.TransportMappingRequest;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.common.ContentTypes;
@@ -52,10 +59,14 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatchReactive;
 import org.redisson.api.RMapCacheReactive;
+import org.redisson.api.RMapReactive;
 import org.redisson.api.RedissonClient;
 import org.redisson.api.RedissonReactiveClient;
 import org.redisson.client.RedisTimeoutException;
+import org.redisson.client.codec.Codec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
@@ -85,6 +96,8 @@ class FhirMappingProviderTest {
   @MockitoBean RedissonClient redisClient;
   @Mock RedissonReactiveClient redis;
   @Mock RMapCacheReactive<Object, Object> mapCache;
+  @Mock RMapReactive<Object, Object> map;
+  @Mock RBatchReactive batch;
   @Autowired TransportMappingConfiguration transportMappingConfiguration;
   @Autowired MeterRegistry meterRegistry;
 
@@ -103,7 +116,8 @@ class FhirMappingProviderTest {
         new GpasClient(
             httpClientBuilder.baseUrl(address).build(),
             new DefaultRetryStrategy(meterRegistry),
-            gpasConfig);
+            gpasConfig,
+            PseudonymCache.disabled());
 
     mappingProvider =
         new FhirMappingProvider(
@@ -140,9 +154,7 @@ class FhirMappingProviderTest {
                                 true))
                         .willReturn(fhirResponse(fhirGenerator.generateString()))));
 
-    given(redis.getMapCache(anyString())).willReturn(mapCache);
-    given(mapCache.expire(Duration.ofMinutes(10))).willReturn(Mono.just(false));
-    given(mapCache.putAll(anyMap())).willReturn(Mono.empty());
+    givenWriteBatch();
 
     var idMappings =
         Map.of(
@@ -161,26 +173,118 @@ class FhirMappingProviderTest {
     create(mappingProvider.generateTransportMapping(request))
         .assertNext(r -> assertThat(r.transferId()).isEqualTo(mapName))
         .verifyComplete();
+
+    verify(batch).getMap("transport-mapping:" + mapName, TransportMappingCodec.STRING);
+    verify(map).expire(Duration.ofMinutes(10));
+    verify(batch).execute();
+  }
+
+  @Test
+  void generateTransportMappings() {
+    var domains = new TcaDomains("domainPsn", "domainSalt", "domainDs");
+    registerGpasResponse("domainPsn", Map.of("id1", "psn1", "id2", "psn2"));
+    registerGpasResponse("domainSalt", Map.of("Salt_id1", "salt1", "Salt_id2", "salt2"));
+    registerGpasResponse("domainDs", Map.of("PT336H_id1", "seed1", "PT336H_id2", "seed2"));
+
+    givenWriteBatch();
+
+    var request =
+        new TransportMappingBatchRequest(
+            List.of(
+                new TransportMappingRequest(
+                    "id1",
+                    "patientIdentifierSystem",
+                    Map.of("id1.Patient:id1", "tid1"),
+                    Map.of(),
+                    domains,
+                    Duration.ofDays(14),
+                    DateShiftPreserve.NONE),
+                new TransportMappingRequest(
+                    "id2",
+                    "patientIdentifierSystem",
+                    Map.of("id2.Patient:id2", "tid2"),
+                    Map.of(),
+                    domains,
+                    Duration.ofDays(14),
+                    DateShiftPreserve.NONE)));
+
+    create(mappingProvider.generateTransportMappings(request))
+        .assertNext(r -> assertThat(r.transferIds()).hasSize(2).doesNotHaveDuplicates())
+        .verifyComplete();
+
+    assertThat(wireMock.find(postRequestedFor(urlEqualTo("/$pseudonymizeAllowCreate"))))
+        .hasSize(3);
+    verify(map, times(2)).putAll(anyMap());
+    verify(map, times(2)).expire(Duration.ofMinutes(10));
+    verify(redis).createBatch();
+    verify(batch).execute();
+  }
+
+  @Test
+  void generateTransportMappingsWithEmptyBatch() {
+    create(mappingProvider.generateTransportMappings(new TransportMappingBatchRequest(List.of())))
+        .assertNext(r -> assertThat(r.transferIds()).isEmpty())
+        .verifyComplete();
+
+    verify(redis, never()).createBatch();
+  }
+
+  private void givenWriteBatch() {
+    given(redis.createBatch()).willReturn(batch);
+    given(batch.getMap(anyString(), any(Codec.class))).willReturn(map);
+    given(batch.execute()).willReturn(Mono.just(new BatchResult<>(List.of(), 0)));
+  }
+
+  private void registerGpasResponse(String domain, Map<String, String> pseudonyms) {
+    var parameters =
+        pseudonyms.entrySet().stream()
+            .map(
+                e ->
+                    """
+                    {"name": "pseudonym", "part": [
+                      {"name": "original", "valueIdentifier": {"value": "%s"}},
+                      {"name": "target", "valueIdentifier": {"value": "%s"}},
+                      {"name": "pseudonym", "valueIdentifier": {"value": "%s"}}]}
+                    """
+                        .formatted(e.getKey(), domain, e.getValue()))
+            .collect(Collectors.joining(","));
+    wireMock.register(
+        post(urlEqualTo("/$pseudonymizeAllowCreate"))
+            .withRequestBody(containing("\"%s\"".formatted(domain)))
+            .willReturn(
+                fhirResponse(
+                    """
+                    {"resourceType": "Parameters", "parameter": [%s]}
+                    """
+                        .formatted(parameters))));
   }
 
   @Test
   void generateTransportMappingWhenRedisDown() {
-    given(redis.getMapCache(anyString())).willThrow(new RedisTimeoutException("timeout"));
-    assertThrows(
-        RedisTimeoutException.class,
-        () -> mappingProvider.generateTransportMapping(DEFAULT_REQUEST));
+    registerGpasResponse("domain", Map.of("id1", "psn1", "Salt_id1", "salt1", "PT336H_id1", "1"));
+    given(redis.createBatch()).willReturn(batch);
+    given(batch.getMap(anyString(), any(Codec.class))).willReturn(map);
+    given(batch.execute()).willReturn(Mono.error(new RedisTimeoutException("timeout")));
+
+    create(mappingProvider.generateTransportMapping(DEFAULT_REQUEST))
+        .expectError(RedisTimeoutException.class)
+        .verify();
   }
 
   @Test
   void fetchSecureMapping() {
-    given(redis.getMapCache(anyString())).willReturn(mapCache);
-    given(mapCache.readAllMap())
+    given(redis.createBatch()).willReturn(batch);
+    given(batch.getMap(anyString(), any(Codec.class))).willReturn(map);
+    given(batch.execute())
         .willReturn(
             Mono.just(
-                Map.of(
-                    "id1", "123456789",
-                    "id2", "987654321",
-                    "ds:2024-03-15", "2024-03-20")));
+                new BatchResult<>(
+                    List.of(
+                        Map.of(
+                            "id1", "123456789",
+                            "id2", "987654321",
+                            "ds:2024-03-15", "2024-03-20")),
+                    0)));
     create(mappingProvider.fetchSecureMapping("transferId"))
         .assertNext(
             m -> {
@@ -192,14 +296,78 @@ class FhirMappingProviderTest {
         .verifyComplete();
   }
 
+  @Test
+  void fetchSecureMappingReadsLegacyMapCache() {
+    given(redis.createBatch()).willReturn(batch);
+    given(batch.getMap(anyString(), any(Codec.class))).willReturn(map);
+    given(batch.getMapCache(anyString())).willReturn(mapCache);
+    given(batch.execute())
+        .willReturn(Mono.just(new BatchResult<>(List.of(Map.of()), 0)))
+        .willReturn(Mono.just(new BatchResult<>(List.of(Map.of("id1", "123456789")), 0)));
+
+    create(mappingProvider.fetchSecureMapping("transferId"))
+        .assertNext(m -> assertThat(m.tidPidMap()).containsEntry("id1", "123456789"))
+        .verifyComplete();
+    verify(batch).getMap("transport-mapping:transferId", TransportMappingCodec.STRING);
+    verify(batch).getMapCache("transferId");
+  }
+
   @Test
   void fetchSecureMappingWhenRedisDown() {
-    given(redis.getMapCache(anyString())).willThrow(new RedisTimeoutException("timeout"));
+    given(redis.createBatch()).willThrow(new RedisTimeoutException("timeout"));
     create(mappingProvider.fetchSecureMapping("transferId"))
         .expectError(RedisTimeoutException.class)
         .verify();
   }
 
+  @Test
+  void fetchSecureMappingsReadsAllMapsInOneBatch() {
+    given(redis.createBatch()).willReturn(batch);
+    given(batch.getMap(anyString(), any(Codec.class))).willReturn(map);
+    given(batch.execute())
+        .willReturn(
+            Mono.just(
+                new BatchResult<>(
+                    List.of(Map.of("id1", "123456789"), Map.of("ds:2024-03-15", "2024-03-20")),
+                    0)));
+
+    create(
+            mappingProvider.fetchSecureMappings(
+                new SecureMappingBatchRequest(List.of("transfer1", "transfer2", "transfer1"))))
+        .assertNext(
+            r -> {
+              assertThat(r.mappings()).containsOnlyKeys("transfer1", "transfer2");
+              assertThat(r.mappings().get("transfer1").tidPidMap())
+                  .containsEntry("id1", "123456789");
+              assertThat(r.mappings().get("transfer2").dateShiftMap())
+                  .containsEntry("2024-03-15", "2024-03-20");
+            })
+        .verifyComplete();
+    verify(batch).getMap("transport-mapping:transfer1", TransportMappingCodec.STRING);
+    verify(batch).getMap("transport-mapping:transfer2", TransportMappingCodec.STRING);
+    verify(batch, never()).getMapCache(anyString());
+  }
+
+  @Test
+  void fetchSecureMappingsWithoutTransferIds() {
+    create(mappingProvider.fetchSecureMappings(new SecureMappingBatchRequest(List.of())))
+        .assertNext(r -> assertThat(r.mappings()).isEmpty())
+        .verifyComplete();
+    verify(redis, never()).createBatch();
+  }
+
+  @Test
+  void fetchSecureMappingsWhenRedisDown() {
+    given(redis.createBatch()).willReturn(batch);
+    given(batch.getMap(anyString(), any(Codec.class))).willReturn(map);
+    given(batch.execute()).willReturn(Mono.error(new RedisTimeoutException("timeout")));
+
+    var request = new SecureMappingBatchRequest(List.of("transfer1"));
+    create(mappingProvider.fetchSecureMappings(request))
+        .expectError(RedisTimeoutException.class)
+        .verify();
+  }
+
   private static CapabilityStatement gpasMockCapabilityStatement() {
     var capabilities = new CapabilityStatement();
     var rest = capabilities.addRest();
@@ -227,12 +395,10 @@ class FhirMappingProviderTest {
                     .withHeader(ContentTypes.CONTENT_TYPE, APPLICATION_FHIR_JSON)
                     .withBody(fhirResourceToString(gpasMockCapabilityStatement()))));
 
-    given(redis.getMapCache(anyString())).willReturn(mapCache);
-    given(mapCache.expire(Duration.ofMinutes(10))).willReturn(Mono.just(false));
-
     create(mappingProvider.generateTransportMapping(DEFAULT_REQUEST))
         .expectError(FhirException.class)
         .verify();
+    verify(redis, never()).createBatch();
   }
 
   @Test
@@ -260,12 +426,10 @@ class FhirMappingProviderTest {
                     .withHeader(ContentTypes.CONTENT_TYPE, APPLICATION_FHIR_JSON)
                     .withBody(fhirResourceToString(gpasMockCapabilityStatement()))));
 
-    given(redis.getMapCache(anyString())).willReturn(mapCache);
-    given(mapCache.expire(Duration.ofMinutes(10))).willReturn(Mono.just(false));
-
     create(mappingProvider.generateTransportMapping(DEFAULT_REQUEST))
         .expectError(FhirException.class)
         .verify();
+    verify(redis, never()).createBatch();
   }
 
   @Nested
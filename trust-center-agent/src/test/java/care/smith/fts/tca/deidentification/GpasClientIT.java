@@ -1,7 +1,10 @@
 package care.smith.fts.tca.deidentification;
 
+import static care.smith.fts.test.FhirGenerators.gpasGetOrCreateResponse;
+import static care.smith.fts.test.MockServerUtil.fhirResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static java.util.Set.of;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -11,7 +14,10 @@ import care.smith.fts.tca.AbstractFhirClientIT;
 import care.smith.fts.tca.deidentification.configuration.GpasDeIdentificationConfiguration;
 import care.smith.fts.util.DefaultRetryStrategy;
 import com.github.tomakehurst.wiremock.client.MappingBuilder;
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Set;
 import org.hl7.fhir.r4.model.CapabilityStatement;
@@ -56,7 +62,8 @@ public class GpasClientIT extends AbstractFhirClientIT<GpasClient, String, Map<S
     return new GpasClient(
         httpClientBuilder.baseUrl(baseUrl).build(),
         new DefaultRetryStrategy(meterRegistry),
-        config);
+        config,
+        PseudonymCache.disabled());
   }
 
   @Override
@@ -102,4 +109,41 @@ public class GpasClientIT extends AbstractFhirClientIT<GpasClient, String, Map<S
         .assertNext(result -> assertThat(result).isEmpty())
         .verifyComplete();
   }
+
+  @Test
+  void cachedPseudonymsAreNotRequestedFromGpas() {
+    var cache = new LocalPseudonymCache(10, Duration.ofMinutes(1), meterRegistry);
+    cache.putAll("domain", Map.of("id", "cached")).block();
+    var cachingClient = cachingClient("http://localhost:1", cache);
+
+    create(cachingClient.fetchOrCreatePseudonyms("domain", of("id")))
+        .assertNext(result -> assertThat(result).containsEntry("id", "cached"))
+        .verifyComplete();
+  }
+
+  @Test
+  void fetchedPseudonymsAreCached(WireMockRuntimeInfo wireMockRuntime) throws IOException {
+    var response = gpasGetOrCreateResponse(() -> "id", () -> "pseudonym").generateString();
+    wireMock.register(getRequestMappingBuilder().willReturn(fhirResponse(response)));
+    var cachingClient =
+        cachingClient(
+            wireMockRuntime.getHttpBaseUrl(),
+            new LocalPseudonymCache(10, Duration.ofMinutes(1), meterRegistry));
+
+    for (int i = 0; i < 2; i++) {
+      create(cachingClient.fetchOrCreatePseudonyms("domain", of("id")))
+          .assertNext(result -> assertThat(result).containsEntry("id", "pseudonym"))
+          .verifyComplete();
+    }
+    assertThat(wireMock.find(postRequestedFor(urlPathEqualTo("/$pseudonymizeAllowCreate"))))
+        .hasSize(1);
+  }
+
+  private GpasClient cachingClient(String baseUrl, PseudonymCache cache) {
+    return new GpasClient(
+        httpClientBuilder.baseUrl(baseUrl).build(),
+        new DefaultRetryStrategy(meterRegistry),
+        new GpasDeIdentificationConfiguration(),
+        cache);
+  }
 }
@@ -0,0 +1,55 @@
+package care.smith.fts.tca.deidentification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static reactor.test.StepVerifier.create;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class LocalPseudonymCacheTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final LocalPseudonymCache cache =
+      new LocalPseudonymCache(2, Duration.ofMinutes(1), meterRegistry);
+
+  @Test
+  void returnsOnlyCachedOriginals() {
+    create(cache.putAll("domain", Map.of("id1", "p1"))).verifyComplete();
+
+    create(cache.getAll("domain", Set.of("id1", "id2")))
+        .assertNext(m -> assertThat(m).containsExactlyEntriesOf(Map.of("id1", "p1")))
+        .verifyComplete();
+  }
+
+  @Test
+  void domainsAreSeparated() {
+    create(cache.putAll("domain1", Map.of("id1", "p1"))).verifyComplete();
+
+    create(cache.getAll("domain2", Set.of("id1")))
+        .assertNext(m -> assertThat(m).isEmpty())
+        .verifyComplete();
+  }
+
+  @Test
+  void evictsBeyondMaxSize() {
+    create(cache.putAll("domain", Map.of("id1", "p1", "id2", "p2", "id3", "p3"))).verifyComplete();
+
+    create(cache.getAll("domain", Set.of("id1", "id2", "id3")))
+        .assertNext(m -> assertThat(m).hasSizeLessThanOrEqualTo(2))
+        .verifyComplete();
+  }
+
+  @Test
+  void recordsHitsAndMisses() {
+    create(cache.putAll("domain", Map.of("id1", "p1"))).verifyComplete();
+    create(cache.getAll("domain", Set.of("id1", "id2"))).expectNextCount(1).verifyComplete();
+
+    assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count())
+        .isEqualTo(1);
+  }
+}
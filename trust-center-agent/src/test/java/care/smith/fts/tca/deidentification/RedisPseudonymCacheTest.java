@@ -0,0 +1,81 @@
+package care.smith.fts.tca.deidentification;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static reactor.test.StepVerifier.create;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.EvictionMode;
+import org.redisson.api.RMapCacheReactive;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.RedissonReactiveClient;
+import reactor.core.publisher.Mono;
+
+@ExtendWith(MockitoExtension.class)
+class RedisPseudonymCacheTest {
+
+  @Mock RedissonClient redisClient;
+  @Mock RedissonReactiveClient redis;
+  @Mock RMapCacheReactive<Object, Object> mapCache;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private RedisPseudonymCache cache;
+
+  @BeforeEach
+  void setUp() {
+    given(redisClient.reactive()).willReturn(redis);
+    given(redis.getMapCache(anyString())).willReturn(mapCache);
+    cache = new RedisPseudonymCache(redisClient, 10, Duration.ofMinutes(1), meterRegistry);
+  }
+
+  @Test
+  void getAllCountsHitsAndMisses() {
+    given(mapCache.getAll(Set.<Object>of("id1", "id2")))
+        .willReturn(Mono.just(Map.<Object, Object>of("id1", "p1")));
+
+    create(cache.getAll("domain", Set.of("id1", "id2")))
+        .assertNext(m -> assertThat(m).containsExactlyEntriesOf(Map.of("id1", "p1")))
+        .verifyComplete();
+
+    verify(redis).getMapCache("gpas-pseudonyms:domain");
+    assertThat(meterRegistry.get("cache.gets").tag("result", "hit").counter().count())
+        .isEqualTo(1);
+    assertThat(meterRegistry.get("cache.gets").tag("result", "miss").counter().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void putAllLimitsSizeAndSetsTtl() {
+    var pseudonyms = Map.<Object, Object>of("id1", "p1");
+    given(mapCache.trySetMaxSize(10, EvictionMode.LRU)).willReturn(Mono.just(true));
+    given(mapCache.putAll(pseudonyms, 60_000, TimeUnit.MILLISECONDS)).willReturn(Mono.empty());
+
+    create(cache.putAll("domain", Map.of("id1", "p1"))).verifyComplete();
+  }
+
+  @Test
+  void sizeIsLimitedOncePerDomain() {
+    var pseudonyms = Map.<Object, Object>of("id1", "p1");
+    given(mapCache.trySetMaxSize(10, EvictionMode.LRU)).willReturn(Mono.just(true));
+    given(mapCache.putAll(pseudonyms, 60_000, TimeUnit.MILLISECONDS)).willReturn(Mono.empty());
+
+    create(cache.putAll("domain", Map.of("id1", "p1"))).verifyComplete();
+    create(cache.putAll("domain", Map.of("id1", "p1"))).verifyComplete();
+    create(cache.putAll("other", Map.of("id1", "p1"))).verifyComplete();
+
+    verify(mapCache, times(2)).trySetMaxSize(10, EvictionMode.LRU);
+    verify(mapCache, times(3)).putAll(pseudonyms, 60_000, TimeUnit.MILLISECONDS);
+  }
+}
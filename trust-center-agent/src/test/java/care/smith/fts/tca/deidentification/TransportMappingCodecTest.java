@@ -0,0 +1,81 @@
+package care.smith.fts.tca.deidentification;
+
+import static care.smith.fts.tca.deidentification.TransportMappingCodec.COMPACT;
+import static care.smith.fts.tca.deidentification.TransportMappingCodec.STRING;
+import static care.smith.fts.tca.deidentification.TransportMappingCodec.isLowercaseHex;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class TransportMappingCodecTest {
+
+  private static final String SECURE_ID =
+      "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+  @ParameterizedTest
+  @ValueSource(strings = {SECURE_ID, "2024-03-20", "", "ABCDEF", "abc", "ünicode"})
+  void valuesRoundTrip(String value) throws IOException {
+    assertThat(roundTrip(STRING, value)).isEqualTo(value);
+    assertThat(roundTrip(COMPACT, value)).isEqualTo(value);
+  }
+
+  @Test
+  void compactStoresHexAsBytes() throws IOException {
+    var compact = COMPACT.getValueEncoder().encode(SECURE_ID);
+    var string = STRING.getValueEncoder().encode(SECURE_ID);
+    try {
+      assertThat(compact.readableBytes()).isEqualTo(SECURE_ID.length() / 2 + 1);
+      assertThat(string.readableBytes()).isEqualTo(SECURE_ID.length());
+    } finally {
+      compact.release();
+      string.release();
+    }
+  }
+
+  @Test
+  void decodesEitherEncoding() throws IOException {
+    var compact = COMPACT.getValueEncoder().encode(SECURE_ID);
+    var string = COMPACT.getValueEncoder().encode("2024-03-20");
+    try {
+      assertThat(STRING.getValueDecoder().decode(compact, null)).isEqualTo(SECURE_ID);
+      assertThat(STRING.getValueDecoder().decode(string, null)).isEqualTo("2024-03-20");
+    } finally {
+      compact.release();
+      string.release();
+    }
+  }
+
+  @Test
+  void mapKeysAreAlwaysStrings() throws IOException {
+    var key = COMPACT.getMapKeyEncoder().encode("abcd");
+    try {
+      assertThat(key.readableBytes()).isEqualTo(4);
+      assertThat(COMPACT.getMapKeyDecoder().decode(key, null)).isEqualTo("abcd");
+    } finally {
+      key.release();
+    }
+  }
+
+  @Test
+  void isLowercaseHexChecksDigitsAndLength() {
+    assertThat(isLowercaseHex(SECURE_ID)).isTrue();
+    assertThat(isLowercaseHex("0a")).isTrue();
+    assertThat(isLowercaseHex("")).isFalse();
+    assertThat(isLowercaseHex("abc")).isFalse();
+    assertThat(isLowercaseHex("0A")).isFalse();
+    assertThat(isLowercaseHex("0g")).isFalse();
+  }
+
+  private static Object roundTrip(TransportMappingCodec codec, String value) throws IOException {
+    ByteBuf buf = codec.getValueEncoder().encode(value);
+    try {
+      return codec.getValueDecoder().decode(buf, null);
+    } finally {
+      buf.release();
+    }
+  }
+}
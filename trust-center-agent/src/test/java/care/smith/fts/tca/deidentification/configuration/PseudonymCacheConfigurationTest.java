@@ -0,0 +1,49 @@
+package care.smith.fts.tca.deidentification.configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import care.smith.fts.tca.deidentification.LocalPseudonymCache;
+import care.smith.fts.tca.deidentification.PseudonymCache;
+import care.smith.fts.tca.deidentification.RedisPseudonymCache;
+import care.smith.fts.tca.deidentification.configuration.PseudonymCacheConfiguration.Type;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+@SpringBootTest
+class PseudonymCacheConfigurationTest {
+
+  @Autowired private PseudonymCacheConfiguration configuration;
+
+  @MockitoBean
+  RedissonClient redisClient; // We need to mock the redisClient otherwise the tests won't start
+
+  @Test
+  void cacheIsDisabledByDefault() {
+    assertThat(configuration.getType()).isEqualTo(Type.NONE);
+    assertThat(configuration.getTtl()).isEqualTo(Duration.ofDays(1));
+  }
+
+  @Test
+  void createsConfiguredCache() {
+    var config = new PseudonymCacheConfiguration();
+    var meterRegistry = new SimpleMeterRegistry();
+
+    config.setType(Type.LOCAL);
+    assertThat(config.pseudonymCache(redisClient, meterRegistry))
+        .isInstanceOf(LocalPseudonymCache.class);
+
+    config.setType(Type.REDIS);
+    assertThat(config.pseudonymCache(redisClient, meterRegistry))
+        .isInstanceOf(RedisPseudonymCache.class);
+
+    config.setType(Type.NONE);
+    assertThat(config.pseudonymCache(redisClient, meterRegistry))
+        .isInstanceOf(PseudonymCache.class)
+        .isNotInstanceOfAny(LocalPseudonymCache.class, RedisPseudonymCache.class);
+  }
+}
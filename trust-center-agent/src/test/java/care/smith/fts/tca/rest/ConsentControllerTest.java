@@ -25,6 +25,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @ExtendWith(MockitoExtension.class)
@@ -97,4 +98,37 @@ class ConsentControllerTest {
                                 .isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR))
                     .verifyComplete());
   }
+
+  List<Mono<ResponseEntity<Flux<Bundle>>>> streamResponses() {
+    return List.of(
+        controller.streamAll(Mono.just(consentFetchAllRequest)),
+        controller.stream(Mono.just(consentFetchRequest)));
+  }
+
+  @Test
+  void streamForwardsPatientBundles() {
+    var bundle = Stream.<Resource>empty().collect(toBundle());
+    given(provider.streamAll(consentFetchAllRequest, 1)).willReturn(Mono.just(Flux.just(bundle)));
+    given(provider.stream(consentFetchRequest, 1)).willReturn(Mono.just(Flux.just(bundle)));
+    streamResponses()
+        .forEach(
+            response ->
+                create(response.flatMapMany(ResponseEntity::getBody))
+                    .expectNext(bundle)
+                    .verifyComplete());
+  }
+
+  @Test
+  void streamErrorResponseYieldsNotFound() {
+    given(provider.streamAll(consentFetchAllRequest, 1))
+        .willReturn(Mono.error(new FhirUnknownDomainException("")));
+    given(provider.stream(consentFetchRequest, 1))
+        .willReturn(Mono.error(new FhirUnknownDomainException("")));
+    streamResponses()
+        .forEach(
+            response ->
+                create(response)
+                    .assertNext(b -> assertThat(b.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND))
+                    .verifyComplete());
+  }
 }
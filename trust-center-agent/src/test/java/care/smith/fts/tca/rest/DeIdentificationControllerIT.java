@@ -14,6 +14,7 @@ import static java.util.Map.ofEntries;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+import static org.springframework.http.MediaType.APPLICATION_CBOR;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.web.reactive.function.BodyInserters.fromValue;
 import static reactor.test.StepVerifier.create;
@@ -34,6 +35,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
@@ -285,12 +287,76 @@ class DeIdentificationControllerIT extends BaseIT {
         .verifyComplete();
   }
 
+  @Test
+  void transportAndSecureMappingAsCbor() throws IOException {
+    var fhirGenerator =
+        gpasGetOrCreateResponse(
+            fromList(List.of("id-144218", "Salt_id-144218", "PT336H_id-144218")),
+            fromList(List.of("469680023", "123", "12345")));
+
+    List.of("id-144218", "Salt_id-144218", "PT336H_id-144218")
+        .forEach(
+            key ->
+                gpas()
+                    .register(
+                        post(urlEqualTo("/ttp-fhir/fhir/gpas/$pseudonymizeAllowCreate"))
+                            .withHeader(CONTENT_TYPE, equalTo(APPLICATION_FHIR_JSON))
+                            .withRequestBody(
+                                equalToJson(
+                                    """
+                                    { "resourceType": "Parameters",
+                                      "parameter": [
+                                        {"name": "target", "valueString": "MII"},
+                                        {"name": "original", "valueString": "%s"}]}
+                                    """
+                                        .formatted(key),
+                                    true,
+                                    true))
+                            .willReturn(fhirResponse(fhirGenerator.generateString()))));
+
+    var transferId =
+        doPost(
+                ofEntries(
+                    entry("tcaDomains", DEFAULT_DOMAINS),
+                    entry("patientIdentifier", "id-144218"),
+                    entry("patientIdentifierSystem", "http://fts.smith.care"),
+                    entry("idMappings", Map.of("id-144218", "tid1")),
+                    entry("dateMappings", Map.of("tId-date-1", "2024-03-15")),
+                    entry("maxDateShift", ofDays(14).getSeconds()),
+                    entry("dateShiftPreserve", "NONE")),
+                APPLICATION_CBOR)
+            .block()
+            .transferId();
+
+    var response =
+        rdClient
+            .post()
+            .uri("/api/v2/rd/secure-mapping")
+            .contentType(APPLICATION_JSON)
+            .body(fromValue(transferId))
+            .accept(APPLICATION_CBOR)
+            .retrieve()
+            .toEntity(SecureMappingResponse.class);
+
+    create(response)
+        .assertNext(
+            res -> {
+              assertThat(res.getHeaders().getContentType()).isEqualTo(APPLICATION_CBOR);
+              assertThat(res.getBody().dateShiftMap()).containsKey("tId-date-1");
+            })
+        .verifyComplete();
+  }
+
   private Mono<TransportMappingResponse> doPost(Map<String, Object> body) {
+    return doPost(body, APPLICATION_JSON);
+  }
+
+  private Mono<TransportMappingResponse> doPost(Map<String, Object> body, MediaType mediaType) {
     return cdClient
         .post()
         .uri("/api/v2/cd/transport-mapping")
-        .contentType(APPLICATION_JSON)
-        .accept(APPLICATION_JSON)
+        .contentType(mediaType)
+        .accept(mediaType)
         .bodyValue(body)
         .retrieve()
         .bodyToMono(TransportMappingResponse.class);
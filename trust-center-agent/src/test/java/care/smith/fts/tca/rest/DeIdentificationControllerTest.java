@@ -10,10 +10,15 @@ import care.smith.fts.api.DateShiftPreserve;
 import care.smith.fts.tca.deidentification.MappingProvider;
 import care.smith.fts.util.error.TransferProcessException;
 import care.smith.fts.util.error.UnknownDomainException;
+import care.smith.fts.util.tca.SecureMappingBatchRequest;
+import care.smith.fts.util.tca.SecureMappingBatchResponse;
 import care.smith.fts.util.tca.SecureMappingResponse;
 import care.smith.fts.util.tca.TcaDomains;
+import care.smith.fts.util.tca.TransportMappingBatchRequest;
+import care.smith.fts.util.tca.TransportMappingBatchResponse;
 import care.smith.fts.util.tca.TransportMappingRequest;
 import care.smith.fts.util.tca.TransportMappingResponse;
+import java.util.List;
 import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
@@ -112,6 +117,68 @@ class DeIdentificationControllerTest {
         .verifyComplete();
   }
 
+  @Test
+  void transportMappings() {
+    var request =
+        new TransportMappingBatchRequest(
+            List.of(
+                new TransportMappingRequest(
+                    "patientId1",
+                    "patientIdentifierSystem",
+                    Map.of("patientId1.Patient:id1", "tid1"),
+                    Map.of(),
+                    DEFAULT_DOMAINS,
+                    ofDays(14),
+                    DateShiftPreserve.NONE),
+                new TransportMappingRequest(
+                    "patientId2",
+                    "patientIdentifierSystem",
+                    Map.of("patientId2.Patient:id2", "tid2"),
+                    Map.of(),
+                    DEFAULT_DOMAINS,
+                    ofDays(14),
+                    DateShiftPreserve.NONE)));
+    given(mappingProvider.generateTransportMappings(request))
+        .willReturn(Mono.just(new TransportMappingBatchResponse(List.of("tr1", "tr2"))));
+
+    create(controller.transportMappings(Mono.just(request)))
+        .assertNext(
+            r -> {
+              assertThat(r.getStatusCode().is2xxSuccessful()).isTrue();
+              assertThat(r.getBody().transferIds()).containsExactly("tr1", "tr2");
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void transportMappingsUnknownDomain() {
+    var domains = new TcaDomains("unknown domain", "unknown domain", "unknown domain");
+    var request =
+        new TransportMappingBatchRequest(
+            List.of(
+                new TransportMappingRequest(
+                    "id1",
+                    "patientIdentifierSystem",
+                    Map.of("id1.Patient:id1", "tid1"),
+                    Map.of(),
+                    domains,
+                    ofDays(14),
+                    DateShiftPreserve.NONE)));
+    given(mappingProvider.generateTransportMappings(request))
+        .willReturn(Mono.error(new UnknownDomainException("unknown domain")));
+
+    create(controller.transportMappings(Mono.just(request)))
+        .assertNext(r -> assertThat(r.getStatusCode().is4xxClientError()).isTrue())
+        .verifyComplete();
+  }
+
+  @Test
+  void transportMappingsWithoutRequestsIsBadRequest() {
+    create(controller.transportMappings(Mono.just(new TransportMappingBatchRequest(null))))
+        .assertNext(r -> assertThat(r.getStatusCode().is4xxClientError()).isTrue())
+        .verifyComplete();
+  }
+
   @Test
   void transportMappingEmptyIds() {
     var mapName = "transferId";
@@ -213,4 +280,37 @@ class DeIdentificationControllerTest {
                 .build())
         .verifyComplete();
   }
+
+  @Test
+  void secureMappings() {
+    var request = new SecureMappingBatchRequest(List.of("transfer1", "transfer2"));
+    var mappings =
+        Map.of(
+            "transfer1", new SecureMappingResponse(Map.of("tid-1", "pid1"), Map.of()),
+            "transfer2", new SecureMappingResponse(Map.of("tid-2", "pid2"), Map.of()));
+    given(mappingProvider.fetchSecureMappings(request))
+        .willReturn(Mono.just(new SecureMappingBatchResponse(mappings)));
+
+    create(controller.secureMappings(Mono.just(request)))
+        .assertNext(
+            r -> {
+              assertThat(r.getStatusCode().is2xxSuccessful()).isTrue();
+              assertThat(r.getBody().mappings()).isEqualTo(mappings);
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void secureMappingsWithAnyException() {
+    var request = new SecureMappingBatchRequest(List.of("transfer1"));
+    given(mappingProvider.fetchSecureMappings(request))
+        .willReturn(Mono.error(new TransferProcessException("error message")));
+
+    create(controller.secureMappings(Mono.just(request)))
+        .expectNext(
+            ResponseEntity.of(
+                    ProblemDetail.forStatusAndDetail(INTERNAL_SERVER_ERROR, "error message"))
+                .build())
+        .verifyComplete();
+  }
 }
@@ -0,0 +1,295 @@
+package care.smith.fts.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Comparator.comparingLong;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Limits the number of concurrent calls to a downstream service to a limit that follows the
+ * service's feedback. The limit grows by one for every call that completes within {@code
+ * latencyTolerance} times the latency baseline while the limit is at least half used, and shrinks
+ * by a quarter when a call takes longer or the service answered {@code 429 Too Many Requests} or
+ * {@code 503 Service Unavailable} (additive increase, multiplicative decrease).
+ *
+ * <p>The latency baseline follows the fastest calls observed and drifts slowly towards slower ones,
+ * so it adapts to services whose latency changes over time. Only calls started after the last
+ * decrease may decrease the limit again, so a burst of slow calls shrinks the limit once.
+ *
+ * <p>The limiter of a transfer process is passed to the client making the calls in the Reactor
+ * context, see {@link #write(Context, AdaptiveConcurrencyLimiter)}. The client takes the permit
+ * around each call with {@link #limit(Collection, Mono)}, so a call sending the requests of several
+ * patients takes one permit only.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+  private static final double BACKOFF_RATIO = 0.75;
+  private static final double BASELINE_DRIFT = 0.01;
+  private static final AtomicLong IDS = new AtomicLong();
+
+  private final long id = IDS.incrementAndGet();
+  private final int minLimit;
+  private final int maxLimit;
+  private final double latencyTolerance;
+  private final LongSupplier nanoTime;
+  private final Queue<MonoSink<Permit>> waiting = new LinkedList<>();
+
+  private double limit;
+  private int inFlight;
+  private double baseline = Double.NaN;
+  private long lastDecrease = Long.MIN_VALUE;
+
+  /**
+   * @param minLimit the limit never shrinks below, also the initial limit
+   * @param maxLimit the limit never grows beyond
+   * @param latencyTolerance factor of the latency baseline after which a call counts as slow
+   */
+  public AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, double latencyTolerance) {
+    this(minLimit, maxLimit, latencyTolerance, System::nanoTime);
+  }
+
+  AdaptiveConcurrencyLimiter(
+      int minLimit, int maxLimit, double latencyTolerance, LongSupplier nanoTime) {
+    checkArgument(minLimit > 0, "minLimit must be greater than 0");
+    checkArgument(maxLimit >= minLimit, "maxLimit must not be less than minLimit");
+    checkArgument(latencyTolerance > 1, "latencyTolerance must be greater than 1");
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.latencyTolerance = latencyTolerance;
+    this.nanoTime = nanoTime;
+    this.limit = minLimit;
+  }
+
+  /**
+   * Waits until a call may be started. The returned permit must be released once the call
+   * terminated.
+   *
+   * @return a permit for one call
+   */
+  public Mono<Permit> acquire() {
+    return Mono.<Permit>create(
+            sink -> {
+              Permit permit = null;
+              synchronized (this) {
+                if (inFlight < limit()) {
+                  inFlight++;
+                  permit = new Permit(nanoTime.getAsLong());
+                } else {
+                  waiting.add(sink);
+                }
+              }
+              if (permit != null) {
+                sink.success(permit);
+              } else {
+                sink.onCancel(() -> remove(sink));
+              }
+            })
+        // A waiter may be granted a permit concurrently to its cancellation
+        .doOnDiscard(Permit.class, Permit::release);
+  }
+
+  /**
+   * @return the current limit of concurrent calls
+   */
+  public synchronized int limit() {
+    return (int) limit;
+  }
+
+  /**
+   * @return the number of calls currently holding a permit
+   */
+  public synchronized int inFlight() {
+    return inFlight;
+  }
+
+  private synchronized void remove(MonoSink<Permit> sink) {
+    waiting.remove(sink);
+  }
+
+  private void release(Permit permit) {
+    var now = nanoTime.getAsLong();
+    var latency = now - permit.start;
+    List<MonoSink<Permit>> granted;
+    synchronized (this) {
+      inFlight--;
+      if (permit.overloaded || isSlow(latency)) {
+        decrease(permit, now);
+      } else {
+        baseline = Double.isNaN(baseline) || latency < baseline ? latency : drift(latency);
+        if (2 * (inFlight + 1) >= limit) {
+          limit = Math.min(maxLimit, limit + 1);
+        }
+      }
+      granted = grant();
+    }
+    granted.forEach(sink -> sink.success(new Permit(now)));
+  }
+
+  private boolean isSlow(long latency) {
+    return !Double.isNaN(baseline) && latency > baseline * latencyTolerance;
+  }
+
+  private double drift(long latency) {
+    return baseline + (latency - baseline) * BASELINE_DRIFT;
+  }
+
+  private void decrease(Permit permit, long now) {
+    if (permit.start >= lastDecrease) {
+      limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+      lastDecrease = now;
+      log.debug(
+          "Decreased limit to {}, overloaded: {}, baseline: {}ms",
+          limit(),
+          permit.overloaded,
+          baseline / 1e6);
+    }
+  }
+
+  private List<MonoSink<Permit>> grant() {
+    var granted = new ArrayList<MonoSink<Permit>>();
+    while (inFlight < limit() && !waiting.isEmpty()) {
+      inFlight++;
+      granted.add(waiting.poll());
+    }
+    return granted;
+  }
+
+  /**
+   * Puts the limiter of the current transfer process into the Reactor context, where {@link
+   * #limit(Collection, Mono)} finds it.
+   */
+  public static Context write(Context context, AdaptiveConcurrencyLimiter limiter) {
+    return context.put(AdaptiveConcurrencyLimiter.class, limiter);
+  }
+
+  /**
+   * Puts the permit of the current call into the Reactor context, where {@link #reportOverload()}
+   * finds it.
+   */
+  public static Context write(Context context, Permit permit) {
+    return write(context, List.of(permit));
+  }
+
+  private static Context write(Context context, List<Permit> permits) {
+    return context.put(Permits.class, new Permits(permits));
+  }
+
+  /**
+   * Runs {@code call} with the limiter in the current Reactor context, see {@link
+   * #limit(Collection, Mono)}.
+   */
+  public static <T> Mono<T> limit(Mono<T> call) {
+    return Mono.deferContextual(context -> limit(List.of(context), call));
+  }
+
+  /**
+   * Runs {@code call} once it holds a permit of the limiter in each of {@code contexts}, and
+   * releases the permits when it terminated. A call made on behalf of several contexts, e.g. a
+   * batch of requests of different transfer processes, counts once against each of their limiters,
+   * and overload is reported to all of them. Contexts without a limiter do not limit the call.
+   *
+   * @param contexts the Reactor contexts the call is made for
+   * @param call the call to limit
+   */
+  public static <T> Mono<T> limit(Collection<? extends ContextView> contexts, Mono<T> call) {
+    var limiters =
+        contexts.stream()
+            .map(c -> c.<AdaptiveConcurrencyLimiter>getOrEmpty(AdaptiveConcurrencyLimiter.class))
+            .flatMap(Optional::stream)
+            .distinct()
+            // Acquiring in a fixed order keeps two calls from waiting for each other's permits
+            .sorted(comparingLong(l -> l.id))
+            .toList();
+    if (limiters.isEmpty()) {
+      return call;
+    }
+    return Flux.fromIterable(limiters)
+        .concatMap(AdaptiveConcurrencyLimiter::acquire)
+        .collectList()
+        .doOnDiscard(Permit.class, Permit::release)
+        .flatMap(
+            permits ->
+                call.contextWrite(c -> write(c, permits))
+                    .doFinally(s -> permits.forEach(Permit::release)));
+  }
+
+  /**
+   * Marks the permits of the current call as overloaded, the service signalled overload during
+   * the call.
+   */
+  public static void overloaded(ContextView context) {
+    context.<Permits>getOrEmpty(Permits.class).ifPresent(Permits::overloaded);
+  }
+
+  /**
+   * Marks the permit of the current call as overloaded if the service answers {@code 429 Too Many
+   * Requests} or {@code 503 Service Unavailable}, also if the request is retried and succeeds
+   * eventually.
+   */
+  public static ExchangeFilterFunction reportOverload() {
+    return (request, next) ->
+        Mono.deferContextual(
+            context ->
+                next.exchange(request)
+                    .doOnNext(
+                        response -> {
+                          var status = response.statusCode().value();
+                          if (status == 429 || status == 503) {
+                            overloaded(context);
+                          }
+                        }));
+  }
+
+  /** The permits held by the current call, one per limiter limiting it. */
+  private record Permits(List<Permit> permits) {
+    void overloaded() {
+      permits.forEach(Permit::overloaded);
+    }
+  }
+
+  /** Allows one call, obtained from {@link #acquire()}. */
+  public final class Permit {
+    private final long start;
+    private final AtomicBoolean released = new AtomicBoolean();
+    private volatile boolean overloaded;
+
+    private Permit(long start) {
+      this.start = start;
+    }
+
+    /** Reports that the service signalled overload during this call. */
+    public void overloaded() {
+      overloaded = true;
+    }
+
+    /**
+     * @return whether the service signalled overload during this call
+     */
+    public boolean isOverloaded() {
+      return overloaded;
+    }
+
+    /** Releases the permit, further calls are ignored. */
+    public void release() {
+      if (released.compareAndSet(false, true)) {
+        AdaptiveConcurrencyLimiter.this.release(this);
+      }
+    }
+  }
+}
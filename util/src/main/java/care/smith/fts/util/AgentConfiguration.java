@@ -24,6 +24,7 @@ import reactor.netty.resources.ConnectionProvider;
 @Import({
   WebClientDefaults.class,
   FhirCodecConfiguration.class,
+  CborCodecConfiguration.class,
   MetricsConfig.class,
   HttpServerAuthConfig.class,
   CustomErrorHandler.class,
@@ -0,0 +1,41 @@
+package care.smith.fts.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Configures a {@link RequestBatcher}: up to {@code size} requests are sent with one call, a batch
+ * is sent once it is full or {@code maxWait} after its first request arrived, and at most {@code
+ * concurrency} batches run at the same time.
+ *
+ * <p>Each step using a batch has its own defaults, unset fields are filled with {@link
+ * #withDefaults(BatchConfig, BatchConfig)}.
+ */
+public record BatchConfig(Integer size, Duration maxWait, Integer concurrency) {
+
+  public BatchConfig {
+    checkArgument(size == null || size > 0, "size must be greater than 0");
+    checkArgument(maxWait == null || maxWait.isPositive(), "maxWait must be positive");
+    checkArgument(concurrency == null || concurrency > 0, "concurrency must be greater than 0");
+  }
+
+  /**
+   * @param config the configured batch, may be null or have unset fields
+   * @param defaults used for the fields {@code config} leaves unset, all fields must be set
+   * @return a batch with all fields set
+   */
+  public static BatchConfig withDefaults(BatchConfig config, BatchConfig defaults) {
+    var c = Optional.ofNullable(config);
+    return new BatchConfig(
+        c.map(BatchConfig::size).orElse(defaults.size()),
+        c.map(BatchConfig::maxWait).orElse(defaults.maxWait()),
+        c.map(BatchConfig::concurrency).orElse(defaults.concurrency()));
+  }
+
+  /** Whether requests are batched at all, a batch of one request is a single call. */
+  public boolean enabled() {
+    return size != null && size > 1;
+  }
+}
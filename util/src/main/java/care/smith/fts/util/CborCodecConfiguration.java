@@ -0,0 +1,47 @@
+package care.smith.fts.util;
+
+import org.springframework.boot.webclient.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.CodecConfigurer;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.cbor.JacksonCborDecoder;
+import org.springframework.http.codec.cbor.JacksonCborEncoder;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+/**
+ * Configures the {@code application/cbor} codecs on the server and all web clients. CBOR is a
+ * compact binary encoding of JSON, agents use it for large payloads, e.g. transport mappings, if
+ * the other side asks for it via {@code Content-Type} or {@code Accept}.
+ *
+ * <p>Spring registers Jackson CBOR codecs by default if Jackson's CBOR format is present. This
+ * configuration replaces these default codecs instead of adding custom ones, so each side has a
+ * single CBOR decoder and encoder, and {@code spring.http.codecs.max-in-memory-size} applies to
+ * them as it does to JSON.
+ */
+@Configuration
+public class CborCodecConfiguration {
+
+  private static final CBORMapper MAPPER = CBORMapper.builder().build();
+
+  @Bean
+  public WebFluxConfigurer cborServerCodecConfigurer() {
+    return new WebFluxConfigurer() {
+      @Override
+      public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        configureCbor(configurer);
+      }
+    };
+  }
+
+  @Bean
+  public WebClientCustomizer cborWebClientCodecCustomizer() {
+    return builder -> builder.codecs(CborCodecConfiguration::configureCbor);
+  }
+
+  private static void configureCbor(CodecConfigurer configurer) {
+    configurer.defaultCodecs().jacksonCborDecoder(new JacksonCborDecoder(MAPPER));
+    configurer.defaultCodecs().jacksonCborEncoder(new JacksonCborEncoder(MAPPER));
+  }
+}
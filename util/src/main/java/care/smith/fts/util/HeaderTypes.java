@@ -3,4 +3,10 @@ package care.smith.fts.util;
 public interface HeaderTypes {
 
   String X_PROGRESS = "X-Progress";
+
+  /** Client preferences of RFC 7240, e.g. {@code wait=5} to long-poll a status. */
+  String PREFER = "Prefer";
+
+  /** Preferences of RFC 7240 the server honored. */
+  String PREFERENCE_APPLIED = "Preference-Applied";
 }
@@ -12,15 +12,38 @@ public record HttpClientConfig(
     @NotBlank String baseUrl,
     @Nullable HttpClientAuth.Config auth,
     @Nullable Ssl ssl,
-    @Nullable Redirects redirects) {
+    @Nullable Redirects redirects,
+    @Nullable BundleDecoding bundleDecoding,
+    @Nullable BundleEncoding bundleEncoding) {
 
   @ConstructorBinding
   public HttpClientConfig(
-      @NotBlank String baseUrl, HttpClientAuth.Config auth, Ssl ssl, Redirects redirects) {
+      @NotBlank String baseUrl,
+      HttpClientAuth.Config auth,
+      Ssl ssl,
+      Redirects redirects,
+      BundleDecoding bundleDecoding,
+      BundleEncoding bundleEncoding) {
     this.baseUrl = requireNonNull(emptyToNull(baseUrl), "Base URL must not be null");
     this.auth = auth;
     this.ssl = ssl;
     this.redirects = redirects;
+    this.bundleDecoding = bundleDecoding;
+    this.bundleEncoding = bundleEncoding;
+  }
+
+  public HttpClientConfig(
+      @NotBlank String baseUrl,
+      HttpClientAuth.Config auth,
+      Ssl ssl,
+      Redirects redirects,
+      BundleDecoding bundleDecoding) {
+    this(baseUrl, auth, ssl, redirects, bundleDecoding, null);
+  }
+
+  public HttpClientConfig(
+      @NotBlank String baseUrl, HttpClientAuth.Config auth, Ssl ssl, Redirects redirects) {
+    this(baseUrl, auth, ssl, redirects, null, null);
   }
 
   public HttpClientConfig(@NotBlank String baseUrl, HttpClientAuth.Config auth, Ssl ssl) {
@@ -66,4 +89,32 @@ public record HttpClientConfig(
     /** Do not follow redirects; an unfollowed 3xx surfaces as an error. */
     DONT_FOLLOW
   }
+
+  /**
+   * How FHIR bundles received by this client are decoded. {@link WebClientFactory} registers the
+   * matching decoder.
+   */
+  public enum BundleDecoding {
+    /** Join the whole response body, then parse it. The default. */
+    BUFFERED,
+    /**
+     * Parse the bundle entry by entry while the response body arrives, so the raw body is never
+     * held in memory as a whole.
+     */
+    STREAMING
+  }
+
+  /**
+   * How FHIR bundles sent by this client are encoded. {@link WebClientFactory} registers the
+   * matching encoder.
+   */
+  public enum BundleEncoding {
+    /** Serialize the whole bundle into one buffer, sent with a content length. The default. */
+    BUFFERED,
+    /**
+     * Serialize the bundle entry by entry into fixed-size buffers, sent as chunked body while
+     * serialization is still going on.
+     */
+    STREAMING
+  }
 }
@@ -2,10 +2,19 @@ package care.smith.fts.util;
 
 import static org.springframework.http.MediaType.parseMediaType;
 
+import java.util.List;
 import org.springframework.http.MediaType;
 
 public interface MediaTypes {
   String APPLICATION_FHIR_JSON_VALUE = "application/fhir+json";
 
   MediaType APPLICATION_FHIR_JSON = parseMediaType(APPLICATION_FHIR_JSON_VALUE);
+
+  /** Newline delimited FHIR resources, as written by the bulk data {@code $export} operation. */
+  String APPLICATION_FHIR_NDJSON_VALUE = "application/fhir+ndjson";
+
+  MediaType APPLICATION_FHIR_NDJSON = parseMediaType(APPLICATION_FHIR_NDJSON_VALUE);
+
+  /** Prefers CBOR, servers that cannot produce CBOR answer with JSON. */
+  List<MediaType> CBOR_OR_JSON = List.of(MediaType.APPLICATION_CBOR, MediaType.APPLICATION_JSON);
 }
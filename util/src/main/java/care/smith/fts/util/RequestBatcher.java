@@ -0,0 +1,111 @@
+package care.smith.fts.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.EmitFailureHandler;
+import reactor.util.context.ContextView;
+
+/**
+ * Collects single requests submitted concurrently into batches of at most {@code maxSize} items or
+ * whatever arrived within {@code maxWait}, and executes each batch with one call. Every submitter
+ * receives the result at its position in the batch result.
+ *
+ * <p>A batch runs in the Reactor context of its first request, so it is e.g. tagged with that
+ * request's transfer process. The contexts of all requests of the batch are available to the
+ * executor through {@link #contexts(ContextView)}.
+ *
+ * <p>A batcher is meant to live as long as the transfer process step owning it, and steps live as
+ * long as the application, as projects are read once at startup. Its subscription is therefore
+ * never disposed, it holds no resources while no batch is pending.
+ *
+ * @param <I> request type
+ * @param <O> result type
+ */
+@Slf4j
+public class RequestBatcher<I, O> {
+
+  private static final EmitFailureHandler RETRY_ON_CONTENTION =
+      EmitFailureHandler.busyLooping(Duration.ofSeconds(1));
+
+  private final Sinks.Many<Pending<I, O>> pending = Sinks.many().unicast().onBackpressureBuffer();
+  private final Function<List<I>, Mono<List<O>>> executor;
+
+  /**
+   * @param maxSize maximum number of requests per batch
+   * @param maxWait maximum time the first request of a batch waits for further requests
+   * @param concurrency maximum number of batches executed concurrently
+   * @param executor executes one batch, must emit exactly one result per request in request order.
+   *     Results are passed on once emitted, the batch counts towards {@code concurrency} until the
+   *     executor completes.
+   */
+  public RequestBatcher(
+      int maxSize, Duration maxWait, int concurrency, Function<List<I>, Mono<List<O>>> executor) {
+    checkArgument(maxSize > 0, "maxSize must be greater than 0");
+    checkArgument(concurrency > 0, "concurrency must be greater than 0");
+    this.executor = executor;
+    pending
+        .asFlux()
+        .bufferTimeout(maxSize, maxWait, true)
+        .flatMap(this::execute, concurrency)
+        .subscribe();
+  }
+
+  /**
+   * Submits a single request. The request is sent with the next batch once subscribed.
+   *
+   * @param request the request
+   * @return the result for this request
+   */
+  public Mono<O> submit(I request) {
+    return Mono.deferContextual(
+        context -> {
+          var p = new Pending<I, O>(request, context, Sinks.one());
+          pending.emitNext(p, RETRY_ON_CONTENTION);
+          return p.result().asMono();
+        });
+  }
+
+  private Mono<Void> execute(List<Pending<I, O>> batch) {
+    log.trace("Execute batch of {} requests", batch.size());
+    var contexts = batch.stream().map(Pending::context).toList();
+    return Mono.defer(() -> executor.apply(batch.stream().map(Pending::request).toList()))
+        .contextWrite(c -> c.putAll(contexts.getFirst()).put(Submitters.class, contexts))
+        .defaultIfEmpty(List.of())
+        .doOnNext(results -> complete(batch, results))
+        .doOnError(e -> batch.forEach(p -> p.result().tryEmitError(e)))
+        .onErrorComplete()
+        .then();
+  }
+
+  private static <I, O> void complete(List<Pending<I, O>> batch, List<O> results) {
+    if (results.size() != batch.size()) {
+      var e =
+          new IllegalStateException(
+              "Expected %d results, got %d".formatted(batch.size(), results.size()));
+      batch.forEach(p -> p.result().tryEmitError(e));
+      return;
+    }
+    for (int i = 0; i < batch.size(); i++) {
+      batch.get(i).result().tryEmitValue(results.get(i));
+    }
+  }
+
+  /**
+   * @return the contexts of all requests of the current batch, in request order, or {@code
+   *     context} itself outside of a batch
+   */
+  public static List<ContextView> contexts(ContextView context) {
+    return context.<List<ContextView>>getOrEmpty(Submitters.class).orElse(List.of(context));
+  }
+
+  /** Context key of the contexts of all requests of a batch. */
+  private interface Submitters {}
+
+  private record Pending<I, O>(I request, ContextView context, Sinks.One<O> result) {}
+}
@@ -1,5 +1,9 @@
 package care.smith.fts.util;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
 import reactor.util.retry.Retry;
 
 /** Builds the reactor {@link Retry} spec for a named outbound request. */
@@ -7,4 +11,19 @@ public interface RetryStrategy {
 
   /** Returns the retry spec for call-site {@code name} (used as the {@code request_name} tag). */
   Retry forRequest(String name);
+
+  /**
+   * Retries a streamed response without emitting an element twice. A retry issues the request
+   * again and skips the elements emitted before, so the server must return the same elements in the
+   * same order. Each subscription counts its own elements.
+   */
+  default <T> Flux<T> resuming(String name, Supplier<? extends Publisher<T>> request) {
+    return Flux.defer(
+        () -> {
+          var emitted = new AtomicLong();
+          return Flux.defer(() -> Flux.from(request.get()).skip(emitted.get()))
+              .doOnNext(e -> emitted.incrementAndGet())
+              .retryWhen(forRequest(name));
+        });
+  }
 }
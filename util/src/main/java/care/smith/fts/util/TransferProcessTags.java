@@ -0,0 +1,57 @@
+package care.smith.fts.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.Optional;
+import java.util.function.Function;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Meter tags of the transfer process a pipeline runs for. The process runner writes the project
+ * into the Reactor context of its pipeline, so that steps shared by all processes of a project can
+ * tag their meters with the project they currently work for. Meters are tagged by project only, so
+ * that every meter name keeps one set of tag keys and the number of series does not grow with
+ * each started process.
+ */
+public interface TransferProcessTags {
+
+  String PROJECT = "project";
+
+  /** Project tag value of meters recorded outside of a transfer process. */
+  String NO_PROJECT = "none";
+
+  static Context write(Context context, String project) {
+    return context.put(TransferProcessTags.class, project);
+  }
+
+  /**
+   * @return the tags of the current transfer process, tagged with {@link #NO_PROJECT} outside of a
+   *     transfer process
+   */
+  static Tags read(ContextView context) {
+    return Tags.of(PROJECT, project(context).orElse(NO_PROJECT));
+  }
+
+  /**
+   * @return the project of the current transfer process, empty outside of a transfer process
+   */
+  static Optional<String> project(ContextView context) {
+    return context.getOrEmpty(TransferProcessTags.class);
+  }
+
+  /**
+   * Records the time from subscription until {@code mono} terminates or is cancelled in the timer
+   * {@code name}, tagged with the current transfer process.
+   */
+  static <T> Function<Mono<T>, Mono<T>> timed(MeterRegistry meterRegistry, String name) {
+    return mono ->
+        Mono.deferContextual(
+            context -> {
+              var sample = Timer.start(meterRegistry);
+              return mono.doFinally(s -> sample.stop(meterRegistry.timer(name, read(context))));
+            });
+  }
+}
@@ -3,12 +3,16 @@ package care.smith.fts.util;
 import static java.time.Duration.ofSeconds;
 import static java.util.Objects.requireNonNullElse;
 
+import care.smith.fts.util.HttpClientConfig.BundleDecoding;
+import care.smith.fts.util.HttpClientConfig.BundleEncoding;
 import care.smith.fts.util.HttpClientConfig.Redirects;
 import care.smith.fts.util.HttpClientConfig.Ssl;
 import care.smith.fts.util.auth.HttpClientAuth;
 import care.smith.fts.util.auth.HttpClientBasicAuth;
 import care.smith.fts.util.auth.HttpClientCookieTokenAuth;
 import care.smith.fts.util.auth.HttpClientOAuth2Auth;
+import care.smith.fts.util.fhir.FhirStreamingDecoder;
+import care.smith.fts.util.fhir.FhirStreamingEncoder;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import jakarta.annotation.Nullable;
 import java.util.Optional;
@@ -24,6 +28,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.client.ReactorResourceFactory;
 import org.springframework.http.client.reactive.ClientHttpConnector;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClient.Builder;
 import reactor.netty.http.client.HttpClient;
@@ -43,20 +48,37 @@ public class WebClientFactory {
   private final HttpClientBasicAuth basic;
   private final HttpClientOAuth2Auth oauth2;
   private final HttpClientCookieTokenAuth token;
+  private final FhirStreamingDecoder streamingDecoder;
+  private final FhirStreamingEncoder streamingEncoder;
 
+  @Autowired
   public WebClientFactory(
       WebClient.Builder clientBuilder,
       ReactorResourceFactory resourceFactory,
       SslBundles sslBundles,
       @Autowired(required = false) HttpClientBasicAuth basic,
       @Autowired(required = false) HttpClientOAuth2Auth oauth2,
-      @Autowired(required = false) HttpClientCookieTokenAuth token) {
+      @Autowired(required = false) HttpClientCookieTokenAuth token,
+      @Autowired(required = false) FhirStreamingDecoder streamingDecoder,
+      @Autowired(required = false) FhirStreamingEncoder streamingEncoder) {
     this.clientBuilder = clientBuilder;
     this.resourceFactory = resourceFactory;
     this.sslBundles = sslBundles;
     this.basic = basic;
     this.oauth2 = oauth2;
     this.token = token;
+    this.streamingDecoder = streamingDecoder;
+    this.streamingEncoder = streamingEncoder;
+  }
+
+  public WebClientFactory(
+      WebClient.Builder clientBuilder,
+      ReactorResourceFactory resourceFactory,
+      SslBundles sslBundles,
+      HttpClientBasicAuth basic,
+      HttpClientOAuth2Auth oauth2,
+      HttpClientCookieTokenAuth token) {
+    this(clientBuilder, resourceFactory, sslBundles, basic, oauth2, token, null, null);
   }
 
   public WebClient create(HttpClientConfig config) {
@@ -66,9 +88,42 @@ public class WebClientFactory {
         .clientConnector(connector(config))
         .baseUrl(config.baseUrl())
         .apply(b -> configureAuth(b, config.auth()))
+        .apply(b -> configureBundleCodecs(b, config))
         .build();
   }
 
+  /**
+   * Puts the {@link FhirStreamingDecoder} and {@link FhirStreamingEncoder} in front of all other
+   * codecs if the client decodes or encodes FHIR bundles in streaming mode. Codecs registered by
+   * customizers are applied on top of these base strategies, so the buffered {@code FhirDecoder}
+   * and {@code FhirEncoder} stay available for all other resource types.
+   */
+  private void configureBundleCodecs(Builder builder, HttpClientConfig config) {
+    var decode = config.bundleDecoding() == BundleDecoding.STREAMING;
+    var encode = config.bundleEncoding() == BundleEncoding.STREAMING;
+    if (!decode && !encode) {
+      return;
+    }
+    var decoder = decode ? requireCodec("decoding", streamingDecoder) : null;
+    var writer = encode ? requireCodec("encoding", streamingEncoder).writer() : null;
+    builder.exchangeStrategies(
+        ExchangeStrategies.builder()
+            .codecs(
+                c -> {
+                  Optional.ofNullable(decoder).ifPresent(c.customCodecs()::register);
+                  Optional.ofNullable(writer).ifPresent(c.customCodecs()::register);
+                })
+            .build());
+  }
+
+  private static <C> C requireCodec(String name, @Nullable C codec) {
+    return Optional.ofNullable(codec)
+        .orElseThrow(
+            () ->
+                new IllegalArgumentException(
+                    "Cannot configure streaming bundle %s, missing codec.".formatted(name)));
+  }
+
   /**
    * Builds the per-upstream connector. Redirect policy, SSL bundle and connect timeout are composed
    * onto a single Reactor Netty client here so each {@link HttpClientConfig} controls its own
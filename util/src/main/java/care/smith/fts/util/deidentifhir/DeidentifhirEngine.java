@@ -0,0 +1,49 @@
+package care.smith.fts.util.deidentifhir;
+
+import com.typesafe.config.Config;
+import de.ume.deidentifhir.Deidentifhir;
+import de.ume.deidentifhir.Registry;
+import de.ume.deidentifhir.util.IDReplacementProvider;
+import de.ume.deidentifhir.util.IdentifierValueReplacementProvider;
+import java.util.function.Function;
+import org.hl7.fhir.r4.model.Bundle;
+import scala.collection.immutable.Map;
+
+/**
+ * A {@link Deidentifhir} instance that is compiled once from a profile and reused for every
+ * bundle. Replacement providers are bound per call, so the profile is not re-parsed for each
+ * patient.
+ *
+ * <p>Instances are thread-safe as long as the handlers created by the registry factory only keep
+ * state in the bound provider.
+ *
+ * @param <P> type of the per-call replacement provider
+ */
+public class DeidentifhirEngine<
+    P extends IDReplacementProvider & IdentifierValueReplacementProvider> {
+
+  private final ThreadBoundReplacementProvider<P> provider = new ThreadBoundReplacementProvider<>();
+  private final Deidentifhir deidentifhir;
+
+  /**
+   * Compiles the deidentifhir profile.
+   *
+   * @param config the deidentifhir profile
+   * @param registryFactory creates the handler registry using the given thread bound provider
+   */
+  public DeidentifhirEngine(
+      Config config, Function<ThreadBoundReplacementProvider<P>, Registry> registryFactory) {
+    this.deidentifhir = Deidentifhir.apply(config, registryFactory.apply(provider));
+  }
+
+  public Bundle deidentify(Bundle bundle, P replacementProvider) {
+    return provider.withProvider(
+        replacementProvider, () -> (Bundle) deidentifhir.deidentify(bundle));
+  }
+
+  public Bundle deidentify(
+      Bundle bundle, P replacementProvider, Map<String, String> staticContext) {
+    return provider.withProvider(
+        replacementProvider, () -> (Bundle) deidentifhir.deidentify(bundle, staticContext));
+  }
+}
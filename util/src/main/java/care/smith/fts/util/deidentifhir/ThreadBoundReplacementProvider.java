@@ -0,0 +1,67 @@
+package care.smith.fts.util.deidentifhir;
+
+import static java.util.Objects.requireNonNull;
+
+import de.ume.deidentifhir.util.IDReplacementProvider;
+import de.ume.deidentifhir.util.IdentifierValueReplacementProvider;
+import java.util.function.Supplier;
+
+/**
+ * Replacement provider that forwards every lookup to the provider currently bound to the calling
+ * thread. Registry handlers are created once against this instance, the per-patient provider is
+ * bound only for the duration of a single deidentification pass.
+ *
+ * @param <P> type of the bound provider
+ */
+public class ThreadBoundReplacementProvider<
+        P extends IDReplacementProvider & IdentifierValueReplacementProvider>
+    implements IDReplacementProvider, IdentifierValueReplacementProvider {
+
+  private final ThreadLocal<P> bound = new ThreadLocal<>();
+
+  /**
+   * Runs the action with the given provider bound to the current thread. A previously bound
+   * provider is restored afterwards.
+   *
+   * @param provider the provider lookups are forwarded to while the action runs
+   * @param action the action to run
+   * @return the result of the action
+   */
+  public <T> T withProvider(P provider, Supplier<T> action) {
+    var previous = bound.get();
+    bound.set(requireNonNull(provider));
+    try {
+      return action.get();
+    } finally {
+      if (previous == null) {
+        bound.remove();
+      } else {
+        bound.set(previous);
+      }
+    }
+  }
+
+  /**
+   * Returns the provider bound to the current thread.
+   *
+   * @return the bound provider
+   * @throws IllegalStateException if no provider is bound
+   */
+  public P current() {
+    var provider = bound.get();
+    if (provider == null) {
+      throw new IllegalStateException("No replacement provider bound to current thread");
+    }
+    return provider;
+  }
+
+  @Override
+  public String getIDReplacement(String resourceType, String id) {
+    return current().getIDReplacement(resourceType, id);
+  }
+
+  @Override
+  public String getValueReplacement(String system, String value) {
+    return current().getValueReplacement(system, value);
+  }
+}
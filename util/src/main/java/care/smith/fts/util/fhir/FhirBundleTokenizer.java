@@ -0,0 +1,146 @@
+package care.smith.fts.util.fhir;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Splits a FHIR JSON bundle arriving as a stream of {@link DataBuffer}s into the raw JSON of its
+ * entries, so that only one entry has to be held in memory at a time. Everything outside the
+ * {@code entry} array is collected and emitted last as a bundle with an empty {@code entry} array.
+ *
+ * <p>The tokenizer only tracks JSON structure (nesting, strings and escapes), the content itself
+ * is parsed by HAPI. Each entry and the rest of the bundle may hold at most {@code maxInMemorySize}
+ * bytes, a negative limit disables the check.
+ */
+final class FhirBundleTokenizer {
+
+  private static final String ENTRY_KEY = "entry";
+  private static final int MAX_KEY_LENGTH = 32;
+
+  sealed interface Token permits Entry, Rest {}
+
+  /** Raw JSON of one bundle entry. */
+  record Entry(byte[] json) implements Token {}
+
+  /** Raw JSON of the bundle without its entries. */
+  record Rest(byte[] json) implements Token {}
+
+  private final int maxInMemorySize;
+  private final ByteArrayOutputStream rest = new ByteArrayOutputStream();
+  private final StringBuilder string = new StringBuilder();
+  private ByteArrayOutputStream entry;
+  private String key;
+  private int depth;
+  private boolean inString;
+  private boolean escaped;
+  private boolean inEntries;
+
+  private FhirBundleTokenizer(int maxInMemorySize) {
+    this.maxInMemorySize = maxInMemorySize;
+  }
+
+  static Flux<Token> tokenize(Flux<DataBuffer> in, int maxInMemorySize) {
+    return Flux.defer(
+        () -> {
+          var tokenizer = new FhirBundleTokenizer(maxInMemorySize);
+          return in.concatMapIterable(tokenizer::feed)
+              .concatWith(Mono.fromCallable(tokenizer::finish))
+              .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+  }
+
+  private List<Token> feed(DataBuffer buffer) {
+    var bytes = new byte[buffer.readableByteCount()];
+    buffer.read(bytes);
+    DataBufferUtils.release(buffer);
+
+    var tokens = new ArrayList<Token>();
+    var start = 0;
+    for (int i = 0; i < bytes.length; i++) {
+      var c = bytes[i];
+      if (inString) {
+        readString(c);
+        continue;
+      }
+      switch (c) {
+        case '"' -> {
+          inString = true;
+          string.setLength(0);
+        }
+        case ':' -> {
+          if (depth == 1) key = string.toString();
+        }
+        case '{', '[' -> {
+          depth++;
+          if (c == '[' && depth == 2 && ENTRY_KEY.equals(key)) {
+            write(rest, bytes, start, i + 1);
+            inEntries = true;
+            start = i + 1;
+          } else if (inEntries && depth == 3) {
+            entry = new ByteArrayOutputStream();
+            start = i;
+          }
+        }
+        case '}', ']' -> {
+          depth--;
+          if (inEntries && depth == 2) {
+            write(entry, bytes, start, i + 1);
+            tokens.add(new Entry(entry.toByteArray()));
+            entry = null;
+            start = i + 1;
+          } else if (inEntries && depth == 1) {
+            inEntries = false;
+            start = i;
+          }
+        }
+        default -> {}
+      }
+    }
+    flush(bytes, start);
+    return tokens;
+  }
+
+  private void readString(byte c) {
+    if (escaped) {
+      escaped = false;
+    } else if (c == '\\') {
+      escaped = true;
+    } else if (c == '"') {
+      inString = false;
+      return;
+    }
+    if (depth == 1 && string.length() < MAX_KEY_LENGTH) {
+      string.append((char) c);
+    }
+  }
+
+  private void flush(byte[] bytes, int start) {
+    if (!inEntries) {
+      write(rest, bytes, start, bytes.length);
+    } else if (entry != null) {
+      write(entry, bytes, start, bytes.length);
+    }
+  }
+
+  private void write(ByteArrayOutputStream out, byte[] bytes, int start, int end) {
+    if (maxInMemorySize >= 0 && out.size() + end - start > maxInMemorySize) {
+      throw new DataBufferLimitException(
+          "Exceeded limit on max bytes to buffer : " + maxInMemorySize);
+    }
+    out.write(bytes, start, end - start);
+  }
+
+  private Token finish() {
+    if (depth != 0 || inString) {
+      throw new DecodingException("Incomplete JSON bundle");
+    }
+    return new Rest(rest.toByteArray());
+  }
+}
@@ -1,6 +1,8 @@
 package care.smith.fts.util.fhir;
 
+import ca.uhn.fhir.context.FhirContext;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.webclient.WebClientCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,26 +12,47 @@ import org.springframework.web.reactive.config.WebFluxConfigurer;
 
 @Slf4j
 @Configuration
-@Import({FhirDecoder.class, FhirEncoder.class})
+@Import({
+  FhirDecoder.class,
+  FhirEncoder.class,
+  FhirNdjsonEncoder.class,
+  FhirStreamingDecoder.class,
+  FhirStreamingEncoder.class
+})
 public class FhirCodecConfiguration {
 
   @Bean
-  public WebFluxConfigurer fhirServerCodecConfigurer(FhirDecoder decoder, FhirEncoder encoder) {
+  public FhirJsonParsers fhirJsonParsers(
+      FhirContext fhirContext,
+      @Value("${fts.fhir.parser-reuse:THREAD_LOCAL}") FhirJsonParsers.Reuse reuse) {
+    log.debug("FHIR JSON parser reuse: {}", reuse);
+    return new FhirJsonParsers(fhirContext, reuse);
+  }
+
+  @Bean
+  public WebFluxConfigurer fhirServerCodecConfigurer(
+      FhirDecoder decoder,
+      FhirEncoder encoder,
+      FhirStreamingDecoder streamingDecoder,
+      FhirNdjsonEncoder ndjsonEncoder) {
     return new WebFluxConfigurer() {
       @Override
       public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
         configurer.customCodecs().register(decoder);
         configurer.customCodecs().register(encoder);
+        configurer.customCodecs().register(streamingDecoder);
+        configurer.customCodecs().register(ndjsonEncoder);
       }
     };
   }
 
   @Bean
   public WebClientCustomizer fhirWebClientCodecCustomizer(
-      FhirDecoder decoder, FhirEncoder encoder) {
+      FhirDecoder decoder, FhirEncoder encoder, FhirStreamingDecoder streamingDecoder) {
     return builder -> {
       builder.codecs(conf -> conf.customCodecs().register(decoder));
       builder.codecs(conf -> conf.customCodecs().register(encoder));
+      builder.codecs(conf -> conf.customCodecs().register(streamingDecoder));
       log.debug("WebClientFhirCodec registered");
     };
   }
@@ -11,6 +11,7 @@ import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ResolvableType;
 import org.springframework.core.codec.AbstractDecoder;
 import org.springframework.core.codec.DecodingException;
@@ -24,11 +25,16 @@ import reactor.core.publisher.Mono;
 @Slf4j
 @Component
 public class FhirDecoder extends AbstractDecoder<IBaseResource> {
-  private final FhirContext fhir;
+  private final FhirJsonParsers parsers;
 
   public FhirDecoder(FhirContext fhir) {
+    this(new FhirJsonParsers(fhir));
+  }
+
+  @Autowired
+  public FhirDecoder(FhirJsonParsers parsers) {
     super(APPLICATION_FHIR_JSON, APPLICATION_JSON);
-    this.fhir = fhir;
+    this.parsers = parsers;
   }
 
   @Override
@@ -51,8 +57,8 @@ public class FhirDecoder extends AbstractDecoder<IBaseResource> {
       throws DecodingException {
     log.trace("decode {} from {}", targetType, mimeType);
     try {
-      return fhir.newJsonParser()
-          .parseResource(ensureBaseResource(targetType), buffer.asInputStream());
+      var type = ensureBaseResource(targetType);
+      return parsers.apply(p -> p.parseResource(type, buffer.asInputStream()));
     } finally {
       DataBufferUtils.release(buffer);
     }
@@ -11,6 +11,7 @@ import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ResolvableType;
 import org.springframework.core.codec.AbstractEncoder;
 import org.springframework.core.io.buffer.DataBuffer;
@@ -21,11 +22,16 @@ import reactor.core.publisher.Flux;
 
 @Slf4j
 public class FhirEncoder extends AbstractEncoder<IBaseResource> {
-  private final FhirContext fhir;
+  private final FhirJsonParsers parsers;
 
   public FhirEncoder(FhirContext fhir) {
+    this(new FhirJsonParsers(fhir));
+  }
+
+  @Autowired
+  public FhirEncoder(FhirJsonParsers parsers) {
     super(APPLICATION_FHIR_JSON, APPLICATION_JSON);
-    this.fhir = fhir;
+    this.parsers = parsers;
   }
 
   @Override
@@ -49,7 +55,11 @@ public class FhirEncoder extends AbstractEncoder<IBaseResource> {
 
     try (OutputStreamWriter w = new OutputStreamWriter(dataBuffer.asOutputStream())) {
       log.trace("encode {} to {}", valueType, mimeType);
-      fhir.newJsonParser().encodeToWriter(value, w);
+      parsers.apply(
+          p -> {
+            p.encodeToWriter(value, w);
+            return null;
+          });
     } catch (IOException e) {
       log.error("Error encoding value: {}", e.getMessage(), e);
       DataBufferUtils.release(dataBuffer);
@@ -0,0 +1,79 @@
+package care.smith.fts.util.fhir;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+
+/**
+ * Hands out JSON parsers of one {@link FhirContext}. HAPI parsers are not thread-safe, but can be
+ * reused sequentially, so with {@link Reuse#THREAD_LOCAL} every thread keeps one parser instead of
+ * creating a new one for each message. Since the codecs run on the few event loop and bounded
+ * elastic threads, this keeps the number of parsers small.
+ *
+ * <p>Callers must not change the parser's options, as these would leak into later calls on the same
+ * thread.
+ */
+public class FhirJsonParsers {
+
+  /** How parsers are reused between calls. */
+  public enum Reuse {
+    /** Create a new parser for every call. */
+    NONE,
+    /** Keep one parser per thread. */
+    THREAD_LOCAL
+  }
+
+  private final FhirContext fhir;
+  private final ThreadLocal<Slot> slots;
+
+  public FhirJsonParsers(FhirContext fhir) {
+    this(fhir, Reuse.THREAD_LOCAL);
+  }
+
+  public FhirJsonParsers(FhirContext fhir, Reuse reuse) {
+    this.fhir = fhir;
+    this.slots =
+        reuse == Reuse.THREAD_LOCAL ? ThreadLocal.withInitial(() -> new Slot(fhir)) : null;
+  }
+
+  public FhirContext context() {
+    return fhir;
+  }
+
+  /**
+   * Applies {@code fn} to a parser. The parser must not escape {@code fn}. Nested calls on the same
+   * thread get a fresh parser.
+   */
+  public <T, E extends Exception> T apply(ParserFunction<T, E> fn) throws E {
+    if (slots == null) {
+      return fn.apply(fhir.newJsonParser());
+    }
+    var slot = slots.get();
+    if (slot.inUse) {
+      return fn.apply(fhir.newJsonParser());
+    }
+    slot.inUse = true;
+    try {
+      return fn.apply(slot.parser);
+    } finally {
+      slot.inUse = false;
+    }
+  }
+
+  /**
+   * Function using a parser, that may throw a checked exception such as {@link
+   * java.io.IOException}.
+   */
+  @FunctionalInterface
+  public interface ParserFunction<T, E extends Exception> {
+    T apply(IParser parser) throws E;
+  }
+
+  private static final class Slot {
+    private final IParser parser;
+    private boolean inUse;
+
+    private Slot(FhirContext fhir) {
+      this.parser = fhir.newJsonParser();
+    }
+  }
+}
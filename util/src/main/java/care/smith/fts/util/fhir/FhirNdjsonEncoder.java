@@ -0,0 +1,84 @@
+package care.smith.fts.util.fhir;
+
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_NDJSON;
+import static care.smith.fts.util.fhir.FhirCodecUtils.isBaseResource;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import ca.uhn.fhir.context.FhirContext;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+/**
+ * Encodes a stream of FHIR resources as newline delimited JSON, one resource per line. As a
+ * streaming media type, every line is flushed once written, so the receiver can process resources
+ * while later ones are still produced.
+ */
+@Slf4j
+@Component
+public class FhirNdjsonEncoder extends AbstractEncoder<IBaseResource>
+    implements HttpMessageEncoder<IBaseResource> {
+
+  private static final byte NEWLINE = '\n';
+
+  private final FhirJsonParsers parsers;
+
+  public FhirNdjsonEncoder(FhirContext fhir) {
+    this(new FhirJsonParsers(fhir));
+  }
+
+  @Autowired
+  public FhirNdjsonEncoder(FhirJsonParsers parsers) {
+    super(APPLICATION_FHIR_NDJSON);
+    this.parsers = parsers;
+  }
+
+  @Override
+  public Flux<DataBuffer> encode(
+      Publisher<? extends IBaseResource> in,
+      DataBufferFactory bufferFactory,
+      ResolvableType type,
+      MimeType mimeType,
+      Map<String, Object> hints) {
+    return Flux.from(in).map(r -> encodeValue(r, bufferFactory, type, mimeType, hints));
+  }
+
+  @Override
+  public DataBuffer encodeValue(
+      IBaseResource value,
+      DataBufferFactory bufferFactory,
+      ResolvableType valueType,
+      MimeType mimeType,
+      Map<String, Object> hints) {
+    log.trace("encode {} to {}", valueType, mimeType);
+    var json = parsers.apply(p -> p.encodeResourceToString(value)).getBytes(UTF_8);
+    return bufferFactory.allocateBuffer(json.length + 1).write(json).write(NEWLINE);
+  }
+
+  @Override
+  public List<MediaType> getStreamingMediaTypes() {
+    return List.of(APPLICATION_FHIR_NDJSON);
+  }
+
+  @Override
+  public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+    var can =
+        isBaseResource(elementType.getRawClass())
+            && mimeType != null
+            && APPLICATION_FHIR_NDJSON.isCompatibleWith(mimeType);
+    log.trace("canEncode {} to {}? {}", elementType, mimeType, can);
+    return can;
+  }
+}
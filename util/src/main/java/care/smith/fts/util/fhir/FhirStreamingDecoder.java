@@ -0,0 +1,141 @@
+package care.smith.fts.util.fhir;
+
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.util.fhir.FhirBundleTokenizer.Entry;
+import care.smith.fts.util.fhir.FhirBundleTokenizer.Rest;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Decodes FHIR JSON bundles entry by entry while the body is still arriving, instead of joining
+ * the whole body into one buffer first as {@link FhirDecoder} does.
+ *
+ * <p>Decoding to {@link BundleEntryComponent} emits each entry as soon as it is complete, so only
+ * one entry is held as raw JSON at a time. Decoding to {@link Bundle} assembles the bundle from its
+ * parsed entries; it is used by WebClients configured with {@code bundleDecoding: STREAMING}.
+ *
+ * <p>{@code spring.http.codecs.max-in-memory-size} limits the size of each entry instead of the
+ * whole body. An entry exceeding it fails with {@link
+ * org.springframework.core.io.buffer.DataBufferLimitException}.
+ */
+@Slf4j
+@Component
+public class FhirStreamingDecoder extends AbstractDecoder<Object> {
+
+  private static final byte[] ENTRY_PREFIX =
+      "{\"resourceType\":\"Bundle\",\"entry\":[".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] ENTRY_SUFFIX = "]}".getBytes(StandardCharsets.UTF_8);
+
+  private static final DataSize DEFAULT_MAX_IN_MEMORY_SIZE = DataSize.ofKilobytes(256);
+
+  private final FhirJsonParsers parsers;
+  private final int maxInMemorySize;
+
+  public FhirStreamingDecoder(FhirContext fhir) {
+    this(new FhirJsonParsers(fhir));
+  }
+
+  public FhirStreamingDecoder(FhirJsonParsers parsers) {
+    this(parsers, DEFAULT_MAX_IN_MEMORY_SIZE);
+  }
+
+  @Autowired
+  public FhirStreamingDecoder(
+      FhirJsonParsers parsers,
+      @Value("${spring.http.codecs.max-in-memory-size:256KB}") DataSize maxInMemorySize) {
+    super(APPLICATION_FHIR_JSON, APPLICATION_JSON);
+    this.parsers = parsers;
+    this.maxInMemorySize = Math.toIntExact(maxInMemorySize.toBytes());
+  }
+
+  @Override
+  public Flux<Object> decode(
+      Publisher<DataBuffer> in, ResolvableType type, MimeType mimeType, Map<String, Object> hints) {
+    if (isBundle(type)) {
+      return decodeToMono(in, type, mimeType, hints).flux();
+    }
+    log.trace("Decode bundle entries");
+    return FhirBundleTokenizer.tokenize(Flux.from(in), maxInMemorySize)
+        .ofType(Entry.class)
+        .map(e -> parseEntry(e.json()));
+  }
+
+  @Override
+  public Mono<Object> decodeToMono(
+      Publisher<DataBuffer> in, ResolvableType type, MimeType mimeType, Map<String, Object> hints) {
+    if (!isBundle(type)) {
+      return Mono.error(new DecodingException("Bundle entries can only be decoded to a Flux"));
+    }
+    log.trace("Decode bundle incrementally");
+    return Mono.defer(
+        () -> {
+          var entries = new ArrayList<BundleEntryComponent>();
+          return FhirBundleTokenizer.tokenize(Flux.from(in), maxInMemorySize)
+              .concatMap(
+                  token ->
+                      switch (token) {
+                        case Entry e -> {
+                          entries.add(parseEntry(e.json()));
+                          yield Mono.empty();
+                        }
+                        case Rest r -> Mono.just(parseBundle(r.json(), entries));
+                      })
+              .next();
+        });
+  }
+
+  private BundleEntryComponent parseEntry(byte[] json) {
+    InputStream in =
+        new SequenceInputStream(
+            Collections.enumeration(
+                List.of(
+                    new ByteArrayInputStream(ENTRY_PREFIX),
+                    new ByteArrayInputStream(json),
+                    new ByteArrayInputStream(ENTRY_SUFFIX))));
+    return parsers.apply(p -> p.parseResource(Bundle.class, in)).getEntryFirstRep();
+  }
+
+  private Object parseBundle(byte[] json, List<BundleEntryComponent> entries) {
+    var bundle = parsers.apply(p -> p.parseResource(Bundle.class, new ByteArrayInputStream(json)));
+    bundle.setEntry(entries);
+    return bundle;
+  }
+
+  private static boolean isBundle(ResolvableType type) {
+    return Bundle.class.equals(type.getRawClass());
+  }
+
+  @Override
+  public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+    var rawClass = elementType.getRawClass();
+    boolean can =
+        (Bundle.class.equals(rawClass) || BundleEntryComponent.class.equals(rawClass))
+            && getDecodableMimeTypes().stream().anyMatch(m -> m.isCompatibleWith(mimeType));
+    log.trace("canDecode {} from {}? {}", elementType, mimeType, can);
+    return can;
+  }
+}
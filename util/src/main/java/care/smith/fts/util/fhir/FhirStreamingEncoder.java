@@ -0,0 +1,311 @@
+package care.smith.fts.util.fhir;
+
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import ca.uhn.fhir.context.FhirContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Encodes FHIR bundles entry by entry into buffers of a fixed size, instead of serializing the
+ * whole bundle into one growing buffer as {@link FhirEncoder} does. Buffers are allocated from the
+ * factory of the outgoing message, i.e. from Netty's pooled allocator, and emitted as soon as they
+ * are full, so memory per bundle in flight stays bounded.
+ *
+ * <p>Spring writes single values (e.g. {@code bodyValue}) as one buffer with a content length, so
+ * the encoder is registered via {@link #writer()}, which always writes a chunked body.
+ */
+@Slf4j
+@Component
+public class FhirStreamingEncoder extends AbstractEncoder<Bundle> {
+
+  public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+
+  private static final byte[] ENTRY_PREFIX =
+      "{\"resourceType\":\"Bundle\",\"entry\":[".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] ENTRY_SUFFIX = "]}".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] ENTRIES_START = ",\"entry\":[".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] ENTRY_SEPARATOR = ",".getBytes(StandardCharsets.UTF_8);
+
+  private final FhirJsonParsers parsers;
+  private final int chunkSize;
+
+  @Autowired
+  public FhirStreamingEncoder(FhirJsonParsers parsers) {
+    this(parsers, DEFAULT_CHUNK_SIZE);
+  }
+
+  public FhirStreamingEncoder(FhirContext fhir) {
+    this(fhir, DEFAULT_CHUNK_SIZE);
+  }
+
+  public FhirStreamingEncoder(FhirContext fhir, int chunkSize) {
+    this(new FhirJsonParsers(fhir), chunkSize);
+  }
+
+  public FhirStreamingEncoder(FhirJsonParsers parsers, int chunkSize) {
+    super(APPLICATION_FHIR_JSON, APPLICATION_JSON);
+    checkArgument(chunkSize > 0, "chunkSize must be greater than 0");
+    this.parsers = parsers;
+    this.chunkSize = chunkSize;
+  }
+
+  /** Writer that streams bundles as chunked body, also when they are given as single value. */
+  public HttpMessageWriter<Bundle> writer() {
+    return new EncoderHttpMessageWriter<>(this) {
+      @Override
+      public Mono<Void> write(
+          Publisher<? extends Bundle> inputStream,
+          ResolvableType elementType,
+          MediaType mediaType,
+          ReactiveHttpOutputMessage message,
+          Map<String, Object> hints) {
+        return super.write(Flux.from(inputStream), elementType, mediaType, message, hints);
+      }
+    };
+  }
+
+  @Override
+  public Flux<DataBuffer> encode(
+      Publisher<? extends Bundle> in,
+      DataBufferFactory bufferFactory,
+      ResolvableType type,
+      MimeType mimeType,
+      Map<String, Object> hints) {
+    return Flux.from(in).concatMap(b -> encodeBundle(b, bufferFactory));
+  }
+
+  private Flux<DataBuffer> encodeBundle(Bundle bundle, DataBufferFactory bufferFactory) {
+    log.trace("encode bundle with {} entries in chunks", bundle.getEntry().size());
+    return Flux.using(
+        () -> new ChunkedOutputStream(bufferFactory, chunkSize),
+        out -> {
+          if (!bundle.hasEntry()) {
+            return Flux.defer(() -> write(bundle, out)).concatWith(Mono.fromCallable(out::last));
+          }
+          return Flux.defer(() -> writeHeader(bundle, out))
+              .concatWith(
+                  Flux.fromIterable(bundle.getEntry())
+                      .filter(e -> !e.isEmpty())
+                      .index()
+                      .concatMapIterable(e -> writeEntry(e.getT1() > 0, e.getT2(), out)))
+              .concatWith(Flux.defer(() -> writeFooter(out)));
+        },
+        ChunkedOutputStream::release);
+  }
+
+  private Flux<DataBuffer> write(IBaseResource resource, ChunkedOutputStream out) {
+    encodeTo(resource, out);
+    return Flux.fromIterable(out.drain());
+  }
+
+  private Flux<DataBuffer> writeHeader(Bundle bundle, ChunkedOutputStream out) {
+    var header = parsers.apply(p -> p.encodeResourceToString(withoutEntries(bundle)));
+    var bytes = header.getBytes(StandardCharsets.UTF_8);
+    out.write(bytes, 0, bytes.length - 1);
+    out.write(ENTRIES_START, 0, ENTRIES_START.length);
+    return Flux.fromIterable(out.drain());
+  }
+
+  private List<DataBuffer> writeEntry(
+      boolean separate, BundleEntryComponent entry, ChunkedOutputStream out) {
+    if (separate) {
+      out.write(ENTRY_SEPARATOR, 0, ENTRY_SEPARATOR.length);
+    }
+    var trimmed = new TrimmingOutputStream(out);
+    encodeTo(new Bundle().addEntry(entry), trimmed);
+    trimmed.finish();
+    return out.drain();
+  }
+
+  private static Flux<DataBuffer> writeFooter(ChunkedOutputStream out) {
+    out.write(ENTRY_SUFFIX, 0, ENTRY_SUFFIX.length);
+    var buffers = out.drain();
+    buffers.add(out.last());
+    return Flux.fromIterable(buffers);
+  }
+
+  private void encodeTo(IBaseResource resource, OutputStream out) {
+    try {
+      var writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+      parsers.apply(
+          p -> {
+            p.encodeToWriter(resource, writer);
+            return null;
+          });
+      writer.flush();
+    } catch (IOException e) {
+      throw new EncodingException("Error encoding bundle", e);
+    }
+  }
+
+  /** The bundle's own elements, sharing the original values. */
+  private static Bundle withoutEntries(Bundle bundle) {
+    var header = new Bundle();
+    if (bundle.hasIdElement()) header.setIdElement(bundle.getIdElement());
+    if (bundle.hasMeta()) header.setMeta(bundle.getMeta());
+    if (bundle.hasImplicitRules()) header.setImplicitRulesElement(bundle.getImplicitRulesElement());
+    if (bundle.hasLanguage()) header.setLanguageElement(bundle.getLanguageElement());
+    if (bundle.hasIdentifier()) header.setIdentifier(bundle.getIdentifier());
+    if (bundle.hasType()) header.setTypeElement(bundle.getTypeElement());
+    if (bundle.hasTimestamp()) header.setTimestampElement(bundle.getTimestampElement());
+    if (bundle.hasTotal()) header.setTotalElement(bundle.getTotalElement());
+    if (bundle.hasLink()) header.setLink(bundle.getLink());
+    if (bundle.hasSignature()) header.setSignature(bundle.getSignature());
+    return header;
+  }
+
+  @Override
+  public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+    var can =
+        Bundle.class.equals(elementType.getRawClass())
+            && getEncodableMimeTypes().stream().anyMatch(m -> m.isCompatibleWith(mimeType));
+    log.trace("canEncode {} to {}? {}", elementType, mimeType, can);
+    return can;
+  }
+
+  /** Writes into buffers of {@code chunkSize} bytes, keeping full buffers until drained. */
+  private static final class ChunkedOutputStream extends OutputStream {
+    private final DataBufferFactory bufferFactory;
+    private final int chunkSize;
+    private List<DataBuffer> full = new ArrayList<>();
+    private DataBuffer current;
+
+    ChunkedOutputStream(DataBufferFactory bufferFactory, int chunkSize) {
+      this.bufferFactory = bufferFactory;
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void write(int b) {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      while (len > 0) {
+        if (current == null) {
+          current = bufferFactory.allocateBuffer(chunkSize);
+        }
+        var n = Math.min(len, chunkSize - current.readableByteCount());
+        current.write(b, off, n);
+        off += n;
+        len -= n;
+        if (current.readableByteCount() == chunkSize) {
+          full.add(current);
+          current = null;
+        }
+      }
+    }
+
+    /** Hands over all full buffers. */
+    List<DataBuffer> drain() {
+      var drained = full;
+      full = new ArrayList<>();
+      return drained;
+    }
+
+    /** Hands over the last, partially filled buffer. */
+    DataBuffer last() {
+      var last = current != null ? current : bufferFactory.allocateBuffer(0);
+      current = null;
+      return last;
+    }
+
+    void release() {
+      full.forEach(DataBufferUtils::release);
+      full.clear();
+      if (current != null) {
+        DataBufferUtils.release(current);
+        current = null;
+      }
+    }
+  }
+
+  /**
+   * Strips the single-entry bundle around an entry, so only the entry itself is written to the
+   * delegate. The last bytes are held back until it is clear they are not the closing suffix.
+   * Relies on HAPI writing the bundle without whitespace and with {@code entry} as its only
+   * element; {@code FhirStreamingEncoderTest} pins these bytes for the HAPI version in use.
+   */
+  private static final class TrimmingOutputStream extends OutputStream {
+    private final OutputStream delegate;
+    private final byte[] held = new byte[ENTRY_SUFFIX.length];
+    private int heldCount;
+    private int skipped;
+
+    TrimmingOutputStream(OutputStream delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      while (skipped < ENTRY_PREFIX.length && len > 0) {
+        if (b[off] != ENTRY_PREFIX[skipped]) {
+          throw new IOException("Unexpected bundle entry encoding");
+        }
+        skipped++;
+        off++;
+        len--;
+      }
+      var emit = heldCount + len - held.length;
+      if (emit <= 0) {
+        System.arraycopy(b, off, held, heldCount, len);
+        heldCount += len;
+        return;
+      }
+      var fromHeld = Math.min(heldCount, emit);
+      delegate.write(held, 0, fromHeld);
+      var fromB = emit - fromHeld;
+      delegate.write(b, off, fromB);
+
+      var remaining = new byte[held.length];
+      var k = 0;
+      for (int i = fromHeld; i < heldCount; i++) remaining[k++] = held[i];
+      for (int i = off + fromB; i < off + len; i++) remaining[k++] = b[i];
+      System.arraycopy(remaining, 0, held, 0, k);
+      heldCount = k;
+    }
+
+    void finish() {
+      if (skipped != ENTRY_PREFIX.length
+          || heldCount != held.length
+          || !Arrays.equals(held, ENTRY_SUFFIX)) {
+        throw new EncodingException("Unexpected bundle entry encoding");
+      }
+    }
+  }
+}
@@ -12,15 +12,23 @@ import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.Bundle;
 import org.hl7.fhir.r4.model.Resource;
 
+/**
+ * Static FHIR helpers for tests, test utilities and benchmarks.
+ *
+ * <p>The parsing and encoding helpers use their own {@link FhirJsonParsers} with one parser per
+ * thread and are not affected by {@code fts.fhir.parser-reuse}. Agent code handling messages uses
+ * the configured {@link FhirJsonParsers} bean instead.
+ */
 public interface FhirUtils {
   FhirContext fctx = FhirContext.forR4();
+  FhirJsonParsers parsers = new FhirJsonParsers(fctx);
 
   /**
    * @param resource the FHIR resource
    * @return bundle as JSON string - not pretty printed
    */
   static String fhirResourceToString(Resource resource) {
-    return fctx.newJsonParser().encodeResourceToString(resource);
+    return parsers.apply(p -> p.encodeResourceToString(resource));
   }
 
   /**
@@ -28,7 +36,7 @@ public interface FhirUtils {
    * @return the FHIR bundle
    */
   static Bundle stringToFhirBundle(String bundleString) {
-    return fctx.newJsonParser().parseResource(Bundle.class, bundleString);
+    return parsers.apply(p -> p.parseResource(Bundle.class, bundleString));
   }
 
   /**
@@ -37,7 +45,7 @@ public interface FhirUtils {
    * @return the FHIR resource
    */
   static <T extends Resource> T stringToFhirResource(Class<T> clazz, String string) {
-    return fctx.newJsonParser().parseResource(clazz, string);
+    return parsers.apply(p -> p.parseResource(clazz, string));
   }
 
   /**
@@ -47,7 +55,7 @@ public interface FhirUtils {
    */
   static <T extends IBaseResource> T inputStreamToFhirResource(
       Class<T> clazz, InputStream inputStream) {
-    return fctx.newJsonParser().parseResource(clazz, inputStream);
+    return parsers.apply(p -> p.parseResource(clazz, inputStream));
   }
 
   static Stream<Bundle.BundleEntryComponent> entryStream(Bundle bundle) {
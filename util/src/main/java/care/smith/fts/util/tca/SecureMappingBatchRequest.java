@@ -0,0 +1,19 @@
+package care.smith.fts.util.tca;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import java.util.List;
+
+/**
+ * Request from RDA to TCA for the secure mappings of several transfers in one round trip.
+ *
+ * @param transferIds the transfer IDs, one per patient
+ */
+public record SecureMappingBatchRequest(
+    @NotNull(groups = SecureMappingBatchRequest.class)
+        List<@NotNull @Pattern(regexp = "^[\\w-]+$") String> transferIds) {
+
+  public SecureMappingBatchRequest {
+    transferIds = List.copyOf(transferIds);
+  }
+}
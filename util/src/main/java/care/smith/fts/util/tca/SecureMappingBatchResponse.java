@@ -0,0 +1,18 @@
+package care.smith.fts.util.tca;
+
+import jakarta.validation.constraints.NotNull;
+import java.util.Map;
+
+/**
+ * Response from TCA containing the resolved mappings of several transfers.
+ *
+ * @param mappings the secure mapping of each requested transfer ID
+ */
+public record SecureMappingBatchResponse(
+    @NotNull(groups = SecureMappingBatchResponse.class)
+        Map<String, SecureMappingResponse> mappings) {
+
+  public SecureMappingBatchResponse {
+    mappings = Map.copyOf(mappings);
+  }
+}
@@ -0,0 +1,20 @@
+package care.smith.fts.util.tca;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * Request from CDA to TCA for the transport mappings of several patients in one round trip.
+ *
+ * @param requests the transport mapping requests, one per patient, null if missing in the request
+ *     body, which is rejected by the TCA
+ */
+public record TransportMappingBatchRequest(
+    @NotNull(groups = TransportMappingBatchRequest.class) @Valid
+        List<TransportMappingRequest> requests) {
+
+  public TransportMappingBatchRequest {
+    requests = requests != null ? List.copyOf(requests) : null;
+  }
+}
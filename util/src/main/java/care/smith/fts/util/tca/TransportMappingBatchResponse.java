@@ -0,0 +1,17 @@
+package care.smith.fts.util.tca;
+
+import jakarta.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * Response from TCA confirming the transport mapping storage of several patients.
+ *
+ * @param transferIds the transfer IDs in the order of the requests
+ */
+public record TransportMappingBatchResponse(
+    @NotNull(groups = TransportMappingBatchResponse.class) List<String> transferIds) {
+
+  public TransportMappingBatchResponse {
+    transferIds = List.copyOf(transferIds);
+  }
+}
@@ -0,0 +1,246 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+import static reactor.test.StepVerifier.create;
+
+import care.smith.fts.util.AdaptiveConcurrencyLimiter.Permit;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+class AdaptiveConcurrencyLimiterTest {
+
+  private final AtomicLong clock = new AtomicLong();
+
+  private AdaptiveConcurrencyLimiter limiter(int min, int max) {
+    return new AdaptiveConcurrencyLimiter(min, max, 2.0, clock::get);
+  }
+
+  private static Permit acquire(AdaptiveConcurrencyLimiter limiter) {
+    return limiter.acquire().block(Duration.ofSeconds(1));
+  }
+
+  /** Completes {@code n} concurrent calls of the given latency. */
+  private void calls(AdaptiveConcurrencyLimiter limiter, int n, long latency) {
+    var permits = IntStream.range(0, n).mapToObj(i -> acquire(limiter)).toList();
+    clock.addAndGet(latency);
+    permits.forEach(Permit::release);
+  }
+
+  /** Raises the limit of a limiter starting at 1 to 4, with a latency baseline of 10. */
+  private void rampUp(AdaptiveConcurrencyLimiter limiter) {
+    calls(limiter, 1, 10);
+    calls(limiter, 2, 10);
+    calls(limiter, 2, 10);
+    assertThat(limiter.limit()).isEqualTo(4);
+  }
+
+  @Test
+  void startsAtMinLimit() {
+    assertThat(limiter(2, 8).limit()).isEqualTo(2);
+  }
+
+  @Test
+  void increasesOnFastCallsUpToMaxLimit() {
+    var limiter = limiter(1, 3);
+
+    calls(limiter, 1, 10);
+    assertThat(limiter.limit()).isEqualTo(2);
+    calls(limiter, 2, 10);
+    calls(limiter, 3, 10);
+    assertThat(limiter.limit()).isEqualTo(3);
+  }
+
+  @Test
+  void doesNotIncreaseWhileMostlyUnused() {
+    var limiter = limiter(1, 8);
+    rampUp(limiter);
+
+    calls(limiter, 1, 10);
+    assertThat(limiter.limit()).isEqualTo(4);
+  }
+
+  @Test
+  void decreasesOnSlowCall() {
+    var limiter = limiter(1, 8);
+    rampUp(limiter);
+
+    calls(limiter, 1, 100);
+    assertThat(limiter.limit()).isEqualTo(3);
+  }
+
+  @Test
+  void decreasesOnOverloadEvenIfFast() {
+    var limiter = limiter(1, 8);
+    rampUp(limiter);
+
+    var permit = acquire(limiter);
+    permit.overloaded();
+    clock.addAndGet(10);
+    permit.release();
+    assertThat(limiter.limit()).isEqualTo(3);
+  }
+
+  @Test
+  void decreasesOnceForCallsStartedBeforeLastDecrease() {
+    var limiter = limiter(1, 8);
+    rampUp(limiter);
+
+    calls(limiter, 2, 100);
+    assertThat(limiter.limit()).isEqualTo(3);
+  }
+
+  @Test
+  void neverDecreasesBelowMinLimit() {
+    var limiter = limiter(2, 4);
+    var permit = acquire(limiter);
+    permit.overloaded();
+    permit.release();
+    assertThat(limiter.limit()).isEqualTo(2);
+  }
+
+  @Test
+  void waitsForPermitUntilReleased() {
+    var limiter = limiter(1, 1);
+    var first = acquire(limiter);
+
+    create(limiter.acquire())
+        .then(first::release)
+        .assertNext(p -> assertThat(limiter.inFlight()).isEqualTo(1))
+        .verifyComplete();
+  }
+
+  @Test
+  void cancelledWaiterDoesNotHoldPermit() {
+    var limiter = limiter(1, 1);
+    var first = acquire(limiter);
+
+    create(limiter.acquire()).thenCancel().verify();
+    first.release();
+
+    assertThat(limiter.inFlight()).isZero();
+  }
+
+  @Test
+  void releaseIsIdempotent() {
+    var limiter = limiter(2, 2);
+    var permit = acquire(limiter);
+    acquire(limiter);
+
+    permit.release();
+    permit.release();
+
+    assertThat(limiter.inFlight()).isEqualTo(1);
+  }
+
+  @Test
+  void reportOverloadMarksPermitOn429And503() {
+    for (var status : List.of(TOO_MANY_REQUESTS, SERVICE_UNAVAILABLE)) {
+      var permit = acquire(limiter(1, 1));
+      exchange(status).contextWrite(c -> AdaptiveConcurrencyLimiter.write(c, permit)).block();
+      assertThat(permit.isOverloaded()).isTrue();
+    }
+  }
+
+  @Test
+  void reportOverloadIgnoresOtherStatus() {
+    var permit = acquire(limiter(1, 1));
+    exchange(INTERNAL_SERVER_ERROR)
+        .contextWrite(c -> AdaptiveConcurrencyLimiter.write(c, permit))
+        .block();
+    assertThat(permit.isOverloaded()).isFalse();
+  }
+
+  @Test
+  void reportOverloadWithoutPermit() {
+    create(exchange(TOO_MANY_REQUESTS)).expectNext(429).verifyComplete();
+  }
+
+  @Test
+  void limitHoldsOnePermitOfEachLimiter() {
+    var limiter1 = limiter(1, 1);
+    var limiter2 = limiter(1, 1);
+    var contexts =
+        List.of(
+            AdaptiveConcurrencyLimiter.write(Context.empty(), limiter1),
+            AdaptiveConcurrencyLimiter.write(Context.empty(), limiter2),
+            AdaptiveConcurrencyLimiter.write(Context.empty(), limiter1));
+
+    var call = Mono.fromSupplier(() -> List.of(limiter1.inFlight(), limiter2.inFlight()));
+
+    create(AdaptiveConcurrencyLimiter.limit(contexts, call))
+        .expectNext(List.of(1, 1))
+        .verifyComplete();
+    assertThat(limiter1.inFlight()).isZero();
+    assertThat(limiter2.inFlight()).isZero();
+  }
+
+  @Test
+  void limitReportsOverloadToAllLimiters() {
+    var limiter1 = limiter(1, 8);
+    var limiter2 = limiter(1, 8);
+    rampUp(limiter1);
+    rampUp(limiter2);
+    var contexts =
+        List.of(
+            AdaptiveConcurrencyLimiter.write(Context.empty(), limiter1),
+            AdaptiveConcurrencyLimiter.write(Context.empty(), limiter2));
+
+    create(AdaptiveConcurrencyLimiter.limit(contexts, exchange(TOO_MANY_REQUESTS)))
+        .expectNext(429)
+        .verifyComplete();
+
+    assertThat(limiter1.limit()).isEqualTo(3);
+    assertThat(limiter2.limit()).isEqualTo(3);
+  }
+
+  @Test
+  void limitUsesLimiterOfCurrentContext() {
+    var limiter = limiter(1, 1);
+
+    create(
+            AdaptiveConcurrencyLimiter.limit(Mono.fromSupplier(limiter::inFlight))
+                .contextWrite(c -> AdaptiveConcurrencyLimiter.write(c, limiter)))
+        .expectNext(1)
+        .verifyComplete();
+    assertThat(limiter.inFlight()).isZero();
+  }
+
+  @Test
+  void limitWithoutLimiterRunsCall() {
+    create(AdaptiveConcurrencyLimiter.limit(List.of(Context.empty()), Mono.just(1)))
+        .expectNext(1)
+        .verifyComplete();
+  }
+
+  @Test
+  void rejectsInvalidLimits() {
+    assertThatThrownBy(() -> new AdaptiveConcurrencyLimiter(0, 1, 2.0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new AdaptiveConcurrencyLimiter(2, 1, 2.0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new AdaptiveConcurrencyLimiter(1, 1, 1.0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static Mono<Integer> exchange(HttpStatus status) {
+    return WebClient.builder()
+        .exchangeFunction(request -> Mono.just(ClientResponse.create(status).build()))
+        .filter(AdaptiveConcurrencyLimiter.reportOverload())
+        .build()
+        .get()
+        .uri("http://localhost/")
+        .exchangeToMono(r -> r.releaseBody().thenReturn(r.statusCode().value()));
+  }
+}
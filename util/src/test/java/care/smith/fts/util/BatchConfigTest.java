@@ -0,0 +1,52 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.dataformat.yaml.YAMLMapper;
+
+class BatchConfigTest {
+
+  private static final BatchConfig DEFAULTS = new BatchConfig(1, Duration.ofMillis(100), 4);
+
+  @Test
+  void missingConfigUsesDefaults() {
+    assertThat(BatchConfig.withDefaults(null, DEFAULTS)).isEqualTo(DEFAULTS);
+  }
+
+  @Test
+  void unsetFieldsUseDefaults() {
+    var batch = BatchConfig.withDefaults(new BatchConfig(10, null, 2), DEFAULTS);
+
+    assertThat(batch).isEqualTo(new BatchConfig(10, Duration.ofMillis(100), 2));
+    assertThat(batch.enabled()).isTrue();
+  }
+
+  @Test
+  void sizeOfOneDisablesBatching() {
+    assertThat(DEFAULTS.enabled()).isFalse();
+    assertThat(new BatchConfig(null, null, null).enabled()).isFalse();
+  }
+
+  @Test
+  void invalidValuesThrow() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new BatchConfig(0, null, null));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new BatchConfig(null, Duration.ZERO, null));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new BatchConfig(null, null, 0));
+  }
+
+  @Test
+  void deserializesPartialConfig() {
+    ObjectMapper om = YAMLMapper.builder().build();
+
+    var batch = om.readValue("size: 50\nmaxWait: PT1S\n", BatchConfig.class);
+
+    assertThat(batch).isEqualTo(new BatchConfig(50, Duration.ofSeconds(1), null));
+  }
+}
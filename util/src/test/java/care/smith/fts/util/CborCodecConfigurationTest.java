@@ -0,0 +1,135 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.MediaType.APPLICATION_CBOR;
+import static org.springframework.http.MediaType.APPLICATION_CBOR_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static reactor.test.StepVerifier.create;
+
+import care.smith.fts.api.DateShiftPreserve;
+import care.smith.fts.util.auth.HttpServerAuthConfig;
+import care.smith.fts.util.tca.TcaDomains;
+import care.smith.fts.util.tca.TransportMappingRequest;
+import java.time.Duration;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+@SpringBootTest(
+    classes = {
+      CborCodecConfiguration.class,
+      CborCodecConfigurationTest.Config.class,
+      HttpServerAuthConfig.class
+    },
+    webEnvironment = RANDOM_PORT)
+class CborCodecConfigurationTest {
+
+  private static final TransportMappingRequest REQUEST =
+      new TransportMappingRequest(
+          "patient-1",
+          "http://fts.smith.care",
+          Map.of("patient-1.Patient:patient-1", "tid-1"),
+          Map.of("tid-2", "2024-03-15"),
+          new TcaDomains("pseudonym", "salt", "dateShift"),
+          Duration.ofDays(14),
+          DateShiftPreserve.NONE);
+
+  @LocalServerPort private int port;
+
+  private WebClient webClient;
+
+  @BeforeEach
+  void setUp(@Autowired WebClient.Builder builder) {
+    webClient = builder.baseUrl("http://localhost:%d".formatted(port)).build();
+  }
+
+  @Test
+  void cborRoundTrip() {
+    create(echo(APPLICATION_CBOR, APPLICATION_CBOR))
+        .assertNext(
+            r -> {
+              assertThat(r.getHeaders().getContentType()).isEqualTo(APPLICATION_CBOR);
+              assertThat(r.getBody()).isEqualTo(REQUEST);
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void jsonStillSupported() {
+    create(echo(APPLICATION_JSON, APPLICATION_JSON))
+        .assertNext(
+            r -> {
+              assertThat(r.getHeaders().getContentType()).isEqualTo(APPLICATION_JSON);
+              assertThat(r.getBody()).isEqualTo(REQUEST);
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void prefersCborIfAccepted() {
+    create(
+            webClient
+                .post()
+                .uri("/echo")
+                .contentType(APPLICATION_JSON)
+                .accept(MediaTypes.CBOR_OR_JSON.toArray(MediaType[]::new))
+                .bodyValue(REQUEST)
+                .retrieve()
+                .toEntity(TransportMappingRequest.class))
+        .assertNext(r -> assertThat(r.getHeaders().getContentType()).isEqualTo(APPLICATION_CBOR))
+        .verifyComplete();
+  }
+
+  @Test
+  void serverHasSingleCborReaderAndWriter(@Autowired ServerCodecConfigurer codecs) {
+    var type = ResolvableType.forClass(TransportMappingRequest.class);
+
+    assertThat(codecs.getReaders()).filteredOn(r -> r.canRead(type, APPLICATION_CBOR)).hasSize(1);
+    assertThat(codecs.getWriters()).filteredOn(w -> w.canWrite(type, APPLICATION_CBOR)).hasSize(1);
+  }
+
+  private Mono<ResponseEntity<TransportMappingRequest>> echo(
+      MediaType contentType, MediaType accept) {
+    return webClient
+        .post()
+        .uri("/echo")
+        .contentType(contentType)
+        .accept(accept)
+        .bodyValue(REQUEST)
+        .retrieve()
+        .toEntity(TransportMappingRequest.class);
+  }
+
+  @TestConfiguration
+  @RestController
+  public static class Controller {
+    @PostMapping(
+        path = "/echo",
+        consumes = {APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE},
+        produces = {APPLICATION_JSON_VALUE, APPLICATION_CBOR_VALUE})
+    Mono<TransportMappingRequest> echo(@RequestBody Mono<TransportMappingRequest> body) {
+      return body;
+    }
+  }
+
+  @SpringBootApplication
+  @Import({CborCodecConfigurationTest.Controller.class, CborCodecConfiguration.class})
+  public static class Config {}
+}
@@ -14,6 +14,7 @@ import org.springframework.http.HttpMethod;
 import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
@@ -145,4 +146,29 @@ class DefaultRetryStrategyTest {
     assertThat(calls.get()).isEqualTo(4);
     assertThat(retryCount("exhaust")).isEqualTo(3.0);
   }
+
+  @Test
+  void resumingSkipsElementsEmittedBeforeRetry() {
+    var calls = new AtomicInteger();
+    StepVerifier.withVirtualTime(
+            () ->
+                retryStrategy.resuming(
+                    "resume",
+                    () ->
+                        calls.getAndIncrement() == 0
+                            ? Flux.just("a", "b").concatWith(Flux.error(responseException(503)))
+                            : Flux.just("a", "b", "c")))
+        .thenAwait(Duration.ofSeconds(60))
+        .expectNext("a", "b", "c")
+        .verifyComplete();
+    assertThat(calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  void resumingSubscribedAgainEmitsAllElements() {
+    var stream = retryStrategy.resuming("resume", () -> Flux.just("a", "b"));
+
+    StepVerifier.create(stream).expectNext("a", "b").verifyComplete();
+    StepVerifier.create(stream).expectNext("a", "b").verifyComplete();
+  }
 }
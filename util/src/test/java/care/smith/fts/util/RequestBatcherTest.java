@@ -0,0 +1,100 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+class RequestBatcherTest {
+
+  @Test
+  void invalidMaxSizeThrows() {
+    assertThatIllegalArgumentException()
+        .isThrownBy(() -> new RequestBatcher<String, String>(0, Duration.ZERO, 1, Mono::just));
+  }
+
+  @Test
+  void concurrentRequestsAreBatched() {
+    var batches = new CopyOnWriteArrayList<List<Integer>>();
+    var batcher =
+        new RequestBatcher<Integer, Integer>(
+            3,
+            Duration.ofMillis(200),
+            1,
+            batch -> {
+              batches.add(batch);
+              return Mono.just(batch.stream().map(i -> i * 2).toList());
+            });
+
+    var results = Flux.range(0, 3).flatMap(batcher::submit).sort().collectList();
+
+    StepVerifier.create(results).expectNext(List.of(0, 2, 4)).verifyComplete();
+
+    assertThat(batches).containsExactly(List.of(0, 1, 2));
+  }
+
+  @Test
+  void partialBatchIsSentAfterMaxWait() {
+    var batcher = new RequestBatcher<Integer, Integer>(10, Duration.ofMillis(50), 1, Mono::just);
+    StepVerifier.create(batcher.submit(1)).expectNext(1).verifyComplete();
+  }
+
+  @Test
+  void batchErrorIsPropagatedToAllRequests() {
+    var batcher =
+        new RequestBatcher<Integer, Integer>(
+            2, Duration.ofMillis(200), 1, batch -> Mono.error(new IllegalStateException("down")));
+    StepVerifier.create(Flux.range(0, 2).flatMapDelayError(batcher::submit, 2, 1))
+        .expectError(IllegalStateException.class)
+        .verify();
+  }
+
+  @Test
+  void resultCountMismatchFailsRequests() {
+    var batcher =
+        new RequestBatcher<Integer, Integer>(
+            1, Duration.ofMillis(50), 1, batch -> Mono.just(List.of()));
+    StepVerifier.create(batcher.submit(1)).expectError(IllegalStateException.class).verify();
+  }
+
+  @Test
+  void batchRunsInContextsOfItsRequests() {
+    var batcher =
+        new RequestBatcher<Integer, String>(
+            2,
+            Duration.ofMillis(200),
+            1,
+            batch ->
+                Mono.deferContextual(
+                    context -> {
+                      var first = context.<String>get("submitter");
+                      var all =
+                          RequestBatcher.contexts(context).stream()
+                              .map(c -> c.<String>get("submitter"))
+                              .toList();
+                      return Mono.just(batch.stream().map(i -> first + all).toList());
+                    }));
+
+    var results =
+        Flux.just(
+                batcher.submit(1).contextWrite(Context.of("submitter", "a")),
+                batcher.submit(2).contextWrite(Context.of("submitter", "b")))
+            .flatMap(m -> m, 2)
+            .collectList();
+
+    StepVerifier.create(results).expectNext(List.of("a[a, b]", "a[a, b]")).verifyComplete();
+  }
+
+  @Test
+  void contextsOutsideOfBatchIsCurrentContext() {
+    var context = Context.of("submitter", "a");
+    assertThat(RequestBatcher.contexts(context)).containsExactly(context);
+  }
+}
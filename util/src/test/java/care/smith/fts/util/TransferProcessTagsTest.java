@@ -0,0 +1,64 @@
+package care.smith.fts.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static reactor.test.StepVerifier.create;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+class TransferProcessTagsTest {
+
+  @Test
+  void readWithoutProcessIsTaggedWithNoProject() {
+    assertThat(TransferProcessTags.read(Context.empty())).isEqualTo(Tags.of("project", "none"));
+  }
+
+  @Test
+  void readReturnsWrittenTags() {
+    var context = TransferProcessTags.write(Context.empty(), "example");
+
+    assertThat(TransferProcessTags.read(context)).isEqualTo(Tags.of("project", "example"));
+  }
+
+  @Test
+  void projectWithoutProcessIsEmpty() {
+    assertThat(TransferProcessTags.project(Context.empty())).isEmpty();
+  }
+
+  @Test
+  void projectReturnsWrittenProject() {
+    var context = TransferProcessTags.write(Context.empty(), "example");
+
+    assertThat(TransferProcessTags.project(context)).hasValue("example");
+  }
+
+  @Test
+  void timedRecordsWithProjectTag() {
+    var registry = new SimpleMeterRegistry();
+
+    var mono =
+        Mono.just(1)
+            .transform(TransferProcessTags.timed(registry, "step"))
+            .contextWrite(c -> TransferProcessTags.write(c, "example"));
+
+    create(mono).expectNext(1).verifyComplete();
+    var timer = registry.find("step").tag("project", "example").timer();
+    assertThat(timer).isNotNull();
+    assertThat(timer.count()).isEqualTo(1);
+  }
+
+  @Test
+  void timedRecordsErrors() {
+    var registry = new SimpleMeterRegistry();
+
+    var mono = Mono.error(new IllegalStateException());
+
+    create(mono.transform(TransferProcessTags.timed(registry, "step")))
+        .expectError(IllegalStateException.class)
+        .verify();
+    assertThat(registry.get("step").timer().count()).isEqualTo(1);
+  }
+}
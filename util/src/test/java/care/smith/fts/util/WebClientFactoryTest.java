@@ -1,7 +1,10 @@
 package care.smith.fts.util;
 
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
@@ -14,18 +17,25 @@ import static org.mockito.Mockito.when;
 import static org.springframework.web.reactive.function.client.WebClient.builder;
 import static reactor.test.StepVerifier.create;
 
+import ca.uhn.fhir.context.FhirContext;
+import care.smith.fts.util.HttpClientConfig.BundleDecoding;
+import care.smith.fts.util.HttpClientConfig.BundleEncoding;
 import care.smith.fts.util.HttpClientConfig.Redirects;
 import care.smith.fts.util.HttpClientConfig.Ssl;
 import care.smith.fts.util.auth.HttpClientAuth.Config;
 import care.smith.fts.util.auth.HttpClientBasicAuth;
 import care.smith.fts.util.auth.HttpClientCookieTokenAuth;
 import care.smith.fts.util.auth.HttpClientOAuth2Auth;
+import care.smith.fts.util.fhir.FhirStreamingDecoder;
+import care.smith.fts.util.fhir.FhirStreamingEncoder;
 import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -229,6 +239,111 @@ class WebClientFactoryTest {
         .verifyComplete();
   }
 
+  @Test
+  void streamingBundleDecoding(
+      @Autowired WebClient.Builder clientBuilder,
+      @Autowired SslBundles sslBundles,
+      WireMockRuntimeInfo wireMock) {
+    wireMock
+        .getWireMock()
+        .register(
+            get(urlEqualTo("/Patient"))
+                .willReturn(
+                    aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/fhir+json")
+                        .withBody(
+                            """
+                            {"resourceType": "Bundle", "total": 1,
+                             "entry": [{"resource": {"resourceType": "Patient", "id": "1"}}]}
+                            """)));
+
+    var factory =
+        new WebClientFactory(
+            clientBuilder,
+            resourceFactory,
+            sslBundles,
+            null,
+            null,
+            null,
+            new FhirStreamingDecoder(FhirContext.forR4()),
+            null);
+    var config =
+        new HttpClientConfig(
+            wireMock.getHttpBaseUrl(), null, null, null, BundleDecoding.STREAMING);
+    var client = factory.create(config);
+
+    create(client.get().uri("/Patient").retrieve().bodyToMono(Bundle.class))
+        .assertNext(b -> assertThat(b.getEntry()).hasSize(1))
+        .verifyComplete();
+  }
+
+  @Test
+  void streamingBundleEncoding(
+      @Autowired WebClient.Builder clientBuilder,
+      @Autowired SslBundles sslBundles,
+      WireMockRuntimeInfo wireMock) {
+    wireMock.getWireMock().register(post(urlEqualTo("/")).willReturn(aResponse().withStatus(200)));
+
+    var factory =
+        new WebClientFactory(
+            clientBuilder,
+            resourceFactory,
+            sslBundles,
+            null,
+            null,
+            null,
+            null,
+            new FhirStreamingEncoder(FhirContext.forR4(), 16));
+    var config =
+        new HttpClientConfig(
+            wireMock.getHttpBaseUrl(), null, null, null, null, BundleEncoding.STREAMING);
+    var client = factory.create(config);
+    var bundle = new Bundle().setTotal(1);
+    bundle.addEntry().setResource(new Patient().setId("1"));
+
+    create(
+            client
+                .post()
+                .uri("/")
+                .headers(h -> h.setContentType(APPLICATION_FHIR_JSON))
+                .bodyValue(bundle)
+                .retrieve()
+                .toBodilessEntity())
+        .expectNextCount(1)
+        .verifyComplete();
+
+    var request = wireMock.getWireMock().find(postRequestedFor(urlEqualTo("/"))).getFirst();
+    assertThat(request.containsHeader("Content-Length")).isFalse();
+    assertThat(request.getBodyAsString())
+        .isEqualTo(
+            """
+            {"resourceType":"Bundle","total":1,"entry":[{"resource":{"resourceType":"Patient",\
+            "id":"1"}}]}\
+            """);
+  }
+
+  @Test
+  void streamingBundleDecodingMissingDecoder(@Autowired SslBundles sslBundles) {
+    var factory = new WebClientFactory(builder(), resourceFactory, sslBundles, null, null, null);
+
+    var config =
+        new HttpClientConfig("http://localhost", null, null, null, BundleDecoding.STREAMING);
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> factory.create(config));
+  }
+
+  @Test
+  void streamingBundleEncodingMissingEncoder(@Autowired SslBundles sslBundles) {
+    var factory = new WebClientFactory(builder(), resourceFactory, sslBundles, null, null, null);
+
+    var config =
+        new HttpClientConfig(
+            "http://localhost", null, null, null, null, BundleEncoding.STREAMING);
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> factory.create(config));
+  }
+
   // FOLLOW_SAFE's HTTPS->HTTP downgrade refusal (the only thing distinguishing it from
   // ALWAYS_FOLLOW) needs a real TLS upstream to exercise end-to-end, so the redirect predicate is
   // verified directly.
@@ -0,0 +1,57 @@
+package care.smith.fts.util.deidentifhir;
+
+import static care.smith.fts.util.deidentifhir.NamespacingReplacementProvider.withoutNamespacing;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ThreadBoundReplacementProviderTest {
+
+  private final ThreadBoundReplacementProvider<NamespacingReplacementProvider> bound =
+      new ThreadBoundReplacementProvider<>();
+
+  @Test
+  void unboundLookupThrows() {
+    assertThatExceptionOfType(IllegalStateException.class)
+        .isThrownBy(() -> bound.getIDReplacement("Patient", "id1"));
+  }
+
+  @Test
+  void lookupsAreForwardedToBoundProvider() {
+    var provider = NamespacingReplacementProvider.of(withoutNamespacing(), Map.of("id1", "tid1"));
+
+    var result =
+        bound.withProvider(
+            provider,
+            () -> bound.getIDReplacement("Patient", "id1") + bound.getValueReplacement("s", "id1"));
+
+    assertThat(result).isEqualTo("tid1tid1");
+  }
+
+  @Test
+  void providerIsUnboundAfterwards() {
+    var provider = NamespacingReplacementProvider.of(withoutNamespacing());
+
+    bound.withProvider(provider, () -> null);
+
+    assertThatExceptionOfType(IllegalStateException.class).isThrownBy(bound::current);
+  }
+
+  @Test
+  void nestedBindingRestoresPreviousProvider() {
+    var outer = NamespacingReplacementProvider.of(withoutNamespacing(), Map.of("id", "outer"));
+    var inner = NamespacingReplacementProvider.of(withoutNamespacing(), Map.of("id", "inner"));
+
+    var result =
+        bound.withProvider(
+            outer,
+            () -> {
+              var nested = bound.withProvider(inner, () -> bound.getIDReplacement("P", "id"));
+              return nested + "," + bound.getIDReplacement("P", "id");
+            });
+
+    assertThat(result).isEqualTo("inner,outer");
+  }
+}
@@ -0,0 +1,82 @@
+package care.smith.fts.util.fhir;
+
+import static ca.uhn.fhir.context.FhirContext.forR4;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import care.smith.fts.util.fhir.FhirJsonParsers.Reuse;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+
+class FhirJsonParsersTest {
+
+  @Test
+  void threadLocalReusesParserOnSameThread() {
+    var parsers = new FhirJsonParsers(forR4(), Reuse.THREAD_LOCAL);
+
+    var first = parsers.apply(p -> p);
+    var second = parsers.apply(p -> p);
+
+    assertThat(first).isSameAs(second);
+  }
+
+  @Test
+  void threadLocalUsesOtherParserOnOtherThread() {
+    var parsers = new FhirJsonParsers(forR4(), Reuse.THREAD_LOCAL);
+
+    var local = parsers.apply(p -> p);
+    var other = CompletableFuture.supplyAsync(() -> parsers.apply(p -> p)).join();
+
+    assertThat(local).isNotSameAs(other);
+  }
+
+  @Test
+  void nestedCallsGetFreshParser() {
+    var parsers = new FhirJsonParsers(forR4(), Reuse.THREAD_LOCAL);
+
+    var nested = parsers.apply(outer -> parsers.apply(inner -> inner != outer));
+
+    assertThat(nested).isTrue();
+  }
+
+  @Test
+  void noneCreatesNewParsers() {
+    var parsers = new FhirJsonParsers(forR4(), Reuse.NONE);
+
+    var first = parsers.apply(p -> p);
+    var second = parsers.apply(p -> p);
+
+    assertThat(first).isNotSameAs(second);
+  }
+
+  @Test
+  void parserIsReleasedAfterException() {
+    var parsers = new FhirJsonParsers(forR4(), Reuse.THREAD_LOCAL);
+    var first = parsers.apply(p -> p);
+
+    assertThatExceptionOfType(IOException.class)
+        .isThrownBy(
+            () ->
+                parsers.apply(
+                    p -> {
+                      throw new IOException("failed");
+                    }));
+
+    assertThat(parsers.apply(p -> p)).isSameAs(first);
+  }
+
+  @Test
+  void reusedParserRoundTrips() {
+    var parsers = new FhirJsonParsers(forR4());
+    var patient = new Patient();
+    patient.setId("1");
+
+    for (int i = 0; i < 3; i++) {
+      var json = parsers.apply(p -> p.encodeResourceToString(patient));
+      var parsed = parsers.apply(p -> p.parseResource(Patient.class, json));
+      assertThat(parsed.getIdPart()).isEqualTo("1");
+    }
+  }
+}
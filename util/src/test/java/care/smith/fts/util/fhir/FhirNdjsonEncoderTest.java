@@ -0,0 +1,70 @@
+package care.smith.fts.util.fhir;
+
+import static ca.uhn.fhir.context.FhirContext.forR4;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_NDJSON;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static reactor.test.StepVerifier.create;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+class FhirNdjsonEncoderTest {
+
+  private static final ResolvableType BUNDLE = ResolvableType.forClass(Bundle.class);
+
+  private FhirNdjsonEncoder encoder;
+
+  @BeforeEach
+  void setUp() {
+    encoder = new FhirNdjsonEncoder(forR4());
+  }
+
+  @Test
+  void encodesOneResourcePerLine() {
+    var first = new Bundle().addEntry(new Bundle.BundleEntryComponent().setResource(new Patient()));
+    var second = new Bundle();
+    var parser = forR4().newJsonParser();
+
+    var encoded =
+        encoder.encode(
+            Flux.just(first, second),
+            new DefaultDataBufferFactory(),
+            BUNDLE,
+            APPLICATION_FHIR_NDJSON,
+            null);
+
+    create(encoded.map(FhirNdjsonEncoderTest::string))
+        .expectNext(parser.encodeResourceToString(first) + "\n")
+        .expectNext(parser.encodeResourceToString(second) + "\n")
+        .verifyComplete();
+  }
+
+  @Test
+  void ndjsonIsStreaming() {
+    assertThat(encoder.getStreamingMediaTypes()).containsExactly(APPLICATION_FHIR_NDJSON);
+  }
+
+  @Test
+  void canEncodeResourcesAsNdjsonOnly() {
+    assertThat(encoder.canEncode(BUNDLE, APPLICATION_FHIR_NDJSON)).isTrue();
+    assertThat(encoder.canEncode(BUNDLE, APPLICATION_FHIR_JSON)).isFalse();
+    assertThat(encoder.canEncode(BUNDLE, null)).isFalse();
+    assertThat(encoder.canEncode(ResolvableType.forClass(String.class), APPLICATION_FHIR_NDJSON))
+        .isFalse();
+  }
+
+  private static String string(DataBuffer buffer) {
+    var s = buffer.toString(UTF_8);
+    DataBufferUtils.release(buffer);
+    return s;
+  }
+}
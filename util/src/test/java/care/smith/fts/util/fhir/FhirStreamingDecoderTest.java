@@ -0,0 +1,191 @@
+package care.smith.fts.util.fhir;
+
+import static ca.uhn.fhir.context.FhirContext.forR4;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+import static reactor.test.StepVerifier.create;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+
+class FhirStreamingDecoderTest {
+
+  private static final String BUNDLE =
+      """
+      {
+        "resourceType": "Bundle",
+        "type": "searchset",
+        "total": 2,
+        "link": [{"relation": "next", "url": "http://localhost/next?entry=[{}]"}],
+        "entry": [
+          {"fullUrl": "Patient/1",
+           "resource": {"resourceType": "Patient", "id": "1",
+                        "name": [{"family": "Brace } ] \\" {"}]}},
+          {"resource": {"resourceType": "Patient", "id": "2",
+                        "identifier": [{"system": "entry", "value": "[\\\\"}]}}
+        ]
+      }
+      """;
+
+  private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+  private final FhirStreamingDecoder decoder = new FhirStreamingDecoder(forR4());
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 7, 64, 4096})
+  void decodeEntries(int chunkSize) {
+    var entries =
+        decoder
+            .decode(
+                chunked(BUNDLE, chunkSize),
+                ResolvableType.forClass(BundleEntryComponent.class),
+                APPLICATION_FHIR_JSON,
+                null)
+            .cast(BundleEntryComponent.class);
+
+    create(entries)
+        .assertNext(
+            e -> {
+              assertThat(e.getFullUrl()).isEqualTo("Patient/1");
+              var patient = (Patient) e.getResource();
+              assertThat(patient.getNameFirstRep().getFamily()).isEqualTo("Brace } ] \" {");
+            })
+        .assertNext(
+            e -> {
+              var patient = (Patient) e.getResource();
+              assertThat(patient.getIdPart()).isEqualTo("2");
+              assertThat(patient.getIdentifierFirstRep().getValue()).isEqualTo("[\\");
+            })
+        .verifyComplete();
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 7, 64, 4096})
+  void decodeBundle(int chunkSize) {
+    var bundle =
+        decoder
+            .decodeToMono(
+                chunked(BUNDLE, chunkSize),
+                ResolvableType.forClass(Bundle.class),
+                APPLICATION_FHIR_JSON,
+                null)
+            .cast(Bundle.class);
+
+    create(bundle)
+        .assertNext(
+            b -> {
+              assertThat(b.getTotal()).isEqualTo(2);
+              assertThat(b.getLink("next").getUrl()).isEqualTo("http://localhost/next?entry=[{}]");
+              assertThat(b.getEntry())
+                  .extracting(e -> e.getResource().getIdElement().getIdPart())
+                  .containsExactly("1", "2");
+            })
+        .verifyComplete();
+  }
+
+  @Test
+  void decodeBundleWithoutEntries() {
+    var bundle =
+        decoder
+            .decode(
+                chunked("{\"resourceType\": \"Bundle\", \"entry\": []}", 3),
+                ResolvableType.forClass(Bundle.class),
+                MediaType.APPLICATION_JSON,
+                null)
+            .cast(Bundle.class);
+
+    create(bundle).assertNext(b -> assertThat(b.getEntry()).isEmpty()).verifyComplete();
+  }
+
+  @Test
+  void incompleteBundleFails() {
+    var entries =
+        decoder.decode(
+            chunked("{\"resourceType\": \"Bundle\", \"entry\": [{\"resource\": {", 5),
+            ResolvableType.forClass(BundleEntryComponent.class),
+            APPLICATION_FHIR_JSON,
+            null);
+
+    create(entries).expectError(DecodingException.class).verify();
+  }
+
+  @Test
+  void entryLargerThanMaxInMemorySizeFails() {
+    var limited = new FhirStreamingDecoder(new FhirJsonParsers(forR4()), DataSize.ofBytes(100));
+    var family = "x".repeat(100);
+    var json =
+        "{\"resourceType\": \"Bundle\", \"entry\": [{\"resource\": {\"resourceType\": \"Patient\","
+            + " \"name\": [{\"family\": \"%s\"}]}}]}".formatted(family);
+
+    var entries =
+        limited.decode(
+            chunked(json, 7),
+            ResolvableType.forClass(BundleEntryComponent.class),
+            APPLICATION_FHIR_JSON,
+            null);
+
+    create(entries).expectError(DataBufferLimitException.class).verify();
+  }
+
+  @Test
+  void maxInMemorySizeAppliesToEachEntry() {
+    var limited = new FhirStreamingDecoder(new FhirJsonParsers(forR4()), DataSize.ofBytes(180));
+
+    var bundle =
+        limited.decodeToMono(
+            chunked(BUNDLE, 7), ResolvableType.forClass(Bundle.class), APPLICATION_FHIR_JSON, null);
+
+    create(bundle.cast(Bundle.class))
+        .assertNext(b -> assertThat(b.getEntry()).hasSize(2))
+        .verifyComplete();
+  }
+
+  @Test
+  void entriesCannotBeDecodedToMono() {
+    var entry =
+        decoder.decodeToMono(
+            chunked(BUNDLE, 64),
+            ResolvableType.forClass(BundleEntryComponent.class),
+            APPLICATION_FHIR_JSON,
+            null);
+
+    create(entry).expectError(DecodingException.class).verify();
+  }
+
+  @Test
+  void canDecode() {
+    assertThat(decoder.canDecode(ResolvableType.forClass(Bundle.class), APPLICATION_FHIR_JSON))
+        .isTrue();
+    assertThat(
+            decoder.canDecode(
+                ResolvableType.forClass(BundleEntryComponent.class), MediaType.APPLICATION_JSON))
+        .isTrue();
+    assertThat(decoder.canDecode(ResolvableType.forClass(Patient.class), APPLICATION_FHIR_JSON))
+        .isFalse();
+    assertThat(decoder.canDecode(ResolvableType.forClass(Bundle.class), MediaType.TEXT_PLAIN))
+        .isFalse();
+  }
+
+  private Flux<DataBuffer> chunked(String json, int chunkSize) {
+    var bytes = json.getBytes(StandardCharsets.UTF_8);
+    return Flux.range(0, (bytes.length + chunkSize - 1) / chunkSize)
+        .map(
+            i ->
+                bufferFactory.wrap(
+                    Arrays.copyOfRange(
+                        bytes, i * chunkSize, Math.min(bytes.length, (i + 1) * chunkSize))));
+  }
+}
@@ -0,0 +1,156 @@
+package care.smith.fts.util.fhir;
+
+import static ca.uhn.fhir.context.FhirContext.forR4;
+import static care.smith.fts.util.MediaTypes.APPLICATION_FHIR_JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Bundle.BundleEntryComponent;
+import org.hl7.fhir.r4.model.Bundle.BundleType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Mono;
+
+class FhirStreamingEncoderTest {
+
+  private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 7, 64, 4096})
+  void encodedBundleMatchesBufferedEncoding(int chunkSize) {
+    var bundle = new Bundle().setType(BundleType.TRANSACTION).setTotal(2);
+    bundle.addLink().setRelation("next").setUrl("http://localhost/next?entry=[{}]");
+    bundle
+        .addEntry()
+        .setFullUrl("Patient/1")
+        .setResource(new Patient().setId("1"))
+        .getRequest()
+        .setUrl("Patient/1");
+    bundle.addEntry().setResource(patientNamed("2", "Brace } ] \" {"));
+
+    var buffers = encode(new FhirStreamingEncoder(forR4(), chunkSize), bundle);
+
+    assertThat(buffers.subList(0, buffers.size() - 1))
+        .allSatisfy(b -> assertThat(b.readableByteCount()).isEqualTo(chunkSize));
+    assertThat(join(buffers)).isEqualTo(forR4().newJsonParser().encodeResourceToString(bundle));
+  }
+
+  /**
+   * Pins the framing of a single-entry bundle as encoded by the HAPI version in use. The encoder
+   * strips exactly this prefix and suffix from every entry, so a HAPI upgrade changing it fails
+   * here instead of in a transfer.
+   */
+  @Test
+  void hapiEncodesSingleEntryBundleWithExpectedFraming() {
+    var bundle = new Bundle();
+    bundle.addEntry().setResource(new Patient().setId("1"));
+
+    assertThat(forR4().newJsonParser().encodeResourceToString(bundle))
+        .isEqualTo(
+            "{\"resourceType\":\"Bundle\",\"entry\":["
+                + "{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"1\"}}"
+                + "]}");
+  }
+
+  @Test
+  void encodedBundleMatchesExpectedBytes() {
+    var bundle = new Bundle().setType(BundleType.TRANSACTION);
+    bundle.addEntry().setFullUrl("Patient/1").setResource(new Patient().setId("1"));
+    bundle.addEntry().setResource(new Patient().setId("2"));
+
+    var buffers = encode(new FhirStreamingEncoder(forR4(), 5), bundle);
+
+    assertThat(join(buffers))
+        .isEqualTo(
+            "{\"resourceType\":\"Bundle\",\"type\":\"transaction\",\"entry\":["
+                + "{\"fullUrl\":\"Patient/1\","
+                + "\"resource\":{\"resourceType\":\"Patient\",\"id\":\"1\"}},"
+                + "{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"2\"}}"
+                + "]}");
+  }
+
+  @Test
+  void bundleWithoutEntriesIsWrittenWhole() {
+    var bundle = new Bundle().setType(BundleType.SEARCHSET).setTotal(0);
+
+    var buffers = encode(new FhirStreamingEncoder(forR4(), 8), bundle);
+
+    assertThat(join(buffers)).isEqualTo(forR4().newJsonParser().encodeResourceToString(bundle));
+  }
+
+  @Test
+  void emptyEntriesAreSkipped() {
+    var bundle = new Bundle();
+    bundle.addEntry();
+    bundle.addEntry().setResource(new Patient().setId("1"));
+    bundle.addEntry(new BundleEntryComponent());
+
+    var json = join(encode(new FhirStreamingEncoder(forR4(), 16), bundle));
+
+    var decoded = forR4().newJsonParser().parseResource(Bundle.class, json);
+    assertThat(decoded.getEntry())
+        .extracting(e -> e.getResource().getIdElement().getIdPart())
+        .containsExactly("1");
+  }
+
+  @Test
+  void invalidChunkSizeThrows() {
+    assertThatIllegalArgumentException().isThrownBy(() -> new FhirStreamingEncoder(forR4(), 0));
+  }
+
+  @Test
+  void canEncode() {
+    var encoder = new FhirStreamingEncoder(forR4());
+
+    assertThat(encoder.canEncode(ResolvableType.forClass(Bundle.class), APPLICATION_FHIR_JSON))
+        .isTrue();
+    assertThat(encoder.canEncode(ResolvableType.forClass(Bundle.class), MediaType.APPLICATION_JSON))
+        .isTrue();
+    assertThat(encoder.canEncode(ResolvableType.forClass(Patient.class), APPLICATION_FHIR_JSON))
+        .isFalse();
+    assertThat(encoder.canEncode(ResolvableType.forClass(Bundle.class), MediaType.TEXT_PLAIN))
+        .isFalse();
+  }
+
+  private List<DataBuffer> encode(FhirStreamingEncoder encoder, Bundle bundle) {
+    var buffers =
+        encoder
+            .encode(
+                Mono.just(bundle),
+                bufferFactory,
+                ResolvableType.forClass(Bundle.class),
+                APPLICATION_FHIR_JSON,
+                null)
+            .collectList();
+    var result = buffers.block();
+    assertThat(result).isNotEmpty();
+    return result;
+  }
+
+  private static String join(List<DataBuffer> buffers) {
+    var json = new StringBuilder();
+    buffers.forEach(
+        b -> {
+          json.append(b.toString(StandardCharsets.UTF_8));
+          DataBufferUtils.release(b);
+        });
+    return json.toString();
+  }
+
+  private static Patient patientNamed(String id, String family) {
+    var patient = new Patient();
+    patient.setId(id);
+    patient.addName().setFamily(family);
+    return patient;
+  }
+}
@@ -0,0 +1,30 @@
+package care.smith.fts.util.tca;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+class SecureMappingBatchRequestTest {
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void serialize() throws JacksonException {
+    var request = new SecureMappingBatchRequest(List.of("transfer1", "transfer2"));
+
+    assertThat(objectMapper.writeValueAsString(request))
+        .isEqualTo("{\"transferIds\":[\"transfer1\",\"transfer2\"]}");
+  }
+
+  @Test
+  void deserialize() throws JacksonException {
+    var json = "{\"transferIds\":[\"transfer1\",\"transfer2\"]}";
+
+    var request = objectMapper.readValue(json, SecureMappingBatchRequest.class);
+
+    assertThat(request.transferIds()).containsExactly("transfer1", "transfer2");
+  }
+}
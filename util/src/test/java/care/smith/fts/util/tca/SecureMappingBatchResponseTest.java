@@ -0,0 +1,29 @@
+package care.smith.fts.util.tca;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+class SecureMappingBatchResponseTest {
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void roundTrip() throws JacksonException {
+    var response =
+        new SecureMappingBatchResponse(
+            Map.of(
+                "transfer1",
+                new SecureMappingResponse(Map.of("tid1", "sid1"), Map.of("tid2", "2024-03-15")),
+                "transfer2",
+                new SecureMappingResponse(Map.of(), Map.of())));
+
+    var json = objectMapper.writeValueAsString(response);
+    var parsed = objectMapper.readValue(json, SecureMappingBatchResponse.class);
+
+    assertThat(parsed).isEqualTo(response);
+  }
+}
@@ -0,0 +1,52 @@
+package care.smith.fts.util.tca;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import care.smith.fts.api.DateShiftPreserve;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+class TransportMappingBatchRequestTest {
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void roundTrip() throws JacksonException {
+    var domains = new TcaDomains("pDomain", "sDomain", "dDomain");
+    var request =
+        new TransportMappingBatchRequest(
+            List.of(
+                new TransportMappingRequest(
+                    "patient1",
+                    "system",
+                    Map.of("patient1.Patient:id1", "tId1"),
+                    Map.of(),
+                    domains,
+                    Duration.ofDays(30),
+                    DateShiftPreserve.NONE),
+                new TransportMappingRequest(
+                    "patient2",
+                    "system",
+                    Map.of("patient2.Patient:id2", "tId2"),
+                    Map.of("tId3", "2024-03-15"),
+                    domains,
+                    Duration.ofDays(30),
+                    DateShiftPreserve.WEEKDAY)));
+
+    var json = objectMapper.writeValueAsString(request);
+    var parsed = objectMapper.readValue(json, TransportMappingBatchRequest.class);
+
+    assertThat(parsed).isEqualTo(request);
+  }
+
+  @Test
+  void missingRequestsAreDeserialized() throws JacksonException {
+    var parsed = objectMapper.readValue("{}", TransportMappingBatchRequest.class);
+
+    assertThat(parsed.requests()).isNull();
+  }
+}
@@ -0,0 +1,30 @@
+package care.smith.fts.util.tca;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+class TransportMappingBatchResponseTest {
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void serialize() throws JacksonException {
+    var response = new TransportMappingBatchResponse(List.of("transfer1", "transfer2"));
+
+    assertThat(objectMapper.writeValueAsString(response))
+        .isEqualTo("{\"transferIds\":[\"transfer1\",\"transfer2\"]}");
+  }
+
+  @Test
+  void deserialize() throws JacksonException {
+    var json = "{\"transferIds\":[\"transfer1\",\"transfer2\"]}";
+
+    var response = objectMapper.readValue(json, TransportMappingBatchResponse.class);
+
+    assertThat(response.transferIds()).containsExactly("transfer1", "transfer2");
+  }
+}